@@ -0,0 +1,275 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.novartis.opensource.yada.security.YADASecuritySpec;
+import com.novartis.opensource.yada.util.YADAUtils;
+
+/**
+ * The default parameters of an app, stored as a json string in the {@code params} property of the
+ * {@code props} object in its {@code conf.json}, or its config in the YADA index.  The string is parsed once,
+ * when the config is loaded, rather than for each query and request, into an immutable list of parameters,
+ * each with the name of the {@link YADARequest} setter to invoke for it, if any.
+ * See {@link ConnectionFactory#getAppDefaultParams(String)}.
+ *
+ * @author David Varon
+ * @since 10.2.0
+ */
+public final class AppDefaultParams {
+
+  /**
+   * Local logger handle
+   */
+  private static Logger l = LoggerFactory.getLogger(AppDefaultParams.class);
+
+  /**
+   * Constant equal to {@value}
+   */
+  private final static String PROP_PARAMS = "params";
+
+  /**
+   * Constant equal to {@value}
+   */
+  private final static String PROP_NAME = "name";
+
+  /**
+   * Constant equal to {@value}
+   */
+  private final static String PROP_VALUE = "value";
+
+  /**
+   * Constant equal to {@value}
+   */
+  private final static String PROP_RULE = "rule";
+
+  /**
+   * Constant equal to {@value}
+   */
+  private final static String PROP_SEC = "spec";
+
+  /**
+   * An app without default parameters
+   */
+  public final static AppDefaultParams NONE = new AppDefaultParams();
+
+  /**
+   * The parameters, in order
+   */
+  private final List<Default> params;
+
+  /**
+   * The reason the parameters couldn't be parsed, or {@code null}
+   */
+  private final String error;
+
+  /**
+   * Creates an empty list
+   */
+  private AppDefaultParams()
+  {
+    this.params = Collections.emptyList();
+    this.error  = null;
+  }
+
+  /**
+   * Parses the default parameters in {@code conf}.  If they can't be parsed, the error is reported when
+   * they are applied.
+   * @param app the app name
+   * @param conf the app config, as stored in {@link ConnectionFactory#getDsConf()}, or {@code null}
+   */
+  public AppDefaultParams(String app, Map<String, Object> conf)
+  {
+    List<Default> list  = new ArrayList<>();
+    String        error = null;
+    Object        props = conf == null ? null : conf.get(ConnectionFactory.YADA_CONF_PROPS);
+    if (props instanceof JSONObject && ((JSONObject) props).has(PROP_PARAMS))
+    {
+      try
+      {
+        Object    value = ((JSONObject) props).get(PROP_PARAMS);
+        JSONArray yqp   = value instanceof JSONArray ? (JSONArray) value : new JSONArray(value.toString());
+        for (int i = 0; i < yqp.length(); i++)
+        {
+          list.add(new Default(yqp.getJSONObject(i)));
+        }
+      }
+      catch (JSONException | YADAQueryConfigurationException e)
+      {
+        error = String.format("The default params of app [%s] are invalid: %s", app, e.getMessage());
+        l.error(error, e);
+        list.clear();
+      }
+    }
+    this.params = Collections.unmodifiableList(list);
+    this.error  = error;
+  }
+
+  /**
+   * @return {@code true} if there are no default parameters
+   */
+  public boolean isEmpty()
+  {
+    return this.params.isEmpty() && this.error == null;
+  }
+
+  /**
+   * Adds the default parameters to {@code yq}, as stored defaults targeting the query, as when the query is
+   * loaded.
+   * @param yq the query
+   * @throws YADAQueryConfigurationException when the parameters couldn't be parsed
+   */
+  public void addTo(YADAQuery yq) throws YADAQueryConfigurationException
+  {
+    checkError();
+    for (Default d : this.params)
+    {
+      YADAParam yp = new YADAParam(d.name, d.value, yq.getQname(), d.rule, true);
+      yp.setSecuritySpec(d.spec);
+      yq.addParam(yp);
+    }
+  }
+
+  /**
+   * Applies the default parameters to {@code yq} and {@code yadaReq} for a request: invokes the request setter
+   * for each parameter which corresponds to one of {@link YADAUtils#PARAM_FRAGS}, and adds each parameter to
+   * {@code yq}, or, if the query already has an overrideable parameter of the same name, replaces its value.
+   * @param yq the query
+   * @param yadaReq the request
+   * @throws YADAQueryConfigurationException when the parameters couldn't be parsed, or a request setter fails
+   */
+  public void applyTo(YADAQuery yq, YADARequest yadaReq) throws YADAQueryConfigurationException
+  {
+    checkError();
+    for (Default d : this.params)
+    {
+      if (d.setter != null)
+      {
+        try
+        {
+          yadaReq.invokeSetter(d.setter, d.value);
+        }
+        catch (YADARequestException e)
+        {
+          String msg = "Could not set request parameter from stored value";
+          throw new YADAQueryConfigurationException(msg, e);
+        }
+      }
+      YADAParam yp = new YADAParam();
+      yp.setName(d.name);
+      yp.setValue(d.value);
+      yp.setRule(d.rule);
+
+      List<YADAParam> ypList = yq.getYADAQueryParamsForKey(d.name);
+      if (ypList.size() > 0)
+      {
+        YADAParam existingYp = ypList.get(0);
+        if (existingYp == null)
+          yq.addParam(yp);
+        else if (existingYp.getRule() == YADAParam.OVERRIDEABLE)
+          yq.getParam(d.name).get(0).setValue(d.value);
+      }
+      else
+      {
+        yq.addParam(yp);
+      }
+    }
+  }
+
+  /**
+   * @throws YADAQueryConfigurationException when the parameters couldn't be parsed
+   */
+  private void checkError() throws YADAQueryConfigurationException
+  {
+    if (this.error != null)
+    {
+      throw new YADAQueryConfigurationException(this.error);
+    }
+  }
+
+  /**
+   * A default parameter
+   */
+  private static final class Default {
+
+    /**
+     * The parameter name
+     */
+    private final String name;
+
+    /**
+     * The parameter value
+     */
+    private final String value;
+
+    /**
+     * The parameter rule
+     */
+    private final int rule;
+
+    /**
+     * The security spec, or {@code null}
+     */
+    private final YADASecuritySpec spec;
+
+    /**
+     * The short name of the {@link YADARequest} setter for the parameter, or {@code null}
+     */
+    private final String setter;
+
+    /**
+     * @param jo the parameter config
+     * @throws YADAQueryConfigurationException when the security spec is invalid
+     */
+    Default(JSONObject jo) throws YADAQueryConfigurationException
+    {
+      this.name  = jo.getString(PROP_NAME);
+      this.value = jo.getString(PROP_VALUE);
+      this.rule  = jo.getInt(PROP_RULE);
+      JSONObject spec = jo.optJSONObject(PROP_SEC);
+      this.spec   = spec == null ? null : new YADASecuritySpec(spec);
+      this.setter = getSetter(this.name);
+    }
+
+    /**
+     * @param name the parameter name
+     * @return the short parameter name of the fragment in {@link YADAUtils#PARAM_FRAGS} whose short or long
+     * parameter name is {@code name}, or {@code null}
+     * @throws YADAQueryConfigurationException when a parameter name can't be retrieved
+     */
+    private static String getSetter(String name) throws YADAQueryConfigurationException
+    {
+      for (String frag : YADAUtils.PARAM_FRAGS)
+      {
+        String shortName = YADARequest.getParamKeyVal("PS_" + frag);
+        if (name.contentEquals(YADARequest.getParamKeyVal("PL_" + frag)) || name.contentEquals(shortName))
+        {
+          return shortName;
+        }
+      }
+      return null;
+    }
+  }
+}
@@ -0,0 +1,357 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * <p>
+ * A compact store for the data rows of a {@link JSONParamsEntry} or {@link YADAQuery}.  Rather than
+ * a map, and an array for each value, per row, values are stored in one array per column, and the column
+ * names once for all rows.  Single values are stored without an enclosing array.
+ * </p>
+ * <p>
+ * Rows are materialized as {@link LinkedHashMap}s on access, so the store can be used wherever a
+ * {@code List<LinkedHashMap<String,String[]>>} was used.  A materialized row is a copy, with its own value
+ * arrays, so reading rows, e.g., while preparing a query, leaves the store as compact as it was parsed.
+ * Changes to a materialized row are only retained when it is stored again with {@link #set(int, LinkedHashMap)}.
+ * Rows whose columns differ from those of the first row are stored as maps.
+ * </p>
+ * @author David Varon
+ * @since 10.2.0
+ */
+public class ColumnarData extends AbstractList<LinkedHashMap<String,String[]>> implements RandomAccess {
+
+	/**
+	 * Constant equal to {@value}. The key of the column names in a columnar {@code DATA} object
+	 */
+	public final static String COLUMNS = "columns";
+
+	/**
+	 * Constant equal to {@value}. The key of the column values in a columnar {@code DATA} object
+	 */
+	public final static String VALUES = "values";
+
+	/**
+	 * Constant equal to {@value}
+	 */
+	private final static int INITIAL_CAPACITY = 16;
+
+	/**
+	 * The column names, in order, shared by all rows stored in {@link #cells}
+	 */
+	private String[] columns;
+
+	/**
+	 * The values of each column, indexed by column and row.  Each value is a {@link String}, or,
+	 * if there are more or fewer than one, a {@link String} array
+	 */
+	private Object[][] cells;
+
+	/**
+	 * The number of rows
+	 */
+	private int size;
+
+	/**
+	 * Rows stored as maps, rather than in {@link #cells}, mapped to their indices
+	 */
+	private Map<Integer,LinkedHashMap<String,String[]>> rows = new HashMap<>();
+
+	/**
+	 * Default constructor
+	 */
+	public ColumnarData()
+	{
+		super();
+	}
+
+	/**
+	 * Appends the rows contained in {@code values}, one array per column, in the same order as {@code columns}.
+	 * If the store is not empty, and its columns differ from {@code columns}, the rows are stored as maps.
+	 * @param cols the column names
+	 * @param values the values of each column, each either a {@link String} or a {@link String} array
+	 * @throws IllegalArgumentException if the number of columns and value arrays differ, or the value arrays differ in length
+	 */
+	public void addColumns(String[] cols, Object[][] values)
+	{
+		if(cols.length != values.length)
+		{
+			String msg = String.format("Found %d columns, but %d value arrays", cols.length, values.length);
+			throw new IllegalArgumentException(msg);
+		}
+		int count = values.length == 0 ? 0 : values[0].length;
+		for(Object[] column : values)
+		{
+			if(column.length != count)
+			{
+				String msg = "Each column must contain the same number of values";
+				throw new IllegalArgumentException(msg);
+			}
+		}
+		if(this.columns == null)
+		{
+			this.columns = cols.clone();
+			this.cells   = new Object[cols.length][];
+			for(int c = 0; c < cols.length; c++)
+			{
+				this.cells[c] = Arrays.copyOf(values[c], Math.max(count, INITIAL_CAPACITY));
+			}
+			this.size = count;
+			this.modCount++;
+		}
+		else if(Arrays.equals(this.columns, cols))
+		{
+			ensureCapacity(this.size + count);
+			for(int c = 0; c < cols.length; c++)
+			{
+				System.arraycopy(values[c], 0, this.cells[c], this.size, count);
+			}
+			this.size += count;
+			this.modCount++;
+		}
+		else
+		{
+			for(int r = 0; r < count; r++)
+			{
+				LinkedHashMap<String,String[]> row = new LinkedHashMap<>();
+				for(int c = 0; c < cols.length; c++)
+				{
+					row.put(cols[c], toArray(values[c][r]));
+				}
+				add(row);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of rows
+	 * @see java.util.AbstractCollection#size()
+	 */
+	@Override
+	public int size()
+	{
+		return this.size;
+	}
+
+	/**
+	 * Returns a copy of the row at {@code index}, materialized as a map if it is stored in columns.
+	 * @see java.util.AbstractList#get(int)
+	 */
+	@Override
+	public LinkedHashMap<String,String[]> get(int index)
+	{
+		checkIndex(index);
+		LinkedHashMap<String,String[]> stored = this.rows.get(index);
+		if(stored != null)
+		{
+			LinkedHashMap<String,String[]> row = new LinkedHashMap<>();
+			for(Map.Entry<String,String[]> entry : stored.entrySet())
+			{
+				row.put(entry.getKey(), entry.getValue() == null ? null : entry.getValue().clone());
+			}
+			return row;
+		}
+		LinkedHashMap<String,String[]> row = new LinkedHashMap<>((int) (this.columns.length / 0.75f) + 1);
+		for(int c = 0; c < this.columns.length; c++)
+		{
+			row.put(this.columns[c], toArray(this.cells[c][index]));
+		}
+		return row;
+	}
+
+	/**
+	 * Replaces the row at {@code index}, storing it in columns if its columns are the same as the others.
+	 * @see java.util.AbstractList#set(int, java.lang.Object)
+	 */
+	@Override
+	public LinkedHashMap<String,String[]> set(int index, LinkedHashMap<String,String[]> row)
+	{
+		LinkedHashMap<String,String[]> previous = get(index);
+		store(index, row);
+		return previous;
+	}
+
+	/**
+	 * Inserts {@code row} at {@code index}, storing it in columns if its columns are the same as the others.
+	 * @see java.util.AbstractList#add(int, java.lang.Object)
+	 */
+	@Override
+	public void add(int index, LinkedHashMap<String,String[]> row)
+	{
+		if(index < 0 || index > this.size)
+		{
+			throw new IndexOutOfBoundsException("Index: "+index+", Size: "+this.size);
+		}
+		if(this.columns == null)
+		{
+			this.columns = row.keySet().toArray(new String[row.size()]);
+			this.cells   = new Object[this.columns.length][INITIAL_CAPACITY];
+		}
+		ensureCapacity(this.size + 1);
+		if(index < this.size)
+		{
+			for(Object[] column : this.cells)
+			{
+				System.arraycopy(column, index, column, index + 1, this.size - index);
+			}
+			shiftRows(index, 1);
+		}
+		this.size++;
+		this.modCount++;
+		store(index, row);
+	}
+
+	/**
+	 * @see java.util.AbstractList#remove(int)
+	 */
+	@Override
+	public LinkedHashMap<String,String[]> remove(int index)
+	{
+		LinkedHashMap<String,String[]> previous = get(index);
+		this.rows.remove(index);
+		for(Object[] column : this.cells)
+		{
+			System.arraycopy(column, index + 1, column, index, this.size - index - 1);
+			column[this.size - 1] = null;
+		}
+		shiftRows(index, -1);
+		this.size--;
+		this.modCount++;
+		return previous;
+	}
+
+	/**
+	 * @see java.util.AbstractList#clear()
+	 */
+	@Override
+	public void clear()
+	{
+		this.columns = null;
+		this.cells   = null;
+		this.size    = 0;
+		this.rows.clear();
+		this.modCount++;
+	}
+
+	/**
+	 * Stores {@code row} at the existing {@code index}, in columns if possible, or else as a map.
+	 * @param index the row index
+	 * @param row the row to store
+	 */
+	private void store(int index, LinkedHashMap<String,String[]> row)
+	{
+		if(isColumnar(row))
+		{
+			int c = 0;
+			for(String[] value : row.values())
+			{
+				this.cells[c++][index] = value.length == 1 ? value[0] : value;
+			}
+			this.rows.remove(index);
+		}
+		else
+		{
+			for(Object[] column : this.cells)
+			{
+				column[index] = null;
+			}
+			this.rows.put(index, row);
+		}
+	}
+
+	/**
+	 * @param row a data row
+	 * @return {@code true} if the keys of {@code row} are the same, and in the same order, as {@link #columns}
+	 */
+	private boolean isColumnar(Map<String,String[]> row)
+	{
+		if(row.size() != this.columns.length)
+			return false;
+		Iterator<Map.Entry<String,String[]>> iter = row.entrySet().iterator();
+		for(int c = 0; c < this.columns.length; c++)
+		{
+			Map.Entry<String,String[]> entry = iter.next();
+			if(!this.columns[c].equals(entry.getKey()) || entry.getValue() == null)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Re-indexes the rows stored as maps at or after {@code index} by {@code delta}.
+	 * @param index the first index to shift
+	 * @param delta the distance to shift
+	 */
+	private void shiftRows(int index, int delta)
+	{
+		if(this.rows.isEmpty())
+			return;
+		Map<Integer,LinkedHashMap<String,String[]>> shifted = new HashMap<>();
+		for(Map.Entry<Integer,LinkedHashMap<String,String[]>> entry : this.rows.entrySet())
+		{
+			int i = entry.getKey();
+			shifted.put(i < index ? i : i + delta, entry.getValue());
+		}
+		this.rows = shifted;
+	}
+
+	/**
+	 * Grows each column array, if necessary, to hold at least {@code capacity} rows.
+	 * @param capacity the minimum capacity
+	 */
+	private void ensureCapacity(int capacity)
+	{
+		for(int c = 0; c < this.cells.length; c++)
+		{
+			int length = this.cells[c].length;
+			if(length < capacity)
+			{
+				this.cells[c] = Arrays.copyOf(this.cells[c], Math.max(capacity, length + (length >> 1)));
+			}
+		}
+	}
+
+	/**
+	 * @param index the row index
+	 * @throws IndexOutOfBoundsException if {@code index} is out of range
+	 */
+	private void checkIndex(int index)
+	{
+		if(index < 0 || index >= this.size)
+		{
+			throw new IndexOutOfBoundsException("Index: "+index+", Size: "+this.size);
+		}
+	}
+
+	/**
+	 * @param cell a stored value
+	 * @return {@code cell} as a new array
+	 */
+	private static String[] toArray(Object cell)
+	{
+		if(cell == null)
+		{
+			return null;
+		}
+		return cell instanceof String ? new String[] { (String) cell } : ((String[]) cell).clone();
+	}
+}
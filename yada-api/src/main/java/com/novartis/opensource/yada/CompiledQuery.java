@@ -0,0 +1,331 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sf.jsqlparser.expression.operators.relational.InExpression;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.ValuesList;
+
+import com.novartis.opensource.yada.adaptor.Adaptor;
+
+/**
+ * <p>
+ * The result of classifying and parsing the code of a query for an adaptor: the protocol, statement type,
+ * parsed {@link Statement} and the column lists derived from it, and the data types of the parameters.
+ * None of these depend on the request, so one instance is shared by every {@link YADAQuery} with the same
+ * code and adaptor class, and the code is parsed once rather than on every request.  See
+ * {@link com.novartis.opensource.yada.util.QueryUtils#getCompiledQuery(String, Class)}.
+ * </p>
+ * <p>
+ * Instances are immutable.  Lists and maps are unmodifiable, and the data types are copied on access.
+ * The {@link Statement} can't be made unmodifiable, so code which changes a statement, e.g., to apply a
+ * content policy, must parse its own copy.  The statement is {@code null} for queries which aren't
+ * {@code JDBC}, or whose code can't be parsed, in which case the type is inferred from the code.
+ * </p>
+ * <p>
+ * The code with its {@code IN} lists expanded for the values in a data row depends only on the number of
+ * values for each list, so the expanded code and its data types are also stored here, keyed by those
+ * numbers.  See {@link com.novartis.opensource.yada.util.QueryUtils#processInList(YADAQuery, int)}.
+ * </p>
+ * @author David Varon
+ * @since 10.2.0
+ */
+public final class CompiledQuery {
+
+	/**
+	 * Constant equal to {@value}. The maximum number of {@code IN} list expansions stored per template.
+	 * When it is reached, the least recently used expansion is discarded.
+	 * @since 10.2.0
+	 */
+	public final static int IN_LIST_EXPANSIONS_MAX = 256;
+
+	/**
+	 * The code, including YADA markup
+	 */
+	private final String code;
+	/**
+	 * The code, stripped of YADA markup
+	 */
+	private final String conformedCode;
+	/**
+	 * The adaptor class for which the code was compiled
+	 */
+	private final Class<Adaptor> adaptorClass;
+	/**
+	 * The protocol of the adaptor class
+	 */
+	private final String protocol;
+	/**
+	 * The statement type
+	 */
+	private final String type;
+	/**
+	 * The parsed statement, or {@code null}
+	 */
+	private final Statement statement;
+	/**
+	 * The columns in the statement
+	 */
+	private final List<Column> columnList;
+	/**
+	 * The columns in {@code IN} clauses
+	 */
+	private final List<Column> inList;
+	/**
+	 * The {@code VALUES} clause
+	 */
+	private final ValuesList valuesList;
+	/**
+	 * The columns in the {@code VALUES} clause
+	 */
+	private final List<String> valuesColumns;
+	/**
+	 * The columns with JDBC parameters, in order
+	 */
+	private final List<Column> parameterizedColumnList;
+	/**
+	 * The {@code IN} expressions, mapped to their columns
+	 */
+	private final Map<Column, InExpression> inExpressionMap;
+	/**
+	 * The data types of the parameters, in order
+	 */
+	private final char[] dataTypes;
+	/**
+	 * The code with expanded {@code IN} lists, mapped to the number of values in each list, in access order
+	 */
+	private final Map<List<Integer>, InListExpansion> inListExpansions = Collections.synchronizedMap(
+			new LinkedHashMap<List<Integer>, InListExpansion>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<List<Integer>, InListExpansion> eldest)
+				{
+					return size() > IN_LIST_EXPANSIONS_MAX;
+				}
+			});
+
+	/**
+	 * Stores the results of compilation.  {@code parser} is {@code null} if the code wasn't parsed.
+	 * @param code the code, including YADA markup
+	 * @param conformedCode the code, stripped of YADA markup
+	 * @param adaptorClass the adaptor class for which the code was compiled
+	 * @param protocol the protocol of the adaptor class
+	 * @param type the statement type
+	 * @param dataTypes the data types of the parameters, in order
+	 * @param parser the parser which parsed {@code code}, or {@code null}
+	 */
+	public CompiledQuery(String code, String conformedCode, Class<Adaptor> adaptorClass, String protocol,
+	                     String type, char[] dataTypes, Parser parser)
+	{
+		this.code          = code;
+		this.conformedCode = conformedCode;
+		this.adaptorClass  = adaptorClass;
+		this.protocol      = protocol;
+		this.type          = type;
+		this.dataTypes     = dataTypes.clone();
+		if (parser == null)
+		{
+			this.statement               = null;
+			this.columnList              = null;
+			this.inList                  = null;
+			this.valuesList              = null;
+			this.valuesColumns           = null;
+			this.parameterizedColumnList = null;
+			this.inExpressionMap         = null;
+		}
+		else
+		{
+			this.statement               = parser.getStatement();
+			this.columnList              = unmodifiable(parser.getColumnList());
+			this.inList                  = unmodifiable(parser.getInColumnList());
+			this.valuesList              = parser.getValuesList();
+			this.valuesColumns           = unmodifiable(parser.getValuesColumns());
+			this.parameterizedColumnList = unmodifiable(parser.getJdbcColumnList());
+			this.inExpressionMap         = parser.getInExpressionMap() == null ? null
+			                             : Collections.unmodifiableMap(parser.getInExpressionMap());
+		}
+	}
+
+	/**
+	 * @param list a list, or {@code null}
+	 * @return an unmodifiable view of {@code list}, or {@code null}
+	 */
+	private static <T> List<T> unmodifiable(List<T> list)
+	{
+		return list == null ? null : Collections.unmodifiableList(list);
+	}
+
+	/**
+	 * Sets the protocol, type, conformed code, statement and column lists of {@code yq} to those of this
+	 * template, and stores a reference to it in {@code yq}.
+	 * @param yq the query to which to apply the template
+	 */
+	public void applyTo(YADAQuery yq)
+	{
+		yq.setCompiledQuery(this);
+		yq.setProtocol(getProtocol());
+		yq.setConformedCode(getConformedCode());
+		yq.setType(getType());
+		yq.setStatement(getStatement());
+		yq.setColumnList(getColumnList());
+		yq.setInList(getInList());
+		yq.setValuesList(getValuesList());
+		yq.setValuesColumns(getValuesColumns());
+		yq.setParameterizedColumnList(getParameterizedColumnList());
+		yq.setInExpressionMap(getInExpressionMap());
+	}
+
+	/**
+	 * @return the code, including YADA markup
+	 */
+	public String getCode() { return this.code; }
+
+	/**
+	 * @return the code, stripped of YADA markup
+	 */
+	public String getConformedCode() { return this.conformedCode; }
+
+	/**
+	 * @return the adaptor class for which the code was compiled
+	 */
+	public Class<Adaptor> getAdaptorClass() { return this.adaptorClass; }
+
+	/**
+	 * @return the protocol of the adaptor class
+	 */
+	public String getProtocol() { return this.protocol; }
+
+	/**
+	 * @return the statement type, or {@code null} if it couldn't be determined
+	 */
+	public String getType() { return this.type; }
+
+	/**
+	 * @return the parsed statement, or {@code null} if the code wasn't parsed
+	 */
+	public Statement getStatement() { return this.statement; }
+
+	/**
+	 * @return the columns in the statement
+	 */
+	public List<Column> getColumnList() { return this.columnList; }
+
+	/**
+	 * @return the columns in {@code IN} clauses
+	 */
+	public List<Column> getInList() { return this.inList; }
+
+	/**
+	 * @return the {@code VALUES} clause
+	 */
+	public ValuesList getValuesList() { return this.valuesList; }
+
+	/**
+	 * @return the columns in the {@code VALUES} clause
+	 */
+	public List<String> getValuesColumns() { return this.valuesColumns; }
+
+	/**
+	 * @return the columns with JDBC parameters, in order
+	 */
+	public List<Column> getParameterizedColumnList() { return this.parameterizedColumnList; }
+
+	/**
+	 * @return the {@code IN} expressions, mapped to their columns
+	 */
+	public Map<Column, InExpression> getInExpressionMap() { return this.inExpressionMap; }
+
+	/**
+	 * @return a copy of the data types of the parameters, in order
+	 */
+	public char[] getDataTypes() { return this.dataTypes.clone(); }
+
+	/**
+	 * @return the number of parameters
+	 */
+	public int getParamCount() { return this.dataTypes.length; }
+
+	/**
+	 * @param arities the number of values in each {@code IN} list, in the order of {@link #getInList()}
+	 * @return the stored expansion for {@code arities}, or {@code null}
+	 */
+	public InListExpansion getInListExpansion(List<Integer> arities)
+	{
+		return this.inListExpansions.get(arities);
+	}
+
+	/**
+	 * Stores the expansion of the code for {@code arities}, unless another thread stored it first, discarding
+	 * the least recently used expansion if {@link #IN_LIST_EXPANSIONS_MAX} are stored.
+	 * @param arities the number of values in each {@code IN} list, in the order of {@link #getInList()}
+	 * @param expandedCode the code, including YADA markup, with the {@code IN} lists expanded
+	 * @param expandedDataTypes the data types of the parameters in {@code expandedCode}, in order
+	 * @return the stored expansion
+	 */
+	public InListExpansion putInListExpansion(List<Integer> arities, String expandedCode, char[] expandedDataTypes)
+	{
+		InListExpansion expansion = new InListExpansion(expandedCode, expandedDataTypes);
+		InListExpansion prev      = this.inListExpansions.putIfAbsent(arities, expansion);
+		return prev == null ? expansion : prev;
+	}
+
+	/**
+	 * The code of a template with its {@code IN} lists expanded, and the data types of its parameters.
+	 * Instances are immutable.
+	 * @since 10.2.0
+	 */
+	public static final class InListExpansion {
+
+		/**
+		 * The code, including YADA markup
+		 */
+		private final String code;
+		/**
+		 * The data types of the parameters, in order
+		 */
+		private final char[] dataTypes;
+
+		/**
+		 * @param code the code, including YADA markup
+		 * @param dataTypes the data types of the parameters, in order
+		 */
+		InListExpansion(String code, char[] dataTypes)
+		{
+			this.code      = code;
+			this.dataTypes = dataTypes.clone();
+		}
+
+		/**
+		 * @return the code, including YADA markup
+		 */
+		public String getCode() { return this.code; }
+
+		/**
+		 * @return a copy of the data types of the parameters, in order
+		 */
+		public char[] getDataTypes() { return this.dataTypes.clone(); }
+
+		/**
+		 * @return the number of parameters
+		 */
+		public int getParamCount() { return this.dataTypes.length; }
+	}
+}
@@ -226,7 +226,13 @@ public class ConnectionFactory {
    * Map of {@link String} app to config data
    * @since 9.3.6
    */
-  private Map<String, Object> dsConf = new HashMap<>();
+  private Map<String, Object> dsConf = new ConcurrentHashMap<>();
+
+  /**
+   * Map of {@link String} app to its parsed default params
+   * @since 10.2.0
+   */
+  private Map<String, AppDefaultParams> appDefaultParams = new ConcurrentHashMap<>();
 
   /**
    * The singleton instance of the class
@@ -236,10 +242,11 @@ public class ConnectionFactory {
   private static ConnectionFactory factory = null;
   
   /**
-   * In memory query store
+   * In memory query store, bounded since 10.2.0
    * @since 10.1.1
+   * @see YADAIndexCache
    */
-  private Map<String,YADAQuery> YADAIndex = new ConcurrentHashMap<>();
+  private Map<String,YADAQuery> YADAIndex = new YADAIndexCache();
   
   static
   {
@@ -424,6 +431,7 @@ public class ConnectionFactory {
           if(src != null)
           {
             this.getDsConf().put(app, conf);
+            this.appDefaultParams.put(app, new AppDefaultParams(app, conf));
             if (src.matches(QueryUtils.RX_JDBC))
             {              
               this.createJdbcDataSource(conf);
@@ -578,6 +586,9 @@ public class ConnectionFactory {
           props.put(YADA_CONF_JDBCURL, conf.get(YADA_CONF_SOURCE));
           for(String key : JSONObject.getNames((JSONObject)conf.get(YADA_CONF_PROPS)))
           {           
+            // request limits aren't pool properties
+            if(key.startsWith(RequestLimiter.PROP_PREFIX))
+              continue;
             //TODO decrypt password and store in memory here
             props.put(key, ((JSONObject)conf.get(YADA_CONF_PROPS)).getString(key));            
           }
@@ -735,7 +746,7 @@ public class ConnectionFactory {
 
   /**
    * Standard accessor for variable
-   * @return the in-memory {@link ConcurrentHashMap} storing previously loaded yada queries
+   * @return the in-memory {@link YADAIndexCache} storing previously loaded yada queries
    * @since 10.1.1
    */
   public Map<String,YADAQuery> getCache() {
@@ -766,6 +777,67 @@ public class ConnectionFactory {
     return this.dsConf;
   }
 
+  /**
+   * Rereads the {@code props} of {@code app} from its {@code conf.json} in {@link Finder#YADA_LIB}, and replaces
+   * its config in {@link #dsConf}.  Data sources are not recreated, so a change to the {@code source} takes
+   * effect on restart.
+   * 
+   * @param app the app whose {@code conf.json} has changed
+   * @throws YADAConnectionException when {@code conf.json} can't be read
+   * @since 10.2.0
+   */
+  public void reloadConf(String app) throws YADAConnectionException {
+    @SuppressWarnings("unchecked")
+    Map<String, Object> current = (Map<String, Object>) this.getDsConf().get(app);
+    if (current == null)
+    {
+      l.warn("App [" + app + "] was added to the YADA lib. It will be available on restart.");
+      return;
+    }
+    Map<String, Object> conf = new HashMap<String,Object>(current);
+    try
+    {
+      File       fconf = new File(Finder.getYADALibDirectory(), app+"/conf.json");
+      String     yconf = new String(Files.readAllBytes(Paths.get(fconf.getAbsolutePath())), StandardCharsets.UTF_8);
+      JSONObject jconf = new JSONObject(yconf);
+      if (!jconf.optString(YADA_CONF_SOURCE).equals(current.get(YADA_CONF_SOURCE)))
+      {
+        l.warn("The source of app [" + app + "] has changed. The change will take effect on restart.");
+      }
+      JSONObject props = jconf.optJSONObject(YADA_CONF_PROPS);
+      if (props != null)
+        conf.put(YADA_CONF_PROPS, props);
+      else
+        conf.remove(YADA_CONF_PROPS);
+    }
+    catch (IOException | JSONException e)
+    {
+      String msg = "Unable to reload the conf for app [" + app + "]";
+      throw new YADAConnectionException(msg, e);
+    }
+    this.getDsConf().put(app, conf);
+    this.appDefaultParams.put(app, new AppDefaultParams(app, conf));
+  }
+
+  /**
+   * Returns the default params of {@code app}, parsed when its config was loaded, or on first use.
+   * 
+   * @param app the app name
+   * @return the default params, or {@link AppDefaultParams#NONE}
+   * @since 10.2.0
+   */
+  @SuppressWarnings("unchecked")
+  public AppDefaultParams getAppDefaultParams(String app) {
+    if (app == null)
+    {
+      return AppDefaultParams.NONE;
+    }
+    return this.appDefaultParams.computeIfAbsent(app, a -> {
+      Object conf = this.getDsConf().get(a);
+      return conf instanceof Map ? new AppDefaultParams(a, (Map<String, Object>) conf) : AppDefaultParams.NONE;
+    });
+  }
+
   /**
    * Retrieves the {@link Statement} from the {@link ResultSet}, closes the
    * {@code ResultSet}, and then cascades to close the {@link java.sql.Statement}
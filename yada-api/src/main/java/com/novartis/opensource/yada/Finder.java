@@ -18,30 +18,42 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import org.slf4j.Logger;
+import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.MergeCommand.FastForwardMode;
+import org.eclipse.jgit.api.MergeResult;
 import org.eclipse.jgit.api.errors.CheckoutConflictException;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.api.errors.InvalidRefNameException;
 import org.eclipse.jgit.api.errors.RefAlreadyExistsException;
 import org.eclipse.jgit.api.errors.RefNotFoundException;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.lib.BranchConfig;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.lib.RepositoryBuilder;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevTree;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
 
 import com.novartis.opensource.yada.server.YADAServer;
 
@@ -233,20 +245,6 @@ public class Finder {
    */
   @Deprecated
   private final static String YADA_ACCESS_COUNT = "AC";
-  /**
-   * Constant equal to: {@value}
-   *
-   * @deprecated since 9.0.0
-   */
-  @Deprecated
-  private final static String SQL_STATS         = "update yada_query set access_count=(select b.access_count+1 from yada_query b where b.qname = ?), last_access=? where qname = ?";
-  /**
-   * Constant equal to: {@value}
-   *
-   * @deprecated since 9.0.0
-   */
-  @Deprecated
-  private final static String SQL_STATS_WCOUNT  = "update yada_query set access_count = ?,last_access = ? where qname = ?";
   /**
    * Constant equal to: {@code "select "
                               + "a.query "       +YADA_QUERY+", "
@@ -314,6 +312,13 @@ public class Finder {
    */
   private static final String Q_RX = "^(.+?)([/\\s])(.+)$";
 
+  /**
+   * Compiled {@link #Q_RX}
+   *
+   * @since 10.2.0
+   */
+  private static final Pattern Q_PATTERN = Pattern.compile(Q_RX);
+
   /**
    * Constant equal to {@value}. Used for retrieving config for specific YADA
    * index.
@@ -338,6 +343,13 @@ public class Finder {
    */
   public final static String GIT_DIR = ".git";
 
+  /**
+   * Constant equal to {@value}. The app configuration file in {@link #YADA_LIB}.
+   *
+   * @since 10.2.0
+   */
+  public final static String CONF_FILE = "conf.json";
+
   /**
    * Constant equal to {@value}. The YADA app name.
    *
@@ -352,6 +364,14 @@ public class Finder {
    */
   private static Properties YADA_PROPERTIES = YADAServer.getProperties();
 
+  /**
+   * The content of {@link #YADA_LIB} from which queries are loaded: the working tree, except during
+   * {@link #pullYADALib()}, when it is the new commit
+   *
+   * @since 10.2.0
+   */
+  private static volatile YADALibCache.Source libSource = Files::readAllBytes;
+
   static
   {
     YADA_PROPERTIES = YADAServer.getProperties();
@@ -437,6 +457,46 @@ public class Finder {
     return YADAServer.getProperties().getProperty(YADA_LIB);
   }  
 
+  /**
+   * Returns the app to which the query {@code q} belongs, without loading it.  The app
+   * is taken from the cached query, if present, or otherwise from the qname prefix, 
+   * i.e., {@code APP/qname} or {@code APP qname}.
+   *
+   * @param q the stored canonical name of the query
+   * @return the app name, or {@link #YADA} if it can't be determined
+   * @since 10.2.0
+   */
+  public static String getApp(String q) {
+    if (q == null || "".equals(q))
+    {
+      return YADA;
+    }
+    YADAQuery cachedYq = getCachedQuery(q);
+    if (cachedYq != null && cachedYq.getApp() != null)
+    {
+      return cachedYq.getApp();
+    }
+    Matcher m = Q_PATTERN.matcher(q);
+    return m.matches() ? m.group(1) : YADA;
+  }
+
+  /**
+   * Returns the query {@code q} from the index cache without counting a request for it, i.e., for 
+   * lookups other than that of the query for execution, which follows.
+   *
+   * @param q the stored canonical name of the query
+   * @return the cached query, which must not be modified, or {@code null} if it isn't cached
+   * @since 10.2.0
+   */
+  public static YADAQuery getCachedQuery(String q) {
+    Map<String,YADAQuery> yadaIndex = ConnectionFactory.getConnectionFactory().getCache();
+    if (yadaIndex instanceof YADAIndexCache)
+    {
+      return ((YADAIndexCache) yadaIndex).peek(q);
+    }
+    return yadaIndex != null ? yadaIndex.get(q) : null;
+  }
+
   /**
    * Retrieves the system property loaded at startup. This method was refactored
    * in version 8.3.0
@@ -551,9 +611,196 @@ public class Finder {
     return yq;
   }
 
+  /**
+   * Returns the path of the file of the query {@code q} in {@link #YADA_LIB}, i.e.,
+   * {@code YADA_LIB/APP/qname.json} for {@code APP/qname}, or {@code YADA_LIB/APP/APP qname.json}
+   * for {@code APP qname}.
+   *
+   * @param q the query name
+   * @return the absolute path of the query file
+   * @throws YADAFinderException if {@link #YADA_LIB} isn't set, or {@code q} doesn't begin with an app name
+   * @since 10.2.0
+   */
+  public static Path getLibPath(String q) throws YADAFinderException {
+    String  qpath = "";
+    Matcher m     = Q_PATTERN.matcher(q);
+    if (!m.matches())
+    {
+      String msg = String.format("Failed to load query `%s`. The name must begin with the app, followed by a space or slash.", q);
+      throw new YADAFinderException(msg);
+    }
+    String lib = "";
+    try
+    {
+      lib = getEnv(YADA_LIB);
+    }
+    catch (YADAResourceException e)
+    {
+      String msg = String.format("Cannot load query from YADA_LIB at %s", lib);
+      throw new YADAFinderException(msg, e);
+    }
+    if (m.group(2).equals(SLASH))
+    {
+      qpath = String.format("%s/%s.json", lib, q);
+    }
+    else
+    {
+      qpath = String.format("%s/%s/%s.json", lib, m.group(1), q);
+    }
+    return Paths.get(qpath).toAbsolutePath().normalize();
+  }
+
+  /**
+   * Fetches {@link #YADA_LIB} from its remote and, if the upstream branch has moved ahead of {@code HEAD},
+   * switches to its commit as one step: the cached queries affected by the files which differ between the
+   * old and new commits are recompiled from the new commit in the object database, and swapped in at once,
+   * before the working tree is fast-forwarded.  Until the swap, queries which aren't cached are read from the
+   * working tree, i.e., the old commit, and from then until the working tree is updated, from the new commit.
+   * The {@code conf.json} of each changed app is then reloaded.  See {@link YADALibCache#reload(java.util.Collection, YADALibCache.Source)}.
+   *
+   * @return the absolute paths of the files which were added, changed or deleted
+   * @throws YADAFinderException if the library isn't a git repository, can't be fetched, or the upstream
+   *                             branch can't be fast-forwarded
+   * @since 10.2.0
+   */
+  public static synchronized Set<Path> pullYADALib() throws YADAFinderException {
+    Set<Path> changed = pullYADALib(getYADALibDirectory().toPath(), YADALibCache.getInstance());
+    for (Path path : changed)
+    {
+      if (path.getFileName() != null && CONF_FILE.equals(path.getFileName().toString()) && Files.exists(path))
+      {
+        try
+        {
+          ConnectionFactory.getConnectionFactory().reloadConf(path.getParent().getFileName().toString());
+        }
+        catch (YADAConnectionException e)
+        {
+          l.error(e.getMessage(), e);
+        }
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * Fetches the library at {@code dir} from its remote and, if the upstream branch has moved ahead of {@code HEAD},
+   * reloads the queries in {@code cache} affected by the files which differ between the old and new commits,
+   * then fast-forwards the working tree.  See {@link #pullYADALib()}.
+   *
+   * @param dir the library directory
+   * @param cache the cache of the queries in {@code dir}, or {@code null}
+   * @return the absolute paths of the files which were added, changed or deleted
+   * @throws YADAFinderException if the library isn't a git repository, can't be fetched, or the upstream
+   *                             branch can't be fast-forwarded
+   * @since 10.2.0
+   */
+  public static synchronized Set<Path> pullYADALib(Path dir, YADALibCache cache) throws YADAFinderException {
+    Path      lib     = dir.toAbsolutePath().normalize();
+    Set<Path> changed = new LinkedHashSet<>();
+    try (Repository repo = new RepositoryBuilder().setGitDir(lib.resolve(GIT_DIR).toFile()).readEnvironment().build();
+         Git git = new Git(repo);
+         RevWalk rw = new RevWalk(repo))
+    {
+      ObjectId oldHead  = repo.resolve(Constants.HEAD);
+      String   upstream = new BranchConfig(repo.getConfig(), repo.getBranch()).getRemoteTrackingBranch();
+      if (upstream == null)
+      {
+        String msg = String.format("The branch %s of YADA_LIB has no upstream branch", repo.getBranch());
+        throw new YADAFinderException(msg);
+      }
+      git.fetch().call();
+      ObjectId newHead = repo.resolve(upstream);
+      if (oldHead == null || newHead == null || oldHead.equals(newHead))
+      {
+        return changed;
+      }
+      RevCommit oldCommit = rw.parseCommit(oldHead);
+      RevCommit newCommit = rw.parseCommit(newHead);
+      if (rw.isMergedInto(newCommit, oldCommit))
+      {
+        // the local branch is ahead
+        return changed;
+      }
+      if (!rw.isMergedInto(oldCommit, newCommit))
+      {
+        String msg = String.format("Unable to fast-forward YADA_LIB from %s to %s", oldHead.name(), newHead.name());
+        throw new YADAFinderException(msg);
+      }
+      try (TreeWalk tw = new TreeWalk(repo))
+      {
+        tw.setRecursive(true);
+        tw.addTree(oldCommit.getTree());
+        tw.addTree(newCommit.getTree());
+        tw.setFilter(TreeFilter.ANY_DIFF);
+        for (DiffEntry diff : DiffEntry.scan(tw))
+        {
+          if (!DiffEntry.DEV_NULL.equals(diff.getOldPath()))
+            changed.add(lib.resolve(diff.getOldPath()).normalize());
+          if (!DiffEntry.DEV_NULL.equals(diff.getNewPath()))
+            changed.add(lib.resolve(diff.getNewPath()).normalize());
+        }
+      }
+      // from the swap until the checkout completes, the working tree is a mix of both commits
+      RevTree newTree = newCommit.getTree();
+      libSource = path -> readBlob(repo, newTree, lib, path);
+      try
+      {
+        if (cache != null)
+        {
+          cache.reload(changed, libSource);
+        }
+        MergeResult result = git.merge().include(newCommit).setFastForward(FastForwardMode.FF_ONLY).call();
+        if (!result.getMergeStatus().isSuccessful())
+        {
+          if (cache != null)
+          {
+            // queries are read again from the working tree
+            cache.clear();
+          }
+          String msg = String.format("Unable to fast-forward YADA_LIB from %s to %s: %s", oldHead.name(), newHead.name(), result.getMergeStatus());
+          throw new YADAFinderException(msg);
+        }
+      }
+      finally
+      {
+        libSource = Files::readAllBytes;
+      }
+      l.info(String.format("Pulled YADA_LIB from %s to %s: %d files changed", oldHead.name(), newHead.name(), changed.size()));
+    }
+    catch (IOException | GitAPIException e)
+    {
+      String msg = String.format("Unable to pull YADA_LIB at %s", lib);
+      throw new YADAFinderException(msg, e);
+    }
+    return changed;
+  }
+
+  /**
+   * @param repo the library repository
+   * @param tree the tree of a commit in {@code repo}
+   * @param lib the absolute path of the library directory
+   * @param path the absolute path of a file in the library
+   * @return the content of the file at {@code path} in {@code tree}
+   * @throws IOException when the file doesn't exist in {@code tree}, or can't be read
+   * @since 10.2.0
+   */
+  private static byte[] readBlob(Repository repo, RevTree tree, Path lib, Path path) throws IOException {
+    String rel = lib.relativize(path).toString().replace(File.separatorChar, '/');
+    try (TreeWalk tw = TreeWalk.forPath(repo, rel, tree))
+    {
+      if (tw == null)
+      {
+        throw new NoSuchFileException(path.toString());
+      }
+      return repo.open(tw.getObjectId(0), Constants.OBJ_BLOB).getBytes();
+    }
+  }
+
   /**
    * Retrieves the query {@code q} from the local repository. Typically the query
-   * is then added to the in-memory cache.
+   * is then added to the in-memory cache.  If the {@link YADALibCache} is enabled,
+   * the query is loaded from its file only if it has changed since it was cached,
+   * and a clone of the cached query is returned.
    *
    * @param q the query name to retrieve
    * @return the {@link YADAQuery} retrieved from the distributed index
@@ -565,40 +812,35 @@ public class Finder {
   public YADAQuery getQueryFromLib(String q) throws YADAFinderException {
     YADAQuery yq    = null;
     String    app   = "";
-    String    qpath = "";
     String    qname = "";
     try
     {
-      //TODO this can possibly be optimized with some caching
-      Pattern rx = Pattern.compile(Q_RX);
-      Matcher m  = rx.matcher(q);
+      Matcher m  = Q_PATTERN.matcher(q);
       if (m.matches())
       {
-        String lib = "";
-        try
-        {
-          lib = getEnv(YADA_LIB);
-        }
-        catch (YADAResourceException e)
-        {
-          String msg = String.format("Cannot load query from YADA_LIB at %s", lib);
-          throw new YADAFinderException(msg, e);
-        }
-        app = m.group(1);
-        if (m.group(2).equals(SLASH))
-        {
-          qpath = String.format("%s/%s.json", lib, q);
-          qname = m.group(3);
-        }
-        else
+        app   = m.group(1);
+        qname = m.group(2).equals(SLASH) ? m.group(3) : q;
+      }
+      // returns a clone of the cached query, if the file hasn't changed since it was loaded
+      YADALibCache cache = YADALibCache.getInstance();
+      Path         path  = getLibPath(q);
+      if (cache != null)
+      {
+        YADAQuery cachedYq = cache.get(path);
+        if (cachedYq != null)
         {
-          qpath = String.format("%s/%s/%s.json", lib, app, q);
-          qname = q;
+          return new YADAQuery(cachedYq);
         }
       }
+      long stamp = cache != null ? cache.getStamp() : 0;
       // loads query json from local repo
-      String qjson = new String(Files.readAllBytes(Paths.get(qpath)), StandardCharsets.UTF_8);
+      String qjson = new String(libSource.read(path), StandardCharsets.UTF_8);
       yq = new YADAQuery(app, qname, qjson);
+      if (cache != null)
+      {
+        cache.put(path, yq, stamp);
+        yq = new YADAQuery(yq);
+      }
     }
     catch (IOException e)
     {
@@ -656,9 +898,9 @@ public class Finder {
    *
    * @since 4.0.0
    * @param q           the stored canonical name of the desired {@link YADAQuery}
-   * @param updateStats set to {@code true} to execute parallel operation to query
-   *                    update access count and date, {@code false} to suppress
-   *                    the operation
+   * @param updateStats set to {@code true} to count the access in
+   *                    {@link QueryStats}, which updates the access count and
+   *                    date in the index, {@code false} to suppress the operation
    * @return {@link YADAQuery} object encapsulating the query code and parameters
    * @throws YADAFinderException             if the query {@code q} can't be found
    *                                         in the YADA index. Check your
@@ -706,32 +948,14 @@ public class Finder {
       }
 
       yq.setAccessCount(yq.getAccessCount() + 1);
-      final int accessCount = yq.getAccessCount();
       if (updateStats)
       {
-        // log usage of query
-        (new Thread() {
-
-          @Override
-          public void run() {
-            try
-            {
-              updateQueryStatistics(qname, accessCount);
-            }
-            catch (YADAConnectionException e)
-            {
-              l.error(e.getMessage(), e);
-            }
-            catch (YADAFinderException e)
-            {
-              l.error(e.getMessage(), e);
-            }
-            finally
-            {
-              // TODO what happens in finally block?
-            }
-          }
-        }).start();
+        // log usage of query, written to the index in batches
+        QueryStats stats = QueryStats.getInstance();
+        if (stats != null)
+        {
+          stats.record(qname);
+        }
       }
     }
 
@@ -803,123 +1027,4 @@ public class Finder {
       throw new YADAFinderException(msg, e);
     }
   }
-
-  /**
-   * A utility method called in a separate thread by
-   * {@link Finder#getQuery(String)} to increment a query-access counter in the
-   * YADA Index.
-   *
-   * @param qname       the name of the query just requested
-   * @param accessCount the number of times a query has been access, derived from
-   *                    the cache
-   * @throws YADAConnectionException when the YADA Index can't be accessed
-   * @throws YADAFinderException     when {@code qname} can't be found in the YADA
-   *                                 Index.
-   * @see Finder#getQuery(String)
-   * @since 8.1.1
-   * @deprecated since 9.0.0
-   */
-  @Deprecated
-  void updateQueryStatistics(String qname, int accessCount) throws YADAConnectionException, YADAFinderException {
-
-    l.debug("Updating Query Stats for [" + qname + "]");
-    PreparedStatement pstmt    = null;
-    String            querySql = SQL_STATS_WCOUNT;
-    try
-    {
-      Connection conn = ConnectionFactory.getConnectionFactory().getConnection(ConnectionFactory.YADA_APP);
-
-      try
-      {
-        pstmt = conn.prepareStatement(querySql);
-        pstmt.setInt(1, accessCount);
-        long               t          = new Date().getTime();
-        java.sql.Timestamp sqlDateVal = new java.sql.Timestamp(t);
-        pstmt.setTimestamp(2, sqlDateVal);
-        pstmt.setString(3, qname);
-
-      }
-      catch (SQLException e)
-      {
-        String msg = "Unable to create or configure the PreparedStatement used to update the access statistics for the requested query in the YADA Index.  This could be a serious configuration issue.";
-        throw new YADAConnectionException(msg, e);
-      }
-
-      try
-      {
-        pstmt.executeUpdate();
-        if (!conn.getAutoCommit())
-          conn.commit();
-      }
-      catch (SQLException e)
-      {
-        String msg = "The update query caused an error. This could be because the query name (" + qname
-            + ") was mistyped or doesn't exist in the YADA Index";
-        throw new YADAFinderException(msg, e);
-      }
-
-    }
-    finally
-    {
-      ConnectionFactory.releaseResources(pstmt);
-    }
-  }
-
-  /**
-   * A utility method called in a separate thread by
-   * {@link Finder#getQuery(String)} to increment a query-access counter in the
-   * YADA Index.
-   *
-   * @param qname the name of the query just requested
-   * @throws YADAConnectionException when the YADA Index can't be accessed
-   * @throws YADAFinderException     when {@code qname} can't be found in the YADA
-   *                                 Index.
-   * @see Finder#getQuery(String)
-   * @deprecated since 8.1.1
-   */
-  @Deprecated
-  void updateQueryStatistics(String qname) throws YADAConnectionException, YADAFinderException {
-
-    l.debug("Updating Query Stats for [" + qname + "]");
-    PreparedStatement pstmt    = null;
-    String            querySql = SQL_STATS;
-    try
-    {
-      Connection conn = ConnectionFactory.getConnectionFactory().getConnection(ConnectionFactory.YADA_APP);
-
-      try
-      {
-        pstmt = conn.prepareStatement(querySql);
-        pstmt.setString(1, qname);
-        long               t          = new Date().getTime();
-        java.sql.Timestamp sqlDateVal = new java.sql.Timestamp(t);
-        pstmt.setTimestamp(2, sqlDateVal);
-        pstmt.setString(3, qname);
-
-      }
-      catch (SQLException e)
-      {
-        String msg = "Unable to create or configure the PreparedStatement used to update the access statistics for the requested query in the YADA Index.  This could be a serious configuration issue.";
-        throw new YADAConnectionException(msg, e);
-      }
-
-      try
-      {
-        pstmt.executeUpdate();
-        if (!conn.getAutoCommit())
-          conn.commit();
-      }
-      catch (SQLException e)
-      {
-        String msg = "The update query caused an error. This could be because the query name (" + qname
-            + ") was mistyped or doesn't exist in the YADA Index";
-        throw new YADAFinderException(msg, e);
-      }
-
-    }
-    finally
-    {
-      ConnectionFactory.releaseResources(pstmt);
-    }
-  }
 }
@@ -14,8 +14,13 @@
  */
 package com.novartis.opensource.yada;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,6 +28,12 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.novartis.opensource.yada.util.YADAUtils;
+
 /**
  * A {@link LinkedHashMap} implementation for storing values passed to the YADA {@link Service}, by way of {@link YADARequest} 
  * in the url parameters or http POST content.  Naturally, {@code JSONParams} or {@code j} parameters map directly, but in fact, standard parameters
@@ -46,6 +57,45 @@ public class JSONParams extends LinkedHashMap<String, JSONParamsEntry> {
    * Local logger handle
    */
 	private static Logger l = LoggerFactory.getLogger(JSONParams.class);
+	/**
+	 * Json factory for serializing structured parameter values
+	 * @since 10.2.0
+	 */
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+	/**
+	 * The short parameter names of {@link YADAUtils#PARAM_FRAGS}, in the same order
+	 * @since 10.2.0
+	 */
+	private static final String[] FRAG_KEYS = new String[YADAUtils.PARAM_FRAGS.length];
+	/**
+	 * The index in {@link YADAUtils#PARAM_FRAGS} of each long and short parameter name
+	 * @since 10.2.0
+	 */
+	private static final Map<String,Integer> FRAG_INDEX = new HashMap<>();
+	/**
+	 * The long parameter names of {@link YADAUtils#PARAM_FRAGS}, which take precedence over short ones
+	 * @since 10.2.0
+	 */
+	private static final Map<String,Integer> FRAG_LONG = new HashMap<>();
+	
+	static
+	{
+		try
+		{
+			for(int i = 0; i < YADAUtils.PARAM_FRAGS.length; i++)
+			{
+				String frag = YADAUtils.PARAM_FRAGS[i];
+				FRAG_KEYS[i] = YADARequest.getParamKeyVal("PS_"+frag);
+				FRAG_INDEX.put(FRAG_KEYS[i], i);
+				FRAG_LONG.put(YADARequest.getParamKeyVal("PL_"+frag), i);
+			}
+			FRAG_INDEX.putAll(FRAG_LONG);
+		}
+		catch (YADAQueryConfigurationException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
 	
 	/** 
 	 * Default constructor, provides no additional functionality.
@@ -137,6 +187,48 @@ public class JSONParams extends LinkedHashMap<String, JSONParamsEntry> {
 		convertJSONObjects(ja);
 	}
 	
+	/**
+	 * Builds a {@link JSONParams} object incrementally from {@code parser}, positioned at the start of a json array
+	 * conforming to the <a href="../../../../../../jsonparams.html">JSONParams specification</a>, or a single
+	 * json object within it.  Data rows are added to each {@link JSONParamsEntry} as they are read, so the
+	 * content is never held as a {@link String} or {@link JSONArray}.  On return, {@code parser} is positioned 
+	 * at the end of the array or object.
+	 * @param parser a json parser positioned at the start of the JSONParams content
+	 * @throws YADAQueryConfigurationException when the content is malformed or non-compliant
+	 * @since 10.2.0
+	 */
+	public JSONParams(JsonParser parser) throws YADAQueryConfigurationException
+	{
+		try
+		{
+			JsonToken token = parser.currentToken();
+			if (token == JsonToken.START_OBJECT)
+			{
+				readEntry(parser);
+			}
+			else if (token == JsonToken.START_ARRAY)
+			{
+				while ((token = parser.nextToken()) == JsonToken.START_OBJECT) // multiple queries
+				{
+					readEntry(parser);
+				}
+				if (token != JsonToken.END_ARRAY)
+				{
+					throw new YADAQueryConfigurationException("Expected a json object, but found "+token);
+				}
+			}
+			else
+			{
+				throw new YADAQueryConfigurationException("Expected a json array, but found "+token);
+			}
+		}
+		catch (IOException e) 
+		{
+			String msg = "Unable to create JSONParams object from supplied parameters.";
+			throw new YADAQueryConfigurationException(msg, e);
+		}
+	}
+	
 	/**
 	 * Convenience constructor for creating new object from existing.
 	 * @param qname the query name to add
@@ -178,6 +270,191 @@ public class JSONParams extends LinkedHashMap<String, JSONParamsEntry> {
 		}
 	}
 	
+	/**
+	 * Reads a json object containing a query name, parameters, and data from {@code parser} into a 
+	 * {@link JSONParamsEntry}, and adds it, mapped to the query name.  As in {@link JSONParamsEntry#JSONParamsEntry(JSONObject)},
+	 * column names are converted to upper case, and long parameter names take precedence over short ones.
+	 * @param parser a json parser positioned at the start of the object
+	 * @throws IOException when the content can't be read or parsed
+	 * @throws YADAQueryConfigurationException when the object has no query name, or no data
+	 * @since 10.2.0
+	 */
+	private void readEntry(JsonParser parser) throws IOException, YADAQueryConfigurationException
+	{
+		String[]        values   = new String[FRAG_KEYS.length];
+		boolean         data     = false;
+		JSONParamsEntry entry    = new JSONParamsEntry();
+		while (parser.nextToken() == JsonToken.FIELD_NAME)
+		{
+			String field = parser.getCurrentName();
+			parser.nextToken();
+			if (field.equals(YADARequest.JSON_KEY_DATA))
+			{
+				readData(parser, entry);
+				data = true;
+			}
+			else if (FRAG_INDEX.containsKey(field))
+			{
+				int i = FRAG_INDEX.get(field);
+				if (values[i] == null || FRAG_LONG.containsKey(field))
+				{
+					values[i] = getValueAsString(parser);
+				}
+			}
+			else
+			{
+				parser.skipChildren();
+			}
+		}
+		String qname = values[FRAG_INDEX.get(YADARequest.getParamKeyVal("PS_QNAME"))];
+		if (qname == null || !data)
+		{
+			String msg = "Unable to create JSONParamsEntry object from supplied parameters.  Query name and "+YADARequest.JSON_KEY_DATA+" are required.";
+			throw new YADAQueryConfigurationException(msg);
+		}
+		for (int i = 0; i < values.length; i++)
+		{
+			if (values[i] != null)
+			{
+				entry.addParam(new YADAParam(FRAG_KEYS[i],values[i],YADAParam.QUERY,YADAParam.MUTABLE));
+			}
+		}
+		put(qname,entry);
+	}
+	
+	/**
+	 * Reads an array of data rows from {@code parser} into {@code entry}, one row at a time, or, if the
+	 * data is a columnar object, calls {@link #readColumns(JsonParser, JSONParamsEntry)}.
+	 * @param parser a json parser positioned at the start of the array or object
+	 * @param entry the entry to which to add the rows
+	 * @throws IOException when the content can't be read or parsed
+	 * @throws YADAQueryConfigurationException when the value isn't an array of objects
+	 * @since 10.2.0
+	 */
+	private static void readData(JsonParser parser, JSONParamsEntry entry) throws IOException, YADAQueryConfigurationException
+	{
+		if (parser.currentToken() == JsonToken.START_OBJECT)
+		{
+			readColumns(parser, entry);
+			return;
+		}
+		if (parser.currentToken() != JsonToken.START_ARRAY)
+		{
+			throw new YADAQueryConfigurationException(YADARequest.JSON_KEY_DATA+" must be a json array or object.");
+		}
+		JsonToken token;
+		while ((token = parser.nextToken()) == JsonToken.START_OBJECT)
+		{
+			LinkedHashMap<String,String[]> dataForRow = new LinkedHashMap<>();
+			while (parser.nextToken() == JsonToken.FIELD_NAME)
+			{
+				String column = parser.getCurrentName().toUpperCase(); // DV20180615 case insensitivity (h/t to kildea)
+				// JSONArrays can be passed in as values
+				parser.nextToken();
+				Object value = readCell(parser);
+				dataForRow.put(column, value instanceof String ? new String[] { (String) value } : (String[]) value);
+			}
+			entry.addData(dataForRow);
+		}
+		if (token != JsonToken.END_ARRAY)
+		{
+			throw new YADAQueryConfigurationException(YADARequest.JSON_KEY_DATA+" must contain json objects, but found "+token);
+		}
+	}
+	
+	/**
+	 * Reads a columnar data object, containing an array of {@link ColumnarData#COLUMNS} and an array of 
+	 * {@link ColumnarData#VALUES}, one array per column, from {@code parser} into {@code entry}.  Column names
+	 * are converted to upper case.
+	 * @param parser a json parser positioned at the start of the object
+	 * @param entry the entry to which to add the rows
+	 * @throws IOException when the content can't be read or parsed
+	 * @throws YADAQueryConfigurationException when the object is malformed
+	 * @since 10.2.0
+	 */
+	private static void readColumns(JsonParser parser, JSONParamsEntry entry) throws IOException, YADAQueryConfigurationException
+	{
+		List<String>   columns = null;
+		List<Object[]> values  = null;
+		while (parser.nextToken() == JsonToken.FIELD_NAME)
+		{
+			String    field = parser.getCurrentName();
+			JsonToken token = parser.nextToken();
+			if (field.equals(ColumnarData.COLUMNS) && token == JsonToken.START_ARRAY)
+			{
+				columns = new ArrayList<>();
+				while (parser.nextToken() != JsonToken.END_ARRAY)
+				{
+					columns.add(parser.getText().toUpperCase());
+				}
+			}
+			else if (field.equals(ColumnarData.VALUES) && token == JsonToken.START_ARRAY)
+			{
+				values = new ArrayList<>();
+				while (parser.nextToken() == JsonToken.START_ARRAY)
+				{
+					List<Object> column = new ArrayList<>();
+					while (parser.nextToken() != JsonToken.END_ARRAY)
+					{
+						column.add(readCell(parser));
+					}
+					values.add(column.toArray());
+				}
+			}
+			else
+			{
+				parser.skipChildren();
+			}
+		}
+		if (columns == null || values == null)
+		{
+			String msg = "Columnar "+YADARequest.JSON_KEY_DATA+" must contain '"+ColumnarData.COLUMNS+"' and '"+ColumnarData.VALUES+"' arrays.";
+			throw new YADAQueryConfigurationException(msg);
+		}
+		entry.addColumns(columns.toArray(new String[columns.size()]), values.toArray(new Object[values.size()][]));
+	}
+	
+	/**
+	 * @param parser a json parser positioned at a value
+	 * @return the text of a scalar value, or the text of each element of an array
+	 * @throws IOException when the content can't be read or parsed
+	 * @since 10.2.0
+	 */
+	private static Object readCell(JsonParser parser) throws IOException
+	{
+		if (parser.currentToken() != JsonToken.START_ARRAY)
+		{
+			return getValueAsString(parser);
+		}
+		List<String> list = new ArrayList<>();
+		while (parser.nextToken() != JsonToken.END_ARRAY)
+		{
+			list.add(getValueAsString(parser));
+		}
+		return list.toArray(new String[list.size()]);
+	}
+	
+	/**
+	 * @param parser a json parser positioned at a value
+	 * @return the text of a scalar value, or the json string of an object or array
+	 * @throws IOException when the content can't be read or parsed
+	 * @since 10.2.0
+	 */
+	private static String getValueAsString(JsonParser parser) throws IOException
+	{
+		JsonToken token = parser.currentToken();
+		if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY)
+		{
+			StringWriter writer = new StringWriter();
+			try (JsonGenerator gen = JSON_FACTORY.createGenerator(writer))
+			{
+				gen.copyCurrentStructure(parser);
+			}
+			return writer.toString();
+		}
+		return parser.getText();
+	}
+	
 	/**
 	 * Prints the value of the {@link JSONParams} object as a {@link LinkedHashMap}.
 	 * @since 4.0.0
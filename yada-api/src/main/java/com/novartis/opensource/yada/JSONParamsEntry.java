@@ -46,7 +46,7 @@ public class JSONParamsEntry {
 	/**
 	 * Internal structure to hold column names/data values passed in request config 
 	 */
-	private List<LinkedHashMap<String,String[]>> data;
+	private ColumnarData data;
 	/**
 	 * Request config in list form
 	 */
@@ -64,7 +64,7 @@ public class JSONParamsEntry {
 	 * The default constructor, sets the internal {@link #data} and {@link #params} structures.
 	 */
 	public JSONParamsEntry() {
-		setData(new ArrayList<LinkedHashMap<String,String[]>>());
+		setData(new ColumnarData());
 		setParams(new ArrayList<YADAParam>());
 	}
 	
@@ -72,7 +72,7 @@ public class JSONParamsEntry {
 	 * Mutator for variable
 	 * @param data the data map to set or use as replacement
 	 */
-	private void setData(ArrayList<LinkedHashMap<String,String[]>> data)
+	private void setData(ColumnarData data)
 	{
 		this.data = data;
 	}
@@ -126,6 +126,12 @@ public class JSONParamsEntry {
 				}
 			}
 			
+			if(jobj.get(YADARequest.JSON_KEY_DATA) instanceof JSONObject) // columnar DATA
+			{
+				addColumns(jobj.getJSONObject(YADARequest.JSON_KEY_DATA));
+				return;
+			}
+			
 			JSONArray  rows  = jobj.getJSONArray(YADARequest.JSON_KEY_DATA); // query DATA
 			// multiple rows of data
 			for (int j = 0; j < rows.length(); j++) 
@@ -169,6 +175,73 @@ public class JSONParamsEntry {
 		}
 	}
 	
+	/**
+	 * Adds the rows of a columnar {@code DATA} object, containing an array of {@link ColumnarData#COLUMNS}
+	 * and an array of {@link ColumnarData#VALUES}, one array per column, e.g.:
+	 * <pre>{"columns":["COL1","COL2"],"values":[["A","B"],[1,2]]}</pre>
+	 * As with rows, column names are converted to upper case, and {@link JSONArray}s can be passed in as values.
+	 * @param columnar the {@code DATA} object
+	 * @throws YADAQueryConfigurationException when {@code columnar} is malformed
+	 * @since 10.2.0
+	 */
+	private void addColumns(JSONObject columnar) throws YADAQueryConfigurationException
+	{
+		JSONArray  cols   = columnar.getJSONArray(ColumnarData.COLUMNS);
+		JSONArray  vals   = columnar.getJSONArray(ColumnarData.VALUES);
+		String[]   names  = new String[cols.length()];
+		Object[][] values = new Object[vals.length()][];
+		for (int c = 0; c < names.length; c++)
+		{
+			names[c] = cols.getString(c).toUpperCase();
+		}
+		for (int c = 0; c < values.length; c++)
+		{
+			JSONArray column = vals.getJSONArray(c);
+			values[c] = new Object[column.length()];
+			for (int r = 0; r < values[c].length; r++)
+			{
+				Object value = column.get(r);
+				if (value instanceof JSONArray)
+				{
+					JSONArray valIsArray = (JSONArray) value;
+					String[]  array      = new String[valIsArray.length()];
+					for (int k = 0; k < array.length; k++)
+					{
+						array[k] = valIsArray.getString(k);
+					}
+					values[c][r] = array;
+				}
+				else
+				{
+					values[c][r] = String.valueOf(value);
+				}
+			}
+		}
+		addColumns(names, values);
+	}
+	
+	/**
+	 * Adds rows to the entry's data, from one array of values per column.
+	 * @param columns the column names
+	 * @param values the values of each column, each either a {@link String} or a {@link String} array 
+	 * @throws YADAQueryConfigurationException when the number of columns and value arrays differ, or
+	 * the value arrays differ in length
+	 * @since 10.2.0
+	 * @see ColumnarData#addColumns(String[], Object[][])
+	 */
+	public void addColumns(String[] columns, Object[][] values) throws YADAQueryConfigurationException
+	{
+		try
+		{
+			this.data.addColumns(columns, values);
+		}
+		catch (IllegalArgumentException e)
+		{
+			String msg = "Unable to add columnar "+YADARequest.JSON_KEY_DATA+" to JSONParamsEntry.";
+			throw new YADAQueryConfigurationException(msg, e);
+		}
+	}
+	
 	/**
 	 * Adds all the data passed in the param to the entry.
 	 * @param dataToAdd the data to add to the entry
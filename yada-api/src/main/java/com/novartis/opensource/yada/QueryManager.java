@@ -27,7 +27,6 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Properties;
 import java.util.Set;
 
 import javax.servlet.http.Cookie;
@@ -198,6 +197,8 @@ public class QueryManager {
       throws YADAQueryConfigurationException, YADAConnectionException, YADAFinderException, YADAResourceException,
       YADAUnsupportedAdaptorException, YADARequestException, YADAAdaptorException, YADAParserException {
     setYADAReq(yadaReq);
+    RequestTimings timings = yadaReq.getTimings();
+    long           start   = System.nanoTime();
     if (YADAUtils.hasJSONParams(getYADAReq()))
     {
       setJsonParams(yadaReq.getJsonParams());
@@ -212,9 +213,13 @@ public class QueryManager {
       String msg = "Your request must contain a 'qname', 'q', 'JSONParams', or 'j' parameter.";
       throw new YADARequestException(msg);
     }
+    timings.add(RequestTimings.LOOKUP, start);
+    timings.setQueries(getQueries());
+    start = System.nanoTime();
     setGlobalHarmonyMaps();
     setQueryHarmonyMaps();
     prepQueriesForExecution();
+    timings.add(RequestTimings.PREP, start);
   }
 
   /**
@@ -604,6 +609,10 @@ public class QueryManager {
       }
       if (yq.getConnection() != null)
       {
+        if (yq.getAdaptor() instanceof JDBCAdaptor && yq.getConnection() instanceof Connection)
+        {
+          ((JDBCAdaptor) yq.getAdaptor()).clearInLists((Connection) yq.getConnection());
+        }
         l.debug("Closing Connection");
         ConnectionFactory.releaseResources((Connection) yq.getConnection());
       }
@@ -747,6 +756,8 @@ public class QueryManager {
 
     if (yq.getProtocol().equals(Parser.JDBC))
     {
+      // resolve paging, count, sort and filter params once for preparation and execution
+      yq.resolveParams();
       if (yq.getType().equals(Parser.CALL))
       {
         for (int row = 0; row < dataSize; row++)
@@ -763,27 +774,27 @@ public class QueryManager {
       }
       else
       {
-        boolean count     = Boolean.parseBoolean(yq.getYADAQueryParamValue(YADARequest.PS_COUNT)[0]);
-        boolean countOnly = Boolean.parseBoolean(yq.getYADAQueryParamValue(YADARequest.PS_COUNTONLY)[0]);
-        int     pageStart = Integer.parseInt(yq.getYADAQueryParamValue(YADARequest.PS_PAGESTART)[0]);
-        int     pageSize  = Integer.parseInt(yq.getYADAQueryParamValue(YADARequest.PS_PAGESIZE)[0]);
+        boolean count     = yq.isCount();
+        boolean countOnly = yq.isCountOnly();
+        int     pageStart = yq.getPageStart();
+        int     pageSize  = yq.getPageSize();
         if (pageSize == -1)
           pageSize = YADAUtils.ONE_BILLION;
         int        firstRow  = 1 + (pageStart * pageSize) - pageSize;
-        String     sortOrder = yq.getYADAQueryParamValue(YADARequest.PS_SORTORDER)[0];
+        String     sortOrder = yq.getSortOrder();
         String     sortKey   = "";
         JSONObject filters   = null;
 
-        if (yq.hasParamValue(YADARequest.PS_SORTKEY))
+        if (yq.getSortKey() != null)
         {
-          sortKey = yq.getYADAQueryParamValue(YADARequest.PS_SORTKEY)[0];
+          sortKey = yq.getSortKey();
         }
 
         try
         {
-          if (yq.hasParamValue(YADARequest.PS_FILTERS))
+          if (yq.getFilters() != null)
           {
-            filters = new JSONObject(yq.getYADAQueryParamValue(YADARequest.PS_FILTERS)[0]);
+            filters = new JSONObject(yq.getFilters());
             // TODO add filter json schema validation, but not here--in setter
           }
         }
@@ -1096,71 +1107,15 @@ public class QueryManager {
       }
     }
 
-    @SuppressWarnings("unchecked")
-    Map<String, Object> conf = (Map<String, Object>) ConnectionFactory.getConnectionFactory().getDsConf().get(yq.getApp());
-    Properties props = new Properties();
-    if(conf.containsKey(ConnectionFactory.YADA_CONF_PROPS))
-    {
-      for(String key : JSONObject.getNames((JSONObject)conf.get(ConnectionFactory.YADA_CONF_PROPS)))
-      {
-        props.put(key, ((JSONObject)conf.get(ConnectionFactory.YADA_CONF_PROPS)).getString(key));
-      }
-      String          paramStr = props.getProperty("params");
-      if (paramStr != null)
-      {
-        JSONArray yqp = new JSONArray(paramStr);
-        for (int i = 0; i < yqp.length(); i++)
-        {
-          JSONObject jo = yqp.getJSONObject(i);
-          YADAParam  yp = new YADAParam();
-          String     paramName = jo.getString("name");
-          String     paramVal  = jo.getString("value");
-          int        paramRule = jo.getInt("rule");
-
-          for(String frag : YADAUtils.PARAM_FRAGS)
-          {
-            if(paramName.contentEquals(YADARequest.getParamKeyVal("PL_"+frag))
-                || paramName.contentEquals(YADARequest.getParamKeyVal("PS_"+frag)))
-            {
-              try
-              {
-                this.getYADAReq().invokeSetter(YADARequest.getParamKeyVal("PS_"+frag), paramVal);
-                break;
-              }
-              catch (YADARequestException e)
-              {
-                String msg = "Could not set request parameter from stored value";
-                throw new YADAQueryConfigurationException(msg, e);
-              }
-            }
-          }
-
-          yp.setName(paramName);
-          yp.setValue(paramVal);
-          yp.setRule(paramRule);
-
-          List<YADAParam> ypList = yq.getYADAQueryParamsForKey(paramName);
-          if(ypList.size() > 0)
-          {
-            YADAParam existingYp = ypList.get(0);
-            if(existingYp == null)
-              yq.addParam(yp);
-            else if(existingYp.getRule() == YADAParam.OVERRIDEABLE)
-              yq.getParam(paramName).get(0).setValue(paramVal);
-          }
-          else
-          {
-            yq.addParam(yp);
-          }
-        }
-      }
-    }
+    // default params stored with the source, parsed when its conf was loaded
+    ConnectionFactory.getConnectionFactory().getAppDefaultParams(yq.getApp()).applyTo(yq, this.getYADAReq());
 
     // TODO handle missing params exceptions here, throw YADARequestException
     // TODO review instances where YADAQueryConfigurationException is thrown
     this.qutils.setProtocol(yq);
     yq.setAdaptor(this.qutils.getAdaptor(yq.getAdaptorClass(), this.yadaReq));
-    yq.setConformedCode(this.qutils.getConformedCode(yq.getYADACode()));
+    CompiledQuery cq = this.qutils.getCompiledQuery(yq);
+    yq.setConformedCode(cq.getConformedCode());
     if(yq.getData().size() == 0)
     {
       yq.addCoreCode(0, yq.getYADACode());
@@ -1169,9 +1124,8 @@ public class QueryManager {
     {
       // TODO perhaps move this functionality to the deparsing step?
       yq.addCoreCode(row, yq.getYADACode());
-      yq.addDataTypes(row, this.qutils.getDataTypes(yq.getYADACode()));
-      int paramCount = yq.getDataTypes().get(0).length;
-      yq.addParamCount(row, paramCount);
+      yq.addDataTypes(row, cq.getDataTypes());
+      yq.addParamCount(row, cq.getParamCount());
     }
     return yq;
   }
@@ -0,0 +1,376 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.novartis.opensource.yada.server.YADAServer;
+
+/**
+ * Accumulates query access counts in memory, and adds them to the YADA Index in one batched update every
+ * {@link #YADA_STATS_INTERVAL} seconds, rather than updating the index in a new thread on every request.
+ * Counts are kept for at most {@link #YADA_STATS_MAX} queries; accesses of further queries are counted as
+ * dropped.  Queries not accessed since the previous update are forgotten, so other queries can be counted.
+ * {@code last_access} is set to the time of the update.  Counts which can't be written are retained for the
+ * next update.
+ *
+ * @author David Varon
+ * @since 10.2.0
+ */
+public class QueryStats {
+
+  /**
+   * Local logger handle
+   */
+  private static Logger l = LoggerFactory.getLogger(QueryStats.class);
+
+  /**
+   * Constant equal to {@value}. The number of seconds between updates. Set to {@code 0} to disable statistics.
+   */
+  public final static String YADA_STATS_INTERVAL = "YADA.stats.interval";
+
+  /**
+   * Constant equal to {@value}. The maximum number of queries for which counts are kept.
+   */
+  public final static String YADA_STATS_MAX = "YADA.stats.max";
+
+  /**
+   * Constant equal to {@value}
+   */
+  private final static long DEFAULT_INTERVAL = 10;
+
+  /**
+   * Constant equal to {@value}
+   */
+  private final static long DEFAULT_MAX = 10000;
+
+  /**
+   * Constant equal to {@value}
+   */
+  private final static String SQL_STATS_INCREMENT = "update yada_query set access_count = access_count + ?, last_access = ? where qname = ?";
+
+  /**
+   * The singleton instance, or {@code null} if statistics are disabled
+   */
+  private static volatile QueryStats instance;
+
+  /**
+   * Set once {@link #instance} has been initialized
+   */
+  private static volatile boolean initialized;
+
+  /**
+   * The access counts since the last update, mapped to query names
+   */
+  private final Map<String, LongAdder> counts = new ConcurrentHashMap<>();
+
+  /**
+   * The number of accesses not counted because {@link #max} queries were already counted
+   */
+  private final LongAdder dropped = new LongAdder();
+
+  /**
+   * The maximum number of queries in {@link #counts}
+   */
+  private final long max;
+
+  /**
+   * The scheduler of updates, or {@code null} if the index is only updated by {@link #flush()}
+   */
+  private final ScheduledExecutorService scheduler;
+
+  /**
+   * Starts updating the index every {@code interval} seconds.
+   * @param interval the number of seconds between updates, or {@code 0} to update only on {@link #flush()}
+   * @param max the maximum number of queries for which counts are kept
+   */
+  public QueryStats(long interval, long max)
+  {
+    this.max = max;
+    if (interval > 0)
+    {
+      this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "yada-query-stats");
+        t.setDaemon(true);
+        return t;
+      });
+      this.scheduler.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.SECONDS);
+    }
+    else
+    {
+      this.scheduler = null;
+    }
+  }
+
+  /**
+   * Returns the statistics accumulator, creating it on first use, unless {@link #YADA_STATS_INTERVAL} is {@code 0}.
+   * @return the accumulator, or {@code null} if statistics are disabled
+   */
+  public static QueryStats getInstance()
+  {
+    if (!initialized)
+    {
+      synchronized (QueryStats.class)
+      {
+        if (!initialized)
+        {
+          long interval = getLong(YADA_STATS_INTERVAL, DEFAULT_INTERVAL);
+          if (interval > 0)
+          {
+            instance = new QueryStats(interval, getLong(YADA_STATS_MAX, DEFAULT_MAX));
+          }
+          initialized = true;
+        }
+      }
+    }
+    return instance;
+  }
+
+  /**
+   * Stops the updates of the accumulator, if one was created, after a final update.
+   */
+  public static void shutdown()
+  {
+    QueryStats stats;
+    synchronized (QueryStats.class)
+    {
+      stats       = instance;
+      instance    = null;
+      initialized = false;
+    }
+    if (stats != null)
+    {
+      stats.close();
+    }
+  }
+
+  /**
+   * Counts an access of {@code qname}.
+   * @param qname the name of the query
+   */
+  public void record(String qname)
+  {
+    LongAdder count = this.counts.get(qname);
+    if (count == null)
+    {
+      if (this.counts.size() >= this.max)
+      {
+        this.dropped.increment();
+        return;
+      }
+      count = this.counts.computeIfAbsent(qname, k -> new LongAdder());
+    }
+    count.increment();
+  }
+
+  /**
+   * @return the number of accesses not counted because the maximum number of queries were already counted
+   */
+  public long getDropped()
+  {
+    return this.dropped.sum();
+  }
+
+  /**
+   * @return the number of queries for which counts are kept
+   */
+  public int size()
+  {
+    return this.counts.size();
+  }
+
+  /**
+   * Adds the access counts since the last update to the index, in one batch.  Counters are reset, so an access
+   * counted concurrently is included in this update or the next.  Counters of queries not accessed since the
+   * last update are removed, and accesses counted on a counter while it is removed are moved to a new one.
+   */
+  public void flush()
+  {
+    List<String> qnames = new ArrayList<>();
+    List<Long>   deltas = new ArrayList<>();
+    for (Map.Entry<String, LongAdder> entry : this.counts.entrySet())
+    {
+      String    qname = entry.getKey();
+      LongAdder count = entry.getValue();
+      long      delta = count.sumThenReset();
+      if (delta == 0 && this.counts.remove(qname, count))
+      {
+        delta = count.sumThenReset();
+        if (delta > 0)
+        {
+          retain(qname, delta);
+        }
+      }
+      else if (delta > 0)
+      {
+        qnames.add(qname);
+        deltas.add(delta);
+      }
+    }
+    long dropped = this.dropped.sumThenReset();
+    if (dropped > 0)
+    {
+      l.warn(String.format("Dropped %d query access counts. Increase %s to count them.", dropped, YADA_STATS_MAX));
+    }
+    if (qnames.isEmpty())
+    {
+      return;
+    }
+    try
+    {
+      update(qnames, deltas);
+      l.debug(String.format("Updated access statistics for %d queries", qnames.size()));
+    }
+    catch (YADAConnectionException | YADAFinderException | RuntimeException e)
+    {
+      // a runtime exception would also cancel further updates, so it is caught too
+      l.error(e.getMessage(), e);
+      // retain the counts for the next update
+      for (int i = 0; i < qnames.size(); i++)
+      {
+        retain(qnames.get(i), deltas.get(i));
+      }
+    }
+  }
+
+  /**
+   * Adds {@code delta} to the counter of {@code qname} for the next update, creating it if necessary.
+   * @param qname the name of the query
+   * @param delta the number of accesses
+   */
+  private void retain(String qname, long delta)
+  {
+    this.counts.computeIfAbsent(qname, k -> new LongAdder()).add(delta);
+  }
+
+  /**
+   * Executes {@link #SQL_STATS_INCREMENT} for each query, in one batch.  The index, and its connection, are
+   * deprecated, but still used when {@link Finder#YADA_LIB} isn't set.
+   * @param qnames the query names
+   * @param deltas the number of accesses of each query
+   * @throws YADAConnectionException when the YADA Index can't be accessed
+   * @throws YADAFinderException when the update fails
+   */
+  @SuppressWarnings("deprecation")
+  protected void update(List<String> qnames, List<Long> deltas) throws YADAConnectionException, YADAFinderException
+  {
+    Connection        conn  = null;
+    PreparedStatement pstmt = null;
+    try
+    {
+      conn = ConnectionFactory.getConnectionFactory().getConnection(ConnectionFactory.YADA_APP);
+      try
+      {
+        pstmt = conn.prepareStatement(SQL_STATS_INCREMENT);
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        for (int i = 0; i < qnames.size(); i++)
+        {
+          pstmt.setLong(1, deltas.get(i));
+          pstmt.setTimestamp(2, now);
+          pstmt.setString(3, qnames.get(i));
+          pstmt.addBatch();
+        }
+      }
+      catch (SQLException e)
+      {
+        String msg = "Unable to create or configure the PreparedStatement used to update the access statistics in the YADA Index.  This could be a serious configuration issue.";
+        throw new YADAConnectionException(msg, e);
+      }
+
+      try
+      {
+        pstmt.executeBatch();
+        if (!conn.getAutoCommit())
+          conn.commit();
+      }
+      catch (SQLException e)
+      {
+        String msg = "The update of query access statistics in the YADA Index caused an error.";
+        throw new YADAFinderException(msg, e);
+      }
+    }
+    finally
+    {
+      // the connection is released even when the statement couldn't be prepared
+      if (pstmt != null)
+      {
+        try
+        {
+          pstmt.close();
+        }
+        catch (SQLException e)
+        {
+          l.warn("Unable to close the PreparedStatement used to update the access statistics.", e);
+        }
+      }
+      ConnectionFactory.releaseResources(conn);
+    }
+  }
+
+  /**
+   * Stops the scheduler, waiting for a running update to finish, and writes the remaining counts.
+   */
+  public void close()
+  {
+    if (this.scheduler != null)
+    {
+      this.scheduler.shutdown();
+      try
+      {
+        this.scheduler.awaitTermination(10, TimeUnit.SECONDS);
+      }
+      catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+      }
+    }
+    flush();
+  }
+
+  /**
+   * @param property the property name
+   * @param dflt the default value
+   * @return the value of {@code property}, or {@code dflt} if it is missing or invalid
+   */
+  private static long getLong(String property, long dflt)
+  {
+    Properties props = YADAServer.getProperties();
+    String     value = props == null ? null : props.getProperty(property);
+    try
+    {
+      return value == null ? dflt : Long.parseLong(value.trim());
+    }
+    catch (NumberFormatException e)
+    {
+      l.warn(String.format("Invalid value [%s] for property [%s], using %d", value, property, dflt));
+      return dflt;
+    }
+  }
+}
@@ -0,0 +1,550 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Enforces per-app, and optionally per-query, concurrency limits (bulkheads) and token-bucket rate limits,
+ * before {@link QueryManager} acquires connections for a request.  Requests exceeding a limit are rejected
+ * immediately with a {@link YADAThrottledException}, rather than waiting for a connection.
+ * <p>
+ * Limits are set in the {@code props} object of an app's {@code conf.json}:
+ * </p>
+ * <ul>
+ * <li>{@value #PROP_CONCURRENCY}: the maximum number of requests executing concurrently</li>
+ * <li>{@value #PROP_RATE}: the sustained number of requests per second</li>
+ * <li>{@value #PROP_BURST}: the number of requests which may exceed the rate at once, defaulting to the rate</li>
+ * </ul>
+ * <p>
+ * Any of the above, suffixed with {@code .<qname>}, sets a limit for a single query, e.g., 
+ * {@code "yada.limit.rate.APP heavy query": "2"}.  Limits apply in addition to those of the app.
+ * {@code conf.json} is checked for changes every {@value #RELOAD_INTERVAL} ms, so limits can be changed 
+ * without a restart.  A changed limit is resized in place, so permits held by executing requests still count
+ * against it.  Without a {@link Finder#YADA_LIB}, limits are read once from the {@code props}
+ * of the datasource configuration, if present.  Limits are only kept for apps with a datasource configuration.
+ * </p>
+ * @author David Varon
+ * @since 10.2.0
+ */
+public class RequestLimiter {
+
+	/**
+	 * Local logger handle
+	 */
+	private static Logger l = LoggerFactory.getLogger(RequestLimiter.class);
+
+	/**
+	 * Constant equal to {@value}. Prefix of the limit properties, which are not passed to the connection pool
+	 */
+	public final static String PROP_PREFIX = "yada.limit.";
+
+	/**
+	 * Constant equal to {@value}
+	 */
+	public final static String PROP_CONCURRENCY = PROP_PREFIX + "concurrency";
+
+	/**
+	 * Constant equal to {@value}
+	 */
+	public final static String PROP_RATE = PROP_PREFIX + "rate";
+
+	/**
+	 * Constant equal to {@value}
+	 */
+	public final static String PROP_BURST = PROP_PREFIX + "burst";
+
+	/**
+	 * Constant equal to {@value}. Milliseconds between checks for changes to {@code conf.json}
+	 */
+	private final static long RELOAD_INTERVAL = 5000L;
+
+	/**
+	 * Constant equal to {@value}. Key of app-wide limits
+	 */
+	private final static String APP_KEY = "";
+
+	/**
+	 * The singleton instance
+	 */
+	private final static RequestLimiter limiter = new RequestLimiter();
+
+	/**
+	 * Limit configurations, keyed by configured app
+	 */
+	private final Map<String, AppLimits> appLimits = new ConcurrentHashMap<>();
+
+	/**
+	 * Private default constructor prohibits instantiation.
+	 */
+	private RequestLimiter() {
+
+	}
+
+	/**
+	 * @return the singleton instance of the class
+	 */
+	public static RequestLimiter getRequestLimiter()
+	{
+		return limiter;
+	}
+
+	/**
+	 * Acquires a permit from the limits of each query's app, and of each query, in {@code qnames}.
+	 * The returned {@link Permit} must be closed when execution is complete.
+	 * @param qnames the names of the queries in the request
+	 * @return the permit
+	 * @throws YADAThrottledException when any limit has been reached
+	 */
+	public Permit acquire(String[] qnames) throws YADAThrottledException
+	{
+		Permit permit = new Permit();
+		try
+		{
+			for(String qname : qnames)
+			{
+				String             app    = Finder.getApp(qname);
+				Map<String, Limit> limits = getLimits(app);
+				if(!limits.isEmpty())
+				{
+					permit.acquire(limits.get(APP_KEY), app);
+					permit.acquire(limits.get(qname), qname);
+				}
+			}
+		}
+		catch(YADAThrottledException e)
+		{
+			permit.close();
+			throw e;
+		}
+		return permit;
+	}
+
+	/**
+	 * @param app the app name
+	 * @return the current limits for {@code app}, keyed by qname, or {@link #APP_KEY}, or an empty map
+	 * if {@code app} is not configured
+	 */
+	private Map<String, Limit> getLimits(String app)
+	{
+		// the app name is derived from the requested qname, so don't keep anything for unknown apps 
+		if(!ConnectionFactory.getConnectionFactory().getDsConf().containsKey(app))
+		{
+			return Collections.emptyMap();
+		}
+		AppLimits current = this.appLimits.get(app);
+		long      now     = System.currentTimeMillis();
+		if(current == null || now - current.checked > RELOAD_INTERVAL)
+		{
+			synchronized(this)
+			{
+				current = this.appLimits.get(app);
+				if(current == null || now - current.checked > RELOAD_INTERVAL)
+				{
+					current = load(app, current, now);
+					this.appLimits.put(app, current);
+				}
+			}
+		}
+		return current.limits;
+	}
+
+	/**
+	 * Reads the limits for {@code app} if its configuration has changed since {@code previous}, updating
+	 * existing limits in place so that permits held by executing requests are still counted.
+	 * @param app the app name
+	 * @param previous the limits last read, or {@code null}
+	 * @param now the current time
+	 * @return the limits
+	 */
+	private static AppLimits load(String app, AppLimits previous, long now)
+	{
+		long modified = 0L;
+		File conf     = null;
+		if(Finder.hasYADALib())
+		{
+			conf     = new File(Finder.getYADALibDirectory(), app + "/conf.json");
+			modified = conf.lastModified();
+		}
+		if(previous != null && previous.modified == modified)
+		{
+			return new AppLimits(previous.limits, modified, now);
+		}
+
+		Map<String, Limit> limits = new HashMap<>();
+		JSONObject props = getProps(app, conf);
+		if(props != null)
+		{
+			Map<String, Limit> prevLimits = previous == null ? Collections.emptyMap() : previous.limits;
+			for(String key : getKeys(props))
+			{
+				int    concurrency = getInt(props, PROP_CONCURRENCY, key);
+				double rate        = getDouble(props, PROP_RATE, key, 0d);
+				double burst       = getDouble(props, PROP_BURST, key, rate);
+				if(concurrency > 0 || rate > 0)
+				{
+					Limit prev = prevLimits.get(key);
+					if(prev != null)
+					{
+						prev.update(concurrency, rate, burst);
+						limits.put(key, prev);
+					}
+					else
+					{
+						limits.put(key, new Limit(concurrency, rate, burst));
+					}
+				}
+			}
+			if(previous != null)
+				l.info(String.format("Reloaded request limits for app [%s]: %s", app, limits.keySet()));
+		}
+		return new AppLimits(Collections.unmodifiableMap(limits), modified, now);
+	}
+
+	/**
+	 * @param app the app name
+	 * @param conf the {@code conf.json} file of the app, or {@code null} if there isn't a YADA lib
+	 * @return the {@code props} object of the app's configuration, or {@code null}
+	 */
+	private static JSONObject getProps(String app, File conf)
+	{
+		try
+		{
+			if(conf != null)
+			{
+				if(!conf.exists())
+					return null;
+				String yconf = new String(Files.readAllBytes(conf.toPath()), StandardCharsets.UTF_8);
+				return new JSONObject(yconf).optJSONObject(ConnectionFactory.YADA_CONF_PROPS);
+			}
+			@SuppressWarnings("unchecked")
+			Map<String, Object> dsConf = (Map<String, Object>)ConnectionFactory.getConnectionFactory().getDsConf().get(app);
+			Object props = dsConf == null ? null : dsConf.get(ConnectionFactory.YADA_CONF_PROPS);
+			return props instanceof JSONObject ? (JSONObject)props : null;
+		}
+		catch(IOException | JSONException e)
+		{
+			l.warn(String.format("Unable to read request limits for app [%s]", app), e);
+			return null;
+		}
+	}
+
+	/**
+	 * @param props the app properties
+	 * @return {@link #APP_KEY} and each qname for which a limit is set
+	 */
+	private static Set<String> getKeys(JSONObject props)
+	{
+		Set<String> keys  = new HashSet<>();
+		String[]    names = JSONObject.getNames(props);
+		for(String prop : names == null ? new String[0] : names)
+		{
+			for(String name : new String[] { PROP_CONCURRENCY, PROP_RATE, PROP_BURST })
+			{
+				if(prop.equals(name))
+					keys.add(APP_KEY);
+				else if(prop.startsWith(name + "."))
+					keys.add(prop.substring(name.length() + 1));
+			}
+		}
+		return keys;
+	}
+
+	/**
+	 * @param props the app properties
+	 * @param name the property name
+	 * @param key the qname, or {@link #APP_KEY}
+	 * @return the integer value of the property, or {@code 0}
+	 */
+	private static int getInt(JSONObject props, String name, String key)
+	{
+		return (int)getDouble(props, name, key, 0d);
+	}
+
+	/**
+	 * @param props the app properties
+	 * @param name the property name
+	 * @param key the qname, or {@link #APP_KEY}
+	 * @param def the default value
+	 * @return the value of the property, or {@code def}
+	 */
+	private static double getDouble(JSONObject props, String name, String key, double def)
+	{
+		String prop  = APP_KEY.equals(key) ? name : name + "." + key;
+		String value = props.optString(prop, null);
+		try
+		{
+			return value == null ? def : Double.parseDouble(value.trim());
+		}
+		catch(NumberFormatException e)
+		{
+			l.warn(String.format("Invalid value [%s] for property [%s]", value, prop));
+			return def;
+		}
+	}
+
+	/**
+	 * The limits of one app, and the time at which they were read
+	 */
+	private static class AppLimits {
+
+		/**
+		 * The limits, keyed by qname, or {@link #APP_KEY}
+		 */
+		final Map<String, Limit> limits;
+
+		/**
+		 * Last modification time of {@code conf.json}
+		 */
+		final long modified;
+
+		/**
+		 * Time at which {@code conf.json} was last checked
+		 */
+		final long checked;
+
+		/**
+		 * @param limits the limits
+		 * @param modified last modification time of {@code conf.json}
+		 * @param checked time at which {@code conf.json} was checked
+		 */
+		AppLimits(Map<String, Limit> limits, long modified, long checked)
+		{
+			this.limits   = limits;
+			this.modified = modified;
+			this.checked  = checked;
+		}
+	}
+
+	/**
+	 * A concurrency limit and token bucket
+	 */
+	private static class Limit {
+
+		/**
+		 * Maximum concurrent requests, or {@code 0} for no limit
+		 */
+		volatile int concurrency;
+
+		/**
+		 * Tokens added per second, or {@code 0} for no limit
+		 */
+		double rate;
+
+		/**
+		 * Maximum tokens
+		 */
+		double burst;
+
+		/**
+		 * Available concurrency, i.e., {@link #concurrency} less the permits held
+		 */
+		final ResizableSemaphore semaphore;
+
+		/**
+		 * Available tokens
+		 */
+		double tokens;
+
+		/**
+		 * Time of the last refill, in nanoseconds
+		 */
+		long refilled;
+
+		/**
+		 * @param concurrency maximum concurrent requests, or {@code 0} for no limit
+		 * @param rate tokens added per second, or {@code 0} for no limit
+		 * @param burst maximum tokens
+		 */
+		Limit(int concurrency, double rate, double burst)
+		{
+			this.concurrency = Math.max(0, concurrency);
+			this.rate        = rate;
+			this.burst       = Math.max(1d, burst);
+			this.semaphore   = new ResizableSemaphore(this.concurrency);
+			this.tokens      = this.burst;
+			this.refilled    = System.nanoTime();
+		}
+
+		/**
+		 * Applies changed settings.  The available concurrency is adjusted by the difference, and may
+		 * become negative until enough of the permits already held are released.
+		 * @param c maximum concurrent requests
+		 * @param r tokens added per second
+		 * @param b maximum tokens
+		 */
+		synchronized void update(int c, double r, double b)
+		{
+			int delta = Math.max(0, c) - this.concurrency;
+			if(delta > 0)
+				this.semaphore.release(delta);
+			else if(delta < 0)
+				this.semaphore.reduce(-delta);
+			this.concurrency = Math.max(0, c);
+			this.rate        = r;
+			this.burst       = Math.max(1d, b);
+			this.tokens      = Math.min(this.tokens, this.burst);
+		}
+
+		/**
+		 * @param name the app or qname, for the exception message
+		 * @return {@code true} if a concurrency permit was acquired, and must be released
+		 * @throws YADAThrottledException when the limit has been reached
+		 */
+		boolean acquire(String name) throws YADAThrottledException
+		{
+			int     c    = this.concurrency;
+			boolean held = false;
+			if(c > 0)
+			{
+				if(!this.semaphore.tryAcquire())
+				{
+					String msg = String.format("Too many concurrent requests for [%s] (limit %d).", name, c);
+					throw new YADAThrottledException(msg);
+				}
+				held = true;
+			}
+			long wait = takeToken();
+			if(wait > 0)
+			{
+				if(held)
+					release();
+				String msg = String.format("Request rate for [%s] exceeds the limit of %s per second.", name, getRate());
+				throw new YADAThrottledException(msg, wait);
+			}
+			return held;
+		}
+
+		/**
+		 * Releases a concurrency permit
+		 */
+		void release()
+		{
+			this.semaphore.release();
+		}
+
+		/**
+		 * @return tokens added per second
+		 */
+		synchronized double getRate()
+		{
+			return this.rate;
+		}
+
+		/**
+		 * Refills the bucket and takes a token, if available.
+		 * @return {@code 0} if a token was taken, or there is no rate limit, or the number of seconds until 
+		 * one is available
+		 */
+		synchronized long takeToken()
+		{
+			if(this.rate <= 0)
+			{
+				return 0L;
+			}
+			long now = System.nanoTime();
+			this.tokens   = Math.min(this.burst, this.tokens + (now - this.refilled) / 1e9 * this.rate);
+			this.refilled = now;
+			if(this.tokens >= 1d)
+			{
+				this.tokens -= 1d;
+				return 0L;
+			}
+			return Math.max(1L, (long)Math.ceil((1d - this.tokens) / this.rate));
+		}
+	}
+
+	/**
+	 * A {@link Semaphore} whose permits can be reduced below those held
+	 */
+	private static class ResizableSemaphore extends Semaphore {
+
+		/**
+		 * Version id
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * @param permits the initial number of permits
+		 */
+		ResizableSemaphore(int permits)
+		{
+			super(permits);
+		}
+
+		/**
+		 * @param reduction the number of permits to remove
+		 */
+		void reduce(int reduction)
+		{
+			reducePermits(reduction);
+		}
+	}
+
+	/**
+	 * The permits held by a request, released by {@link #close()}
+	 */
+	public static class Permit implements AutoCloseable {
+
+		/**
+		 * The limits from which permits were acquired, mapped to {@code true} if a concurrency permit is held
+		 */
+		private final Map<Limit, Boolean> acquired = new IdentityHashMap<>();
+
+		/**
+		 * Acquires a permit from {@code limit}, unless it is {@code null} or was already acquired
+		 * @param limit the limit
+		 * @param name the app or qname, for the exception message
+		 * @throws YADAThrottledException when the limit has been reached
+		 */
+		void acquire(Limit limit, String name) throws YADAThrottledException
+		{
+			if(limit != null && !this.acquired.containsKey(limit))
+			{
+				this.acquired.put(limit, limit.acquire(name));
+			}
+		}
+
+		/**
+		 * Releases all permits
+		 */
+		@Override
+		public void close()
+		{
+			for(Map.Entry<Limit, Boolean> entry : this.acquired.entrySet())
+			{
+				if(entry.getValue())
+					entry.getKey().release();
+			}
+			this.acquired.clear();
+		}
+	}
+}
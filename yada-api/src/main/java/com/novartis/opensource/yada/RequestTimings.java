@@ -0,0 +1,151 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Accumulates the time spent in each phase of a request's execution, along with the queries executed
+ * and the number of rows they returned, for the request log.  An instance is created with each
+ * {@link YADARequest} and is only written by the thread executing the request.
+ *
+ * @author David Varon
+ * @since 10.2.0
+ */
+public class RequestTimings {
+
+	/**
+	 * Constant equal to {@value}. Index of the time spent retrieving queries and configuring adaptors
+	 */
+	public static final int LOOKUP = 0;
+
+	/**
+	 * Constant equal to {@value}. Index of the time spent setting harmony maps and preparing statements
+	 */
+	public static final int PREP = 1;
+
+	/**
+	 * Constant equal to {@value}. Index of the time spent executing queries and committing transactions
+	 */
+	public static final int EXECUTE = 2;
+
+	/**
+	 * Constant equal to {@value}. Index of the time spent converting results
+	 */
+	public static final int CONVERT = 3;
+
+	/**
+	 * Constant equal to {@value}. Index of the time spent composing the response, excluding conversion
+	 */
+	public static final int COMPOSE = 4;
+
+	/**
+	 * The phase names, in index order
+	 */
+	public static final String[] PHASES = { "lookup", "prep", "execute", "convert", "compose" };
+
+	/**
+	 * Nanoseconds spent in each phase
+	 */
+	private final long[] nanos = new long[PHASES.length];
+
+	/**
+	 * Names of the queries in the request
+	 */
+	private final List<String> qnames = new ArrayList<>();
+
+	/**
+	 * Apps of the queries in the request
+	 */
+	private final List<String> apps = new ArrayList<>();
+
+	/**
+	 * Total rows returned or affected by the queries in the request
+	 */
+	private long rows;
+
+	/**
+	 * Adds the time elapsed since {@code start} to {@code phase}
+	 *
+	 * @param phase one of {@link #LOOKUP}, {@link #PREP}, {@link #EXECUTE}, {@link #CONVERT}, or {@link #COMPOSE}
+	 * @param start the value of {@link System#nanoTime()} at the start of the phase
+	 */
+	public void add(int phase, long start)
+	{
+		this.nanos[phase] += System.nanoTime() - start;
+	}
+
+	/**
+	 * @param phase one of {@link #LOOKUP}, {@link #PREP}, {@link #EXECUTE}, {@link #CONVERT}, or {@link #COMPOSE}
+	 * @return the nanoseconds spent in {@code phase}
+	 */
+	public long get(int phase)
+	{
+		return this.nanos[phase];
+	}
+
+	/**
+	 * Records the queries in the request
+	 *
+	 * @param queries the queries in the request
+	 */
+	public void setQueries(YADAQuery[] queries)
+	{
+		this.qnames.clear();
+		this.apps.clear();
+		for (YADAQuery yq : queries)
+		{
+			this.qnames.add(yq.getQname());
+			if (!this.apps.contains(yq.getApp()))
+			{
+				this.apps.add(yq.getApp());
+			}
+		}
+	}
+
+	/**
+	 * @return the names of the queries in the request
+	 */
+	public List<String> getQnames()
+	{
+		return Collections.unmodifiableList(this.qnames);
+	}
+
+	/**
+	 * @return the distinct apps of the queries in the request
+	 */
+	public List<String> getApps()
+	{
+		return Collections.unmodifiableList(this.apps);
+	}
+
+	/**
+	 * @param count the number of rows to add to the total
+	 */
+	public void addRows(long count)
+	{
+		this.rows += count;
+	}
+
+	/**
+	 * @return the total number of rows returned or affected by the queries in the request
+	 */
+	public long getRows()
+	{
+		return this.rows;
+	}
+}
@@ -17,7 +17,9 @@ package com.novartis.opensource.yada;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -37,11 +39,18 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.novartis.opensource.yada.adaptor.YADAAdaptorException;
 import com.novartis.opensource.yada.adaptor.YADAAdaptorExecutionException;
+import com.novartis.opensource.yada.format.AbstractResponse;
 import com.novartis.opensource.yada.format.Converter;
 import com.novartis.opensource.yada.format.DelimitedResponse;
+import com.novartis.opensource.yada.format.JSONStreamingResponse;
+import com.novartis.opensource.yada.format.NDJSONResponse;
 import com.novartis.opensource.yada.format.Response;
+import com.novartis.opensource.yada.format.StreamingResponse;
 import com.novartis.opensource.yada.format.YADAConverterException;
 import com.novartis.opensource.yada.format.YADAResponseException;
 import com.novartis.opensource.yada.io.YADAIOException;
@@ -73,6 +82,29 @@ public class Service {
 	 * Local logger handle
 	 */
 	private static Logger l = LoggerFactory.getLogger(Service.class);
+	/**
+	 * Json factory for reading {@code application/json} request bodies
+	 * @since 10.2.0
+	 */
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+	/**
+	 * Parameter bindings, in the order in which they're applied
+	 * @since 10.2.0
+	 */
+	private final static Binding[] BINDINGS = buildBindings();
+	/**
+	 * The position of each parameter in {@link #BINDINGS}
+	 * @since 10.2.0
+	 */
+	private final static Map<String, Integer> BINDING_ORDER = new HashMap<>();
+	static
+	{
+	  for(int i = BINDINGS.length - 1; i >= 0; i--)
+	  {
+	    // the first occurrence wins, should long and short names be equal
+	    BINDING_ORDER.put(BINDINGS[i].alias, i);
+	  }
+	}
 	/**
 	 * Constant equal to: {@value}
 	 */
@@ -93,6 +125,11 @@ public class Service {
 	 * Utility object
 	 */
 	private QueryUtils qutils = new QueryUtils();
+	/**
+	 * The stored definitions of the requested queries, resolved once by {@link #getRequestedQueries()}
+	 * @since 10.2.0
+	 */
+	private YADAQuery[] requestedQueries;
 	/**
 	 * Ivar to store ref query currently executing query.  Not in use since 10.0.0.
 	 * @deprecated since 10.1.0
@@ -157,13 +194,11 @@ public class Service {
 		if(null != request.getHeader("Content-Type") 
 		    && request.getHeader("Content-Type").contentEquals("application/json"))
 		{		  
-      try
+      try (JsonParser parser = JSON_FACTORY.createParser(request.getReader()))
       {
-        String     body = request.getReader().readLine();
-        JSONObject jo   = new JSONObject(body);
-        handleRequest(request.getHeader("referer"), buildMapFromJSON(jo));
+        handleRequest(request.getHeader("referer"), buildMapFromJSON(parser));
       }
-      catch (JSONException | IOException e)
+      catch (IOException e)
       {
         String msg = "Unable to parse request body as JSON";
         throw new YADARequestException(msg, e);
@@ -199,391 +234,95 @@ public class Service {
 	
 	/**
 	 * Convert {@code Content-Type: application/json} data passed in {@code POST}
-	 * request to a {@code Map<String,String[]} as if data were {@code www-form-urlencoded}
-	 * NOTE:  This will only work if no line feeds appear in the JSON <em>and</em> 
-	 * the {@code Content-Type: application/json} header is set.
-	 * @param jo the json object passed in request body
+	 * request to a {@code Map<String,String[]} as if data were {@code www-form-urlencoded}.
+	 * The body is read incrementally from {@code parser}, and the value of the {@code j} or 
+	 * {@code JSONParams} parameter, if present, is built directly into the {@link YADARequest}
+	 * as a {@link JSONParams} object, rather than added to the map as a string, so large uploads
+	 * are never buffered in full.
+	 * @param parser the json parser over the request body
 	 * 
-	 * @return a {@link Map} containing the JSON data reformatted for parsing
-	 * @throws YADARequestException if the {@code JSONObject} passed to the method contains an invalid parameter key
+	 * @return a {@link Map} containing the remaining JSON data reformatted for parsing
+	 * @throws YADARequestException if the json passed to the method contains an invalid parameter key, 
+	 * or is malformed
+	 * @throws IOException if the request body can't be read or parsed
 	 * @since 9.3.5
 	 */
-	private Map<String,String[]> buildMapFromJSON(JSONObject jo) throws YADARequestException 
+	private Map<String,String[]> buildMapFromJSON(JsonParser parser) throws YADARequestException, IOException 
 	{
 	  Map<String, String[]> map = new HashMap<>();
-	  String[] props = JSONObject.getNames(jo);
-	  for(int i=0;i<props.length;i++)
+	  if(parser.nextToken() != JsonToken.START_OBJECT)
+	    throw new YADARequestException("Request body must be a json object");
+	  while(parser.nextToken() == JsonToken.FIELD_NAME)
 	  {
-	    String prop = props[i];
-	    String value = prop.contentEquals(YADARequest.PS_JSONPARAMS) || prop.contentEquals(YADARequest.PL_JSONPARAMS)
-	                   ? jo.getJSONArray(prop).toString()
-	                   : jo.getString(prop);
-     if(YADARequest.fieldAliasSet.contains(props[i]))
- 	     map.put(props[i], new String[] {value});
-     else
-       throw new YADARequestException(String.format("Unknown parameter: %s", props[i]));
+	    String prop = parser.getCurrentName();
+	    if(!YADARequest.fieldAliasSet.contains(prop))
+	      throw new YADARequestException(String.format("Unknown parameter: %s", prop));
+	    JsonToken token = parser.nextToken();
+	    if(prop.contentEquals(YADARequest.PS_JSONPARAMS) || prop.contentEquals(YADARequest.PL_JSONPARAMS))
+	    {
+	      try
+	      {
+	        getYADARequest().setJsonParams(new JSONParams(parser));
+	      }
+	      catch (YADAQueryConfigurationException e)
+	      {
+	        String msg = "The JSONParams string appears to be malformed.";
+	        throw new YADARequestException(msg, e);
+	      }
+	    }
+	    else if(token.isScalarValue())
+	      map.put(prop, new String[] {parser.getText()});
+	    else
+	      throw new YADARequestException(String.format("Value of parameter %s must be a string", prop));
 	  }
 	  return map;
 	}
 	
-
 	/**
-	 * The meaty method for parsing the request parameters into {@link YADARequest}.
+	 * The meaty method for parsing the request parameters into {@link YADARequest}.  Each parameter is
+	 * bound by its entry in {@link #BINDINGS}, in table order, so that, e.g., short parameter names
+	 * override long ones, and deprecated plugin arguments are merged before plugins are set.
 	 * @param referer the url of the referring page
 	 * @param paraMap the parameter map provided by the servlet request
 	 * @throws YADARequestException when a parameter is unknown or parameter value is malformed
 	 */
-	@SuppressWarnings("deprecation")
 	public void handleRequest(String referer, Map<String,String[]> paraMap) throws YADARequestException 
 	{	
 	  Set<String> params = paraMap.keySet();
 	  if(YADARequest.fieldAliasSet.containsAll(params))
 	  {
-  		if(paraMap.get(YADARequest.PL_ARGS) != null)
-  		{
-  		  setDeprecatedPlugin(paraMap, YADARequest.PL_ARGS);
-  		}
-  		if(paraMap.get(YADARequest.PS_ARGS) != null)
-  		{
-  		  setDeprecatedPlugin(paraMap, YADARequest.PS_ARGS);
-  		}
-  		if (paraMap.get(YADARequest.PL_COLHEAD) != null)
-  		{
-  			getYADARequest().setColhead(paraMap.get(YADARequest.PL_COLHEAD));
-  		}
-  		if (paraMap.get(YADARequest.PL_COMMITQUERY) != null)
-      {
-        getYADARequest().setCommitQuery(paraMap.get(YADARequest.PL_COMMITQUERY));
-      }
-      if (paraMap.get(YADARequest.PS_COMMITQUERY) != null)
-      {
-        getYADARequest().setCommitQuery(paraMap.get(YADARequest.PS_COMMITQUERY));
-      }
-      if (paraMap.get(YADARequest.PS_COMPACT) != null)
-      {
-        getYADARequest().setCompact(paraMap.get(YADARequest.PS_COMPACT));
-      }
-  		if (paraMap.get(YADARequest.PL_COMPACT) != null)
-  		{
-  			getYADARequest().setCompact(paraMap.get(YADARequest.PL_COMPACT));
-  		}
-  		if (paraMap.get(YADARequest.PL_CONVERTER) != null)
-      {
-        getYADARequest().setConverter(paraMap.get(YADARequest.PL_CONVERTER));
-      }
-      if (paraMap.get(YADARequest.PS_CONVERTER)!= null)
-      {
-        getYADARequest().setConverter(paraMap.get(YADARequest.PS_CONVERTER));
-      }
-  		if (paraMap.get(YADARequest.PL_COUNT) != null)
-  		{
-  			getYADARequest().setCount(paraMap.get(YADARequest.PL_COUNT));
-  		}
-  		if (paraMap.get(YADARequest.PS_COUNT) != null)
-  		{
-  			getYADARequest().setCount(paraMap.get(YADARequest.PS_COUNT));
-  		}
-  		if (paraMap.get(YADARequest.PL_COOKIES) != null)
-      {
-        getYADARequest().setCookies(paraMap.get(YADARequest.PL_COOKIES));
-      }
-      if (paraMap.get(YADARequest.PS_COOKIES) != null)
-      {
-        getYADARequest().setCookies(paraMap.get(YADARequest.PS_COOKIES));
-      }
-  		if (paraMap.get(YADARequest.PL_COUNTONLY) != null)
-  		{
-  			getYADARequest().setCountOnly(paraMap.get(YADARequest.PL_COUNTONLY));
-  		}
-  		if (paraMap.get(YADARequest.PS_COUNTONLY) != null)
-  		{
-  			getYADARequest().setCountOnly(paraMap.get(YADARequest.PS_COUNTONLY));
-  		}
-  		if (paraMap.get(YADARequest.PL_DELIMITER) != null)
-  		{
-  			getYADARequest().setDelimiter(paraMap.get(YADARequest.PL_DELIMITER));
-  		}
-  		if (paraMap.get(YADARequest.PS_DELIMITER) != null)
-  		{
-  			getYADARequest().setDelimiter(paraMap.get(YADARequest.PS_DELIMITER));
-  		}
-  		if (paraMap.get(YADARequest.PL_EXPORT) != null)
-  		{
-  			getYADARequest().setExport(paraMap.get(YADARequest.PL_EXPORT));
-  		}
-  		if (paraMap.get(YADARequest.PS_EXPORT) != null)
-  		{
-  			getYADARequest().setExport(paraMap.get(YADARequest.PS_EXPORT));
-  		}
-  		if (paraMap.get(YADARequest.PL_EXPORTLIMIT) != null)
-  		{
-  			getYADARequest().setExportLimit(paraMap.get(YADARequest.PL_EXPORTLIMIT));
-  		}
-  		if (paraMap.get(YADARequest.PS_EXPORTLIMIT) != null)
-  		{
-  			getYADARequest().setExportLimit(paraMap.get(YADARequest.PS_EXPORTLIMIT));
-  		}
-  		if (paraMap.get(YADARequest.PL_FILTERS) != null)
-  		{
-  			getYADARequest().setFilters(paraMap.get(YADARequest.PL_FILTERS));
-  		}
-  		if (paraMap.get(YADARequest.PS_FILTERS) != null)
-  		{
-  			getYADARequest().setFilters(paraMap.get(YADARequest.PS_FILTERS));
-  		}
-  		if (paraMap.get(YADARequest.PL_FORMAT) != null && !paraMap.get(YADARequest.PL_FORMAT)[0].equals(YADARequest.FORMAT_JSON))
-  		{
-  			getYADARequest().setFormat(paraMap.get(YADARequest.PL_FORMAT));
-  		}
-  		if (paraMap.get(YADARequest.PS_FORMAT) != null && !paraMap.get(YADARequest.PS_FORMAT)[0].equals(YADARequest.FORMAT_JSON))
-  		{
-  			getYADARequest().setFormat(paraMap.get(YADARequest.PS_FORMAT));
-  		}
-  		if (paraMap.get(YADARequest.PL_HARMONYMAP) != null)
-  		{
-  			getYADARequest().setHarmonyMap(paraMap.get(YADARequest.PL_HARMONYMAP));
-  		}
-  		if (paraMap.get(YADARequest.PS_HARMONYMAP) != null)
-  		{
-  			getYADARequest().setHarmonyMap(paraMap.get(YADARequest.PS_HARMONYMAP));
-  		}
-  		if (paraMap.get(YADARequest.PL_HTTPHEADERS) != null)
-  		{
-  			getYADARequest().setHTTPHeaders(paraMap.get(YADARequest.PL_HTTPHEADERS));
-  		}
-  		if (paraMap.get(YADARequest.PS_HTTPHEADERS) != null)
-  		{
-  			getYADARequest().setHTTPHeaders(paraMap.get(YADARequest.PS_HTTPHEADERS));
-  		}
-  		if (paraMap.get(YADARequest.PL_JSONPARAMS) != null)
-  		{
-  			getYADARequest().setJsonParams(paraMap.get(YADARequest.PL_JSONPARAMS));
-  		}
-  		if (paraMap.get(YADARequest.PS_JSONPARAMS) != null)
-  		{
-  			getYADARequest().setJsonParams(paraMap.get(YADARequest.PS_JSONPARAMS));
-  		}
-  		if (paraMap.get(YADARequest.PL_JSONFILTERS) != null)
-      {
-        getYADARequest().setJsonFilters(paraMap.get(YADARequest.PL_JSONFILTERS));
-      }
-      if (paraMap.get(YADARequest.PS_JSONFILTERS) != null)
-      {
-        getYADARequest().setJsonFilters(paraMap.get(YADARequest.PS_JSONFILTERS));
-      }
-  		if (paraMap.get(YADARequest.PL_JOIN) != null)
-      {
-        getYADARequest().setJoin(paraMap.get(YADARequest.PL_JOIN));
-      }
-  		if (paraMap.get(YADARequest.PS_JOIN) != null)
-      {
-        getYADARequest().setJoin(paraMap.get(YADARequest.PS_JOIN));
-      }
-  		if (paraMap.get(YADARequest.PL_LEFTJOIN) != null)
-      {
-        getYADARequest().setLeftJoin(paraMap.get(YADARequest.PL_LEFTJOIN));
-      }
-      if (paraMap.get(YADARequest.PS_LEFTJOIN) != null)
-      {
-        getYADARequest().setLeftJoin(paraMap.get(YADARequest.PS_LEFTJOIN));
-      }
-      
-  		if (paraMap.get(YADARequest.PL_LABELS) != null)
-  		{
-  			getYADARequest().setLabels(paraMap.get(YADARequest.PL_LABELS));
-  		}
-  		if (paraMap.get(YADARequest.PL_MAIL) != null)
-  		{
-  			getYADARequest().setMail(paraMap.get(YADARequest.PL_MAIL));
-  		}
-  		if (paraMap.get(YADARequest.PL_METHOD) != null && !paraMap.get(YADARequest.PL_METHOD)[0].equals(YADARequest.METHOD_GET))
-  		{
-  			getYADARequest().setMethod(paraMap.get(YADARequest.PL_METHOD));
-  		}
-  		if (paraMap.get(YADARequest.PS_METHOD) != null && !paraMap.get(YADARequest.PS_METHOD)[0].equals(YADARequest.METHOD_GET))
-  		{
-  			getYADARequest().setMethod(paraMap.get(YADARequest.PS_METHOD));
-  		}
-  		if (paraMap.get(YADARequest.PL_OAUTH) != null)
-  		{
-  		  getYADARequest().setOAuth(paraMap.get(YADARequest.PL_OAUTH));
-  		}
-  		if (paraMap.get(YADARequest.PS_OAUTH) != null)
-  		{
-  			getYADARequest().setOAuth(paraMap.get(YADARequest.PS_OAUTH));
-  		}
-  		if (paraMap.get(YADARequest.PL_OAUTH2) != null)
-      {
-        getYADARequest().setOAuth2(paraMap.get(YADARequest.PL_OAUTH2));
-      }
-      if (paraMap.get(YADARequest.PS_OAUTH2) != null)
-      {
-        getYADARequest().setOAuth2(paraMap.get(YADARequest.PS_OAUTH2));
-      }
-  		if (paraMap.get(YADARequest.PL_BYPASSARGS) != null)
-  		{
-  		  setDeprecatedPlugin(paraMap, YADARequest.PL_BYPASSARGS);
-  		}
-  		if (paraMap.get(YADARequest.PS_BYPASSARGS) != null)
-  		{
-  		  setDeprecatedPlugin(paraMap, YADARequest.PS_BYPASSARGS);
-  		}
-  		if (paraMap.get(YADARequest.PL_PAGE) != null)
-  		{
-  			getYADARequest().setPage(paraMap.get(YADARequest.PL_PAGE));
-  		}
-  		if (paraMap.get(YADARequest.PS_PAGE) != null)
-  		{
-  			getYADARequest().setPage(paraMap.get(YADARequest.PS_PAGE));
-  		}
-  		if (paraMap.get(YADARequest.PL_PAGESIZE) != null)
-  		{
-  			getYADARequest().setPageSize(paraMap.get(YADARequest.PL_PAGESIZE));
-  		}
-  		if (paraMap.get(YADARequest.PS_PAGESIZE) != null)
-  		{
-  			getYADARequest().setPageSize(paraMap.get(YADARequest.PS_PAGESIZE));
-  		}
-  		if (paraMap.get(YADARequest.PL_PAGESTART) != null)
-  		{
-  			getYADARequest().setPageStart(paraMap.get(YADARequest.PL_PAGESTART));
-  		}
-  		if (paraMap.get(YADARequest.PS_PAGESTART) != null)
-  		{
-  			getYADARequest().setPageStart(paraMap.get(YADARequest.PS_PAGESTART));
-  		}
-  		if (paraMap.get(YADARequest.PL_PARAMS) != null)
-  		{
-  			getYADARequest().setParams(paraMap.get(YADARequest.PL_PARAMS));
-  		}
-  		if (paraMap.get(YADARequest.PS_PARAMS) != null)
-  		{
-  			getYADARequest().setParams(paraMap.get(YADARequest.PS_PARAMS));
-  		}
-  		if (paraMap.get(YADARequest.PL_PATH) != null)
-  		{
-  			getYADARequest().setSortKey(paraMap.get(YADARequest.PL_PATH));
-  		}
-  		if (paraMap.get(YADARequest.PL_PARALLEL) != null)
-  		{
-  			getYADARequest().setParallel(paraMap.get(YADARequest.PL_PARALLEL));
-  		}
-  		if (paraMap.get(YADARequest.PL_PLUGINTYPE) != null && !paraMap.get(YADARequest.PL_PLUGINTYPE)[0].equals(YADARequest.PREPROCESS))
-  		{
-  			getYADARequest().setPluginType(paraMap.get(YADARequest.PL_PLUGINTYPE));
-  		}
-  		if (paraMap.get(YADARequest.PS_PLUGINTYPE) != null && !paraMap.get(YADARequest.PL_PLUGINTYPE)[0].equals(YADARequest.PREPROCESS))
-  		{
-  			getYADARequest().setPluginType(paraMap.get(YADARequest.PS_PLUGINTYPE));
-  		}
-  		if (paraMap.get(YADARequest.PL_POSTARGS) != null)
-  		{
-  		  setDeprecatedPlugin(paraMap, YADARequest.PL_POSTARGS);
-  		}
-  		if (paraMap.get(YADARequest.PS_POSTARGS) != null)
-  		{
-  		  setDeprecatedPlugin(paraMap, YADARequest.PS_POSTARGS);
-  		}
-  		if (paraMap.get(YADARequest.PL_PREARGS) != null)
-  		{
-  		  setDeprecatedPlugin(paraMap, YADARequest.PL_PREARGS);
-  		}
-  		if (paraMap.get(YADARequest.PS_PREARGS) != null)
-  		{
-  		  setDeprecatedPlugin(paraMap, YADARequest.PS_PREARGS);
-  		}
-  		
-  		// the next two conditionals must come after pre, post, and bypass arg handling
-  		if (paraMap.get(YADARequest.PL_PLUGIN) != null)
-      {
-        getYADARequest().setPlugin(paraMap.get(YADARequest.PL_PLUGIN));
-      }
-      if (paraMap.get(YADARequest.PS_PLUGIN) != null)
-      {
-        getYADARequest().setPlugin(paraMap.get(YADARequest.PS_PLUGIN));
-      }
-      
-      
-  		if (paraMap.get(YADARequest.PL_PRETTY) != null)
-  		{
-  			getYADARequest().setPretty(paraMap.get(YADARequest.PL_PRETTY));
-  		}
-  		if (paraMap.get(YADARequest.PS_PRETTY) != null)
-  		{
-  			getYADARequest().setPretty(paraMap.get(YADARequest.PS_PRETTY));
-  		}
-  		if (paraMap.get(YADARequest.PL_PROXY) != null)
-  		{
-  			getYADARequest().setProxy(paraMap.get(YADARequest.PL_PROXY));
-  		}
-  		if (paraMap.get(YADARequest.PS_PROXY) != null)
-  		{
-  			getYADARequest().setProxy(paraMap.get(YADARequest.PS_PROXY));
-  		}
-  		if (paraMap.get(YADARequest.PL_QNAME) != null && !paraMap.get(YADARequest.PL_QNAME)[0].equals(YADARequest.DEFAULT_QNAME))
-  		{
-  			getYADARequest().setQname(paraMap.get(YADARequest.PL_QNAME));
-  		}
-  		if (paraMap.get(YADARequest.PS_QNAME) != null && !paraMap.get(YADARequest.PS_QNAME)[0].equals(YADARequest.DEFAULT_QNAME))
-  		{
-  			getYADARequest().setQname(paraMap.get(YADARequest.PS_QNAME));
-  		}
-  		if (paraMap.get(YADARequest.PL_ROW_DELIMITER) != null)
-  		{
-  			getYADARequest().setRowDelimiter(paraMap.get(YADARequest.PL_ROW_DELIMITER));
-  		}
-  		if (paraMap.get(YADARequest.PS_ROW_DELIMITER) != null)
-  		{
-  			getYADARequest().setRowDelimiter(paraMap.get(YADARequest.PS_ROW_DELIMITER));
-  		}
-  		if (paraMap.get(YADARequest.PL_RESPONSE) != null)
-  		{
-  			getYADARequest().setResponse(paraMap.get(YADARequest.PL_RESPONSE));
-  		}
-  		if (paraMap.get(YADARequest.PS_RESPONSE) != null)
-  		{
-  			getYADARequest().setResponse(paraMap.get(YADARequest.PS_RESPONSE));
-  		}
-  		if (paraMap.get(YADARequest.PL_SORTKEY) != null)
-  		{
-  			getYADARequest().setSortKey(paraMap.get(YADARequest.PL_SORTKEY));
-  		}
-  		if (paraMap.get(YADARequest.PS_SORTKEY) != null)
-  		{
-  			getYADARequest().setSortKey(paraMap.get(YADARequest.PS_SORTKEY));
-  		}
-  		if (paraMap.get(YADARequest.PL_SORTORDER) != null && !paraMap.get(YADARequest.PL_SORTORDER)[0].equals(YADARequest.SORT_ASC))
-  		{
-  			getYADARequest().setSortOrder(paraMap.get(YADARequest.PL_SORTORDER));
-  		}
-  		if (paraMap.get(YADARequest.PS_SORTORDER) != null && !paraMap.get(YADARequest.PS_SORTORDER)[0].equals(YADARequest.SORT_ASC))
-  		{
-  			getYADARequest().setSortOrder(paraMap.get(YADARequest.PS_SORTORDER));
-  		}
-  		if (paraMap.get(YADARequest.PL_USER) != null && !paraMap.get(YADARequest.PL_USER)[0].equals(YADARequest.DEFAULT_USER))
-  		{
-  			getYADARequest().setUser(paraMap.get(YADARequest.PL_USER));
-  		}
-  		if (paraMap.get(YADARequest.PS_USER) != null && !paraMap.get(YADARequest.PS_USER)[0].equals(YADARequest.DEFAULT_USER))
-  		{
-  			getYADARequest().setUser(paraMap.get(YADARequest.PS_USER));
-  		}
-  		if (paraMap.get(YADARequest.PL_VIEWLIMIT) != null)
-  		{
-  			getYADARequest().setViewLimit(paraMap.get(YADARequest.PL_VIEWLIMIT));
-  		}
-  		if (paraMap.get(YADARequest.PS_VIEWLIMIT) != null)
-  		{
-  			getYADARequest().setViewLimit(paraMap.get(YADARequest.PS_VIEWLIMIT));
-  		}
-  		if (paraMap.get(YADARequest.PL_UPDATE_STATS) != null)
-      {
-        getYADARequest().setUpdateStats(paraMap.get(YADARequest.PL_UPDATE_STATS));
-      }
-      if (paraMap.get(YADARequest.PS_UPDATE_STATS) != null)
-      {
-        getYADARequest().setUpdateStats(paraMap.get(YADARequest.PS_UPDATE_STATS));
-      }
+	    // the positions in BINDINGS of the parameters in the request
+	    int[]   order      = new int[params.size() + 1];
+	    int     n          = 0;
+	    boolean deprecated = false;
+	    for(String param : params)
+	    {
+	      Integer i = BINDING_ORDER.get(param);
+	      if(i != null)
+	      {
+	        order[n++] = i;
+	        deprecated |= BINDINGS[i].binder == null;
+	      }
+	    }
+	    if(deprecated)
+	    {
+	      // deprecated plugin arguments are merged into the plugin parameter
+	      order[n++] = BINDING_ORDER.get(YADARequest.PS_PLUGIN);
+	    }
+	    Arrays.sort(order, 0, n);
+	    for(int k = 0; k < n; k++)
+	    {
+	      if(k > 0 && order[k] == order[k-1])
+	        continue;
+	      Binding  binding = BINDINGS[order[k]];
+	      String[] value   = paraMap.get(binding.alias);
+	      if(value == null)
+	        continue;
+	      if(binding.binder == null)
+	        setDeprecatedPlugin(paraMap, binding.alias);
+	      else
+	        binding.binder.bind(getYADARequest(), value);
+	    }
   		getYADARequest().setParameterMap(paraMap);
   		
   		l.debug("current settings:\n"+getYADARequest().toString());
@@ -593,6 +332,161 @@ public class Service {
 	    throw new YADARequestException(String.format("Unknown parameter"));
 	  }
 	}
+
+	/**
+	 * Builds the table of parameter bindings used by {@link #handleRequest(String, Map)}.  Order is
+	 * significant: where a parameter appears more than once, in long and short form, the later binding wins.
+	 * Deprecated plugin argument parameters have a {@code null} binder.
+	 * @return the table of parameter bindings
+	 * @since 10.2.0
+	 */
+	@SuppressWarnings("deprecation")
+	private static Binding[] buildBindings()
+	{
+	  return new Binding[] {
+	      new Binding(YADARequest.PL_ARGS, null),
+	      new Binding(YADARequest.PS_ARGS, null),
+	      new Binding(YADARequest.PL_COLHEAD, YADARequest::setColhead),
+	      new Binding(YADARequest.PL_COMMITQUERY, YADARequest::setCommitQuery),
+	      new Binding(YADARequest.PS_COMMITQUERY, YADARequest::setCommitQuery),
+	      new Binding(YADARequest.PS_COMPACT, YADARequest::setCompact),
+	      new Binding(YADARequest.PL_COMPACT, YADARequest::setCompact),
+	      new Binding(YADARequest.PL_CONVERTER, YADARequest::setConverter),
+	      new Binding(YADARequest.PS_CONVERTER, YADARequest::setConverter),
+	      new Binding(YADARequest.PL_COUNT, YADARequest::setCount),
+	      new Binding(YADARequest.PS_COUNT, YADARequest::setCount),
+	      new Binding(YADARequest.PL_COOKIES, YADARequest::setCookies),
+	      new Binding(YADARequest.PS_COOKIES, YADARequest::setCookies),
+	      new Binding(YADARequest.PL_COUNTONLY, YADARequest::setCountOnly),
+	      new Binding(YADARequest.PS_COUNTONLY, YADARequest::setCountOnly),
+	      new Binding(YADARequest.PL_DELIMITER, YADARequest::setDelimiter),
+	      new Binding(YADARequest.PS_DELIMITER, YADARequest::setDelimiter),
+	      new Binding(YADARequest.PL_EXPORT, YADARequest::setExport),
+	      new Binding(YADARequest.PS_EXPORT, YADARequest::setExport),
+	      new Binding(YADARequest.PL_EXPORTLIMIT, YADARequest::setExportLimit),
+	      new Binding(YADARequest.PS_EXPORTLIMIT, YADARequest::setExportLimit),
+	      new Binding(YADARequest.PL_FILTERS, YADARequest::setFilters),
+	      new Binding(YADARequest.PS_FILTERS, YADARequest::setFilters),
+	      new Binding(YADARequest.PL_FORMAT, unlessDefault(YADARequest.FORMAT_JSON, YADARequest::setFormat)),
+	      new Binding(YADARequest.PS_FORMAT, unlessDefault(YADARequest.FORMAT_JSON, YADARequest::setFormat)),
+	      new Binding(YADARequest.PL_HARMONYMAP, YADARequest::setHarmonyMap),
+	      new Binding(YADARequest.PS_HARMONYMAP, YADARequest::setHarmonyMap),
+	      new Binding(YADARequest.PL_HTTPHEADERS, YADARequest::setHTTPHeaders),
+	      new Binding(YADARequest.PS_HTTPHEADERS, YADARequest::setHTTPHeaders),
+	      new Binding(YADARequest.PL_JSONPARAMS, YADARequest::setJsonParams),
+	      new Binding(YADARequest.PS_JSONPARAMS, YADARequest::setJsonParams),
+	      new Binding(YADARequest.PL_JSONFILTERS, YADARequest::setJsonFilters),
+	      new Binding(YADARequest.PS_JSONFILTERS, YADARequest::setJsonFilters),
+	      new Binding(YADARequest.PL_JOIN, YADARequest::setJoin),
+	      new Binding(YADARequest.PS_JOIN, YADARequest::setJoin),
+	      new Binding(YADARequest.PL_LEFTJOIN, YADARequest::setLeftJoin),
+	      new Binding(YADARequest.PS_LEFTJOIN, YADARequest::setLeftJoin),
+	      new Binding(YADARequest.PL_LABELS, YADARequest::setLabels),
+	      new Binding(YADARequest.PL_MAIL, YADARequest::setMail),
+	      new Binding(YADARequest.PL_METHOD, unlessDefault(YADARequest.METHOD_GET, YADARequest::setMethod)),
+	      new Binding(YADARequest.PS_METHOD, unlessDefault(YADARequest.METHOD_GET, YADARequest::setMethod)),
+	      new Binding(YADARequest.PL_OAUTH, YADARequest::setOAuth),
+	      new Binding(YADARequest.PS_OAUTH, YADARequest::setOAuth),
+	      new Binding(YADARequest.PL_OAUTH2, YADARequest::setOAuth2),
+	      new Binding(YADARequest.PS_OAUTH2, YADARequest::setOAuth2),
+	      new Binding(YADARequest.PL_BYPASSARGS, null),
+	      new Binding(YADARequest.PS_BYPASSARGS, null),
+	      new Binding(YADARequest.PL_PAGE, YADARequest::setPage),
+	      new Binding(YADARequest.PS_PAGE, YADARequest::setPage),
+	      new Binding(YADARequest.PL_PAGESIZE, YADARequest::setPageSize),
+	      new Binding(YADARequest.PS_PAGESIZE, YADARequest::setPageSize),
+	      new Binding(YADARequest.PL_PAGESTART, YADARequest::setPageStart),
+	      new Binding(YADARequest.PS_PAGESTART, YADARequest::setPageStart),
+	      new Binding(YADARequest.PL_PARAMS, YADARequest::setParams),
+	      new Binding(YADARequest.PS_PARAMS, YADARequest::setParams),
+	      new Binding(YADARequest.PL_PATH, YADARequest::setSortKey),
+	      new Binding(YADARequest.PL_PARALLEL, YADARequest::setParallel),
+	      new Binding(YADARequest.PL_PLUGINTYPE, unlessDefault(YADARequest.PREPROCESS, YADARequest::setPluginType)),
+	      new Binding(YADARequest.PS_PLUGINTYPE, unlessDefault(YADARequest.PREPROCESS, YADARequest::setPluginType)),
+	      new Binding(YADARequest.PL_POSTARGS, null),
+	      new Binding(YADARequest.PS_POSTARGS, null),
+	      new Binding(YADARequest.PL_PREARGS, null),
+	      new Binding(YADARequest.PS_PREARGS, null),
+	      // plugins must come after pre, post, and bypass arg handling
+	      new Binding(YADARequest.PL_PLUGIN, YADARequest::setPlugin),
+	      new Binding(YADARequest.PS_PLUGIN, YADARequest::setPlugin),
+	      new Binding(YADARequest.PL_PRETTY, YADARequest::setPretty),
+	      new Binding(YADARequest.PS_PRETTY, YADARequest::setPretty),
+	      new Binding(YADARequest.PL_PROXY, YADARequest::setProxy),
+	      new Binding(YADARequest.PS_PROXY, YADARequest::setProxy),
+	      new Binding(YADARequest.PL_QNAME, unlessDefault(YADARequest.DEFAULT_QNAME, YADARequest::setQname)),
+	      new Binding(YADARequest.PS_QNAME, unlessDefault(YADARequest.DEFAULT_QNAME, YADARequest::setQname)),
+	      new Binding(YADARequest.PL_ROW_DELIMITER, YADARequest::setRowDelimiter),
+	      new Binding(YADARequest.PS_ROW_DELIMITER, YADARequest::setRowDelimiter),
+	      new Binding(YADARequest.PL_RESPONSE, YADARequest::setResponse),
+	      new Binding(YADARequest.PS_RESPONSE, YADARequest::setResponse),
+	      new Binding(YADARequest.PL_SORTKEY, YADARequest::setSortKey),
+	      new Binding(YADARequest.PS_SORTKEY, YADARequest::setSortKey),
+	      new Binding(YADARequest.PL_SORTORDER, unlessDefault(YADARequest.SORT_ASC, YADARequest::setSortOrder)),
+	      new Binding(YADARequest.PS_SORTORDER, unlessDefault(YADARequest.SORT_ASC, YADARequest::setSortOrder)),
+	      new Binding(YADARequest.PL_USER, unlessDefault(YADARequest.DEFAULT_USER, YADARequest::setUser)),
+	      new Binding(YADARequest.PS_USER, unlessDefault(YADARequest.DEFAULT_USER, YADARequest::setUser)),
+	      new Binding(YADARequest.PL_VIEWLIMIT, YADARequest::setViewLimit),
+	      new Binding(YADARequest.PS_VIEWLIMIT, YADARequest::setViewLimit),
+	      new Binding(YADARequest.PL_UPDATE_STATS, YADARequest::setUpdateStats),
+	      new Binding(YADARequest.PS_UPDATE_STATS, YADARequest::setUpdateStats)
+	  };
+	}
+
+	/**
+	 * @param dflt the default value of the parameter
+	 * @param binder the binder to call when the value isn't {@code dflt}
+	 * @return a binder which ignores the default value, leaving the field unset
+	 * @since 10.2.0
+	 */
+	private static Binder unlessDefault(String dflt, Binder binder)
+	{
+	  return (yadaReq, value) -> {
+	    if(!value[0].equals(dflt))
+	      binder.bind(yadaReq, value);
+	  };
+	}
+	
+	/**
+	 * Sets a parameter value in a {@link YADARequest}
+	 * @since 10.2.0
+	 */
+	@FunctionalInterface
+	private interface Binder
+	{
+	  /**
+	   * @param yadaReq the request configuration
+	   * @param value the parameter value
+	   * @throws YADARequestException when the value is malformed
+	   */
+	  void bind(YADARequest yadaReq, String[] value) throws YADARequestException;
+	}
+	
+	/**
+	 * A parameter name and its {@link Binder}
+	 * @since 10.2.0
+	 */
+	private static class Binding
+	{
+	  /**
+	   * The parameter name
+	   */
+	  final String alias;
+	  /**
+	   * The binder, or {@code null} for deprecated plugin arguments
+	   */
+	  final Binder binder;
+	  
+	  /**
+	   * @param alias the parameter name
+	   * @param binder the binder
+	   */
+	  Binding(String alias, Binder binder)
+	  {
+	    this.alias  = alias;
+	    this.binder = binder;
+	  }
+	}
 	
 	/** 
 	 * Executes the appropriate method (select, update, or upload) per the "method" request parameter.
@@ -625,16 +519,264 @@ public class Service {
 			{
 				getYADARequest().setResponse(new String[] {"com.novartis.opensource.yada.format.CountResponse"});
 			}
-			this.qMgr = new QueryManager(getYADARequest());
-			//TODO Sequential execution: for drivers like vertica's which won't execute a second request if the resultset of the first is still open
-			result = _execute();
+			RequestLimiter.Permit permit = RequestLimiter.getRequestLimiter().acquire(getQnames());
+			try
+			{
+				this.qMgr = new QueryManager(getYADARequest());
+				//TODO Sequential execution: for drivers like vertica's which won't execute a second request if the resultset of the first is still open
+				result = _execute(null, 0L, null);
+			}
+			finally
+			{
+				permit.close();
+			}
 		}
 		return result;
 	}
+	
+	/**
+	 * Executes the request and writes the result directly to {@code writer}.  When {@link #isStreamable()} is
+	 * {@code true}, rows are written by a {@link StreamingResponse} as the underlying results are iterated, 
+	 * otherwise the result of {@link #execute()} is written in one piece.
+	 * 
+	 * @param writer the destination of the result, typically the servlet response writer
+	 * @param timestamp the time, in milliseconds, at which the request was received, for computing {@code elapsed}
+	 * @throws YADAException {@link YADAException} is the superclass of all YADA exceptions, effectively 
+	 * any of which can be throw in this context
+	 * @since 10.2.0
+	 */
+	public void execute(Writer writer, long timestamp) throws YADAException
+	{
+	  if(!isStreamable())
+	  {
+	    writeResult(writer, execute());
+	  }
+	  else
+	  {
+	    RequestLimiter.Permit permit = RequestLimiter.getRequestLimiter().acquire(getQnames());
+	    try
+	    {
+	      this.qMgr = new QueryManager(getYADARequest());
+	      _execute(writer, timestamp, null);
+	    }
+	    finally
+	    {
+	      permit.close();
+	    }
+	  }
+	}
+	
+	/**
+	 * Executes the request and writes each query's result to {@code writer} as a separate line of 
+	 * newline-delimited json as soon as the query completes.  The request must be {@link #isStreamable()}.
+	 * If any query is not a {@link Parser#SELECT}, i.e., the request is not {@link #isReadOnly()}, the results
+	 * are written only after the request's transactions are committed, so a client never receives the result
+	 * of an update which is then rolled back.
+	 * 
+	 * @param writer the destination of the response
+	 * @throws YADARequestException when the request isn't streamable, or contains a join, 
+	 * which requires all results at once 
+	 * @throws YADAException when execution fails
+	 * @see NDJSONResponse
+	 * @since 10.2.0
+	 */
+	public void executeNDJSON(Writer writer) throws YADAException
+	{
+	  if(!isStreamable())
+	  {
+	    String msg = "The request can't be returned as newline-delimited json.";
+	    throw new YADARequestException(msg);
+	  }
+	  RequestLimiter.Permit permit = RequestLimiter.getRequestLimiter().acquire(getQnames());
+	  try
+	  {
+	    this.qMgr = new QueryManager(getYADARequest());
+	    if(hasJoin())
+	    {
+	      this.qMgr.releaseResources();
+	      String msg = "Joined results can't be returned as newline-delimited json.";
+	      throw new YADARequestException(msg);
+	    }
+	    NDJSONResponse frames = new NDJSONResponse();
+	    frames.setTimings(getYADARequest().getTimings());
+	    _execute(writer, 0L, frames);
+	  }
+	  finally
+	  {
+	    permit.close();
+	  }
+	}
+	
+	/**
+	 * @return {@code true} if any query in {@link #qMgr} is to be joined
+	 * @since 10.2.0
+	 */
+	private boolean hasJoin()
+	{
+	  for(YADAQuery yq : this.qMgr.getQueries())
+	  {
+	    for(String key : new String[] { YADARequest.PS_JOIN, YADARequest.PS_LEFTJOIN })
+	    {
+	      String[] join = yq.getYADAQueryParamValue(key);
+	      if(join != null && join.length > 0 && join[0] != null && !"".equals(join[0]))
+	      {
+	        return true;
+	      }
+	    }
+	  }
+	  return false;
+	}
+	
+	/**
+	 * @return the names of the queries in the request, for {@link RequestLimiter}
+	 * @since 10.2.0
+	 */
+	private String[] getQnames()
+	{
+	  JSONParams jp = getYADARequest().getJsonParams();
+	  if(jp != null && jp.size() > 0)
+	  {
+	    return jp.getKeys();
+	  }
+	  return new String[] { getYADARequest().getQname() };
+	}
+	
+	/**
+	 * Returns {@code true} if the result of the request can be written incrementally, i.e., the request
+	 * is for the default json format, and no result-level transformation, such as a global postprocessor, 
+	 * custom {@link Response}, export, or legacy {@code upload} or {@code update} method, requires the entire
+	 * result as a {@link String}, and the request is {@link #isShareable()}, as the authorization check on the
+	 * buffered result, and any plugin or security spec of the stored queries, can't be applied to rows already sent.
+	 * 
+	 * @return {@code true} if the request can be executed with {@link #execute(Writer, long)} without buffering
+	 * @since 10.2.0
+	 */
+	public boolean isStreamable()
+	{
+	  YADARequest yReq     = getYADARequest();
+	  String      method   = yReq.getMethod();
+	  String      response = yReq.getResponse();
+	  String[]    plugins  = yReq.getPlugin();
+	  return YADARequest.FORMAT_JSON.equals(yReq.getFormat())
+	      && !yReq.getExport()
+	      && (method == null || YADARequest.METHOD_GET.equals(method) || YADARequest.METHOD_POST.equals(method))
+	      && (response == null || "".equals(response))
+	      && (plugins == null || plugins.length == 0 || (plugins.length == 1 && (plugins[0] == null || "".equals(plugins[0]))))
+	      && isShareable();
+	}
+	
+	/**
+	 * Returns {@code true} if the result of the request depends only on its parameters and the credentials
+	 * with which it was made, i.e., neither the request nor any of its stored queries engages a plugin, 
+	 * security spec, or {@code protected} property, any of which might read other headers, or state outside 
+	 * the request.  Only such requests may be answered with a cached {@code ETag} or the result of another request.
+	 * 
+	 * @return {@code true} if no plugin or security configuration applies to the request
+	 * @since 10.2.0
+	 */
+	public boolean isShareable()
+	{
+	  String[] plugins = getYADARequest().getPlugin();
+	  if(plugins != null && plugins.length > 0 && !(plugins.length == 1 && (plugins[0] == null || "".equals(plugins[0]))))
+	  {
+	    return false;
+	  }
+	  YADAQuery[] queries = getRequestedQueries();
+	  if(queries == null)
+	  {
+	    return false;
+	  }
+	  for(YADAQuery yq : queries)
+	  {
+	    if(yq.isProtected())
+	    {
+	      return false;
+	    }
+	    for(YADAParam param : yq.getYADAQueryParams())
+	    {
+	      if(param.getSecuritySpec() != null
+	          || YADARequest.PS_PLUGIN.equals(param.getName())
+	          || YADARequest.PL_PLUGIN.equals(param.getName()))
+	      {
+	        return false;
+	      }
+	    }
+	  }
+	  return true;
+	}
+	
+	/**
+	 * Returns the stored definitions of the requested queries, for inspection before execution, e.g., by 
+	 * {@link #isShareable()} and the {@code ETag} of the request.  They are resolved on the first call, 
+	 * without counting an access of the query in the index cache or {@link QueryStats}, as execution looks 
+	 * them up again.  The definitions must not be modified.
+	 * 
+	 * @return the definitions, in request order, or {@code null} if any query can't be found
+	 * @since 10.2.0
+	 */
+	public YADAQuery[] getRequestedQueries()
+	{
+	  if(this.requestedQueries == null)
+	  {
+	    String[]    qnames  = getQnames();
+	    YADAQuery[] queries = new YADAQuery[qnames.length];
+	    Finder      finder  = new Finder();
+	    for(int i = 0; i < qnames.length; i++)
+	    {
+	      try
+	      {
+	        queries[i] = Finder.hasYADALib() ? finder.getQueryFromLib(qnames[i]) : Finder.getCachedQuery(qnames[i]);
+	        if(queries[i] == null)
+	        {
+	          // loaded into the cache, where execution will find it
+	          queries[i] = finder.getQuery(qnames[i], false);
+	        }
+	      }
+	      catch(YADAException e)
+	      {
+	        // execution will report the error
+	        l.debug("Unable to resolve query [" + qnames[i] + "]", e);
+	        return null;
+	      }
+	      if(queries[i] == null)
+	      {
+	        return null;
+	      }
+	    }
+	    this.requestedQueries = queries;
+	  }
+	  return this.requestedQueries;
+	}
+	
+	/**
+	 * Returns {@code true} if the request has been executed and every query in it was a {@link Parser#SELECT}, 
+	 * i.e., the request did not modify any data.
+	 * 
+	 * @return {@code true} if all executed queries were {@link Parser#SELECT}s
+	 * @since 10.2.0
+	 */
+	public boolean isReadOnly()
+	{
+	  if(this.qMgr == null || this.qMgr.getQueries() == null || this.qMgr.getQueries().length == 0)
+	  {
+	    return false;
+	  }
+	  for(YADAQuery yq : this.qMgr.getQueries())
+	  {
+	    if(!Parser.SELECT.equals(yq.getType()))
+	    {
+	      return false;
+	    }
+	  }
+	  return true;
+	}
 
 	/**
 	 * Internal request processor for "get" or "update" requests (i.e., non-uploads.) 
-	 * @return the result to return to the requesting client
+	 * @param writer when not {@code null}, the destination to which the response is streamed 
+	 * @param timestamp the time, in milliseconds, at which the request was received, used only when streaming
+	 * @param frames when not {@code null}, the response with which each query result is written to {@code writer} as it completes
+	 * @return the result to return to the requesting client, or {@code null} if it was written to {@code writer}
 	 * @throws YADAPluginException when a plugin fails to execute successfully
 	 * @throws YADAAdaptorException when adaptor instantion or query building fails
 	 * @throws YADAAdaptorExecutionException when query execution fails
@@ -646,7 +788,7 @@ public class Service {
 	 * @throws YADAResourceException when exported results can't be written to the file system
 	 * @throws YADAQueryConfigurationException  if the {@link Converter} can't be instantiated
 	 */
-	private String _execute() throws YADAPluginException,  
+	private String _execute(Writer writer, long timestamp, NDJSONResponse frames) throws YADAPluginException,  
 																	YADAAdaptorException,  
 																	YADAAdaptorExecutionException,
 																	YADAConnectionException, 
@@ -664,14 +806,23 @@ public class Service {
 			gResult = engageBypass(this.getYADARequest());
 			if (gResult != null)
 			{
+				if (writer != null)
+				{
+					writeResult(writer, gResult);
+					return null;
+				}
 				return gResult;
 			}
 			// engage global preprocessor
 			engagePreprocess(getYADARequest());
 			
 			// iterate over the queries in the request
-			for(YADAQuery yq : this.qMgr.getQueries())
+			YADAQuery[] queries = this.qMgr.getQueries();
+			// results of updates are only sent once the transaction is committed
+			boolean     stream  = frames != null && isReadOnly();
+			for(int i = 0; i < queries.length; i++)
 			{
+			  YADAQuery yq = queries[i];
 			  // store ref to query
 			  setCurrentQuery(yq);
 				// engage query bypass
@@ -679,6 +830,10 @@ public class Service {
 				YADAQueryResult yqr = yq.getResult(); 
 				if (yqr != null)
 				{
+					if (stream)
+					{
+						frames.writeFrame(yqr, i, writer);
+					}
 					continue;
 				}
 				// engage query preprocessor
@@ -690,6 +845,7 @@ public class Service {
 				    || (Finder.hasYADALib() && yq.getApp() != "YADA") // all 9.0.0+ with oldschool queries with APP values
 				    || (Finder.hasYADALib() && !yq.getQname().startsWith("YADA/"))) // all 9.0.0+ cases with matching qnames
 				{
+				  long start = System.nanoTime();
 				  yq.getAdaptor().execute(yq);
   				
   				if(this.qutils.isCommitQuery(yq))
@@ -697,16 +853,55 @@ public class Service {
   					// close query transaction
   					this.qMgr.commit(yq);
   				}
+  				getYADARequest().getTimings().add(RequestTimings.EXECUTE, start);
 				}
 				// engage query postprocessor
 				engagePostprocess(yq);
+				if (yq.getResult() != null)
+				{
+					getYADARequest().getTimings().addRows(yq.getResult().getTotalResultCount());
+				}
+				// send the result as soon as it's available
+				if (stream)
+				{
+					long start = System.nanoTime();
+					long convert = getYADARequest().getTimings().get(RequestTimings.CONVERT);
+					frames.writeFrame(yq.getResult(), i, writer);
+					addComposeTime(start, convert);
+				}
 			}
 			// close all request transaction
+			long start = System.nanoTime();
 			this.qMgr.commit();
+			getYADARequest().getTimings().add(RequestTimings.EXECUTE, start);
 			// get handle to results
 			setYADAQueryResults(this.qMgr.getQueries().length);
+			// stream response, if possible, while result sets are still open
+			if (frames != null)
+			{
+				if (!stream)
+				{
+					start = System.nanoTime();
+					long convert = getYADARequest().getTimings().get(RequestTimings.CONVERT);
+					for(int i = 0; i < queries.length; i++)
+					{
+						frames.writeFrame(queries[i].getResult(), i, writer);
+					}
+					addComposeTime(start, convert);
+				}
+				return null;
+			}
+			start = System.nanoTime();
+			long convert = getYADARequest().getTimings().get(RequestTimings.CONVERT);
+			if (writer != null)
+			{
+				composeResponse(writer, timestamp);
+				addComposeTime(start, convert);
+				return null;
+			}
 			// build response
 			gResult = composeResponse();
+			addComposeTime(start, convert);
 			// engage global postprocessor
 			gResult = engagePostprocess(gResult);
 			// process for export, if desired
@@ -730,6 +925,26 @@ public class Service {
 		return gResult;
 	}
 	
+	/**
+	 * Writes {@code result} to {@code writer}
+	 * @param writer the destination of the result
+	 * @param result the result to write
+	 * @throws YADAIOException when {@code writer} can't be written
+	 * @since 10.2.0
+	 */
+	private void writeResult(Writer writer, String result) throws YADAIOException
+	{
+		try
+		{
+			writer.write(result);
+		}
+		catch (IOException e)
+		{
+			String msg = "There was a problem writing the result.";
+			throw new YADAIOException(msg,e);
+		}
+	}
+	
 	/**
 	 * @param result the composed and possibly post-processed result string
 	 * @return either the original {@code result} {@link String} when {@link YADARequest#getExport()} is {@code false} or the URL of the exported file when {@code true}
@@ -921,12 +1136,45 @@ public class Service {
 		{
 			response = getDefaultResponse(format);
 		}
+		if (response instanceof AbstractResponse)
+		{
+			((AbstractResponse)response).setTimings(getYADARequest().getTimings());
+		}
 		//TODO enable verbose response options which include details about processing of query
 		result = response.compose(getYADAQueryResults()).toString(getYADARequest().getPretty());
 		
 		return result;
 	}
 	
+	/**
+	 * Adds the time elapsed since {@code start}, less the conversion time recorded since then, to 
+	 * {@link RequestTimings#COMPOSE}.
+	 * @param start the value of {@link System#nanoTime()} before composition
+	 * @param convert the value of {@link RequestTimings#CONVERT} before composition
+	 * @since 10.2.0
+	 */
+	private void addComposeTime(long start, long convert)
+	{
+		RequestTimings timings = getYADARequest().getTimings();
+		timings.add(RequestTimings.COMPOSE, start + (timings.get(RequestTimings.CONVERT) - convert));
+	}
+	
+	/**
+	 * Writes the response directly to {@code writer} with a {@link JSONStreamingResponse}.
+	 * @since 10.2.0
+	 * @param writer the destination of the response
+	 * @param timestamp the time, in milliseconds, at which the request was received
+	 * @throws YADAConverterException when the {@link com.novartis.opensource.yada.format.Converter} implementation encounters an error or can't be instantiated by the {@link Response}
+	 * @throws YADAResponseException when the {@link Response} implementation fails to execute successfully, or {@code writer} can't be written
+	 * @throws YADAQueryConfigurationException if the {@link Converter} can't be instantiated
+	 */
+	private void composeResponse(Writer writer, long timestamp) throws YADAResponseException, YADAConverterException, YADAQueryConfigurationException
+	{
+		JSONStreamingResponse response = new JSONStreamingResponse();
+		response.setTimings(getYADARequest().getTimings());
+		response.compose(getYADAQueryResults(), writer, getYADARequest().getPretty(), timestamp);
+	}
+	
 	/**
 	 * Builds an array of result objects obtained from queries indexed by {@link #qMgr}
 	 * @param size the length of the result array
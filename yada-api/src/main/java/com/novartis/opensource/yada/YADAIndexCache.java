@@ -0,0 +1,642 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.novartis.opensource.yada.server.YADAServer;
+
+/**
+ * <p>
+ * The bounded in-memory store of previously loaded {@link YADAQuery} objects, i.e., the {@code YADAIndex} cache.
+ * The cache is limited to {@link #YADA_CACHE_SIZE} queries and, optionally, to a total weight of
+ * {@link #YADA_CACHE_WEIGHT} characters of query code, and entries expire {@link #YADA_CACHE_TTL} milliseconds
+ * after they are stored.
+ * </p>
+ * <p>
+ * Eviction follows the W-TinyLFU policy: new entries enter a small LRU window, and when an entry leaves the
+ * window, it is admitted to the main LRU segment only if it has been requested more often than the segment's
+ * least recently used entry, which is otherwise retained.  Request frequencies, including those of missing
+ * keys, are estimated with a count-min sketch of 4-bit counters, which are halved periodically so that
+ * the estimates favor recent requests.  Consequently one-off and misspelled names don't displace
+ * frequently used queries.
+ * </p>
+ * <p>
+ * Lookups are lock-free.  Recency and frequency updates on a hit are skipped if another thread holds the lock,
+ * so the policy is approximate under contention.  Iteration is over a snapshot.
+ * </p>
+ * @author David Varon
+ * @since 10.2.0
+ */
+public class YADAIndexCache extends AbstractMap<String, YADAQuery> {
+
+  /**
+   * Local logger handle
+   */
+  private static Logger l = LoggerFactory.getLogger(YADAIndexCache.class);
+
+  /**
+   * Constant equal to {@value}. The maximum number of cached queries
+   */
+  public final static String YADA_CACHE_SIZE = "YADA.cache.size";
+
+  /**
+   * Constant equal to {@value}. The maximum total length of cached query code, or {@code 0} for no limit
+   */
+  public final static String YADA_CACHE_WEIGHT = "YADA.cache.weight";
+
+  /**
+   * Constant equal to {@value}. The number of milliseconds after which a cached query expires, or {@code 0} for never
+   */
+  public final static String YADA_CACHE_TTL = "YADA.cache.ttl";
+
+  /**
+   * Constant equal to {@value}
+   */
+  private final static long DEFAULT_SIZE = 10000;
+
+  /**
+   * Constant equal to {@value}. The percentage of {@link #maximumSize} allotted to the admission window
+   */
+  private final static int WINDOW_PERCENT = 1;
+
+  /**
+   * The maximum number of entries
+   */
+  private final long maximumSize;
+
+  /**
+   * The maximum total weight of entries, or {@code 0}
+   */
+  private final long maximumWeight;
+
+  /**
+   * The lifetime of entries in nanoseconds, or {@code 0}
+   */
+  private final long ttlNanos;
+
+  /**
+   * The maximum number of entries in {@link #window}
+   */
+  private final long windowSize;
+
+  /**
+   * The entries, for lock-free lookup
+   */
+  private final ConcurrentHashMap<String, Node> data = new ConcurrentHashMap<>();
+
+  /**
+   * Guards {@link #window}, {@link #main}, {@link #sketch}, and {@link #weight}
+   */
+  private final ReentrantLock lock = new ReentrantLock();
+
+  /**
+   * The admission window, in access order
+   */
+  private final LinkedHashMap<String, Node> window = new LinkedHashMap<>(16, 0.75f, true);
+
+  /**
+   * The main segment, in access order
+   */
+  private final LinkedHashMap<String, Node> main = new LinkedHashMap<>(16, 0.75f, true);
+
+  /**
+   * The request frequency estimates
+   */
+  private final FrequencySketch sketch;
+
+  /**
+   * The total weight of entries
+   */
+  private long weight;
+
+  /**
+   * The number of lookups that found a current entry
+   */
+  private final LongAdder hits = new LongAdder();
+
+  /**
+   * The number of lookups that found no entry, or an expired one
+   */
+  private final LongAdder misses = new LongAdder();
+
+  /**
+   * The number of entries evicted to satisfy the size and weight limits, including those refused admission
+   */
+  private final LongAdder evictions = new LongAdder();
+
+  /**
+   * The number of entries removed after expiring
+   */
+  private final LongAdder expirations = new LongAdder();
+
+  /**
+   * Creates a cache with limits set by {@link #YADA_CACHE_SIZE}, {@link #YADA_CACHE_WEIGHT}, and
+   * {@link #YADA_CACHE_TTL}
+   */
+  public YADAIndexCache()
+  {
+    this(getLong(YADA_CACHE_SIZE, DEFAULT_SIZE), getLong(YADA_CACHE_WEIGHT, 0), getLong(YADA_CACHE_TTL, 0));
+  }
+
+  /**
+   * Creates a cache with the given limits
+   * @param maximumSize the maximum number of entries
+   * @param maximumWeight the maximum total length of query code, or {@code 0} for no limit
+   * @param ttl the lifetime of entries in milliseconds, or {@code 0} for no limit
+   */
+  public YADAIndexCache(long maximumSize, long maximumWeight, long ttl)
+  {
+    this.maximumSize   = Math.max(1, maximumSize);
+    this.maximumWeight = Math.max(0, maximumWeight);
+    this.ttlNanos      = Math.max(0, ttl) * 1000000L;
+    this.windowSize    = Math.max(1, this.maximumSize * WINDOW_PERCENT / 100);
+    this.sketch        = new FrequencySketch(this.maximumSize);
+  }
+
+  /**
+   * Returns the current entry for {@code key}, recording the request, or {@code null} if it is missing or expired.
+   * @see java.util.AbstractMap#get(java.lang.Object)
+   */
+  @Override
+  public YADAQuery get(Object key)
+  {
+    Node node = this.data.get(key);
+    if (node == null || isExpired(node))
+    {
+      this.misses.increment();
+      if (node != null)
+      {
+        expire(node);
+      }
+      if (key != null && this.lock.tryLock())
+      {
+        try
+        {
+          this.sketch.increment(key.hashCode());
+        }
+        finally
+        {
+          this.lock.unlock();
+        }
+      }
+      return null;
+    }
+    this.hits.increment();
+    if (this.lock.tryLock())
+    {
+      try
+      {
+        this.sketch.increment(node.key.hashCode());
+        // reorders the entry in its segment
+        if (this.window.get(node.key) == null)
+          this.main.get(node.key);
+      }
+      finally
+      {
+        this.lock.unlock();
+      }
+    }
+    return node.value;
+  }
+
+  /**
+   * Returns the current entry for {@code key}, or {@code null} if it is missing or expired, without recording
+   * the request, i.e., for lookups other than those of the query for execution
+   * @param key the query name
+   * @return the cached query, or {@code null}
+   */
+  public YADAQuery peek(Object key)
+  {
+    Node node = this.data.get(key);
+    return node == null || isExpired(node) ? null : node.value;
+  }
+
+  /**
+   * Stores {@code value}, evicting entries as needed to satisfy the limits.  The new entry itself may be
+   * evicted if it leaves the admission window without having been requested often enough.
+   * @see java.util.AbstractMap#put(java.lang.Object, java.lang.Object)
+   */
+  @Override
+  public YADAQuery put(String key, YADAQuery value)
+  {
+    Node node = new Node(key, value, weigh(value), this.ttlNanos > 0 ? System.nanoTime() + this.ttlNanos : 0);
+    this.lock.lock();
+    try
+    {
+      this.sketch.increment(key.hashCode());
+      Node previous = this.data.put(key, node);
+      if (previous != null)
+      {
+        unlink(previous);
+      }
+      this.window.put(key, node);
+      this.weight += node.weight;
+      evict();
+      return previous == null ? null : previous.value;
+    }
+    finally
+    {
+      this.lock.unlock();
+    }
+  }
+
+  /**
+   * @see java.util.AbstractMap#remove(java.lang.Object)
+   */
+  @Override
+  public YADAQuery remove(Object key)
+  {
+    this.lock.lock();
+    try
+    {
+      Node node = this.data.remove(key);
+      if (node == null)
+        return null;
+      unlink(node);
+      return node.value;
+    }
+    finally
+    {
+      this.lock.unlock();
+    }
+  }
+
+  /**
+   * @see java.util.AbstractMap#containsKey(java.lang.Object)
+   */
+  @Override
+  public boolean containsKey(Object key)
+  {
+    Node node = this.data.get(key);
+    return node != null && !isExpired(node);
+  }
+
+  /**
+   * @see java.util.AbstractMap#size()
+   */
+  @Override
+  public int size()
+  {
+    return this.data.size();
+  }
+
+  /**
+   * @see java.util.AbstractMap#clear()
+   */
+  @Override
+  public void clear()
+  {
+    this.lock.lock();
+    try
+    {
+      this.data.clear();
+      this.window.clear();
+      this.main.clear();
+      this.weight = 0;
+    }
+    finally
+    {
+      this.lock.unlock();
+    }
+  }
+
+  /**
+   * Returns a snapshot of the current entries. Changes to the cache are not reflected in the set, nor vice versa.
+   * @see java.util.AbstractMap#entrySet()
+   */
+  @Override
+  public Set<Map.Entry<String, YADAQuery>> entrySet()
+  {
+    Set<Map.Entry<String, YADAQuery>> entries = new HashSet<>();
+    for (Node node : this.data.values())
+    {
+      if (!isExpired(node))
+        entries.add(new AbstractMap.SimpleImmutableEntry<>(node.key, node.value));
+    }
+    return Collections.unmodifiableSet(entries);
+  }
+
+  /**
+   * @return the limits, size, and hit, miss, eviction, and expiration counts of the cache
+   */
+  public JSONObject getStats()
+  {
+    long h = this.hits.sum(), m = this.misses.sum();
+    JSONObject stats = new JSONObject();
+    stats.put("size", size());
+    stats.put("weight", this.weight);
+    stats.put("maximumSize", this.maximumSize);
+    stats.put("maximumWeight", this.maximumWeight);
+    stats.put("ttl", this.ttlNanos / 1000000L);
+    stats.put("hits", h);
+    stats.put("misses", m);
+    stats.put("hitRate", h + m == 0 ? 0.0 : (double) h / (h + m));
+    stats.put("evictions", this.evictions.sum());
+    stats.put("expirations", this.expirations.sum());
+    return stats;
+  }
+
+  /**
+   * Resets the hit, miss, eviction, and expiration counts
+   */
+  public void resetStats()
+  {
+    this.hits.reset();
+    this.misses.reset();
+    this.evictions.reset();
+    this.expirations.reset();
+  }
+
+  /**
+   * Moves entries from the window to the main segment, subject to admission, and evicts least recently used
+   * entries until the cache is within its limits.  Must be called with {@link #lock} held.
+   */
+  private void evict()
+  {
+    while (this.window.size() > this.windowSize)
+    {
+      Node candidate = first(this.window);
+      Node victim    = isOverLimit() ? first(this.main) : null;
+      if (victim != null && this.sketch.frequency(candidate.key.hashCode()) <= this.sketch.frequency(victim.key.hashCode()))
+      {
+        evict(candidate);
+      }
+      else
+      {
+        this.window.remove(candidate.key);
+        this.main.put(candidate.key, candidate);
+        if (victim != null)
+          evict(victim);
+      }
+    }
+    while (isOverLimit())
+    {
+      Node victim = this.main.isEmpty() ? first(this.window) : first(this.main);
+      evict(victim);
+    }
+  }
+
+  /**
+   * Removes {@code node} and counts the eviction.  Must be called with {@link #lock} held.
+   * @param node the entry to evict
+   */
+  private void evict(Node node)
+  {
+    if (this.data.remove(node.key, node))
+    {
+      this.evictions.increment();
+      l.debug("Evicted [" + node.key + "] from cache");
+    }
+    unlink(node);
+  }
+
+  /**
+   * Removes the expired {@code node}, unless it has already been replaced.
+   * @param node the expired entry
+   */
+  private void expire(Node node)
+  {
+    this.lock.lock();
+    try
+    {
+      if (this.data.remove(node.key, node))
+      {
+        this.expirations.increment();
+        unlink(node);
+      }
+    }
+    finally
+    {
+      this.lock.unlock();
+    }
+  }
+
+  /**
+   * Removes {@code node} from its segment and deducts its weight.  Must be called with {@link #lock} held.
+   * @param node the entry to remove
+   */
+  private void unlink(Node node)
+  {
+    if (this.window.remove(node.key, node) || this.main.remove(node.key, node))
+    {
+      this.weight -= node.weight;
+    }
+  }
+
+  /**
+   * @return {@code true} if the cache exceeds its size or weight limit
+   */
+  private boolean isOverLimit()
+  {
+    return this.data.size() > this.maximumSize || (this.maximumWeight > 0 && this.weight > this.maximumWeight);
+  }
+
+  /**
+   * @param node an entry
+   * @return {@code true} if the entry has a lifetime which has elapsed
+   */
+  private static boolean isExpired(Node node)
+  {
+    return node.expires != 0 && System.nanoTime() - node.expires > 0;
+  }
+
+  /**
+   * @param segment a segment
+   * @return the least recently used entry in {@code segment}, or {@code null}
+   */
+  private static Node first(LinkedHashMap<String, Node> segment)
+  {
+    Iterator<Node> iter = segment.values().iterator();
+    return iter.hasNext() ? iter.next() : null;
+  }
+
+  /**
+   * @param yq a query
+   * @return the length of the query code, plus one
+   */
+  private static int weigh(YADAQuery yq)
+  {
+    return 1 + (yq == null || yq.getYADACode() == null ? 0 : yq.getYADACode().length());
+  }
+
+  /**
+   * @param property the property name
+   * @param dflt the default value
+   * @return the value of {@code property}, or {@code dflt} if it is missing or invalid
+   */
+  private static long getLong(String property, long dflt)
+  {
+    Properties props = YADAServer.getProperties();
+    String     value = props == null ? null : props.getProperty(property);
+    try
+    {
+      return value == null ? dflt : Long.parseLong(value.trim());
+    }
+    catch (NumberFormatException e)
+    {
+      l.warn(String.format("Invalid value [%s] for property [%s], using %d", value, property, dflt));
+      return dflt;
+    }
+  }
+
+  /**
+   * A cache entry
+   */
+  private static final class Node {
+
+    /**
+     * The key
+     */
+    final String key;
+
+    /**
+     * The cached query
+     */
+    final YADAQuery value;
+
+    /**
+     * The weight of {@link #value}
+     */
+    final int weight;
+
+    /**
+     * The {@link System#nanoTime()} at which the entry expires, or {@code 0}
+     */
+    final long expires;
+
+    /**
+     * @param key the key
+     * @param value the cached query
+     * @param weight the weight of {@code value}
+     * @param expires the expiration time, or {@code 0}
+     */
+    Node(String key, YADAQuery value, int weight, long expires)
+    {
+      this.key     = key;
+      this.value   = value;
+      this.weight  = weight;
+      this.expires = expires;
+    }
+  }
+
+  /**
+   * A count-min sketch of 4-bit counters, estimating the number of requests for each key.  Counters are
+   * halved after a sample of requests ten times the size of the cache, so estimates favor recent requests.
+   */
+  private static final class FrequencySketch {
+
+    /**
+     * Constant equal to {@value}
+     */
+    private static final int MAX_COUNT = 15;
+
+    /**
+     * Hash seeds for each row of the sketch
+     */
+    private static final int[] SEEDS = { 0x97cb3127, 0xb2a3c9e5, 0x5b6d7c49, 0xc2b2ae35 };
+
+    /**
+     * The counters, indexed by row and column
+     */
+    private final byte[][] table;
+
+    /**
+     * The mask for column indices
+     */
+    private final int mask;
+
+    /**
+     * The number of increments after which counters are halved
+     */
+    private final long sampleSize;
+
+    /**
+     * The number of increments since counters were last halved
+     */
+    private long samples;
+
+    /**
+     * @param maximumSize the maximum number of cache entries
+     */
+    FrequencySketch(long maximumSize)
+    {
+      int width = Integer.highestOneBit((int) Math.min(Math.max(16, maximumSize), 1 << 24) * 2 - 1);
+      this.table      = new byte[SEEDS.length][width];
+      this.mask       = width - 1;
+      this.sampleSize = 10 * maximumSize;
+    }
+
+    /**
+     * Records a request for the key with hash {@code hash}
+     * @param hash the hash code of the key
+     */
+    void increment(int hash)
+    {
+      for (int i = 0; i < SEEDS.length; i++)
+      {
+        int index = index(hash, i);
+        if (this.table[i][index] < MAX_COUNT)
+          this.table[i][index]++;
+      }
+      if (++this.samples >= this.sampleSize)
+      {
+        for (byte[] row : this.table)
+        {
+          for (int j = 0; j < row.length; j++)
+            row[j] >>= 1;
+        }
+        this.samples /= 2;
+      }
+    }
+
+    /**
+     * @param hash the hash code of the key
+     * @return the estimated number of requests for the key
+     */
+    int frequency(int hash)
+    {
+      int frequency = MAX_COUNT;
+      for (int i = 0; i < SEEDS.length; i++)
+        frequency = Math.min(frequency, this.table[i][index(hash, i)]);
+      return frequency;
+    }
+
+    /**
+     * @param hash the hash code of the key
+     * @param row the row of the sketch
+     * @return the column index of the key in {@code row}
+     */
+    private int index(int hash, int row)
+    {
+      int h = (hash ^ (hash >>> 16)) * SEEDS[row];
+      return (h ^ (h >>> 15)) & this.mask;
+    }
+  }
+}
@@ -0,0 +1,476 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.novartis.opensource.yada.server.YADAServer;
+
+/**
+ * <p>
+ * An in-memory cache of the queries loaded from {@link Finder#YADA_LIB}, mapped to the paths of their files.
+ * A {@link WatchService} on the library directory and its subdirectories removes the query of each file that
+ * is changed or deleted, and all the queries of an app when its {@code conf.json} is changed.  Cached queries
+ * are templates, which must be cloned before use.
+ * </p>
+ * <p>
+ * After a fetch, {@link #reload(Collection, Source)} recompiles only the cached queries affected by the files
+ * which changed between the old and new commits, reading them from the new commit, and replaces the cached
+ * queries with the result in one step, before the working tree is updated.  See {@link Finder#pullYADALib()}.
+ * Watch events for files whose content is that of the reloaded query are ignored.
+ * </p>
+ *
+ * @author David Varon
+ * @since 10.2.0
+ */
+public class YADALibCache {
+
+  /**
+   * Local logger handle
+   */
+  private static Logger l = LoggerFactory.getLogger(YADALibCache.class);
+
+  /**
+   * Constant equal to {@value}. Set to {@code false} to load queries from {@link Finder#YADA_LIB} on every request
+   */
+  public final static String YADA_LIB_CACHE = "YADA.lib.cache";
+
+  /**
+   * The singleton instance, or {@code null} if caching is disabled or the directory can't be watched
+   */
+  private static volatile YADALibCache instance;
+
+  /**
+   * Set once {@link #instance} has been initialized
+   */
+  private static volatile boolean initialized;
+
+  /**
+   * The cached queries, mapped to the absolute paths of their files. Replaced by {@link #reload(Collection, Source)}
+   */
+  private volatile Map<Path, YADAQuery> queries = new ConcurrentHashMap<>();
+
+  /**
+   * The content of the files read by the last {@link #reload(Collection, Source)}
+   */
+  private final Map<Path, byte[]> reloaded = new ConcurrentHashMap<>();
+
+  /**
+   * The number of invalidations, used to prevent caching queries read before an invalidation
+   */
+  private final AtomicLong version = new AtomicLong();
+
+  /**
+   * The watched directories, mapped to their watch keys
+   */
+  private final Map<WatchKey, Path> dirs = new ConcurrentHashMap<>();
+
+  /**
+   * The absolute path of the library directory
+   */
+  private final Path lib;
+
+  /**
+   * The watch service on {@link #lib}
+   */
+  private final WatchService watcher;
+
+  /**
+   * Registers {@code lib} and its subdirectories with a new watch service, and starts watching.
+   * @param lib the library directory
+   * @throws IOException when the directory can't be watched
+   */
+  public YADALibCache(Path lib) throws IOException
+  {
+    this.lib     = lib.toAbsolutePath().normalize();
+    this.watcher = FileSystems.getDefault().newWatchService();
+    register(this.lib);
+    Thread t = new Thread(this::watch, "yada-lib-watch");
+    t.setDaemon(true);
+    t.start();
+  }
+
+  /**
+   * Returns the cache for {@link Finder#YADA_LIB}, creating it on first use, unless
+   * {@link #YADA_LIB_CACHE} is {@code false}, or the directory can't be watched.
+   * @return the cache, or {@code null} if queries must be loaded from the library
+   */
+  public static YADALibCache getInstance()
+  {
+    if (!initialized)
+    {
+      synchronized (YADALibCache.class)
+      {
+        if (!initialized)
+        {
+          if (Finder.hasYADALib() && isEnabled())
+          {
+            try
+            {
+              instance = new YADALibCache(Finder.getYADALibDirectory().toPath());
+              l.info("Watching " + instance.lib + " for query changes");
+              YADALibSnapshot.load(instance);
+            }
+            catch (IOException e)
+            {
+              l.warn("Unable to watch YADA_LIB for changes. Queries will not be cached.", e);
+            }
+          }
+          initialized = true;
+        }
+      }
+    }
+    return instance;
+  }
+
+  /**
+   * Stops watching the library of the cache, if one was created, so the next {@link #getInstance()}
+   * creates it again.
+   */
+  public static void shutdown()
+  {
+    YADALibCache cache;
+    synchronized (YADALibCache.class)
+    {
+      cache       = instance;
+      instance    = null;
+      initialized = false;
+    }
+    if (cache != null)
+    {
+      cache.close();
+    }
+  }
+
+  /**
+   * Stops watching the library.  Cached queries are kept, but no longer invalidated.
+   */
+  public void close()
+  {
+    try
+    {
+      this.watcher.close();
+    }
+    catch (IOException e)
+    {
+      l.warn("Unable to stop watching " + this.lib, e);
+    }
+  }
+
+  /**
+   * @return {@code true} unless {@link #YADA_LIB_CACHE} is {@code false}
+   */
+  public static boolean isEnabled()
+  {
+    return Boolean.parseBoolean(YADAServer.getProperties().getProperty(YADA_LIB_CACHE, "true"));
+  }
+
+  /**
+   * @param path the path of a query file
+   * @return the cached query loaded from {@code path}, or {@code null}
+   */
+  public YADAQuery get(Path path)
+  {
+    return this.queries.get(path);
+  }
+
+  /**
+   * Returns a stamp to pass to {@link #put(Path, YADAQuery, long)}, which must be obtained before the file is read.
+   * @return the current version of the cache
+   */
+  public long getStamp()
+  {
+    return this.version.get();
+  }
+
+  /**
+   * Caches {@code yq}, unless the cache has been invalidated since {@code stamp} was obtained, in which case the
+   * file may have changed after it was read.
+   * @param path the path of the query file
+   * @param yq the query loaded from {@code path}
+   * @param stamp the value of {@link #getStamp()} before the file was read
+   */
+  public void put(Path path, YADAQuery yq, long stamp)
+  {
+    this.queries.put(path, yq);
+    if (this.version.get() != stamp)
+    {
+      this.queries.remove(path, yq);
+    }
+  }
+
+  /**
+   * Removes the query of the file at {@code path}, or, if {@code path} is a directory or an app's
+   * {@code conf.json}, all the queries in the directory.
+   * Nothing is removed if {@code path} is a file whose content is that from which it was reloaded, e.g.,
+   * when the working tree is updated after the reload.
+   * @param path an absolute path in the library
+   */
+  public synchronized void invalidate(Path path)
+  {
+    byte[] content = this.reloaded.get(path);
+    if (content != null)
+    {
+      if (Arrays.equals(content, readIfExists(path)))
+      {
+        return;
+      }
+      this.reloaded.remove(path);
+    }
+    this.version.incrementAndGet();
+    Path dir = path.getFileName() != null && Finder.CONF_FILE.equals(path.getFileName().toString()) ? path.getParent() : path;
+    if (this.queries.remove(dir) == null)
+    {
+      this.queries.keySet().removeIf(p -> p.startsWith(dir));
+    }
+    l.debug("Invalidated cached queries for " + path);
+  }
+
+  /**
+   * Removes all queries.
+   */
+  public synchronized void clear()
+  {
+    this.version.incrementAndGet();
+    this.reloaded.clear();
+    this.queries.clear();
+  }
+
+  /**
+   * Recompiles the cached queries whose files are in {@code changed}, and all the cached queries of the apps
+   * whose {@code conf.json} is in {@code changed}, from the content read from {@code source}, and replaces the 
+   * cache with a copy containing the results.  Queries which can no longer be loaded are removed.  Other queries are kept.
+   * @param changed the absolute paths of the files which were added, changed or deleted
+   * @param source the content of the library to load, typically a commit not yet checked out
+   * @return the number of queries recompiled or removed
+   */
+  public synchronized int reload(Collection<Path> changed, Source source)
+  {
+    this.version.incrementAndGet();
+    this.reloaded.clear();
+    Set<Path> confDirs = new HashSet<>();
+    for (Path path : changed)
+    {
+      if (path.getFileName() != null && Finder.CONF_FILE.equals(path.getFileName().toString()))
+      {
+        confDirs.add(path.getParent());
+        byte[] content = read(source, path);
+        if (content != null)
+        {
+          this.reloaded.put(path, content);
+        }
+      }
+    }
+    Map<Path, YADAQuery> next  = new ConcurrentHashMap<>(this.queries);
+    int                  count = 0;
+    for (Map.Entry<Path, YADAQuery> entry : this.queries.entrySet())
+    {
+      Path path = entry.getKey();
+      if (changed.contains(path) || confDirs.stream().anyMatch(path::startsWith))
+      {
+        count++;
+        YADAQuery yq = entry.getValue();
+        try
+        {
+          byte[] content = source.read(path);
+          next.put(path, new YADAQuery(yq.getApp(), yq.getQname(), new String(content, StandardCharsets.UTF_8)));
+          this.reloaded.put(path, content);
+        }
+        catch (IOException | YADAQueryConfigurationException e)
+        {
+          l.debug("Removed [" + yq.getQname() + "] from the cache: " + e.getMessage());
+          next.remove(path);
+        }
+      }
+    }
+    this.queries = next;
+    l.info(String.format("Reloaded %d of %d cached queries for %d changed files", count, next.size(), changed.size()));
+    return count;
+  }
+
+  /**
+   * @return a copy of the cached queries, mapped to the absolute paths of their files
+   */
+  public Map<Path, YADAQuery> getQueries()
+  {
+    return new HashMap<>(this.queries);
+  }
+
+  /**
+   * @return the absolute path of the library directory
+   */
+  public Path getLib()
+  {
+    return this.lib;
+  }
+
+  /**
+   * @return the number of cached queries
+   */
+  public int size()
+  {
+    return this.queries.size();
+  }
+
+  /**
+   * @param source the content of the library
+   * @param path a path
+   * @return the content of the file at {@code path} in {@code source}, or {@code null} if it doesn't exist
+   */
+  private static byte[] read(Source source, Path path)
+  {
+    try
+    {
+      return source.read(path);
+    }
+    catch (IOException e)
+    {
+      return null;
+    }
+  }
+
+  /**
+   * @param path a path
+   * @return the content of the file at {@code path}, or {@code null} if it doesn't exist
+   */
+  private static byte[] readIfExists(Path path)
+  {
+    return read(Files::readAllBytes, path);
+  }
+
+  /**
+   * Registers {@code start} and its subdirectories, except {@link Finder#GIT_DIR}, with {@link #watcher}
+   * @param start the directory to register
+   * @throws IOException when a directory can't be registered
+   */
+  private void register(Path start) throws IOException
+  {
+    Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException
+      {
+        if (dir.getFileName() != null && Finder.GIT_DIR.equals(dir.getFileName().toString()))
+        {
+          return FileVisitResult.SKIP_SUBTREE;
+        }
+        dirs.put(dir.register(watcher, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), dir);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  /**
+   * Processes watch events until the watch service is closed, invalidating the affected queries, and
+   * registering new directories.
+   */
+  private void watch()
+  {
+    while (true)
+    {
+      WatchKey key;
+      try
+      {
+        key = this.watcher.take();
+      }
+      catch (InterruptedException | ClosedWatchServiceException e)
+      {
+        return;
+      }
+      Path dir = this.dirs.get(key);
+      for (WatchEvent<?> event : key.pollEvents())
+      {
+        process(dir, event);
+      }
+      if (!key.reset())
+      {
+        this.dirs.remove(key);
+        if (dir != null)
+        {
+          invalidate(dir);
+        }
+      }
+    }
+  }
+
+  /**
+   * Invalidates the queries affected by {@code event}, and registers a new directory.  All queries are removed
+   * when events were lost, i.e., on {@link java.nio.file.StandardWatchEventKinds#OVERFLOW}, or when the
+   * directory of the event is unknown.
+   * @param dir the watched directory in which the event occurred, or {@code null} if it is unknown
+   * @param event the watch event
+   */
+  protected void process(Path dir, WatchEvent<?> event)
+  {
+    if (event.kind() == OVERFLOW || dir == null)
+    {
+      clear();
+      return;
+    }
+    Path path = dir.resolve((Path) event.context());
+    invalidate(path);
+    if (event.kind() == ENTRY_CREATE && Files.isDirectory(path))
+    {
+      try
+      {
+        register(path);
+      }
+      catch (IOException e)
+      {
+        l.warn("Unable to watch " + path + " for query changes", e);
+      }
+    }
+  }
+
+  /**
+   * The content of the files of a library, e.g., its working tree, or a commit
+   */
+  @FunctionalInterface
+  public interface Source {
+
+    /**
+     * @param path the absolute path of a file in the library
+     * @return the content of the file
+     * @throws IOException when the file doesn't exist or can't be read
+     */
+    byte[] read(Path path) throws IOException;
+  }
+}
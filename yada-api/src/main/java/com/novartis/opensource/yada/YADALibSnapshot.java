@@ -0,0 +1,370 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.RepositoryBuilder;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.novartis.opensource.yada.security.YADASecuritySpec;
+import com.novartis.opensource.yada.server.YADAServer;
+
+/**
+ * <p>
+ * An on-disk snapshot of the queries in the {@link YADALibCache}, so that a restart doesn't have to read and
+ * parse the json of every query again.  The snapshot is written to the file set in {@link #YADA_LIB_SNAPSHOT}
+ * after the warmup loads the library, and on shutdown.  It is keyed by the {@code HEAD} commit of
+ * {@link Finder#YADA_LIB}, and is loaded into the cache on startup only if the library is still at that commit
+ * and has no uncommitted changes.
+ * </p>
+ * <p>
+ * The snapshot holds the query definitions: code, default params and properties.  Parsed statements can't be
+ * serialized, so SQL is still parsed once per query, by {@link CompiledQuery}, when it is first used or during
+ * the warmup.  The file is memory-mapped to read it.
+ * </p>
+ *
+ * @author David Varon
+ * @since 10.2.0
+ */
+public class YADALibSnapshot {
+
+  /**
+   * Local logger handle
+   */
+  private static Logger l = LoggerFactory.getLogger(YADALibSnapshot.class);
+
+  /**
+   * Constant equal to {@value}. The path of the snapshot file, outside {@link Finder#YADA_LIB}. Snapshots are
+   * disabled if it isn't set.
+   */
+  public final static String YADA_LIB_SNAPSHOT = "YADA.lib.snapshot";
+
+  /**
+   * Constant equal to {@value}. Identifies a snapshot file
+   */
+  private final static int MAGIC = 0x59414441;
+
+  /**
+   * Constant equal to {@value}. Incremented when the format changes
+   */
+  private final static int FORMAT = 1;
+
+  /**
+   * Constant equal to {@value}. Length of a {@code null} string
+   */
+  private final static int NULL = -1;
+
+  /**
+   * Utility class
+   */
+  private YADALibSnapshot() {}
+
+  /**
+   * @return the path of the snapshot file, or {@code null} if {@link #YADA_LIB_SNAPSHOT} isn't set
+   */
+  public static Path getSnapshotFile()
+  {
+    String file = YADAServer.getProperties().getProperty(YADA_LIB_SNAPSHOT);
+    return file == null || file.trim().length() == 0 ? null : Paths.get(file.trim()).toAbsolutePath();
+  }
+
+  /**
+   * Loads the snapshot into {@code cache}, if it was written at the current commit of the library.
+   * @param cache the cache of {@link Finder#YADA_LIB}
+   * @return the number of queries loaded
+   */
+  public static int load(YADALibCache cache)
+  {
+    Path lib  = cache.getLib();
+    Path file = getSnapshotFile();
+    if (file == null || !Files.isRegularFile(file))
+    {
+      return 0;
+    }
+    long   start  = System.currentTimeMillis();
+    String commit = getCommit(lib);
+    if (commit == null)
+    {
+      l.info("YADA_LIB has uncommitted changes, or isn't a git repository. The query snapshot was not loaded.");
+      return 0;
+    }
+    try
+    {
+      long                 stamp   = cache.getStamp();
+      Map<Path, YADAQuery> queries = read(file, commit, lib);
+      if (queries == null)
+      {
+        l.info("The query snapshot is not at the current commit of YADA_LIB, and was not loaded.");
+        return 0;
+      }
+      for (Map.Entry<Path, YADAQuery> entry : queries.entrySet())
+      {
+        cache.put(entry.getKey(), entry.getValue(), stamp);
+      }
+      l.info(String.format("Loaded %d queries from the snapshot at commit %s in %d ms", queries.size(), commit,
+          System.currentTimeMillis() - start));
+      return queries.size();
+    }
+    catch (IOException | YADAQueryConfigurationException e)
+    {
+      l.warn("Unable to load the query snapshot " + file, e);
+      return 0;
+    }
+  }
+
+  /**
+   * Writes the queries in {@code cache} to the snapshot file, if the library has no uncommitted changes.
+   * @param cache the cache of {@link Finder#YADA_LIB}, or {@code null}
+   */
+  public static void save(YADALibCache cache)
+  {
+    Path file = getSnapshotFile();
+    if (file == null || cache == null || cache.size() == 0)
+    {
+      return;
+    }
+    Path   lib    = cache.getLib();
+    long   stamp  = cache.getStamp();
+    String commit = getCommit(lib);
+    if (commit == null)
+    {
+      l.info("YADA_LIB has uncommitted changes, or isn't a git repository. The query snapshot was not saved.");
+      return;
+    }
+    Map<Path, YADAQuery> queries = cache.getQueries();
+    if (cache.getStamp() != stamp)
+    {
+      l.info("YADA_LIB changed while saving the query snapshot. The snapshot was not saved.");
+      return;
+    }
+    try
+    {
+      write(file, commit, lib, queries);
+      l.info(String.format("Saved %d queries to the snapshot at commit %s", queries.size(), commit));
+    }
+    catch (IOException e)
+    {
+      l.warn("Unable to save the query snapshot " + file, e);
+    }
+  }
+
+  /**
+   * @param lib the library directory
+   * @return the id of the {@code HEAD} commit of {@code lib}, or {@code null} if {@code lib} isn't a git
+   * repository, or has uncommitted changes
+   */
+  static String getCommit(Path lib)
+  {
+    try (Repository repo = new RepositoryBuilder().setGitDir(lib.resolve(Finder.GIT_DIR).toFile()).readEnvironment().build();
+         Git git = new Git(repo))
+    {
+      ObjectId head = repo.resolve(Constants.HEAD);
+      if (head == null || git.status().call().hasUncommittedChanges())
+      {
+        return null;
+      }
+      return head.name();
+    }
+    catch (IOException | GitAPIException e)
+    {
+      l.debug("Unable to read the commit of " + lib, e);
+      return null;
+    }
+  }
+
+  /**
+   * Writes {@code queries} to {@code file}, replacing it atomically.
+   * @param file the snapshot file
+   * @param commit the commit of the library at which the queries were loaded
+   * @param lib the library directory, to which the paths are written relative
+   * @param queries the queries, mapped to the absolute paths of their files
+   * @throws IOException when the file can't be written
+   */
+  public static void write(Path file, String commit, Path lib, Map<Path, YADAQuery> queries) throws IOException
+  {
+    Path dir = file.toAbsolutePath().getParent();
+    Files.createDirectories(dir);
+    Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+    try
+    {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp))))
+      {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT);
+        writeString(out, commit);
+        out.writeInt(queries.size());
+        for (Map.Entry<Path, YADAQuery> entry : queries.entrySet())
+        {
+          YADAQuery yq = entry.getValue();
+          writeString(out, lib.relativize(entry.getKey()).toString().replace('\\', '/'));
+          writeString(out, yq.getApp());
+          writeString(out, yq.getQname());
+          writeString(out, yq.getYADACode());
+          out.writeInt(yq.getYADAQueryParams().size());
+          for (YADAParam param : yq.getYADAQueryParams())
+          {
+            out.writeInt(param.getId());
+            writeString(out, param.getName());
+            writeString(out, param.getValue());
+            writeString(out, param.getTarget());
+            out.writeInt(param.getRule());
+            out.writeBoolean(param.isDefault());
+            YADASecuritySpec spec = param.getSecuritySpec();
+            writeString(out, spec == null ? null : new JSONObject(spec).toString());
+          }
+          out.writeInt(yq.getProperties().size());
+          for (YADAProperty prop : yq.getProperties())
+          {
+            writeString(out, prop.getTarget());
+            writeString(out, prop.getName());
+            writeString(out, prop.getValue());
+          }
+        }
+      }
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    finally
+    {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  /**
+   * Reads the queries in {@code file}, if it was written at {@code commit}.
+   * @param file the snapshot file
+   * @param commit the current commit of the library, or {@code null} to read the snapshot regardless
+   * @param lib the library directory, against which the paths are resolved
+   * @return the queries, mapped to the absolute paths of their files, or {@code null} if the snapshot was written
+   * at another commit, or in another format
+   * @throws IOException when the file can't be read, or is corrupt
+   * @throws YADAQueryConfigurationException when a security spec is invalid
+   */
+  public static Map<Path, YADAQuery> read(Path file, String commit, Path lib) throws IOException, YADAQueryConfigurationException
+  {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+    {
+      MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (in.getInt() != MAGIC || in.getInt() != FORMAT)
+      {
+        return null;
+      }
+      String snapshotCommit = readString(in);
+      if (commit != null && !commit.equals(snapshotCommit))
+      {
+        return null;
+      }
+      int                  count   = in.getInt();
+      Map<Path, YADAQuery> queries = new HashMap<>(count * 4 / 3 + 1);
+      for (int i = 0; i < count; i++)
+      {
+        Path      path = lib.resolve(readString(in)).toAbsolutePath().normalize();
+        if (!path.startsWith(lib.toAbsolutePath().normalize()))
+        {
+          String msg = "The query snapshot " + file + " contains a path outside the library: " + path;
+          throw new IOException(msg);
+        }
+        YADAQuery yq   = new YADAQuery();
+        yq.setApp(readString(in));
+        yq.setQname(readString(in));
+        yq.setYADACode(readString(in));
+        int params = in.getInt();
+        for (int p = 0; p < params; p++)
+        {
+          YADAParam param = new YADAParam();
+          param.setId(in.getInt());
+          param.setName(readString(in));
+          param.setValue(readString(in));
+          param.setTarget(readString(in));
+          param.setRule(in.getInt());
+          param.setDefault(in.get() != 0);
+          String spec = readString(in);
+          if (spec != null)
+          {
+            param.setSecuritySpec(new YADASecuritySpec(new JSONObject(spec)));
+          }
+          yq.addParam(param);
+        }
+        int props = in.getInt();
+        for (int p = 0; p < props; p++)
+        {
+          yq.addProperty(new YADAProperty(readString(in), readString(in), readString(in)));
+        }
+        queries.put(path, yq);
+      }
+      return queries;
+    }
+    catch (BufferUnderflowException | NegativeArraySizeException | JSONException e)
+    {
+      String msg = "The query snapshot " + file + " is corrupt";
+      throw new IOException(msg, e);
+    }
+  }
+
+  /**
+   * Writes the length of the UTF-8 encoding of {@code s}, or {@link #NULL}, followed by the encoding
+   * @param out the output
+   * @param s the string, or {@code null}
+   * @throws IOException when the string can't be written
+   */
+  private static void writeString(DataOutputStream out, String s) throws IOException
+  {
+    if (s == null)
+    {
+      out.writeInt(NULL);
+      return;
+    }
+    byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * @param in the input
+   * @return the string written by {@link #writeString(DataOutputStream, String)}
+   */
+  private static String readString(MappedByteBuffer in)
+  {
+    int length = in.getInt();
+    if (length == NULL)
+    {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    in.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
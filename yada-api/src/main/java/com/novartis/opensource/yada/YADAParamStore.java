@@ -0,0 +1,463 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The parameters of a {@link YADAQuery}, in order, indexed by name, with the non-overridable parameters
+ * indexed separately.  The values of a name are ordered by {@link YADAParam#getId()}, the last parameter with
+ * each id winning, as before, but without a scratch array per lookup.  The well-known parameters read for
+ * every statement execution, i.e., {@link YADARequest#PS_COUNT}, {@link YADARequest#PS_COUNTONLY},
+ * {@link YADARequest#PS_PAGESTART}, {@link YADARequest#PS_PAGESIZE}, {@link YADARequest#PS_SORTKEY},
+ * {@link YADARequest#PS_SORTORDER}, and {@link YADARequest#PS_FILTERS}, are resolved to typed fields on first
+ * read, or by {@link #resolve()}, and again after the store changes.
+ *
+ * @author David Varon
+ * @since 10.2.0
+ */
+final class YADAParamStore {
+
+  /**
+   * The parameters, in order
+   */
+  private List<YADAParam> params = new ArrayList<>();
+
+  /**
+   * The parameters, mapped to their names
+   */
+  private final Map<String, List<YADAParam>> keys = new HashMap<>();
+
+  /**
+   * The non-overridable parameters, mapped to their names
+   */
+  private final Map<String, List<YADAParam>> immutableKeys = new HashMap<>();
+
+  /**
+   * Set when the typed fields reflect the parameters
+   */
+  private boolean resolved;
+
+  /**
+   * The value of {@link YADARequest#PS_COUNT}
+   */
+  private boolean count;
+
+  /**
+   * The value of {@link YADARequest#PS_COUNTONLY}
+   */
+  private boolean countOnly;
+
+  /**
+   * The value of {@link YADARequest#PS_PAGESTART}
+   */
+  private int pageStart;
+
+  /**
+   * The value of {@link YADARequest#PS_PAGESIZE}
+   */
+  private int pageSize;
+
+  /**
+   * The value of {@link YADARequest#PS_SORTKEY}, or {@code null}
+   */
+  private String sortKey;
+
+  /**
+   * The value of {@link YADARequest#PS_SORTORDER}
+   */
+  private String sortOrder;
+
+  /**
+   * The value of {@link YADARequest#PS_FILTERS}, or {@code null}
+   */
+  private String filters;
+
+  /**
+   * @return the parameters, in order
+   */
+  List<YADAParam> getParams()
+  {
+    return this.params;
+  }
+
+  /**
+   * Replaces the parameters and adds them to the indices.
+   * @param params the parameters
+   */
+  void setParams(List<YADAParam> params)
+  {
+    this.params = params;
+    if (this.params.size() > 0)
+    {
+      index();
+    }
+    invalidate();
+  }
+
+  /**
+   * @param key the parameter name
+   * @return the indexed parameters with name {@code key}, or {@code null}
+   */
+  List<YADAParam> get(String key)
+  {
+    return this.keys.get(key);
+  }
+
+  /**
+   * @param key the parameter name
+   * @return the parameters with name {@code key}, in order
+   */
+  List<YADAParam> getAll(String key)
+  {
+    List<YADAParam> list = new ArrayList<>();
+    for (YADAParam yp : this.params)
+    {
+      if (yp.getName().equals(key))
+        list.add(yp);
+    }
+    return list;
+  }
+
+  /**
+   * @param key the parameter name
+   * @return {@code true} if a parameter with name {@code key} is indexed
+   */
+  boolean has(String key)
+  {
+    return this.keys.containsKey(key);
+  }
+
+  /**
+   * @param key the parameter name
+   * @return {@code true} if a non-overridable parameter with name {@code key} is indexed
+   */
+  boolean hasImmutable(String key)
+  {
+    return this.immutableKeys.containsKey(key);
+  }
+
+  /**
+   * @param key the parameter name
+   * @return {@code true} if an overridable parameter with name {@code key} is indexed
+   */
+  boolean hasMutable(String key)
+  {
+    return !hasImmutable(key) && has(key);
+  }
+
+  /**
+   * Returns the values of the indexed parameters with name {@code key}, one for each id, in order of id,
+   * omitting {@code null} values
+   * @param key the parameter name
+   * @param target the target of the parameters, or {@code null} for any target
+   * @return the values, or {@code null} if there is no parameter
+   */
+  String[] getValues(String key, String target)
+  {
+    List<YADAParam> list = this.keys.get(key);
+    if (list == null || list.isEmpty())
+    {
+      return null;
+    }
+    int[]    ids    = new int[list.size()];
+    String[] values = new String[list.size()];
+    int      n      = 0;
+    for (YADAParam yp : list)
+    {
+      if (target != null && !Objects.equals(yp.getTarget(), target))
+        continue;
+      int id = yp.getId();
+      int i  = n - 1;
+      while (i >= 0 && ids[i] > id)
+        i--;
+      if (i >= 0 && ids[i] == id)
+      {
+        values[i] = yp.getValue();
+        continue;
+      }
+      System.arraycopy(ids, i + 1, ids, i + 2, n - i - 1);
+      System.arraycopy(values, i + 1, values, i + 2, n - i - 1);
+      ids[i + 1]    = id;
+      values[i + 1] = yp.getValue();
+      n++;
+    }
+    if (n == 0)
+    {
+      return null;
+    }
+    int m = 0;
+    for (int i = 0; i < n; i++)
+    {
+      if (values[i] != null)
+        values[m++] = values[i];
+    }
+    return m == values.length ? values : Arrays.copyOf(values, m);
+  }
+
+  /**
+   * Returns the first of {@link #getValues(String, String)} for any target, without allocating
+   * @param key the parameter name
+   * @return the value, or {@code null}
+   */
+  String getFirstValue(String key)
+  {
+    List<YADAParam> list = this.keys.get(key);
+    if (list == null)
+    {
+      return null;
+    }
+    String value = null;
+    int    min   = Integer.MAX_VALUE;
+    for (int i = 0; i < list.size(); i++)
+    {
+      YADAParam yp = list.get(i);
+      int       id = yp.getId();
+      if (yp.getValue() == null || id > min || (value != null && id == min))
+        continue;
+      // the last parameter with an id wins
+      boolean last = true;
+      for (int j = i + 1; j < list.size() && last; j++)
+      {
+        last = list.get(j).getId() != id;
+      }
+      if (last)
+      {
+        min   = id;
+        value = yp.getValue();
+      }
+    }
+    return value;
+  }
+
+  /**
+   * Adds each parameter to the indices
+   */
+  private void index()
+  {
+    for (YADAParam param : this.params)
+    {
+      String key = param.getName();
+      if (hasMutable(key))
+      {
+        this.keys.get(key).add(param);
+        if (param.getRule() != 0)
+        {
+          if (this.immutableKeys.containsKey(key))
+          {
+            this.immutableKeys.get(key).add(param);
+          }
+          else
+          {
+            List<YADAParam> list = new ArrayList<>();
+            this.immutableKeys.put(key, list);
+          }
+        }
+      }
+      else
+      {
+        List<YADAParam> list = new ArrayList<>();
+        this.keys.put(key, list);
+        this.immutableKeys.put(key, list);
+        this.keys.get(key).add(param);
+        if (param.getRule() != 0)
+          this.immutableKeys.get(key).add(param);
+      }
+    }
+  }
+
+  /**
+   * Adds a single parameter to the indices.  Plugin and argument parameters accumulate; others are added only
+   * if no non-overridable parameter of the same name is indexed.
+   * @param param the parameter to add to each index, as needed
+   */
+  void index(YADAParam param)
+  {
+    String          key  = param.getName();
+    List<YADAParam> list = null;
+    if (!has(key))
+    {
+      list = new ArrayList<>();
+      list.add(param);
+      this.keys.put(key, list);
+      if (param.getRule() != YADAParam.MUTABLE)
+      {
+        if (!hasImmutable(key))
+        {
+          list = new ArrayList<>();
+          list.add(param);
+          this.immutableKeys.put(key, list);
+        }
+      }
+    }
+    else if (isPluginParam(key) || isArgumentParam(key)) // if it's a plugin, just add it straight away
+    {
+      this.keys.get(key).add(param);
+      if (param.getRule() != YADAParam.MUTABLE)
+        this.immutableKeys.get(key).add(param);
+    }
+    else
+    {
+      // if the param is not a plugin param, and it's
+      // overrideable, add it. If it is, itself, nonoverridable,
+      // make a note of that too.
+      if (!hasImmutable(key)) // this confirms no immutables (non-overrides)
+      {
+        this.keys.get(key).add(param);
+        if (param.getRule() != YADAParam.MUTABLE)
+          this.immutableKeys.get(key).add(param);
+      }
+    }
+    invalidate();
+  }
+
+  /**
+   * Empties the indices
+   */
+  void clearIndex()
+  {
+    this.keys.clear();
+    this.immutableKeys.clear();
+    invalidate();
+  }
+
+  /**
+   * Marks the typed fields for resolution on next read, e.g., after a stored parameter is modified in place
+   */
+  void invalidate()
+  {
+    this.resolved = false;
+  }
+
+  /**
+   * Resolves the typed fields from the current parameter values, using the {@link YADARequest} defaults for
+   * missing parameters
+   * @throws NumberFormatException if {@link YADARequest#PS_PAGESTART} or {@link YADARequest#PS_PAGESIZE} is not an integer
+   */
+  void resolve()
+  {
+    String value;
+    value          = getFirstValue(YADARequest.PS_COUNT);
+    this.count     = value == null || Boolean.parseBoolean(value);
+    value          = getFirstValue(YADARequest.PS_COUNTONLY);
+    this.countOnly = Boolean.parseBoolean(value);
+    value          = getFirstValue(YADARequest.PS_PAGESTART);
+    this.pageStart = value == null ? YADARequest.DEFAULT_START_PAGE : Integer.parseInt(value);
+    value          = getFirstValue(YADARequest.PS_PAGESIZE);
+    this.pageSize  = value == null ? YADARequest.DEFAULT_PAGE_SIZE : Integer.parseInt(value);
+    value          = getFirstValue(YADARequest.PS_SORTORDER);
+    this.sortOrder = value == null ? YADARequest.SORT_ASC : value;
+    this.sortKey   = getFirstValue(YADARequest.PS_SORTKEY);
+    this.filters   = getFirstValue(YADARequest.PS_FILTERS);
+    this.resolved  = true;
+  }
+
+  /**
+   * Resolves the typed fields, if the store changed since they were last resolved
+   */
+  private void ensureResolved()
+  {
+    if (!this.resolved)
+    {
+      resolve();
+    }
+  }
+
+  /**
+   * @return the value of {@link YADARequest#PS_COUNT}
+   */
+  boolean isCount()
+  {
+    ensureResolved();
+    return this.count;
+  }
+
+  /**
+   * @return the value of {@link YADARequest#PS_COUNTONLY}
+   */
+  boolean isCountOnly()
+  {
+    ensureResolved();
+    return this.countOnly;
+  }
+
+  /**
+   * @return the value of {@link YADARequest#PS_PAGESTART}
+   */
+  int getPageStart()
+  {
+    ensureResolved();
+    return this.pageStart;
+  }
+
+  /**
+   * @return the value of {@link YADARequest#PS_PAGESIZE}
+   */
+  int getPageSize()
+  {
+    ensureResolved();
+    return this.pageSize;
+  }
+
+  /**
+   * @return the value of {@link YADARequest#PS_SORTKEY}, or {@code null}
+   */
+  String getSortKey()
+  {
+    ensureResolved();
+    return this.sortKey;
+  }
+
+  /**
+   * @return the value of {@link YADARequest#PS_SORTORDER}
+   */
+  String getSortOrder()
+  {
+    ensureResolved();
+    return this.sortOrder;
+  }
+
+  /**
+   * @return the value of {@link YADARequest#PS_FILTERS}, or {@code null}
+   */
+  String getFilters()
+  {
+    ensureResolved();
+    return this.filters;
+  }
+
+  /**
+   * @param key the name of the param
+   * @return {@code true} if {@code key} = {@link YADARequest#PL_PLUGIN} or {@link YADARequest#PS_PLUGIN}
+   */
+  private static boolean isPluginParam(String key)
+  {
+    return key.equals(YADARequest.PL_PLUGIN) || key.equals(YADARequest.PS_PLUGIN);
+  }
+
+  /**
+   * @param key the name of the param
+   * @return {@code true} if {@code key} = {@link YADARequest#PS_ARGLIST}
+   */
+  private static boolean isArgumentParam(String key)
+  {
+    return key.equals(YADARequest.PS_ARGLIST);
+  }
+}
@@ -21,15 +21,12 @@ import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Savepoint;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
-import java.util.Properties;
 import java.util.Set;
 
 import javax.xml.soap.SOAPConnection;
@@ -153,9 +150,10 @@ public class YADAQuery {
 	 */
 	private String     version;
 	/**
-	 * A list of the parameters
+	 * The parameters, indexed by name
+	 * @since 10.2.0
 	 */
-	private List<YADAParam>              					yqParams = new ArrayList<>();
+	private YADAParamStore          paramStore    = new YADAParamStore();
 	/**
 	 * A list of properties
 	 * @since 7.1.0
@@ -177,9 +175,10 @@ public class YADAQuery {
 	 */
 	private JSONObject                            httpHeaders = new JSONObject();
 	/**
-	 * A list containing maps, one for each query execution, of data key/value pairs, supporting arrays of values
+	 * A list containing maps, one for each query execution, of data key/value pairs, supporting arrays of values.
+	 * Stored in columns, unless replaced by {@link #setData(List)}.
 	 */
-	private List<LinkedHashMap<String,String[]>>  data     = new ArrayList<>();
+	private List<LinkedHashMap<String,String[]>>  data     = new ColumnarData();
 	/**
 	 * A list of columns referenced by the query that correspond to values in the {@link #data} maps
 	 */
@@ -289,14 +288,6 @@ public class YADAQuery {
 	 */
 	private List<String>            soap          = new ArrayList<>();
 	/**
-	 * The YADA request parameter names
-	 */
-	private Map<String,List<YADAParam>>   keys          = new HashMap<>();
-	/**
-	 * The non-overridable YADA request parameter keys
-	 */
-	private Map<String,List<YADAParam>>   immutableKeys = new HashMap<>();
-	/**
    * The container of field names to support merged result sets
    * @since 6.1.0
    */
@@ -317,6 +308,11 @@ public class YADAQuery {
 	 * @since 9.3.6
 	 */
   private List<String> valuesColumns;
+	/**
+	 * The shared, immutable result of parsing {@link #yadaCode}
+	 * @since 10.2.0
+	 */
+	private CompiledQuery compiledQuery;
 	/**
 	 * Default constructor
 	 */
@@ -340,58 +336,8 @@ public class YADAQuery {
     this.setQname(qname);
     this.setApp(app);
 
-    //TODO set all properties and default params stored with source
-    @SuppressWarnings("unchecked")
-
-    // The following sets all properties and default params stored with the source
-    Map<String, Object> conf = (Map<String, Object>) ConnectionFactory.getConnectionFactory().getDsConf().get(this.getApp());
-    Properties props = new Properties();
-
-    // if there is a "props" key, extract the properties into a local "props" object
-    if(conf.containsKey(ConnectionFactory.YADA_CONF_PROPS))
-    {
-      for(String key : JSONObject.getNames((JSONObject)conf.get(ConnectionFactory.YADA_CONF_PROPS)))
-      {
-        props.put(key, ((JSONObject)conf.get(ConnectionFactory.YADA_CONF_PROPS)).getString(key));
-      }
-      String          paramStr = props.getProperty(PROP_PARAMS);
-
-      // if there is a "params" property, we need to set request params in the request
-      if (paramStr != null)
-      {
-        JSONArray yqp = new JSONArray(paramStr);
-        for (int i = 0; i < yqp.length(); i++)
-        {
-          // get param values
-          JSONObject jo = yqp.getJSONObject(i);
-          YADAParam  yp = new YADAParam();
-
-
-          // store the values, rules, etc
-          yp.setName(jo.getString(PROP_NAME));
-          yp.setValue(jo.getString(PROP_VALUE));
-          yp.setTarget(this.getQname());
-          yp.setRule(jo.getInt(PROP_RULE));
-          yp.setDefault(true);
-          try
-          {
-            JSONObject spec = jo.getJSONObject(PROP_SEC);
-            YADASecuritySpec yss = new YADASecuritySpec(spec);
-            yp.setSecuritySpec(yss);
-          }
-          catch(JSONException e)
-          {
-            l.debug("No sec spec object expressed in param.");
-          }
-          catch (YADAQueryConfigurationException e)
-          {
-            throw e;
-          }
-          // add the parameter
-          this.addParam(yp);
-        }
-      }
-    }
+    // The following sets all default params stored with the source, parsed when its conf was loaded
+    ConnectionFactory.getConnectionFactory().getAppDefaultParams(this.getApp()).addTo(this);
 
     // following try sets all properties and default params stored with query.
     try
@@ -468,10 +414,12 @@ public class YADAQuery {
   			param.setTarget(cachedParam.getTarget());
   			param.setRule(cachedParam.getRule());
   			param.setDefault(cachedParam.isDefault());
+  			param.setSecuritySpec(cachedParam.getSecuritySpec());
   			this.addParam(param);
 			}
 		}
-		this.setProperties(yq.getProperties());
+		this.setProperties(new HashSet<>(yq.getProperties()));
+		this.setCompiledQuery(yq.getCompiledQuery());
 	}
 
 	/**
@@ -702,11 +650,7 @@ public class YADAQuery {
 	 */
 	public void setYADAQueryParams(List<YADAParam> yqParams)
 	{
-		this.yqParams = yqParams;
-		if(this.yqParams.size() > 0)
-		{
-			setKeys();
-		}
+		this.paramStore.setParams(yqParams);
 	}
 
 	/**
@@ -716,11 +660,7 @@ public class YADAQuery {
 	 */
 	public void setYADAQueryParams(YADARequest yadaReq) throws YADARequestException
 	{
-		this.yqParams = yadaReq.getAllParams();
-		if(this.yqParams.size() > 0)
-		{
-			setKeys();
-		}
+		this.paramStore.setParams(yadaReq.getAllParams());
 	}
 
 	/**
@@ -731,13 +671,7 @@ public class YADAQuery {
 	 * @since 7.1.4
 	 */
 	public List<YADAParam> getYADAQueryParamsForKey(String key) {
-	  List<YADAParam> paramList = new ArrayList<>(1000);
-	  for(YADAParam yp : this.yqParams)
-	  {
-	    if(yp.getName().equals(key))
-	      paramList.add(yp);
-	  }
-	  return paramList;
+	  return this.paramStore.getAll(key);
 	}
 
 	/**
@@ -746,19 +680,7 @@ public class YADAQuery {
 	 * @return an array containing the value associated to param with name {@code key}
 	 */
 	public String[] getYADAQueryParamValue(String key) {
-		boolean hasVal = false;
-		if(getParam(key) != null)
-		{
-	    String[] values = new String[1000];
-	    for(YADAParam param : getParam(key))
-	    {
-	      values[param.getId()] = param.getValue();
-	      hasVal = true;
-	    }
-	    if(hasVal)
-	      return Arrays.stream(values).filter(Objects::nonNull).toArray(String[]::new);
-		}
-		return null;
+		return this.paramStore.getValues(key, null);
 	}
 
 	/**
@@ -768,22 +690,7 @@ public class YADAQuery {
    * @return an array containing the value associated to param with name {@code key}
    */
   public String[] getYADAQueryParamValuesForTarget(String key) {
-  	boolean hasVal = false;
-    if(getParam(key) != null)
-    {
-      String[] values = new String[1000];
-      for(YADAParam param : getParam(key))
-      {
-        if(param.getTarget().equals(this.getQname()))
-        {
-        	values[param.getId()] = param.getValue();
-        	hasVal = true;
-        }
-      }
-      if(hasVal)
-	      return Arrays.stream(values).filter(Objects::nonNull).toArray(String[]::new);
-    }
-    return null;
+    return this.paramStore.getValues(key, this.getQname());
   }
 
   /**
@@ -795,48 +702,62 @@ public class YADAQuery {
    * @since 8.5.0
    */
   public String[] getYADAQueryParamValuesForTarget(String key, String target) {
-  	boolean hasVal = false;
-    if(getParam(key) != null)
-    {
-      String[] values = new String[1000];
-      for(YADAParam param : getParam(key))
-      {
-        if(param.getTarget().equals(target))
-        {
-        	values[param.getId()] = param.getValue();
-        	hasVal = true;
-        }
-
-      }
-      if(hasVal)
-	      return Arrays.stream(values).filter(Objects::nonNull).toArray(String[]::new);
-    }
-    return null;
+    return this.paramStore.getValues(key, target);
   }
 
-	/**
-	 * Tests value of parameter name
-	 * @param key the name of the param
-	 * @return {@code true} if {@code key} = {@link YADARequest#PL_PLUGIN} or {@link YADARequest#PS_PLUGIN}
-	 * @since 8.3.0
-	 */
-	private boolean isPluginParam(String key) {
-	  if(key.equals(YADARequest.PL_PLUGIN) || key.equals(YADARequest.PS_PLUGIN))
-	    return true;
-	  return false;
-	}
+  /**
+   * Resolves the values of {@link YADARequest#PS_COUNT}, {@link YADARequest#PS_COUNTONLY},
+   * {@link YADARequest#PS_PAGESTART}, {@link YADARequest#PS_PAGESIZE}, {@link YADARequest#PS_SORTKEY},
+   * {@link YADARequest#PS_SORTORDER}, and {@link YADARequest#PS_FILTERS} for {@link #isCount()} and the
+   * other typed accessors.  They are otherwise resolved when first read after the parameters change, but
+   * not after a stored {@link YADAParam} is modified in place, so this is called once per request, before
+   * the query is prepared.
+   * @throws NumberFormatException if the page start or page size is not an integer
+   * @since 10.2.0
+   */
+  public void resolveParams() { this.paramStore.resolve(); }
 
-	/**
-	 * Tests value of parameter name
-	 * @param key the name of the param
-	 * @return {@code true} if {@code key} = {@link YADARequest#PS_ARGLIST}
-	 * @since 8.5.0
-	 */
-	private boolean isArgumentParam(String key) {
-	  if(key.equals(YADARequest.PS_ARGLIST))
-	    return true;
-	  return false;
-	}
+  /**
+   * @return the value of {@link YADARequest#PS_COUNT}
+   * @since 10.2.0
+   */
+  public boolean isCount() { return this.paramStore.isCount(); }
+
+  /**
+   * @return the value of {@link YADARequest#PS_COUNTONLY}
+   * @since 10.2.0
+   */
+  public boolean isCountOnly() { return this.paramStore.isCountOnly(); }
+
+  /**
+   * @return the value of {@link YADARequest#PS_PAGESTART}
+   * @since 10.2.0
+   */
+  public int getPageStart() { return this.paramStore.getPageStart(); }
+
+  /**
+   * @return the value of {@link YADARequest#PS_PAGESIZE}
+   * @since 10.2.0
+   */
+  public int getPageSize() { return this.paramStore.getPageSize(); }
+
+  /**
+   * @return the value of {@link YADARequest#PS_SORTKEY}, or {@code null}
+   * @since 10.2.0
+   */
+  public String getSortKey() { return this.paramStore.getSortKey(); }
+
+  /**
+   * @return the value of {@link YADARequest#PS_SORTORDER}
+   * @since 10.2.0
+   */
+  public String getSortOrder() { return this.paramStore.getSortOrder(); }
+
+  /**
+   * @return the value of {@link YADARequest#PS_FILTERS}, or {@code null}
+   * @since 10.2.0
+   */
+  public String getFilters() { return this.paramStore.getFilters(); }
 
 	/**
 	 * Returns the {@link YADAParam} with name = {@code key}
@@ -845,7 +766,7 @@ public class YADAQuery {
 	 */
 	public List<YADAParam> getParam(String key)
 	{
-		return this.keys.get(key);
+		return this.paramStore.get(key);
 	}
 
 	/**
@@ -862,99 +783,12 @@ public class YADAQuery {
 	}
 
 	/**
-	 * Iterates over {@link #yqParams} list to populate indices of {@link #keys}
-	 * and {@link #immutableKeys}, for faster access to parameter values
-	 */
-	private void setKeys()
-	{
-		for(YADAParam param : this.yqParams)
-		{
-		  String key = param.getName();
-		  if(hasMutableParam(key))
-		  {
-		    this.keys.get(key).add(param);
-	      if(param.getRule() != 0)
-	      {
-	        if(this.immutableKeys.containsKey(key))
-	        {
-	          this.immutableKeys.get(key).add(param);
-	        }
-	        else
-	        {
-	          List<YADAParam> list = new ArrayList<>();
-	          this.immutableKeys.put(key,list);
-	        }
-	      }
-		  }
-		  else
-		  {
-		    List<YADAParam> list = new ArrayList<>();
-		    this.keys.put(key,list);
-		    this.immutableKeys.put(key,list);
-		    this.keys.get(key).add(param);
-	      if(param.getRule() != 0)
-	        this.immutableKeys.get(key).add(param);
-		  }
-		}
-	}
-
-	/**
-	 * Adds a single {@link YADAParam} to the {@link #keys} and {@link #immutableKeys} indices.
-	 * @param param the parameter to add to each index, as needed
-	 */
-	private void setKey(YADAParam param)
-	{
-		String key = param.getName();
-		List<YADAParam> list = null;
-		if(!hasParam(key))
-    {
-		  list = new ArrayList<>();
-		  list.add(param);
-      this.keys.put(key,list);
-      if(param.getRule() != YADAParam.MUTABLE)
-      {
-        if(!hasImmutableParam(key))
-        {
-          list = new ArrayList<>();
-          list.add(param);
-          this.immutableKeys.put(key,list);
-        }
-      }
-    }
-		else if(isPluginParam(key)) // if it's a plugin, just add it straight away
-		{
-		  this.keys.get(key).add(param);
-      if(param.getRule() != YADAParam.MUTABLE)
-        this.immutableKeys.get(key).add(param);
-    }
-		else if(isArgumentParam(key))
-		{
-			this.keys.get(key).add(param);
-			if(param.getRule() != YADAParam.MUTABLE)
-				this.immutableKeys.get(key).add(param);
-		}
-		else
-		{
-		  // if the param is not a plugin param, and it's
-		  // overrideable, add it. If it is, itself, nonoverridable,
-		  // make a note of that too.
-	    if(!hasImmutableParam(key)) // this confirms no immutables (non-overrides)
-	    {
-		    this.keys.get(key).add(param);
-	      if(param.getRule() != YADAParam.MUTABLE)
-	        this.immutableKeys.get(key).add(param);
-	    }
-		}
-	}
-
-	/**
-	 * Removes values from {@link #immutableKeys} and {@link #keys}.
+	 * Removes values from the parameter indices.
 	 * @since 4.1.0
 	 */
 	public void clearKeys()
 	{
-		this.keys.clear();
-		this.immutableKeys.clear();
+		this.paramStore.clearIndex();
 	}
 
 	/**
@@ -975,7 +809,7 @@ public class YADAQuery {
 	{
 		String key   = param.getName();
 		String value = param.getValue();
-		if(isPluginParam(key) || isArgumentParam(key))
+		if(key.equals(YADARequest.PL_PLUGIN) || key.equals(YADARequest.PS_PLUGIN) || key.equals(YADARequest.PS_ARGLIST))
 		{
 		  List<YADAParam> lp = getYADAQueryParams();
       String  target = param.getTarget();
@@ -993,7 +827,7 @@ public class YADAQuery {
       if(add)
       {
         getYADAQueryParams().add(param);
-        setKey(param);
+        this.paramStore.index(param);
       }
 		}
 		else
@@ -1007,12 +841,12 @@ public class YADAQuery {
       else if(hasParam(key))
       {
         replaceParam(param);
-        setKey(param);
+        this.paramStore.index(param);
       }
       else
       {
         getYADAQueryParams().add(param);
-        setKey(param);
+        this.paramStore.index(param);
       }
     }
 	}
@@ -1141,6 +975,7 @@ public class YADAQuery {
 					storedParam.setRule(param.getRule());
 				}
 			}
+			this.paramStore.invalidate();
 		}
 		else if(!hasParam(param.getName()))
 		{
@@ -1153,7 +988,7 @@ public class YADAQuery {
 	 * @return {@code true} if the query contains the param with name equal to {@code key}, otherwise false
 	 */
 	public boolean hasParam(String key) {
-		return this.keys.containsKey(key);
+		return this.paramStore.has(key);
 	}
 
 	/**
@@ -1161,10 +996,7 @@ public class YADAQuery {
 	 * @return {@code true} if the parameter has at least one value
 	 */
 	public boolean hasParamValue(String key) {
-		if(getYADAQueryParamValue(key) != null
-				&& getYADAQueryParamValue(key).length > 0)
-			return true;
-		return false;
+		return this.paramStore.getFirstValue(key) != null;
 	}
 
 	/**
@@ -1186,7 +1018,7 @@ public class YADAQuery {
 	 * @return boolean true if stored parameter is overridable by url params (rule=0), otherwise false
 	 */
 	public boolean hasMutableParam(String key) {
-		return !hasImmutableParam(key) && this.keys.containsKey(key);
+		return this.paramStore.hasMutable(key);
 	}
 
 	/**
@@ -1195,7 +1027,7 @@ public class YADAQuery {
    * @return boolean true if stored parameter is overridable by url params (rule=0), otherwise false
    */
   public boolean hasOverridableParam(String key) {
-    return !hasImmutableParam(key) && this.keys.containsKey(key);
+    return this.paramStore.hasMutable(key);
   }
 	
 	/**
@@ -1204,7 +1036,7 @@ public class YADAQuery {
 	 * @return boolean true if stored parameter is not overridable by url params (rule=0), otherwise false
 	 */
 	public boolean hasImmutableParam(String key) {
-		return this.immutableKeys.containsKey(key);
+		return this.paramStore.hasImmutable(key);
 	}
 
 	 /**
@@ -1213,7 +1045,7 @@ public class YADAQuery {
    * @return boolean true if stored parameter is not overridable by url params (rule=0), otherwise false
    */
   public boolean hasNonOverridableParam(String key) {
-    return this.immutableKeys.containsKey(key);
+    return this.paramStore.hasImmutable(key);
   }
 
 	/**
@@ -1623,10 +1455,13 @@ public class YADAQuery {
 	public List<char[]>            getDataTypes() { return this.dataTypes; }
 
 	/**
-	 * Standard accessor for variable
+	 * Standard accessor for variable.  The paging, count, sort and filter values, see {@link #isCount()}, are
+	 * resolved by {@link #resolveParams()} when the query is prepared, and used again when it is executed, so
+	 * parameters modified in place after preparation, e.g., with {@link YADAParam#setValue(String)}, don't change
+	 * them.  Modify parameters before the query is prepared, e.g., in a preprocess plugin.
 	 * @return the list of parameter objects
 	 */
-	public List<YADAParam> getYADAQueryParams() { return this.yqParams; }
+	public List<YADAParam> getYADAQueryParams() { return this.paramStore.getParams(); }
 	/**
 	 * Standard accessor for variable
 	 * @return the list of data objects
@@ -1635,7 +1470,8 @@ public class YADAQuery {
 
 	/**
 	 * @param row the list index
-	 * @return the map of data at index {@code row}
+	 * @return the map of data at index {@code row}, materialized from columns if the data is a {@link ColumnarData} store,
+	 * in which case it is a copy, and changes to it are only retained when it is set again in {@link #getData()}
 	 */
 	public LinkedHashMap<String,String[]> getDataRow(int row) {
 		return this.getData().get(row);
@@ -1775,6 +1611,25 @@ public class YADAQuery {
 		this.isCached = isCached;
 	}
 
+  /**
+   * The shared template compiled from the query code.  It is only applicable while its code matches
+   * {@link #getYADACode()}.
+   * @return the compiled query, or {@code null} if the code hasn't been compiled
+   * @since 10.2.0
+   */
+  public CompiledQuery getCompiledQuery() {
+    return this.compiledQuery;
+  }
+
+  /**
+   * Standard mutator for variable
+   * @param compiledQuery the compiled query
+   * @since 10.2.0
+   */
+  public void setCompiledQuery(CompiledQuery compiledQuery) {
+    this.compiledQuery = compiledQuery;
+  }
+
   /**
    * The object representation of the SQL query.
    * @return the statement
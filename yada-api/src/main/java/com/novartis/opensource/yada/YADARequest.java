@@ -15,6 +15,9 @@
 package com.novartis.opensource.yada;
 
 import java.io.File;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
@@ -942,6 +945,11 @@ public class YADARequest {
    * @since 10.0.0
    */
   public static final HashSet<String>     fieldAliasSet = new HashSet<>();
+  /**
+   * Setters for each field in {@link #fieldAliasMap}, keyed by field name
+   * @since 10.2.0
+   */
+  private static final Map<String, MethodHandle> setters;
   /**
    * The plugin class for handling JMESPath parameters
    *
@@ -1043,6 +1051,7 @@ public class YADARequest {
     fieldAliasMap = Collections.unmodifiableMap(map);
     fieldAliasSet.addAll(map.keySet());
     fieldAliasSet.addAll(map.values());
+    setters = buildSetters();
   }
 
   // URL Parameters
@@ -1313,6 +1322,12 @@ public class YADARequest {
    */
   @Deprecated
   private List<String>                           bypassArgs   = new ArrayList<>();
+  /**
+   * Per-phase execution timings, for the request log
+   *
+   * @since 10.2.0
+   */
+  private final RequestTimings                   timings      = new RequestTimings();
 
   /**
    * Default constructor
@@ -1322,6 +1337,14 @@ public class YADARequest {
       setMethod(new String[] { request.getMethod() });
   }
 
+  /**
+   * @return the per-phase execution timings of the request
+   * @since 10.2.0
+   */
+  public RequestTimings getTimings() {
+    return this.timings;
+  }
+
   /**
    * Calls {@link #invokeSetter(String, String)} internally to dynamically map all
    * request parameters
@@ -1689,8 +1712,8 @@ public class YADARequest {
   }
 
   /**
-   * Uses java reflection to invoke the "setter" method associated to
-   * {@code alias}
+   * Invokes the "setter" method associated to {@code alias}, from the table built
+   * once at class initialization. Does nothing if there is no setter for {@code alias}.
    *
    * @since 4.0.0
    * @param alias the parameter name
@@ -1699,39 +1722,29 @@ public class YADARequest {
    *                              the setter for {@code alias}
    */
   public void invokeSetter(String alias, String[] value) throws YADARequestException {
-    // input
-    String field = getFieldAlias(alias);
-    // list of methods
-    Method[] methods = this.getClass().getMethods();
-    // currently inquired method name
-    String mName = "set" + field.substring(0, 1).toUpperCase() + field.substring(1);
-    // iterate over methods
-    for (int i = 0; i < methods.length; i++)
+    String       field  = getFieldAlias(alias);
+    MethodHandle setter = field == null ? null : setters.get(field);
+    if (setter == null)
     {
-      String methName = methods[i].getName();
-
-      if (methName.equals(mName) && methods[i].getParameterTypes()[0].isArray())
-      {
-        l.debug("methName:" + methName + ":" + mName);
-        try
-        {
-          methods[i].invoke(this, new Object[] { value });
-        }
-        catch (InvocationTargetException e)
-        {
-          throw new YADARequestException(e.getMessage(), e);
-        }
-        catch (IllegalAccessException e)
-        {
-          throw new YADARequestException(e.getMessage(), e);
-        }
-      }
+      l.debug("No setter for parameter [" + alias + "]");
+      return;
+    }
+    try
+    {
+      setter.invokeExact(this, value);
+    }
+    catch (Error e)
+    {
+      throw e;
+    }
+    catch (Throwable e)
+    {
+      throw new YADARequestException(e.getMessage(), e);
     }
   }
 
   /**
-   * Uses java reflection to invoke the "setter" method associated to
-   * {@code alias}
+   * Invokes the "setter" method associated to {@code alias} with a single value
    *
    * @param alias the parameter name
    * @param value the parameter value
@@ -1739,40 +1752,42 @@ public class YADARequest {
    *                              the setter for {@code alias}
    */
   public void invokeSetter(String alias, String value) throws YADARequestException {
-    // input
-    String field = getFieldAlias(alias);
-    // list of methods
-    Method[] methods = this.getClass().getMethods();
-    // currently inquired method name
-    String mName = "set" + field.substring(0, 1).toUpperCase() + field.substring(1);
-    // iterate over methods
-    for (int i = 0; i < methods.length; i++)
-    {
-      String[] arglist  = new String[1];
-      String   methName = methods[i].getName();
+    invokeSetter(alias, new String[] { value });
+  }
 
-      if (methName.equals(mName))
+  /**
+   * Builds the table of setters, keyed by field name, for each field in
+   * {@link #fieldAliasMap} with a public mutator accepting an array.
+   *
+   * @return the table of setters
+   * @since 10.2.0
+   */
+  private static Map<String, MethodHandle> buildSetters() {
+    Map<String, MethodHandle> table  = new HashMap<>();
+    MethodHandles.Lookup      lookup = MethodHandles.publicLookup();
+    MethodType                type   = MethodType.methodType(void.class, YADARequest.class, String[].class);
+    for (String field : new HashSet<>(fieldAliasMap.values()))
+    {
+      String mName = "set" + field.substring(0, 1).toUpperCase() + field.substring(1);
+      for (Method method : YADARequest.class.getMethods())
       {
-        l.debug("methName:" + methName + ":" + mName);
-        arglist[0] = value;
-        try
+        if (method.getName().equals(mName) 
+            && method.getParameterCount() == 1
+            && method.getParameterTypes()[0].isArray())
         {
-          if (methods[i].getParameterTypes()[0].isArray())
+          try
           {
-            methods[i].invoke(this, (Object) arglist);
+            table.put(field, lookup.unreflect(method).asType(type));
           }
-          // l.debug("qname: " + getQname());
-        }
-        catch (InvocationTargetException e)
-        {
-          throw new YADARequestException(e.getMessage(), e);
-        }
-        catch (IllegalAccessException e)
-        {
-          throw new YADARequestException(e.getMessage(), e);
+          catch (IllegalAccessException | ClassCastException e)
+          {
+            l.warn("Unable to bind setter [" + mName + "]", e);
+          }
+          break;
         }
       }
     }
+    return Collections.unmodifiableMap(table);
   }
 
   /**
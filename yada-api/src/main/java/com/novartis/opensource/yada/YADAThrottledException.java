@@ -0,0 +1,84 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada;
+
+
+/**
+ * Thrown when a request exceeds the concurrency or rate limits configured for its app or query
+ * with {@link RequestLimiter}.  Maps to {@code 429 Too Many Requests}.
+ * @author David Varon
+ * @since 10.2.0
+ */
+public class YADAThrottledException extends YADAException {
+	/**
+	 * Support for serialization.
+	 */
+	private static final long serialVersionUID = -2817339051527783690L;
+
+	/**
+	 * Seconds after which the request may be retried
+	 */
+	private long retryAfter = 1L;
+
+	/**
+	 * Constructs a new exception with a null message.
+	 */
+	public YADAThrottledException() {
+		super();
+	}
+
+	/**
+	 * Constructs a new exception with a specified message
+	 * @param message the message to report using {@link #getMessage()}
+	 */
+	public YADAThrottledException(String message) {
+		super(message);
+	}
+
+	/**
+	 * Constructs a new exception with a specified message and retry delay
+	 * @param message the message to report using {@link #getMessage()}
+	 * @param retryAfter seconds after which the request may be retried
+	 */
+	public YADAThrottledException(String message, long retryAfter) {
+		super(message);
+		this.retryAfter = retryAfter;
+	}
+
+	/**
+	 * Constructs a new exception with a speificed cause
+	 * @param cause the {@link Throwable} that led to this exception
+	 */
+	public YADAThrottledException(Throwable cause) {
+		super(cause);
+	}
+
+	/**
+	 * Constructs a new exception with a speificed cause and message
+	 * @param message message the message to report using {@link #getMessage()}
+	 * @param cause the {@link Throwable} that led to this exception 
+	 */
+	public YADAThrottledException(String message, Throwable cause) {
+		super(message, cause);
+		this.cause = cause;
+	}
+
+	/**
+	 * @return seconds after which the request may be retried
+	 */
+	public long getRetryAfter() {
+		return this.retryAfter;
+	}
+}
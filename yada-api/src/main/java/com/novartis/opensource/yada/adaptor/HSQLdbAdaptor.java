@@ -71,4 +71,15 @@ public class HSQLdbAdaptor extends JDBCAdaptor {
     }
     return sql;
   }
+
+  /**
+   * HyperSQL® declares session tables with {@code DECLARE LOCAL TEMPORARY TABLE}
+   * @see com.novartis.opensource.yada.adaptor.JDBCAdaptor#getInListTableDDL(java.lang.String, char)
+   * @since 10.2.0
+   */
+  @Override
+  protected String getInListTableDDL(String table, char type)
+  {
+    return "DECLARE LOCAL TEMPORARY TABLE " + table + " (k INTEGER, v " + getInListColumnType(type) + ") ON COMMIT PRESERVE ROWS";
+  }
 }
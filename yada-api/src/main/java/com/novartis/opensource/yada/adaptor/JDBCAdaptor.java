@@ -17,13 +17,22 @@
  */
 package com.novartis.opensource.yada.adaptor;
 
+import java.lang.ref.WeakReference;
 import java.sql.CallableStatement;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -369,6 +378,17 @@ public abstract class JDBCAdaptor extends Adaptor{
 	 * @since 4.1.0
 	 */
 	protected static final String OFFSET               = "OFFSET";
+	/**
+	 * Constant equal to: {@value}. The prefix of the names of the temporary tables which store large {@code IN}
+	 * lists, followed by the data type and the index of the list in the query.
+	 * @since 10.2.0
+	 */
+	protected static final String IN_LIST_TABLE        = "yada_in_";
+	/**
+	 * The {@code IN} list tables created in each session, mapped to the connection
+	 * @since 10.2.0
+	 */
+	private static final Map<Connection, InListSession> IN_LIST_SESSIONS = Collections.synchronizedMap(new WeakHashMap<>());
 	
 	
 	/**
@@ -405,8 +425,8 @@ public abstract class JDBCAdaptor extends Adaptor{
 	public void execute(YADAQuery yq) throws YADAAdaptorExecutionException
 	{	
 		l.debug("Executing query ["+yq.getQname()+"]");
-		boolean     count       = Boolean.parseBoolean(yq.getYADAQueryParamValue(YADARequest.PS_COUNT)[0]);
-		boolean     countOnly   = Boolean.parseBoolean(yq.getYADAQueryParamValue(YADARequest.PS_COUNTONLY)[0]);
+		boolean     count       = yq.isCount();
+		boolean     countOnly   = yq.isCountOnly();
 		int         countResult = -1;
 		int         dataSize    = yq.getData().size() > 0 ? yq.getData().size() : 1; 
 		for(int row=0;row<dataSize;row++)
@@ -934,6 +954,244 @@ public abstract class JDBCAdaptor extends Adaptor{
 		return lSql.toString();
 	}
 
+	/**
+	 * Returns {@code true} if an {@code IN} list with more values than
+	 * {@link com.novartis.opensource.yada.util.QueryUtils#YADA_INLIST_MAX} can be replaced with
+	 * {@link #buildInList(boolean, char, int)}, instead of a parameter for each value.  This implementation returns
+	 * {@code true} if {@link #getInListTableDDL(String, char)} is not {@code null}.
+	 * @return {@code true} if large {@code IN} lists can be rewritten
+	 * @since 10.2.0
+	 */
+	public boolean isInListRewritable()
+	{
+		return getInListTableDDL(getInListTable(VARCHAR, 0), VARCHAR) != null;
+	}
+
+	/**
+	 * Returns the number of values above which {@code IN} lists are rewritten, if neither
+	 * {@link com.novartis.opensource.yada.util.QueryUtils#YADA_INLIST_MAX} nor the query property is set.  This
+	 * implementation returns {@code 1000}, the most values Oracle accepts in a list, and well below the
+	 * parameter limits of the other drivers, if {@link #isInListRewritable()}, or else {@code 0}.  Adaptors
+	 * override it for drivers with a lower, or higher, limit.
+	 * @return the default maximum, or {@code 0} to disable
+	 * @since 10.2.0
+	 */
+	public int getDefaultInListMax()
+	{
+		return isInListRewritable() ? 1000 : 0;
+	}
+
+	/**
+	 * Returns the predicate which replaces {@code IN (?x)}, or {@code NOT IN (?x)}, for a large {@code IN} list,
+	 * with a single parameter, whose value is returned by {@link #bindInList(Connection, char, int, String[])}.  This
+	 * implementation selects the values from a temporary table, one for each list in the query, as some databases
+	 * can't refer to a temporary table more than once in a statement.
+	 * @param not {@code true} for {@code NOT IN}
+	 * @param type the data type of the values
+	 * @param list the index of the list in the query
+	 * @return the predicate, including YADA markup, without its left side
+	 * @since 10.2.0
+	 */
+	public String buildInList(boolean not, char type, int list)
+	{
+		return (not ? "NOT IN" : "IN") + " (SELECT v FROM " + getInListTable(type, list) + " WHERE k = ?i)";
+	}
+
+	/**
+	 * Stores the values of a large {@code IN} list for the predicate returned by {@link #buildInList(boolean, char, int)},
+	 * and returns the value of its parameter.  This implementation inserts the values, in one batch, into the
+	 * temporary table for {@code type} and {@code list}, creating it first if necessary, and returns their key.
+	 * The rows are deleted by {@link #clearInLists(Connection)} when the request is finished, or else, e.g., if
+	 * a rollback restored them, by the next request on the same session.  Tables which can't be emptied,
+	 * e.g., because a rollback dropped them, are forgotten, and created again when next needed.
+	 * @param conn the connection on which the query is executed
+	 * @param type the data type of the values
+	 * @param list the index of the list in the query
+	 * @param values the values
+	 * @return the value of the parameter of the predicate
+	 * @throws YADAAdaptorException when the values can't be stored
+	 * @since 10.2.0
+	 */
+	public String bindInList(Connection conn, char type, int list, String[] values) throws YADAAdaptorException
+	{
+		String table = getInListTable(type, list);
+		try
+		{
+			InListSession inListSession = IN_LIST_SESSIONS.computeIfAbsent(getInListSession(conn), c -> new InListSession());
+			int           key;
+			synchronized (inListSession)
+			{
+				try (Statement stmt = conn.createStatement())
+				{
+					if (inListSession.owner.get() != this.yadaReq)
+					{
+						if (inListSession.keys > 0)
+						{
+							deleteInLists(stmt, inListSession);
+						}
+						inListSession.owner = new WeakReference<>(this.yadaReq);
+						inListSession.keys  = 0;
+					}
+					if (!inListSession.tables.contains(table))
+					{
+						try
+						{
+							stmt.execute(getInListTableDDL(table, type));
+						}
+						catch (SQLException e)
+						{
+							// the table may exist already, if it was forgotten
+							try
+							{
+								stmt.executeUpdate("DELETE FROM " + table);
+							}
+							catch (SQLException e1)
+							{
+								throw e;
+							}
+						}
+						inListSession.tables.add(table);
+					}
+				}
+				key = ++inListSession.keys;
+			}
+			try (PreparedStatement pstmt = conn.prepareStatement("INSERT INTO " + table + " (k, v) VALUES (?, ?)"))
+			{
+				for (String val : values)
+				{
+					pstmt.setInt(1, key);
+					setQueryParameter(pstmt, 2, type, val);
+					pstmt.addBatch();
+				}
+				pstmt.executeBatch();
+			}
+			l.debug("Stored [" + values.length + "] IN list values in [" + table + "] with key [" + key + "]");
+			return String.valueOf(key);
+		}
+		catch (SQLException | YADASQLException e)
+		{
+			String msg = "Unable to store the IN list values in [" + table + "]";
+			throw new YADAAdaptorException(msg, e);
+		}
+	}
+
+	/**
+	 * Deletes the {@code IN} list values stored by this adaptor's request on the session of {@code conn}, see
+	 * {@link #bindInList(Connection, char, int, String[])}.  The deletion is not committed, so unless the
+	 * connection is in auto-commit mode, the next request on the session deletes the rows again, in case
+	 * a rollback restored them.
+	 * @param conn the connection on which the query was executed
+	 * @since 10.2.0
+	 */
+	public void clearInLists(Connection conn)
+	{
+		InListSession inListSession = IN_LIST_SESSIONS.get(getInListSession(conn));
+		if (inListSession == null)
+			return;
+		synchronized (inListSession)
+		{
+			if (inListSession.owner.get() != this.yadaReq || inListSession.keys == 0)
+				return;
+			try (Statement stmt = conn.createStatement())
+			{
+				deleteInLists(stmt, inListSession);
+				if (conn.getAutoCommit())
+					inListSession.keys = 0;
+			}
+			catch (SQLException e)
+			{
+				l.debug("Unable to delete the IN list values of the request: " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Deletes the rows of each table in {@code inListSession}.  Tables which can't be emptied are forgotten.
+	 * @param stmt a statement on the session
+	 * @param inListSession the tables of the session
+	 * @since 10.2.0
+	 */
+	private void deleteInLists(Statement stmt, InListSession inListSession)
+	{
+		for (Iterator<String> tables = inListSession.tables.iterator(); tables.hasNext();)
+		{
+			String t = tables.next();
+			try
+			{
+				stmt.executeUpdate("DELETE FROM " + t);
+			}
+			catch (SQLException e)
+			{
+				l.debug("Dropping IN list table [" + t + "] from the session: " + e.getMessage());
+				tables.remove();
+			}
+		}
+	}
+
+	/**
+	 * @param conn a connection, possibly from a pool
+	 * @return the physical connection of {@code conn}, if it can be unwrapped, or else {@code conn}
+	 * @since 10.2.0
+	 */
+	private static Connection getInListSession(Connection conn)
+	{
+		try
+		{
+			return conn.unwrap(Connection.class);
+		}
+		catch (SQLException e)
+		{
+			return conn;
+		}
+	}
+
+	/**
+	 * @param type the data type of the values
+	 * @param list the index of the list in the query
+	 * @return the name of the temporary table which stores {@code IN} lists of {@code type} at {@code list}
+	 * @since 10.2.0
+	 */
+	protected String getInListTable(char type, int list)
+	{
+		return IN_LIST_TABLE + type + "_" + list;
+	}
+
+	/**
+	 * Returns the statement which creates {@code table} in the current session, with an integer key column {@code k}
+	 * and a value column {@code v} of {@code type}.  This implementation returns a {@code CREATE TEMPORARY TABLE}
+	 * statement.  Subclasses return {@code null} if large {@code IN} lists shouldn't be stored in temporary tables.
+	 * @param table the table name
+	 * @param type the data type of the values
+	 * @return the {@code DDL} statement, or {@code null}
+	 * @since 10.2.0
+	 */
+	protected String getInListTableDDL(String table, char type)
+	{
+		return "CREATE TEMPORARY TABLE " + table + " (k INTEGER, v " + getInListColumnType(type) + ")";
+	}
+
+	/**
+	 * @param type the data type of the values
+	 * @return the SQL type of the value column of an {@code IN} list table
+	 * @since 10.2.0
+	 */
+	protected String getInListColumnType(char type)
+	{
+		switch(type)
+		{
+		case DATE:
+			return "DATE";
+		case TIMESTAMP:
+			return "TIMESTAMP";
+		case INTEGER:
+			return "BIGINT";
+		case NUMBER:
+			return "DOUBLE PRECISION";
+		default:
+			return "VARCHAR(4000)";
+		}
+	}
+
 	/**
 	 * Sets the parameter value based on the data type designated in the YADA Markup, mapped to the correct JDBC setter.
 	 * @param pstmt the statement in which to set the parameter values
@@ -1097,7 +1355,26 @@ public abstract class JDBCAdaptor extends Adaptor{
       pstmt.setNull(index, java.sql.Types.INTEGER);
     }
 	}
-}
 
+	/**
+	 * The {@code IN} list tables created in a session, and the request which last stored values in them
+	 * @since 10.2.0
+	 */
+	private static final class InListSession {
+
+		/**
+		 * The names of the tables created in the session
+		 */
+		private final Set<String> tables = new LinkedHashSet<>();
 
+		/**
+		 * The request which last stored values in the tables
+		 */
+		private WeakReference<YADARequest> owner = new WeakReference<>(null);
 
+		/**
+		 * The last key used by {@link #owner}, or {@code 0} if the tables are empty
+		 */
+		private int keys;
+	}
+}
@@ -230,4 +230,17 @@ public class OracleAdaptor extends JDBCAdaptor {
       }
     }
   }
+
+	/**
+	 * Oracle DDL commits the current transaction, and global temporary tables must be created in advance,
+	 * so large {@code IN} lists are not rewritten.
+	 * @return {@code null}
+	 * @see com.novartis.opensource.yada.adaptor.JDBCAdaptor#getInListTableDDL(java.lang.String, char)
+	 * @since 10.2.0
+	 */
+	@Override
+	protected String getInListTableDDL(String table, char type)
+	{
+		return null;
+	}
 }
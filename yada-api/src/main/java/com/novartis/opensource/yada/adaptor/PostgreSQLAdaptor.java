@@ -14,6 +14,8 @@
  */
 package com.novartis.opensource.yada.adaptor;
 
+import java.sql.Connection;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,4 +50,82 @@ public class PostgreSQLAdaptor extends JDBCAdaptor {
 	{
 		super(yadaReq);
 	}
+
+	/**
+	 * Large {@code IN} lists are bound as a single array.
+	 * @return {@code true}
+	 * @since 10.2.0
+	 */
+	@Override
+	public boolean isInListRewritable()
+	{
+		return true;
+	}
+
+	/**
+	 * Lists are rewritten by default, as binding an array costs no additional statements.
+	 * @return {@code 1000}
+	 * @since 10.2.0
+	 */
+	@Override
+	public int getDefaultInListMax()
+	{
+		return 1000;
+	}
+
+	/**
+	 * Returns {@code = ANY(?)}, or {@code <> ALL(?)}, with a single parameter, bound to the text of an array,
+	 * so a large {@code IN} list doesn't exceed the driver's limit of parameters per statement.
+	 * @see com.novartis.opensource.yada.adaptor.JDBCAdaptor#buildInList(boolean, char, int)
+	 * @since 10.2.0
+	 */
+	@Override
+	public String buildInList(boolean not, char type, int list)
+	{
+		return (not ? "<> ALL" : "= ANY") + "(CAST(?v AS " + getArrayType(type) + "[]))";
+	}
+
+	/**
+	 * Returns the text of an array of {@code values}.  Empty values, except strings, are {@code NULL}.
+	 * @see com.novartis.opensource.yada.adaptor.JDBCAdaptor#bindInList(java.sql.Connection, char, int, java.lang.String[])
+	 * @since 10.2.0
+	 */
+	@Override
+	public String bindInList(Connection conn, char type, int list, String[] values)
+	{
+		StringBuilder array = new StringBuilder("{");
+		for (int i = 0; i < values.length; i++)
+		{
+			String val = values[i];
+			if (i > 0)
+				array.append(',');
+			if (val == null || (type != VARCHAR && val.trim().isEmpty()))
+				array.append("NULL");
+			else
+				array.append('"').append(val.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+		}
+		return array.append('}').toString();
+	}
+
+	/**
+	 * @param type the data type of the values
+	 * @return the element type of the array to which a large {@code IN} list of {@code type} is cast
+	 * @since 10.2.0
+	 */
+	protected String getArrayType(char type)
+	{
+		switch(type)
+		{
+		case DATE:
+			return "date";
+		case TIMESTAMP:
+			return "timestamp";
+		case INTEGER:
+			return "bigint";
+		case NUMBER:
+			return "numeric";
+		default:
+			return "text";
+		}
+	}
 }
@@ -138,4 +138,48 @@ public class SQLServerAdaptor extends JDBCAdaptor {
 		}
 		return sql;
 	}
+
+	/**
+	 * SQLServer accepts at most 2100 parameters in a statement
+	 * @return {@code 2000}
+	 * @since 10.2.0
+	 */
+	@Override
+	public int getDefaultInListMax()
+	{
+		return 2000;
+	}
+
+	/**
+	 * SQLServer session tables are prefixed with {@code #}
+	 * @see com.novartis.opensource.yada.adaptor.JDBCAdaptor#getInListTable(char, int)
+	 * @since 10.2.0
+	 */
+	@Override
+	protected String getInListTable(char type, int list)
+	{
+		return "#" + super.getInListTable(type, list);
+	}
+
+	/**
+	 * Uses {@code CREATE TABLE} for {@code #} tables
+	 * @see com.novartis.opensource.yada.adaptor.JDBCAdaptor#getInListTableDDL(java.lang.String, char)
+	 * @since 10.2.0
+	 */
+	@Override
+	protected String getInListTableDDL(String table, char type)
+	{
+		return "CREATE TABLE " + table + " (k INTEGER, v " + getInListColumnType(type) + ")";
+	}
+
+	/**
+	 * SQLServer {@code TIMESTAMP} is a row version, so {@code DATETIME2} is used instead
+	 * @see com.novartis.opensource.yada.adaptor.JDBCAdaptor#getInListColumnType(char)
+	 * @since 10.2.0
+	 */
+	@Override
+	protected String getInListColumnType(char type)
+	{
+		return type == TIMESTAMP ? "DATETIME2" : super.getInListColumnType(type);
+	}
 }
@@ -54,6 +54,17 @@ public class SQLiteAdaptor extends JDBCAdaptor {
 	{
 		super(yadaReq);
 	}
+
+	/**
+	 * SQLite drivers before 3.32 accept at most 999 parameters in a statement
+	 * @return {@code 900}
+	 * @since 10.2.0
+	 */
+	@Override
+	public int getDefaultInListMax()
+	{
+		return 900;
+	}
 	
 	@Override
 	protected void setDateParameter(PreparedStatement pstmt, int index, char type, String val) throws SQLException 
@@ -50,5 +50,15 @@ public class VerticaAdaptor extends JDBCAdaptor {
 	{
 		super(yadaReq);
 	}
-	
+
+	/**
+	 * Vertica deletes the rows of temporary tables on commit by default
+	 * @see com.novartis.opensource.yada.adaptor.JDBCAdaptor#getInListTableDDL(java.lang.String, char)
+	 * @since 10.2.0
+	 */
+	@Override
+	protected String getInListTableDDL(String table, char type)
+	{
+		return "CREATE LOCAL TEMPORARY TABLE " + table + " (k INTEGER, v " + getInListColumnType(type) + ") ON COMMIT PRESERVE ROWS";
+	}
 }
@@ -25,6 +25,7 @@ import org.slf4j.LoggerFactory;
 import org.json.JSONObject;
 
 import com.novartis.opensource.yada.Parser;
+import com.novartis.opensource.yada.RequestTimings;
 import com.novartis.opensource.yada.YADAQuery;
 import com.novartis.opensource.yada.YADAQueryConfigurationException;
 import com.novartis.opensource.yada.YADAQueryResult;
@@ -123,6 +124,11 @@ public abstract class AbstractResponse implements Response
 	 * The current result set being processed
 	 */
 	protected YADAQueryResult   yqr;
+	/**
+	 * The request's timings, to which conversion time is added, if set
+	 * @since 10.2.0
+	 */
+	protected RequestTimings    timings;
 	
 	/**
 	 * Default constructor 
@@ -131,6 +137,29 @@ public abstract class AbstractResponse implements Response
 	{
 	}
 
+	/**
+	 * Sets the request's timings, to which conversion time is added during composition
+	 * @param timings the request's timings
+	 * @since 10.2.0
+	 */
+	public void setTimings(RequestTimings timings)
+	{
+		this.timings = timings;
+	}
+
+	/**
+	 * Adds the time elapsed since {@code start} to {@link RequestTimings#CONVERT}, if timings are set
+	 * @param start the value of {@link System#nanoTime()} before conversion
+	 * @since 10.2.0
+	 */
+	protected void addConvertTime(long start)
+	{
+		if(this.timings != null)
+		{
+			this.timings.add(RequestTimings.CONVERT, start);
+		}
+	}
+
 	/**
 	 * Default implementation just returns itself.
 	 * @throws YADAQueryConfigurationException when the {@link Response} spec in the request is malformed
@@ -175,7 +175,9 @@ public class DelimitedResponse extends AbstractResponse {
 			Converter converter = getConverter(this.yqr);
 			if(getHarmonyMap() != null)
 				converter.setHarmonyMap(getHarmonyMap());
+			long start = System.nanoTime();
 			converter.convert(o,colsep,recsep);
+			addConvertTime(start);
 		} 
 		catch (YADARequestException e)
 		{
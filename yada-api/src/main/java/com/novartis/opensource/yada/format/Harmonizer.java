@@ -21,6 +21,7 @@ package com.novartis.opensource.yada.format;
 import com.novartis.opensource.yada.YADAResourceException;
 import com.novartis.opensource.yada.io.YADAIOException;
 import com.novartis.opensource.yada.util.JsRuntimeSupport;
+import com.novartis.opensource.yada.util.YADAThreads;
 
 import java.io.IOException;
 import java.io.InputStreamReader;
@@ -127,22 +128,22 @@ public class Harmonizer
   public String call(String func, Object[] o) throws YADAConverterException
   {
     Function f      = (Function)this.global.get(func,this.global);
-    String   result = "";
-    Context  ctx    = Context.enter();
-    try
-    {
-      result = f.call(ctx, this.global, this.global, o).toString();
-    } 
-    catch (EvaluatorException e)
-    {
-      String msg = "There was a problem with the Rhino Javascript engine.";
-      throw new YADAConverterException(msg, e);
-    }
-    finally
-    {
-      Context.exit();
-    }
-    
-    return result;
+    // rhino is cpu-bound, so keep it off virtual threads
+    return YADAThreads.compute(() -> {
+      Context  ctx    = Context.enter();
+      try
+      {
+        return f.call(ctx, this.global, this.global, o).toString();
+      } 
+      catch (EvaluatorException e)
+      {
+        String msg = "There was a problem with the Rhino Javascript engine.";
+        throw new YADAConverterException(msg, e);
+      }
+      finally
+      {
+        Context.exit();
+      }
+    });
   }
 }
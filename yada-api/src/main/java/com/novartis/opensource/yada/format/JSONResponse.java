@@ -253,7 +253,9 @@ public class JSONResponse extends AbstractResponse {
 		  boolean    count     = Boolean.parseBoolean(this.yqr.getYADAQueryParamValue(YADARequest.PS_COUNT));
 		  if(getHarmonyMap() != null)
 				converter.setHarmonyMap(getHarmonyMap());
+			long start = System.nanoTime();
 			JSONArray rows = (JSONArray)converter.convert(o);
+			addConvertTime(start);
 			
 			
 			// object prep
@@ -0,0 +1,271 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada.format;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Date;
+
+import org.json.JSONArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.novartis.opensource.yada.YADAQueryConfigurationException;
+import com.novartis.opensource.yada.YADAQueryResult;
+import com.novartis.opensource.yada.YADARequest;
+import com.novartis.opensource.yada.YADARequestException;
+import com.novartis.opensource.yada.util.YADAUtils;
+
+/**
+ * <p>
+ * A {@link StreamingResponse} producing the same document structure as {@link JSONResponse}, but writing
+ * each row to the output as the {@link ResultSet} is iterated. The only structural difference is the
+ * trailing {@code elapsed} key, which {@link com.novartis.opensource.yada.server.YADARequestHandler}
+ * would otherwise add by re-parsing the finished response.
+ * </p>
+ * <p>
+ * Joins and harmony maps require all results to be in memory at once, so requests using either are
+ * delegated to {@link JSONResponse#compose(YADAQueryResult[])} and written out in one piece.
+ * </p>
+ * @author David Varon
+ * @since 10.2.0
+ */
+public class JSONStreamingResponse extends JSONResponse implements StreamingResponse {
+
+	/**
+   * Local logger handle
+   */
+	private static Logger l = LoggerFactory.getLogger(JSONStreamingResponse.class);
+
+	/**
+	 * Thread-safe, reusable factory for the generators wrapping each response writer
+	 */
+	protected final static JsonFactory JSON_FACTORY = new JsonFactory();
+
+	/**
+	 * Default constructor
+	 */
+	public JSONStreamingResponse()
+	{
+		super();
+	}
+
+	/**
+	 * Iterates over the results, writing each row to {@code writer} as it is read.
+	 * @see com.novartis.opensource.yada.format.StreamingResponse#compose(com.novartis.opensource.yada.YADAQueryResult[], java.io.Writer, boolean, long)
+	 */
+	@Override
+	public Response compose(YADAQueryResult[] yqrs, Writer writer, boolean prettyPrint, long timestamp) throws YADAResponseException, YADAConverterException, YADAQueryConfigurationException
+	{
+		setYADAQueryResults(yqrs);
+		if(requiresBuffering(yqrs))
+		{
+			l.debug("Request requires join or harmonization, buffering response.");
+			try
+			{
+				writer.write(super.compose(yqrs).toString(prettyPrint));
+			}
+			catch (IOException e)
+			{
+				String msg = "There was a problem writing the response.";
+				throw new YADAResponseException(msg,e);
+			}
+			return this;
+		}
+
+		try
+		{
+			JsonGenerator gen = JSON_FACTORY.createGenerator(writer);
+			gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			if(prettyPrint)
+				gen.useDefaultPrettyPrinter();
+
+			boolean multiple = hasMultipleResults();
+			gen.writeStartObject();
+			if(multiple)
+				gen.writeArrayFieldStart(RESULTSETS);
+			else
+				gen.writeObjectFieldStart(RESULTSET);
+
+			for(YADAQueryResult yqr : yqrs)
+			{
+				setYADAQueryResult(yqr);
+				if(yqr != null)
+				{
+					if(yqr.getResults() != null && yqr.getResults().size() > 0)
+					{
+						for(Object result : yqr.getResults())
+						{
+							if(result != null)
+								writeResult(gen, result, multiple);
+						}
+					}
+					else if(yqr.getCountResults() != null && yqr.getCountResults().size() > 0)
+					{
+						for(Object result : yqr.getCountResults())
+						{
+							if(result != null)
+								writeCount(gen, multiple);
+						}
+					}
+				}
+			}
+
+			if(multiple)
+				gen.writeEndArray();
+			else
+				gen.writeEndObject();
+			gen.writeStringField(VERSION, YADAUtils.getVersion());
+			// add 1 to account for remaining steps, as in YADARequestHandler
+			gen.writeNumberField(ELAPSED, (new Date().getTime() - timestamp) + 1);
+			gen.writeEndObject();
+			gen.flush();
+		}
+		catch (IOException e)
+		{
+			String msg = "There was a problem writing the response.";
+			throw new YADAResponseException(msg,e);
+		}
+		return this;
+	}
+
+	/**
+	 * Returns {@code true} if any result in {@code yqrs} is joined or harmonized
+	 * @param yqrs the results to inspect
+	 * @return {@code true} if the response can't be written incrementally
+	 */
+	private boolean requiresBuffering(YADAQueryResult[] yqrs)
+	{
+		for(YADAQueryResult yqr : yqrs)
+		{
+			setYADAQueryResult(yqr);
+			if(yqr != null && (yqr.hasJoin() || getHarmonyMap() != null))
+				return true;
+		}
+		setYADAQueryResult(null);
+		return false;
+	}
+
+	/**
+	 * Writes the keys contained in a {@code RESULTSET} for the result {@code o}, which is
+	 * iterated directly when it is a {@link ResultSet} handled by the default converter.
+	 * @param gen the generator wrapping the response output
+	 * @param o the result to write
+	 * @param multiple {@code true} if each result is wrapped in its own {@code RESULTSET}
+	 * @throws IOException when {@code gen} can't be written
+	 * @throws YADAResponseException when the converter can't be created
+	 * @throws YADAConverterException when result reformatting fails
+	 * @throws YADAQueryConfigurationException when the {@link Response} spec in the request is malformed
+	 */
+	protected void writeResult(JsonGenerator gen, Object o, boolean multiple) throws IOException, YADAResponseException, YADAConverterException, YADAQueryConfigurationException
+	{
+		Converter converter;
+		try
+		{
+			converter = getConverter(this.yqr);
+		}
+		catch (YADARequestException e)
+		{
+			String msg = "There was problem creating the Converter.";
+			throw new YADAResponseException(msg,e);
+		}
+
+		if(multiple)
+		{
+			gen.writeStartObject();
+			gen.writeObjectFieldStart(RESULTSET);
+		}
+
+		int records = 0;
+		long start = System.nanoTime();
+		gen.writeArrayFieldStart(ROWS);
+		if(o instanceof ResultSet && converter instanceof ResultSetResultJSONConverter)
+		{
+			try
+			{
+				records = ((ResultSetResultJSONConverter)converter).writeJSONRows((ResultSet)o, gen);
+			}
+			catch (SQLException e)
+			{
+				String msg = "Unable to iterate over ResultSet";
+				throw new YADAConverterException(msg,e);
+			}
+		}
+		else
+		{
+			JSONArray rows = (JSONArray)converter.convert(o);
+			for(int i=0;i<rows.length();i++)
+			{
+				gen.writeRawValue(rows.get(i).toString());
+			}
+			records = rows.length();
+		}
+		gen.writeEndArray();
+		// rows are converted as they are written
+		addConvertTime(start);
+
+		gen.writeNumberField(RECORDS, records);
+		gen.writeStringField(QNAME, this.yqr.getYADAQueryParamValue(YADARequest.PS_QNAME));
+		gen.writeStringField(APP, this.yqr.getApp());
+		if(Boolean.parseBoolean(this.yqr.getYADAQueryParamValue(YADARequest.PS_COUNT)))
+		{
+			gen.writeObjectField(TOTAL, this.yqr.getCountResult(0));
+			gen.writeStringField(PAGE, this.yqr.getYADAQueryParamValue(YADARequest.PS_PAGESTART));
+		}
+
+		if(multiple)
+		{
+			gen.writeEndObject();
+			gen.writeEndObject();
+		}
+	}
+
+	/**
+	 * Writes the keys contained in a {@code RESULTSET} for update, insert, and delete results,
+	 * mirroring {@link JSONResponse#append(Integer)}
+	 * @param gen the generator wrapping the response output
+	 * @param multiple {@code true} if each result is wrapped in its own {@code RESULTSET}
+	 * @throws IOException when {@code gen} can't be written
+	 * @throws YADAResponseException when the query name can't be obtained
+	 */
+	protected void writeCount(JsonGenerator gen, boolean multiple) throws IOException, YADAResponseException
+	{
+		if(multiple)
+		{
+			gen.writeStartObject();
+			gen.writeObjectFieldStart(RESULTSET);
+		}
+		try
+		{
+			gen.writeStringField(QNAME, this.yqr.getYADAQueryParamValue(YADARequest.getParamValueForKey(this.yqr.getParameters(),YADAUtils.PARAM_FRAG_QNAME)));
+		}
+		catch (YADAQueryConfigurationException e)
+		{
+			String msg = "There was problem obtaining the query name from the query object.";
+			throw new YADAResponseException(msg,e);
+		}
+		gen.writeStringField(APP, this.yqr.getApp());
+		gen.writeObjectField(TOTAL, this.yqr.getCountResult(0));
+		if(multiple)
+		{
+			gen.writeEndObject();
+			gen.writeEndObject();
+		}
+	}
+}
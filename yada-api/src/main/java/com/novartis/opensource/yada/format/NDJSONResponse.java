@@ -0,0 +1,151 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada.format;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import org.json.JSONObject;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.novartis.opensource.yada.YADAQueryConfigurationException;
+import com.novartis.opensource.yada.YADAQueryResult;
+
+/**
+ * <p>
+ * A {@link StreamingResponse} writing each query's result as a separate line of newline-delimited json, i.e.,
+ * a frame, so that clients of multi-query {@link com.novartis.opensource.yada.JSONParams} requests can process
+ * each result as soon as its query completes.  Each frame is an object containing the {@code qname} and 
+ * {@code index} of the query in the request, and the {@code RESULTSET}, or {@code RESULTSETS}, of the query, 
+ * as in a {@link JSONResponse}.
+ * </p>
+ * <p>
+ * Harmony maps are applied to each frame separately, rather than merging the results of all queries.
+ * </p>
+ * @author David Varon
+ * @since 10.2.0
+ */
+public class NDJSONResponse extends JSONStreamingResponse {
+
+	/**
+	 * Constant equal to {@value}
+	 */
+	public final static String CONTENT_TYPE = "application/x-ndjson";
+
+	/**
+	 * Constant equal to {@value}
+	 */
+	public final static String INDEX = "index";
+
+	/**
+	 * Default constructor
+	 */
+	public NDJSONResponse()
+	{
+		super();
+	}
+
+	/**
+	 * Writes a frame for each result.  {@code prettyPrint} and {@code timestamp} are ignored, as each frame
+	 * must be a single line.
+	 * @see com.novartis.opensource.yada.format.JSONStreamingResponse#compose(com.novartis.opensource.yada.YADAQueryResult[], java.io.Writer, boolean, long)
+	 */
+	@Override
+	public Response compose(YADAQueryResult[] yqrs, Writer writer, boolean prettyPrint, long timestamp) throws YADAResponseException, YADAConverterException, YADAQueryConfigurationException
+	{
+		for(int i=0;i<yqrs.length;i++)
+		{
+			writeFrame(yqrs[i], i, writer);
+		}
+		return this;
+	}
+
+	/**
+	 * Writes the frame for a single query result, followed by a newline, and flushes {@code writer}.
+	 * @param yqr the query result
+	 * @param index the position of the query in the request
+	 * @param writer the response output
+	 * @throws YADAResponseException when {@code writer} can't be written
+	 * @throws YADAConverterException when result reformatting fails
+	 * @throws YADAQueryConfigurationException when the {@link Response} spec in the request is malformed
+	 */
+	public void writeFrame(YADAQueryResult yqr, int index, Writer writer) throws YADAResponseException, YADAConverterException, YADAQueryConfigurationException
+	{
+		if(yqr == null)
+			return;
+		YADAQueryResult[] yqrs = new YADAQueryResult[] { yqr };
+		setYADAQueryResults(yqrs);
+		setYADAQueryResult(yqr);
+		try
+		{
+			JsonGenerator gen = JSON_FACTORY.createGenerator(writer);
+			gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			gen.writeStartObject();
+			gen.writeStringField(QNAME, yqr.getQname());
+			gen.writeNumberField(INDEX, index);
+			if(getHarmonyMap() != null)
+			{
+				JSONResponse harmonized = new JSONResponse();
+				harmonized.setTimings(this.timings);
+				JSONObject composed = new JSONObject(harmonized.compose(yqrs).toString());
+				for(String key : new String[] { RESULTSET, RESULTSETS })
+				{
+					if(composed.has(key))
+					{
+						gen.writeFieldName(key);
+						gen.writeRawValue(composed.get(key).toString());
+					}
+				}
+			}
+			else
+			{
+				boolean multiple = hasMultipleResults();
+				if(multiple)
+					gen.writeArrayFieldStart(RESULTSETS);
+				else
+					gen.writeObjectFieldStart(RESULTSET);
+				if(yqr.getResults() != null && yqr.getResults().size() > 0)
+				{
+					for(Object result : yqr.getResults())
+					{
+						if(result != null)
+							writeResult(gen, result, multiple);
+					}
+				}
+				else if(yqr.getCountResults() != null && yqr.getCountResults().size() > 0)
+				{
+					for(Object result : yqr.getCountResults())
+					{
+						if(result != null)
+							writeCount(gen, multiple);
+					}
+				}
+				if(multiple)
+					gen.writeEndArray();
+				else
+					gen.writeEndObject();
+			}
+			gen.writeEndObject();
+			gen.flush();
+			writer.write('\n');
+			writer.flush();
+		}
+		catch (IOException e)
+		{
+			String msg = "There was a problem writing the response.";
+			throw new YADAResponseException(msg,e);
+		}
+	}
+}
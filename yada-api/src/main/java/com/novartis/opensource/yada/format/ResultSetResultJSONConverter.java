@@ -17,6 +17,7 @@
  */
 package com.novartis.opensource.yada.format;
 
+import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
@@ -25,6 +26,8 @@ import java.util.List;
 
 import javax.sql.rowset.RowSetMetaDataImpl;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -147,4 +150,50 @@ public class ResultSetResultJSONConverter extends AbstractConverter {
 		}
 		return rows;
 	}
+
+	/**
+	 * Writes the data in a {@link java.sql.ResultSet} to {@code gen} as one json object per row,
+	 * without first accumulating it in a {@link JSONArray}. The caller is responsible for
+	 * opening and closing the enclosing array.  Harmonization is not supported in this mode.
+	 * @param rs the result set containing the data to write
+	 * @param gen the generator wrapping the response output
+	 * @return the number of rows written
+	 * @throws SQLException when iteration or access to {@code rs} fails
+	 * @throws IOException when {@code gen} can't be written
+	 * @since 10.2.0
+	 */
+	protected int writeJSONRows(ResultSet rs, JsonGenerator gen) throws SQLException, IOException
+	{
+		int               rowCount = 0;
+		ResultSetMetaData rsmd     = rs.getMetaData();
+		if (rsmd == null)
+			rsmd = new RowSetMetaDataImpl();
+		int      colCount = rsmd.getColumnCount();
+		String[] cols     = new String[colCount + 1];
+		for (int i=1; i<=colCount; i++)
+		{
+			String origColName = rsmd.getColumnName(i);
+			if(!origColName.toLowerCase().equals(JDBCAdaptor.ROWNUM_ALIAS))
+				cols[i] = origColName;
+		}
+		while (rs.next())
+		{
+			gen.writeStartObject();
+			for (int i=1; i<=colCount; i++)
+			{
+				if(cols[i] != null)
+				{
+					String colValue = rs.getString(i);
+					if (null == colValue || NULL.equals(colValue))
+					{
+						colValue = NULL_REPLACEMENT;
+					}
+					gen.writeStringField(cols[i], colValue);
+				}
+			}
+			gen.writeEndObject();
+			rowCount++;
+		}
+		return rowCount;
+	}
 }
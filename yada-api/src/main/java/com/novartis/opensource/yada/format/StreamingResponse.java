@@ -0,0 +1,52 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada.format;
+
+import java.io.Writer;
+
+import com.novartis.opensource.yada.YADAQueryConfigurationException;
+import com.novartis.opensource.yada.YADAQueryResult;
+
+/**
+ * A {@link Response} which writes its content directly to a {@link Writer}, typically the
+ * servlet response writer, while the underlying results are iterated, rather than
+ * accumulating the entire response in memory and returning it via {@link #toString(boolean)}.
+ *
+ * @author David Varon
+ * @since 10.2.0
+ */
+public interface StreamingResponse extends Response {
+
+	/**
+	 * Constant with value equal to: {@value}
+	 */
+	public final static String ELAPSED = "elapsed";
+
+	/**
+	 * Writes the formatted content of {@code yadaQueryResults} to {@code writer}.  Implementations
+	 * should append the time elapsed since {@code timestamp} as a trailing field, as it is no longer
+	 * possible to set it in a header once the body has been committed.
+	 *
+	 * @param yadaQueryResults array containing result objects
+	 * @param writer the destination of the formatted content
+	 * @param prettyPrint flag indicating whether or not to format the content with indenting
+	 * @param timestamp the time, in milliseconds, at which the request was received
+	 * @return this Response object
+	 * @throws YADAResponseException when response composition fails, or {@code writer} can't be written
+	 * @throws YADAConverterException when result reformatting fails
+	 * @throws YADAQueryConfigurationException when the {@link Response} spec in the request is malformed
+	 */
+	public Response compose(YADAQueryResult[] yadaQueryResults, Writer writer, boolean prettyPrint, long timestamp) throws YADAResponseException, YADAConverterException, YADAQueryConfigurationException;
+}
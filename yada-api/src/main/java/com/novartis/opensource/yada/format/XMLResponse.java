@@ -137,7 +137,9 @@ public class XMLResponse extends AbstractResponse {
 			if(getHarmonyMap() != null)
 				converter.setHarmonyMap(getHarmonyMap());
 			boolean count = Boolean.parseBoolean(this.yqr.getYADAQueryParamValue(YADARequest.PS_COUNT));
+			long start = System.nanoTime();
 			DocumentFragment rows  = (DocumentFragment)	converter.convert(o);
+			addConvertTime(start);
 			Element resultSet = null;
 			if(hasMultipleResults())
 			{
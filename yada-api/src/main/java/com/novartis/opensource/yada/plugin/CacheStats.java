@@ -0,0 +1,75 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * 
+ */
+package com.novartis.opensource.yada.plugin;
+
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONObject;
+
+import com.novartis.opensource.yada.ConnectionFactory;
+import com.novartis.opensource.yada.YADAIndexCache;
+import com.novartis.opensource.yada.YADAQuery;
+import com.novartis.opensource.yada.YADARequest;
+
+/**
+ * Returns the limits, size, and hit, miss, eviction, and expiration counts of the query cache, as json.
+ * Pass {@link #RESET} as an argument to reset the counts after reading them, or {@link #CLEAR} to
+ * empty the cache.
+ * @author David Varon
+ * @since 10.2.0
+ * @see YADAIndexCache#getStats()
+ */
+public class CacheStats extends AbstractBypass
+{
+	/**
+	 * Constant equal to {@value}
+	 */
+	public final static String RESET = "reset";
+
+	/**
+	 * Constant equal to {@value}
+	 */
+	public final static String CLEAR = "clear";
+
+	/** 
+	 * @see com.novartis.opensource.yada.plugin.Bypass#engage(com.novartis.opensource.yada.YADARequest)
+	 */	
+	@Override
+	public String engage(YADARequest yadaReq) throws YADAPluginException
+	{
+		Map<String,YADAQuery> yadaIndex = ConnectionFactory.getConnectionFactory().getCache();
+		if(!(yadaIndex instanceof YADAIndexCache))
+		{
+			throw new YADAPluginException("The query cache does not record statistics.");
+		}
+		YADAIndexCache cache = (YADAIndexCache) yadaIndex;
+		JSONObject     stats = cache.getStats();
+		List<String>   args  = yadaReq.getArgs();
+		if(args != null && args.contains(RESET))
+		{
+			cache.resetStats();
+		}
+		if(args != null && args.contains(CLEAR))
+		{
+			cache.clear();
+		}
+		stats.put("timestamp", new java.util.Date().toString());
+		return stats.toString();
+	}
+}
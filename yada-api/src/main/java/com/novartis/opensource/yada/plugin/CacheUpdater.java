@@ -17,7 +17,13 @@
  */
 package com.novartis.opensource.yada.plugin;
 
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Path;
 import java.util.Map;
+import java.util.Set;
+
+import javax.servlet.http.HttpServletRequest;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,6 +36,10 @@ import com.novartis.opensource.yada.YADARequest;
 
 /**
  * Updates all queries in the cache.  Useful when updating the YADA Index from the command line.
+ * When {@link Finder#YADA_LIB} is set, and the request is from the server's own host, e.g., from the
+ * command line, the library is pulled first, and only the queries affected by the files which changed
+ * are updated.  See {@link Finder#pullYADALib()}.  Requests from other hosts only update the queries.
+ * Behind a proxy on the same host every request is local, so the proxy must then restrict this plugin.
  * @author David Varon
  * @since 4.1.0
  */
@@ -48,8 +58,24 @@ public class CacheUpdater extends AbstractBypass
 	public String engage(YADARequest yadaReq) throws YADAPluginException
 	{    
 		Map<String,YADAQuery> yadaIndex = ConnectionFactory.getConnectionFactory().getCache();
+		Set<Path>             changed   = null;
+		if(Finder.hasYADALib() && isLocal(yadaReq))
+		{
+		  try
+		  {
+		    changed = Finder.pullYADALib();
+		  }
+		  catch(YADAFinderException e)
+		  {
+		    l.warn("Unable to pull the YADA lib. All cached queries will be refreshed.", e);
+		  }
+		}
 		for(String q : yadaIndex.keySet().toArray(new String[yadaIndex.keySet().size()]))
 		{
+		  if(changed != null && !isChanged(q, changed))
+		  {
+		    continue;
+		  }
 			l.debug("Refreshing verson of [" + q + "] in cache.");
       YADAQuery yq = null;
       try 
@@ -69,4 +95,48 @@ public class CacheUpdater extends AbstractBypass
 		return "Cache successfully updated on " + new java.util.Date().toString();
 	}
 
+	/**
+	 * @param yadaReq the request
+	 * @return {@code true} if the request is from a loopback address, or not from a client
+	 * @since 10.2.0
+	 */
+	private static boolean isLocal(YADARequest yadaReq)
+	{
+	  HttpServletRequest request = yadaReq.getRequest();
+	  if(request == null)
+	    return true;
+	  try
+	  {
+	    return InetAddress.getByName(request.getRemoteAddr()).isLoopbackAddress();
+	  }
+	  catch(UnknownHostException e)
+	  {
+	    return false;
+	  }
+	}
+
+	/**
+	 * @param q the query name
+	 * @param changed the absolute paths of the files changed by a pull
+	 * @return {@code true} if the file of {@code q}, or the {@code conf.json} of its app, is in {@code changed}
+	 * @since 10.2.0
+	 */
+	private static boolean isChanged(String q, Set<Path> changed)
+	{
+	  try
+	  {
+	    Path path = Finder.getLibPath(q);
+	    for(Path dir = path.getParent(); dir != null; dir = dir.getParent())
+	    {
+	      if(changed.contains(dir.resolve(Finder.CONF_FILE)))
+	        return true;
+	    }
+	    return changed.contains(path);
+	  }
+	  catch(YADAFinderException e)
+	  {
+	    return true;
+	  }
+	}
+
 }
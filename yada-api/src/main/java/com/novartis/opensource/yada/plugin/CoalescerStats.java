@@ -0,0 +1,56 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * 
+ */
+package com.novartis.opensource.yada.plugin;
+
+import java.util.List;
+
+import org.json.JSONObject;
+
+import com.novartis.opensource.yada.YADARequest;
+import com.novartis.opensource.yada.server.YADARequestCoalescer;
+
+/**
+ * Returns the executed, coalesced, and in-flight request counts of the server's request coalescer, as json.
+ * Pass {@link CacheStats#RESET} as an argument to reset the counts after reading them.
+ * @author David Varon
+ * @since 10.2.0
+ * @see YADARequestCoalescer#getStats()
+ */
+public class CoalescerStats extends AbstractBypass
+{
+	/** 
+	 * @see com.novartis.opensource.yada.plugin.Bypass#engage(com.novartis.opensource.yada.YADARequest)
+	 */	
+	@Override
+	public String engage(YADARequest yadaReq) throws YADAPluginException
+	{
+		YADARequestCoalescer coalescer = YADARequestCoalescer.getInstance();
+		if(coalescer == null)
+		{
+			throw new YADAPluginException("Request coalescing is disabled.");
+		}
+		JSONObject   stats = coalescer.getStats();
+		List<String> args  = yadaReq.getArgs();
+		if(args != null && args.contains(CacheStats.RESET))
+		{
+			coalescer.resetStats();
+		}
+		stats.put("timestamp", new java.util.Date().toString());
+		return stats.toString();
+	}
+}
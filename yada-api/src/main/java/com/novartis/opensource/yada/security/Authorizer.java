@@ -40,6 +40,7 @@ import com.novartis.opensource.yada.YADAResourceException;
 import com.novartis.opensource.yada.YADASQLException;
 import com.novartis.opensource.yada.plugin.AbstractPostprocessor;
 import com.novartis.opensource.yada.plugin.YADAPluginException;
+import com.novartis.opensource.yada.util.YADAThreads;
 import com.novartis.opensource.yada.util.YADAUtils;
 
 /**
@@ -482,7 +483,8 @@ public class Authorizer extends AbstractPostprocessor implements Authorization {
         JSONObject identity = jshadow.getJSONObject("users").getJSONObject(userid);
         String     hash     = identity.getString(YADA_IDENTITY_HASH);
         Verifier   verifier = jargon2Verifier();
-        boolean    matches  = verifier.hash(hash).password(pw.getBytes()).verifyEncoded();
+        // argon2 is cpu-bound, so keep it off virtual threads
+        boolean    matches  = YADAThreads.compute(() -> verifier.hash(hash).password(pw.getBytes()).verifyEncoded());
         if(!matches)
         {
           String msg = "Unable to proceed with authorization. Check credentials.";
@@ -929,6 +929,8 @@ public class Gatekeeper extends AbstractPreprocessor {
             }
           }
         }
+        // the row is a copy, so store the injected values in the query as well
+        getYADAQuery().getData().set(0, dataRow);
 
         // 3. execute the security query
         JSONParamsEntry jpe = new JSONParamsEntry();
@@ -1052,7 +1054,18 @@ public class Gatekeeper extends AbstractPreprocessor {
       String msg = "Unauthorized. Content policy is not valid.";
       throw new YADASecurityException(msg, e);
     }
-    PlainSelect sql   = (PlainSelect) ((Select) getYADAQuery().getStatement()).getSelectBody();
+    // the parsed statement is shared by all requests for the query, so the policy is applied to a copy
+    CCJSqlParserManager parserManager = new CCJSqlParserManager();
+    PlainSelect         sql;
+    try
+    {
+      sql = (PlainSelect) ((Select) parserManager.parse(new StringReader(getYADAQuery().getStatement().toString()))).getSelectBody();
+    }
+    catch (JSQLParserException e)
+    {
+      String msg = "Unauthorized. Query could not be parsed.";
+      throw new YADASecurityException(msg, e);
+    }
     Expression  where = sql.getWhere();
     if (where != null)
     {
@@ -1065,7 +1078,6 @@ public class Gatekeeper extends AbstractPreprocessor {
     }
     try
     {
-      CCJSqlParserManager parserManager = new CCJSqlParserManager();
       sql = (PlainSelect) ((Select) parserManager.parse(new StringReader(sql.toString()))).getSelectBody();
     }
     catch (JSQLParserException e)
@@ -0,0 +1,238 @@
+/**
+ *
+ */
+package com.novartis.opensource.yada.server;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.novartis.opensource.yada.ConnectionFactory;
+
+/**
+ * A registry of bounded executors, one per app, used by {@link YADARequestHandler} in async mode
+ * so that a slow source can only exhaust its own threads, rather than the server's.  Each executor
+ * has a fixed number of threads and a fixed-length queue.  When the queue is full, the request
+ * is rejected immediately with a {@link YADAServiceUnavailableException}.
+ * <p>
+ * Pool and queue sizes are set with {@link #YADA_SERVER_ASYNC_THREADS} and {@link #YADA_SERVER_ASYNC_QUEUE},
+ * and can be overridden for a single app by appending {@code .<app>} to either property name.
+ * </p>
+ * <p>
+ * Executors are only created for apps in the YADA index.  Requests for any other app name, which is taken
+ * from the requested qname, share a single executor, so clients can't create executors at will.
+ * </p>
+ *
+ * @author dvaron
+ * @since 10.2.0
+ */
+public class YADAAppExecutors {
+
+  /**
+   * Local logger handle
+   */
+  private static Logger l = LoggerFactory.getLogger(YADAAppExecutors.class);
+
+  /**
+   * Constant equal to {@value}. Used for setting the number of threads per app
+   */
+  public final static String YADA_SERVER_ASYNC_THREADS = "YADA.server.async.threads";
+
+  /**
+   * Constant equal to {@value}. Used for setting the number of queued requests per app
+   */
+  public final static String YADA_SERVER_ASYNC_QUEUE = "YADA.server.async.queue";
+
+  /**
+   * Constant equal to {@value}
+   */
+  private final static int DEFAULT_THREADS = 8;
+
+  /**
+   * Constant equal to {@value}
+   */
+  private final static int DEFAULT_QUEUE = 32;
+
+  /**
+   * Constant equal to {@value}. Seconds after which idle threads are released.
+   */
+  private final static long KEEP_ALIVE = 60L;
+
+  /**
+   * Constant equal to {@value}. The key of the executor shared by requests for unconfigured apps.
+   */
+  private final static String SHARED = "";
+
+  /**
+   * The executors, keyed by app
+   */
+  private final Map<String, ThreadPoolExecutor> executors = new ConcurrentHashMap<>();
+
+  /**
+   * Null constructor
+   */
+  public YADAAppExecutors() {
+
+  }
+
+  /**
+   * Submits {@code task} to the executor for {@code app}, creating the executor if necessary.
+   *
+   * @param app the app to which the request's queries belong
+   * @param task the request processing to execute
+   * @return the pending task, for cancellation
+   * @throws YADAServiceUnavailableException when the queue for {@code app} is full, or the executor has been shut down
+   */
+  public Future<?> submit(String app, Runnable task) throws YADAServiceUnavailableException
+  {
+    ThreadPoolExecutor executor = getExecutor(app);
+    try
+    {
+      return executor.submit(task);
+    }
+    catch(RejectedExecutionException e)
+    {
+      String msg = String.format("The request queue for app [%s] is full (%d queued, %d active).",
+          app, executor.getQueue().size(), executor.getActiveCount());
+      l.warn(msg);
+      throw new YADAServiceUnavailableException(msg, e);
+    }
+  }
+
+  /**
+   * @param app the app name
+   * @return the number of requests waiting for a thread in the executor for {@code app}
+   */
+  public int getQueueDepth(String app)
+  {
+    ThreadPoolExecutor executor = this.executors.get(getKey(app));
+    return executor == null ? 0 : executor.getQueue().size();
+  }
+
+  /**
+   * Stops accepting requests and interrupts executing requests in all executors
+   */
+  public void shutdown()
+  {
+    for(Map.Entry<String, ThreadPoolExecutor> entry : this.executors.entrySet())
+    {
+      l.info(String.format("Shutting down executor for app [%s]", getName(entry.getKey())));
+      entry.getValue().shutdownNow();
+    }
+    this.executors.clear();
+  }
+
+  /**
+   * @param app the app name
+   * @return the executor for {@code app}, created on first use, or the shared executor, if {@code app} is not configured
+   */
+  private ThreadPoolExecutor getExecutor(String app)
+  {
+    return this.executors.computeIfAbsent(getKey(app), this::createExecutor);
+  }
+
+  /**
+   * @param app the app name
+   * @return {@code app}, if it is configured in the YADA index, otherwise {@link #SHARED}
+   */
+  private static String getKey(String app)
+  {
+    Map<String, Object> conf = ConnectionFactory.getConnectionFactory().getDsConf();
+    return app != null && conf != null && conf.containsKey(app) ? app : SHARED;
+  }
+
+  /**
+   * @param key the executor key
+   * @return the app name, or {@code shared} for the shared executor
+   */
+  private static String getName(String key)
+  {
+    return SHARED.equals(key) ? "shared" : key;
+  }
+
+  /**
+   * Builds a fixed-size executor with a bounded queue, which throws a {@link RejectedExecutionException}
+   * when the queue is full.
+   *
+   * @param app the app name, or {@link #SHARED}
+   * @return the new executor
+   */
+  private ThreadPoolExecutor createExecutor(String app)
+  {
+    int threads = getIntProperty(YADA_SERVER_ASYNC_THREADS, app, DEFAULT_THREADS);
+    int queue   = getIntProperty(YADA_SERVER_ASYNC_QUEUE, app, DEFAULT_QUEUE);
+    l.info(String.format("Creating executor for app [%s] with %d threads and queue length %d", getName(app), threads, queue));
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+        KEEP_ALIVE, TimeUnit.SECONDS,
+        new ArrayBlockingQueue<>(queue),
+        new AppThreadFactory(getName(app)),
+        new ThreadPoolExecutor.AbortPolicy());
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * Returns the value of {@code name.app}, or {@code name}, or {@code def}, whichever is set first.
+   *
+   * @param name the property name
+   * @param app the app name
+   * @param def the default value
+   * @return the property value
+   */
+  private static int getIntProperty(String name, String app, int def)
+  {
+    Properties props = YADAServer.getProperties();
+    String     value = SHARED.equals(app) ? props.getProperty(name) : props.getProperty(name + "." + app, props.getProperty(name));
+    try
+    {
+      return value == null ? def : Math.max(1, Integer.parseInt(value.trim()));
+    }
+    catch(NumberFormatException e)
+    {
+      l.warn(String.format("Invalid value [%s] for property [%s], using %d", value, name, def));
+      return def;
+    }
+  }
+
+  /**
+   * Names executor threads after the app, for thread dumps and logs
+   */
+  private static class AppThreadFactory implements ThreadFactory {
+
+    /**
+     * The thread name prefix
+     */
+    private final String prefix;
+
+    /**
+     * The thread counter
+     */
+    private final AtomicInteger count = new AtomicInteger();
+
+    /**
+     * @param app the app name
+     */
+    AppThreadFactory(String app)
+    {
+      this.prefix = "yada-" + app + "-";
+    }
+
+    @Override
+    public Thread newThread(Runnable r)
+    {
+      Thread t = new Thread(r, this.prefix + this.count.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    }
+  }
+}
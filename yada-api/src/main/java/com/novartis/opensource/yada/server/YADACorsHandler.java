@@ -5,8 +5,13 @@ package com.novartis.opensource.yada.server;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Properties;
-import java.util.regex.Matcher;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 import javax.servlet.ServletException;
@@ -68,155 +73,184 @@ public class YADACorsHandler extends AbstractHandler {
    */
   private static final String CORS_WILDCARD = "*";
   /**
-   * Content of YADA.properties, {@link YADAServer#getProperties()}
+   * Constant equal to {@value}. Used for setting the maximum number of cached origin decisions
+   * @since 10.2.0
    */
-  private static Properties props = YADAServer.getProperties();
-  
+  private static final String CORS_CACHE_SIZE = "YADA.server.CORS.cache.size";
   /**
-   * Null constructor
+   * Constant equal to {@value}
+   * @since 10.2.0
    */
-  public YADACorsHandler() {
-    
-  }
-  
+  private static final int CORS_DEFAULT_CACHE_SIZE = 1000;
   /**
-   * Processes {@code Origin} request header and compares with {@code Access-Control-Allow-Origin}
-   * @param baseRequest the Jetty request object
-   * @param request the servlet request object
-   * @param response the servlet response object
-   * @throws ServletException when the origins don't match
-   * @throws IOException when the response cannot be modified
+   * Constant equal to {@value}
+   * @since 10.2.0
    */
-  private void handleOrigins(Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
-    String val = props.getProperty(CORS_ALLOW_ORIGIN);
-    if(val == null
-        || val.equals(CORS_WILDCARD) 
-        || val.equals("."+CORS_WILDCARD) 
-        || val.length() == 0)
-    {
-      response.addHeader("Access-Control-Allow-Origin", CORS_WILDCARD);
-    }
-    else if(val != null && val.length() > 0)
-    {
-      String  origin    = request.getHeader("Origin");     
-      String  prop      = props.getProperty(CORS_ALLOW_ORIGIN);
-      String  rx        = prop.startsWith("http") ? prop : "^https?://"+prop;
-      Pattern allowOrig = Pattern.compile(rx);
-      Matcher origMatch = allowOrig.matcher(origin);      
-      if(origMatch.matches())
-      {
-        response.addHeader("Access-Control-Allow-Origin", origin);
-      }
-      else
-      {
-        fail(baseRequest);
-      }
-    }
-  }
-  
+  private static final String CORS_DEFAULT_MAX_AGE = "1800";
+
   /**
-   * Evaluates requested methods and sets to configured value in {@code YADA.server.CORS.allow.methods} or
-   * the default set of {@code GET, HEAD, POST}
-   * @param baseRequest the Jetty request object
-   * @param request the servlet request object
-   * @param response the servlet response object
+   * {@code true} if any origin is allowed
+   * @since 10.2.0
    */
-  private void handleAllowMethods(Request baseRequest, HttpServletRequest request, HttpServletResponse response) {
-    String val = props.getProperty(CORS_ALLOW_METHODS);
-    if(val == null)
-    {
-      response.addHeader("Access-Control-Allow-Methods", CORS_DEFAULT_METHODS);
-    }
-    else
-    {
-      response.addHeader("Access-Control-Allow-Methods", val);
-    }
-  }
-  
+  private final boolean allowAnyOrigin;
   /**
-   * Evaluates requested headers and sets to configured value in {@code YADA.server.CORS.allow.headers} or
-   * the default set of {@code X-Requested-With,Content-Type,Accept,Origin}
-   * @param baseRequest the Jetty request object
-   * @param request the servlet request object
-   * @param response the servlet response object
+   * The compiled {@code YADA.server.CORS.allow.origin} rule, or {@code null} if any origin is allowed
+   * @since 10.2.0
    */
-  private void handleAllowHeaders(Request baseRequest, HttpServletRequest request, HttpServletResponse response) {
-    String val = props.getProperty(CORS_ALLOW_HEADERS);
-    if(val == null || val.contentEquals(CORS_WILDCARD) || val.contentEquals("."+CORS_WILDCARD))
-    {
-      response.addHeader("Access-Control-Allow-Headers", CORS_DEFAULT_ALLOW_HEADERS);
-    }
-    else
-    {
-      response.addHeader("Access-Control-Allow-Headers", val);
-    }
+  private final Pattern allowOrigin;
+  /**
+   * Allow/deny decisions, keyed by {@code Origin}, in access order, holding at most
+   * {@code YADA.server.CORS.cache.size} decisions
+   * @since 10.2.0
+   */
+  private final Map<String, Boolean> originDecisions;
+  /**
+   * Value of the {@code Access-Control-Allow-Methods} header
+   * @since 10.2.0
+   */
+  private final String allowMethods;
+  /**
+   * Allowed methods, for preflight checks
+   * @since 10.2.0
+   */
+  private final Set<String> allowedMethods;
+  /**
+   * Value of the {@code Access-Control-Allow-Headers} header
+   * @since 10.2.0
+   */
+  private final String allowHeaders;
+  /**
+   * Allowed headers, in lower case, for preflight checks
+   * @since 10.2.0
+   */
+  private final Set<String> allowedHeaders;
+  /**
+   * Value of the {@code Access-Control-Allow-Credentials} header
+   * @since 10.2.0
+   */
+  private final String allowCredentials;
+  /**
+   * Value of the {@code Access-Control-Expose-Headers} header
+   * @since 10.2.0
+   */
+  private final String exposeHeaders;
+  /**
+   * Value of the {@code Access-Control-Max-Age} header
+   * @since 10.2.0
+   */
+  private final String maxAge;
+  /**
+   * {@code true} if preflight requests are passed to the next handler
+   * @since 10.2.0
+   */
+  private final boolean chainPreflight;
+
+  /**
+   * Configures the handler from {@link YADAServer#getProperties()}
+   */
+  public YADACorsHandler() {
+    this(YADAServer.getProperties());
   }
-  
+
   /**
-   * Evaluates requested max age headers and sets to configured value in {@code YADA.server.CORS.max.age} or
-   * the default value of {@code 1800}
-   * @param baseRequest the Jetty request object
-   * @param request the servlet request object
-   * @param response the servlet response object
+   * Compiles the origin rule and precomputes the response headers from {@code props}, so that
+   * no properties are read or patterns compiled while handling requests.
+   * @param props the server properties
+   * @since 10.2.0
    */
-  private void handleMaxAge(Request baseRequest, HttpServletRequest request, HttpServletResponse response) {
-    String val = props.getProperty(CORS_MAX_AGE);
-    if(val == null)
+  public YADACorsHandler(Properties props) {
+    String origin = props.getProperty(CORS_ALLOW_ORIGIN);
+    this.allowAnyOrigin = origin == null
+        || origin.equals(CORS_WILDCARD)
+        || origin.equals("."+CORS_WILDCARD)
+        || origin.length() == 0;
+    this.allowOrigin = this.allowAnyOrigin ? null : Pattern.compile(origin.startsWith("http") ? origin : "^https?://"+origin);
+
+    String methods = props.getProperty(CORS_ALLOW_METHODS);
+    this.allowMethods   = methods == null ? CORS_DEFAULT_METHODS : methods;
+    this.allowedMethods = new HashSet<>(Arrays.asList(this.allowMethods.split(",")));
+
+    String headers = props.getProperty(CORS_ALLOW_HEADERS);
+    this.allowHeaders = headers == null || headers.contentEquals(CORS_WILDCARD) || headers.contentEquals("."+CORS_WILDCARD)
+        ? CORS_DEFAULT_ALLOW_HEADERS : headers;
+    this.allowedHeaders = new HashSet<>();
+    for(String ah : (headers == null ? CORS_DEFAULT_ALLOW_HEADERS : headers).split(","))
     {
-      response.addHeader("Access-Control-Max-Age", "1800");
+      this.allowedHeaders.add(ah.trim().toLowerCase(Locale.ROOT));
     }
-    else
+
+    String age = props.getProperty(CORS_MAX_AGE);
+    this.maxAge           = age == null ? CORS_DEFAULT_MAX_AGE : age.trim();
+    String credentials    = props.getProperty(CORS_ALLOW_CREDENTIALS);
+    this.allowCredentials = credentials == null ? "true" : credentials;
+    String expose         = props.getProperty(CORS_EXPOSE_HEADERS);
+    this.exposeHeaders    = expose == null ? "" : expose;
+    this.chainPreflight   = Boolean.parseBoolean(props.getProperty(CORS_CHAIN_PREFLIGHT));
+
+    int size = CORS_DEFAULT_CACHE_SIZE;
+    String sizeProp = props.getProperty(CORS_CACHE_SIZE);
+    if(sizeProp != null)
     {
       try
       {
-        int v = Integer.parseInt(val);
-        response.addHeader("Access-Control-Max-Age", String.valueOf(v));
+        size = Integer.parseInt(sizeProp.trim());
       }
       catch(NumberFormatException e)
       {
-        response.addHeader("Access-Control-Max-Age", val);
+        // use the default
       }
     }
+    final int cacheSize = size;
+    this.originDecisions = Collections.synchronizedMap(new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest)
+      {
+        return size() > cacheSize;
+      }
+    });
   }
-  
+
   /**
-   * Evaluates requested credentials header and sets to configured value in {@code YADA.server.CORS.allow.credentials} or
-   * the default value of {@code true}
-   * @param baseRequest the Jetty request object
-   * @param request the servlet request object
+   * Processes {@code Origin} request header and compares with {@code Access-Control-Allow-Origin}
+   * @param origin the value of the {@code Origin} header
    * @param response the servlet response object
+   * @throws ServletException when the origins don't match
+   * @throws IOException when the response cannot be modified
    */
-  private void handleCredentials(Request baseRequest, HttpServletRequest request, HttpServletResponse response) {
-    String val = props.getProperty(CORS_ALLOW_CREDENTIALS);
-    if(val == null)
+  private void handleOrigins(String origin, HttpServletResponse response) throws ServletException, IOException {
+    if(this.allowAnyOrigin)
     {
-      response.addHeader("Access-Control-Allow-Credentials", "true");
+      response.addHeader("Access-Control-Allow-Origin", CORS_WILDCARD);
+    }
+    else if(isOriginAllowed(origin))
+    {
+      response.addHeader("Access-Control-Allow-Origin", origin);
     }
     else
     {
-      response.addHeader("Access-Control-Allow-Credentials", val);      
+      fail(response);
     }
   }
-      
+
   /**
-   * Evaluates requested exposed headers header and sets to configured value in {@code YADA.server.CORS.expose.headers} or
-   * the default value of an empty string.
-   * @param baseRequest the Jetty request object
-   * @param request the servlet request object
-   * @param response the servlet response object
+   * Returns the cached decision for {@code origin}, or matches it against {@code YADA.server.CORS.allow.origin}
+   * and caches the result.  Once the cache is full, the least recently used decision is evicted, so the
+   * origins in use stay cached, and an evicted origin is simply matched again.
+   * @param origin the value of the {@code Origin} header
+   * @return {@code true} if the origin is allowed
+   * @since 10.2.0
    */
-  private void handleExposeHeaders(Request baseRequest, HttpServletRequest request, HttpServletResponse response) {
-    String val = props.getProperty(CORS_EXPOSE_HEADERS);
-    if(val == null)
-    {
-      response.addHeader("Access-Control-Expose-Headers", "");
-    }
-    else
+  private boolean isOriginAllowed(String origin) {
+    Boolean allowed = this.originDecisions.get(origin);
+    if(allowed == null)
     {
-      response.addHeader("Access-Control-Expose-Headers", val);
+      allowed = Boolean.valueOf(this.allowOrigin.matcher(origin).matches());
+      this.originDecisions.put(origin, allowed);
     }
+    return allowed.booleanValue();
   }
-  
+
   /**
    * Checks to ensure a request contains one of {@code GET}, {@code HEAD}, or {@code POST} 
    * for {@code method} and that there is no {@code Access-Control-Request-Header} 
@@ -243,62 +277,47 @@ public class YADACorsHandler extends AbstractHandler {
   }
   
   /**
-   * Sorts the list of methods in {@code YADA.server.CORS.allowed.methods} property and 
-   * searches it for the requested method
+   * Searches the configured {@code YADA.server.CORS.allow.methods} for the requested method
    * @param request the HTTP request object
    * @return true or false depending on header and method content
    */
   private boolean isMethodAllowed(HttpServletRequest request) {
-    String requestedMethod = request.getHeader("Access-Control-Request-Method");    
-    String[] allowedMethods = props.getProperty(CORS_ALLOW_METHODS).split(",");
-    Arrays.sort(allowedMethods);
-    return Arrays.binarySearch(allowedMethods,requestedMethod) > -1;
+    return this.allowedMethods.contains(request.getHeader("Access-Control-Request-Method"));
   }
   
   /**
-   * Sorts the list of methods in {@code YADA.server.CORS.allowed.methods} property and 
-   * searches it for the requested method
+   * Searches the configured {@code YADA.server.CORS.allow.headers} for the requested headers
    * @param request the HTTP request object
    * @return true or false depending on header and method content
    */
   private boolean isHeadersAllowed(HttpServletRequest request) {
-    boolean allow = false;
     String requestedHeaders = request.getHeader("Access-Control-Request-Headers");
     if(requestedHeaders == null 
         || requestedHeaders.length() == 0
         || requestedHeaders.contentEquals(CORS_WILDCARD)
         || requestedHeaders.contentEquals("."+CORS_WILDCARD))
     {
-      allow = true;
+      return true;
     }
-    else
+    for(String rh : requestedHeaders.split(","))
     {
-      for(String rh : requestedHeaders.split(","))
+      if(this.allowedHeaders.contains(rh.trim().toLowerCase(Locale.ROOT)))
       {
-        for(String ah : props.getProperty(CORS_ALLOW_HEADERS).split(","))
-        {
-          if(ah.trim().equalsIgnoreCase(rh))
-          {
-            allow = true;
-            break;
-          }        
-        }
-        if(allow)
-          break;
+        return true;
       }
     }
-    return allow;
+    return false;
   }
   
   /**
    * Convenience method to return {@code 403 Forbidden} when CORS request
    * fails for any reason.
-   * @param baseRequest the jetty request object
+   * @param response the servlet response object
    * @throws ServletException the exception to throw
    * @throws IOException when the response can't be modified for some reason
    */
-  private void fail(Request baseRequest) throws ServletException, IOException {
-    baseRequest.getResponse().sendError(HttpServletResponse.SC_FORBIDDEN);
+  private void fail(HttpServletResponse response) throws ServletException, IOException {
+    response.sendError(HttpServletResponse.SC_FORBIDDEN);
     throw new ServletException();
   }
       
@@ -310,35 +329,36 @@ public class YADACorsHandler extends AbstractHandler {
     String origin = request.getHeader("Origin");
     if(origin != null)
     {
-      handleOrigins(baseRequest,request,response);
+      handleOrigins(origin,response);
       if(isSimpleRequest(request))
       {
-        handleCredentials(baseRequest, request, response);
-        handleExposeHeaders(baseRequest, request, response);
+        response.addHeader("Access-Control-Allow-Credentials", this.allowCredentials);
+        response.addHeader("Access-Control-Expose-Headers", this.exposeHeaders);
       }
       else if(isPreflightRequest(request))
       {
         if(!(isMethodAllowed(request) && isHeadersAllowed(request)))
         {
-          fail(baseRequest);
+          fail(response);
         }
         else
         {
-          handleAllowMethods(baseRequest,request,response);
-          handleAllowHeaders(baseRequest,request,response);
-          handleCredentials(baseRequest,request,response);
-          handleMaxAge(baseRequest,request,response);
-          handleExposeHeaders(baseRequest, request, response);
-          if(!Boolean.parseBoolean(props.getProperty(CORS_CHAIN_PREFLIGHT)))
+          response.addHeader("Access-Control-Allow-Methods", this.allowMethods);
+          response.addHeader("Access-Control-Allow-Headers", this.allowHeaders);
+          response.addHeader("Access-Control-Allow-Credentials", this.allowCredentials);
+          response.addHeader("Access-Control-Max-Age", this.maxAge);
+          response.addHeader("Access-Control-Expose-Headers", this.exposeHeaders);
+          if(!this.chainPreflight)
           {
-            baseRequest.getResponse().setStatus(HttpServletResponse.SC_NO_CONTENT);
+            // answered here, without passing through the rest of the handler chain
+            response.setStatus(HttpServletResponse.SC_NO_CONTENT);
             baseRequest.setHandled(true);
           }
         }                 
       }
       else
       {
-        fail(baseRequest);
+        fail(response);
       }
     }
     return;
@@ -0,0 +1,262 @@
+/**
+ *
+ */
+package com.novartis.opensource.yada.server;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.eclipse.jetty.http.HttpHeader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.novartis.opensource.yada.Service;
+import com.novartis.opensource.yada.YADAQuery;
+
+/**
+ * Support for conditional {@code GET} requests of read-only queries.  The strong {@code ETag} of a
+ * response is a digest of the query definition version, the canonicalized request parameters and
+ * credentials, and the result.  The most recent {@code ETag} computed for each request key is kept in a
+ * bounded cache for {@link #YADA_SERVER_ETAG_TTL} milliseconds, during which a request bearing a matching
+ * {@code If-None-Match} header is answered with {@code 304 Not Modified} without executing the query.
+ * After the entry expires, the query is executed and the {@code 304} is sent only if the result digest
+ * is unchanged.
+ *
+ * @author dvaron
+ * @since 10.2.0
+ */
+public class YADAETagCache {
+
+  /**
+   * Local logger handle
+   */
+  private static Logger l = LoggerFactory.getLogger(YADAETagCache.class);
+
+  /**
+   * Constant equal to {@value}. Set to {@code true} to enable conditional requests
+   */
+  public final static String YADA_SERVER_ETAG = "YADA.server.etag";
+
+  /**
+   * Constant equal to {@value}. Milliseconds for which a cached {@code ETag} is trusted without execution
+   */
+  public final static String YADA_SERVER_ETAG_TTL = "YADA.server.etag.ttl";
+
+  /**
+   * Constant equal to {@value}. Maximum number of cached {@code ETag}s
+   */
+  public final static String YADA_SERVER_ETAG_CACHE_SIZE = "YADA.server.etag.cache.size";
+
+  /**
+   * Constant equal to {@value}
+   */
+  private final static long DEFAULT_TTL = 5000L;
+
+  /**
+   * Constant equal to {@value}
+   */
+  private final static int DEFAULT_CACHE_SIZE = 1000;
+
+  /**
+   * Constant equal to {@value}
+   */
+  private final static String DIGEST_ALGORITHM = "SHA-256";
+
+  /**
+   * Constant equal to {@value}
+   */
+  private final static String SEPARATOR = "\u0000";
+
+  /**
+   * Constant equal to {@value}
+   */
+  private final static char[] HEX = "0123456789abcdef".toCharArray();
+
+  /**
+   * Cached entries, in access order, evicting the eldest when full
+   */
+  private final Map<String, CachedETag> cache;
+
+  /**
+   * Milliseconds for which an entry is valid
+   */
+  private final long ttl;
+
+  /**
+   * Configures the cache from {@link YADAServer#getProperties()}
+   */
+  public YADAETagCache()
+  {
+    String ttlProp  = YADAServer.getProperties().getProperty(YADA_SERVER_ETAG_TTL);
+    String sizeProp = YADAServer.getProperties().getProperty(YADA_SERVER_ETAG_CACHE_SIZE);
+    this.ttl = ttlProp != null ? Long.valueOf(ttlProp.trim()) : DEFAULT_TTL;
+    final int size = sizeProp != null ? Integer.valueOf(sizeProp.trim()) : DEFAULT_CACHE_SIZE;
+    this.cache = Collections.synchronizedMap(new LinkedHashMap<String, CachedETag>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CachedETag> eldest)
+      {
+        return size() > size;
+      }
+    });
+  }
+
+  /**
+   * Returns {@code true} if the {@link #YADA_SERVER_ETAG} property is set to {@code true}
+   *
+   * @return {@code true} if the {@link #YADA_SERVER_ETAG} property is set to {@code true}
+   */
+  public static boolean isEnabled() {
+    return Boolean.parseBoolean(YADAServer.getProperties().getProperty(YADA_SERVER_ETAG, "false"));
+  }
+
+  /**
+   * Builds the cache key for the request, i.e., a digest of the definition of each requested query
+   * and the canonicalized request.
+   *
+   * @param queries the stored definitions of the requested queries, see {@link Service#getRequestedQueries()}
+   * @param requestKey the canonicalized request parameters and credentials
+   * @return the key, or {@code null} if a requested query can't be found
+   */
+  public String getKey(YADAQuery[] queries, String requestKey)
+  {
+    if(queries == null)
+    {
+      l.debug("Unable to determine query version, skipping conditional request");
+      return null;
+    }
+    StringBuilder key = new StringBuilder();
+    for(YADAQuery yq : queries)
+    {
+      key.append(getQueryVersion(yq)).append(SEPARATOR);
+    }
+    key.append(requestKey);
+    return digest(key.toString());
+  }
+
+  /**
+   * @param key the request key
+   * @return the {@code ETag} cached for {@code key}, or {@code null} if there is none or it has expired
+   */
+  public String get(String key)
+  {
+    CachedETag entry = this.cache.get(key);
+    if(entry == null)
+    {
+      return null;
+    }
+    if(entry.expiry < new Date().getTime())
+    {
+      this.cache.remove(key);
+      return null;
+    }
+    return entry.etag;
+  }
+
+  /**
+   * Computes, caches, and returns the {@code ETag} for the request key and result.
+   *
+   * @param key the request key
+   * @param result the response content
+   * @return the strong {@code ETag}
+   */
+  public String put(String key, String result)
+  {
+    String etag = "\"" + digest(key + SEPARATOR + digest(result)) + "\"";
+    this.cache.put(key, new CachedETag(etag, new Date().getTime() + this.ttl));
+    return etag;
+  }
+
+  /**
+   * Returns {@code true} if {@code etag} is among the tags in the {@code If-None-Match} header.
+   *
+   * @param request the servlet request
+   * @param etag the current {@code ETag}
+   * @return {@code true} if the client's representation is current
+   */
+  public static boolean matches(HttpServletRequest request, String etag)
+  {
+    String ifNoneMatch = request.getHeader(HttpHeader.IF_NONE_MATCH.asString());
+    if(ifNoneMatch == null || etag == null)
+    {
+      return false;
+    }
+    for(String tag : ifNoneMatch.split(","))
+    {
+      String t = tag.trim();
+      if(t.equals("*") || t.equals(etag))
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns a version string for the query definition, i.e., a digest of its code and default parameters.
+   *
+   * @param yq the query definition
+   * @return the version string
+   */
+  private static String getQueryVersion(YADAQuery yq)
+  {
+    return digest(yq.getYADACode() + SEPARATOR + yq.getYADAQueryParams().toString());
+  }
+
+  /**
+   * @param value the content to digest
+   * @return the hex-encoded {@link #DIGEST_ALGORITHM} digest of {@code value}
+   */
+  private static String digest(String value)
+  {
+    try
+    {
+      byte[] hash = MessageDigest.getInstance(DIGEST_ALGORITHM).digest(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+      char[] hex  = new char[hash.length * 2];
+      for(int i = 0; i < hash.length; i++)
+      {
+        hex[i * 2]     = HEX[(hash[i] >> 4) & 0xF];
+        hex[i * 2 + 1] = HEX[hash[i] & 0xF];
+      }
+      return new String(hex);
+    }
+    catch(NoSuchAlgorithmException e)
+    {
+      // every jvm is required to support SHA-256
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * A cached {@code ETag} and its expiration time
+   */
+  private static class CachedETag {
+
+    /**
+     * The {@code ETag}
+     */
+    final String etag;
+
+    /**
+     * Expiration time in milliseconds
+     */
+    final long expiry;
+
+    /**
+     * @param etag the {@code ETag}
+     * @param expiry expiration time in milliseconds
+     */
+    CachedETag(String etag, long expiry)
+    {
+      this.etag   = etag;
+      this.expiry = expiry;
+    }
+  }
+}
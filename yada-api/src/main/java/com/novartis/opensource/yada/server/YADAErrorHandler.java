@@ -18,6 +18,7 @@ import java.util.regex.Pattern;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.http.MimeTypes;
 import org.eclipse.jetty.server.Dispatcher;
 import org.eclipse.jetty.server.Request;
@@ -116,6 +117,16 @@ public class YADAErrorHandler extends ErrorHandler {
    * Constant equal to {@value}
    */
   final static String SECURITY_EXCEPTION            = PACKAGE + "YADASecurityException";
+  /**
+   * Constant equal to {@value}
+   * @since 10.2.0
+   */
+  final static String SERVICE_UNAVAILABLE_EXCEPTION = PACKAGE + "server.YADAServiceUnavailableException";
+  /**
+   * Constant equal to {@value}
+   * @since 10.2.0
+   */
+  final static String THROTTLED_EXCEPTION           = PACKAGE + "YADAThrottledException";
   /**
    * Constant equal to {@value}
    */
@@ -140,6 +151,16 @@ public class YADAErrorHandler extends ErrorHandler {
    * Constant equal to {@value}
    */
   final static String HTTP_SC_INTERNAL_SERVER_ERROR = "Internal Server Error";
+  /**
+   * Constant equal to {@value}
+   * @since 10.2.0
+   */
+  final static String HTTP_SC_SERVICE_UNAVAILABLE   = "Service Unavailable";
+  /**
+   * Constant equal to {@value}
+   * @since 10.2.0
+   */
+  final static String HTTP_SC_TOO_MANY_REQUESTS     = "Too Many Requests";
   /**
    * Constant equal to {@value}
    */
@@ -220,6 +241,8 @@ public class YADAErrorHandler extends ErrorHandler {
     statusText.put(HttpServletResponse.SC_NOT_IMPLEMENTED,HTTP_SC_NOT_IMPLEMENTED);
     statusText.put(HttpServletResponse.SC_FORBIDDEN,HTTP_SC_FORBIDDEN);
     statusText.put(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,HTTP_SC_INTERNAL_SERVER_ERROR);
+    statusText.put(HttpServletResponse.SC_SERVICE_UNAVAILABLE,HTTP_SC_SERVICE_UNAVAILABLE);
+    statusText.put(HttpStatus.TOO_MANY_REQUESTS_429,HTTP_SC_TOO_MANY_REQUESTS);
     // FinderExcepion 404
     statusCodes.put(FINDER_EXCEPTION, HttpServletResponse.SC_NOT_FOUND);
     // QueryConfigurationException, RequestException 403
@@ -229,6 +252,10 @@ public class YADAErrorHandler extends ErrorHandler {
     statusCodes.put(UNSUPPORTED_ADAPTOR_EXCEPTION, HttpServletResponse.SC_NOT_IMPLEMENTED);
     // SecurityException 403
     statusCodes.put(SECURITY_EXCEPTION, HttpServletResponse.SC_FORBIDDEN);
+    // ServiceUnavailableException 503
+    statusCodes.put(SERVICE_UNAVAILABLE_EXCEPTION, HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    // ThrottledException 429
+    statusCodes.put(THROTTLED_EXCEPTION, HttpStatus.TOO_MANY_REQUESTS_429);
     // All others 500
     statusCodes.put(BASE_EXCEPTION, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
     statusCodes.put(EXECUTION_EXCEPTION, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
@@ -0,0 +1,153 @@
+/**
+ *
+ */
+package com.novartis.opensource.yada.server;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.zip.Deflater;
+
+import org.eclipse.jetty.http.MimeTypes;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.gzip.GzipHandler;
+import org.eclipse.jetty.util.compression.CompressionPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.novartis.opensource.yada.YADARequest;
+
+/**
+ * Compresses responses for clients sending {@code Accept-Encoding: gzip}.  Compression is applied
+ * to the response output as it is written, so it works equally with buffered and streamed responses.
+ * <p>
+ * In addition to the global {@link #YADA_SERVER_COMPRESSION_MIN_SIZE}, a minimum size can be set per
+ * format by appending the format name to the property, e.g., {@code YADA.server.compression.min.size.csv}.
+ * The minimum is only applied when the length of the response is known at commit time; larger responses
+ * are always compressed.  Requests marked with {@link #NO_COMPRESSION}, i.e., {@link YADARequest#FORMAT_BINARY}
+ * responses, which are typically already compressed, are never compressed.
+ * </p>
+ *
+ * @author dvaron
+ * @since 10.2.0
+ */
+public class YADAGzipHandler extends GzipHandler {
+
+  /**
+   * Local logger handle
+   */
+  private static Logger l = LoggerFactory.getLogger(YADAGzipHandler.class);
+
+  /**
+   * Constant equal to {@value}. Set to {@code true} to enable compression
+   */
+  public final static String YADA_SERVER_COMPRESSION = "YADA.server.compression";
+
+  /**
+   * Constant equal to {@value}. Used for setting the minimum response size, in bytes, to compress
+   */
+  public final static String YADA_SERVER_COMPRESSION_MIN_SIZE = "YADA.server.compression.min.size";
+
+  /**
+   * Constant equal to {@value}. Request attribute which, when set, suppresses compression of the response
+   */
+  public final static String NO_COMPRESSION = "com.novartis.opensource.yada.server.noCompression";
+
+  /**
+   * Mime types set by {@link YADARequestHandler} for each format
+   */
+  private final static Map<String, String> FORMAT_MIME_TYPES = new HashMap<>();
+
+  static
+  {
+    FORMAT_MIME_TYPES.put(YADARequest.FORMAT_JSON, "application/json");
+    FORMAT_MIME_TYPES.put(YADARequest.FORMAT_XML, "text/xml");
+    FORMAT_MIME_TYPES.put(YADARequest.FORMAT_CSV, "text/csv");
+    FORMAT_MIME_TYPES.put(YADARequest.FORMAT_TSV, "text/tab-separated-values");
+    FORMAT_MIME_TYPES.put(YADARequest.FORMAT_PIPE, "text/pipe-separated-values");
+    FORMAT_MIME_TYPES.put(YADARequest.FORMAT_HTML, "text/html");
+  }
+
+  /**
+   * Minimum sizes, keyed by mime type, overriding {@link #minSize}
+   */
+  private final Map<String, Integer> minSizes = new HashMap<>();
+
+  /**
+   * The minimum size for mime types without a specific value
+   */
+  private final int minSize;
+
+  /**
+   * Configures the handler from {@link YADAServer#getProperties()}
+   */
+  public YADAGzipHandler()
+  {
+    super();
+    Properties props = YADAServer.getProperties();
+    this.minSize = getIntProperty(props, YADA_SERVER_COMPRESSION_MIN_SIZE, DEFAULT_MIN_GZIP_SIZE);
+    for(Map.Entry<String, String> entry : FORMAT_MIME_TYPES.entrySet())
+    {
+      String key = YADA_SERVER_COMPRESSION_MIN_SIZE + "." + entry.getKey();
+      this.minSizes.put(entry.getValue(), getIntProperty(props, key, this.minSize));
+    }
+    // thresholds are applied per mime type in getDeflaterEntry
+    setMinGzipSize(0);
+    addIncludedMimeTypes(FORMAT_MIME_TYPES.values().toArray(new String[FORMAT_MIME_TYPES.size()]));
+  }
+
+  /**
+   * Returns {@code true} if the {@link #YADA_SERVER_COMPRESSION} property is set to {@code true}
+   *
+   * @return {@code true} if the {@link #YADA_SERVER_COMPRESSION} property is set to {@code true}
+   */
+  public static boolean isEnabled() {
+    return Boolean.parseBoolean(YADAServer.getProperties().getProperty(YADA_SERVER_COMPRESSION, "false"));
+  }
+
+  /**
+   * Returns {@code null}, i.e., no compression, if the request is marked with {@link #NO_COMPRESSION}, or
+   * {@code contentLength} is known and less than the minimum size for the response's mime type.
+   * @see org.eclipse.jetty.server.handler.gzip.GzipHandler#getDeflaterEntry(org.eclipse.jetty.server.Request, long)
+   */
+  @Override
+  public CompressionPool<Deflater>.Entry getDeflaterEntry(Request request, long contentLength)
+  {
+    if(request.getAttribute(NO_COMPRESSION) != null)
+    {
+      return null;
+    }
+    if(contentLength >= 0)
+    {
+      String contentType = request.getResponse().getContentType();
+      String mimeType    = contentType == null ? null : MimeTypes.getContentTypeWithoutCharset(contentType);
+      int    min         = mimeType == null ? this.minSize : this.minSizes.getOrDefault(mimeType, this.minSize);
+      if(contentLength < min)
+      {
+        l.debug(String.format("Response of %d bytes is below the minimum size %d for %s", contentLength, min, mimeType));
+        return null;
+      }
+    }
+    return super.getDeflaterEntry(request, contentLength);
+  }
+
+  /**
+   * @param props the properties
+   * @param name the property name
+   * @param def the default value
+   * @return the value of the property {@code name} or {@code def} if it is unset or invalid
+   */
+  private static int getIntProperty(Properties props, String name, int def)
+  {
+    String value = props.getProperty(name);
+    try
+    {
+      return value == null ? def : Integer.parseInt(value.trim());
+    }
+    catch(NumberFormatException e)
+    {
+      l.warn(String.format("Invalid value [%s] for property [%s], using %d", value, name, def));
+      return def;
+    }
+  }
+}
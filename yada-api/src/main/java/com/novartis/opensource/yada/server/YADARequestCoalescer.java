@@ -0,0 +1,300 @@
+/**
+ *
+ */
+package com.novartis.opensource.yada.server;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.novartis.opensource.yada.Service;
+import com.novartis.opensource.yada.YADAException;
+
+/**
+ * Single-flight execution of identical concurrent requests.  The first request for a given key executes
+ * normally; requests with the same key arriving while it is in flight wait for it, rather than looking up
+ * the query, acquiring a connection, and executing it again.  The composed result is shared with the
+ * waiting requests only if every query in the request is a {@code SELECT}, otherwise each of them is
+ * executed in turn.  If the shared execution fails, the waiting requests fail with the same exception.
+ * <p>
+ * Request keys must include everything that might affect the result, i.e., the canonicalized parameters
+ * and security context of the request.
+ * </p>
+ * <p>
+ * The server's coalescer is returned by {@link #getInstance()}, and its counts by the
+ * {@link com.novartis.opensource.yada.plugin.CoalescerStats} plugin.
+ * </p>
+ *
+ * @author dvaron
+ * @since 10.2.0
+ */
+public class YADARequestCoalescer {
+
+  /**
+   * Local logger handle
+   */
+  private static Logger l = LoggerFactory.getLogger(YADARequestCoalescer.class);
+
+  /**
+   * Constant equal to {@value}. Set to {@code true} to enable coalescing
+   */
+  public final static String YADA_SERVER_COALESCE = "YADA.server.coalesce";
+
+  /**
+   * The server's coalescer, or {@code null} if coalescing is disabled
+   */
+  private static volatile YADARequestCoalescer instance;
+
+  /**
+   * Set once {@link #instance} has been initialized
+   */
+  private static volatile boolean initialized;
+
+  /**
+   * In-flight executions, keyed by request
+   */
+  private final Map<String, CompletableFuture<Result>> inFlight = new ConcurrentHashMap<>();
+
+  /**
+   * Number of requests executed
+   */
+  private final LongAdder executed = new LongAdder();
+
+  /**
+   * Number of requests answered with the result of another request
+   */
+  private final LongAdder coalesced = new LongAdder();
+
+  /**
+   * Null constructor
+   */
+  public YADARequestCoalescer() {
+
+  }
+
+  /**
+   * Returns {@code true} if the {@link #YADA_SERVER_COALESCE} property is set to {@code true}
+   *
+   * @return {@code true} if the {@link #YADA_SERVER_COALESCE} property is set to {@code true}
+   */
+  public static boolean isEnabled() {
+    return Boolean.parseBoolean(YADAServer.getProperties().getProperty(YADA_SERVER_COALESCE, "false"));
+  }
+
+  /**
+   * Returns the server's coalescer, creating it on first use, unless {@link #YADA_SERVER_COALESCE} is {@code false}
+   *
+   * @return the coalescer, or {@code null} if coalescing is disabled
+   */
+  public static YADARequestCoalescer getInstance()
+  {
+    if(!initialized)
+    {
+      synchronized(YADARequestCoalescer.class)
+      {
+        if(!initialized)
+        {
+          if(isEnabled())
+          {
+            instance = new YADARequestCoalescer();
+          }
+          initialized = true;
+        }
+      }
+    }
+    return instance;
+  }
+
+  /**
+   * Executes the request with {@code service}, or waits for an in-flight request with the same {@code key}
+   * and returns its result.
+   *
+   * @param key the canonicalized request
+   * @param service the service object for the request, already passed the request parameters
+   * @return the result
+   * @throws YADAException when execution fails
+   * @throws YADAServiceUnavailableException when interrupted while waiting for another request
+   */
+  public Result execute(String key, Service service) throws YADAException
+  {
+    CompletableFuture<Result> future = new CompletableFuture<>();
+    CompletableFuture<Result> leader = this.inFlight.putIfAbsent(key, future);
+    if(leader != null)
+    {
+      Result result = await(leader);
+      if(result.isReadOnly())
+      {
+        this.coalesced.increment();
+        return result;
+      }
+      // the result of an update can't be shared, so execute independently
+      return run(service);
+    }
+    try
+    {
+      Result result = run(service);
+      future.complete(result);
+      return result;
+    }
+    catch(YADAException | RuntimeException | Error e)
+    {
+      // waiting requests must be released in any case
+      future.completeExceptionally(e);
+      throw e;
+    }
+    finally
+    {
+      this.inFlight.remove(key, future);
+    }
+  }
+
+  /**
+   * @return the number of requests executed
+   */
+  public long getExecuted()
+  {
+    return this.executed.sum();
+  }
+
+  /**
+   * @return the number of requests answered with the result of another request
+   */
+  public long getCoalesced()
+  {
+    return this.coalesced.sum();
+  }
+
+  /**
+   * @return the number of requests currently executing
+   */
+  public int getInFlight()
+  {
+    return this.inFlight.size();
+  }
+
+  /**
+   * @return the executed, coalesced, and in-flight counts, and the fraction of requests coalesced
+   */
+  public JSONObject getStats()
+  {
+    long       e     = getExecuted(), c = getCoalesced();
+    JSONObject stats = new JSONObject();
+    stats.put("executed", e);
+    stats.put("coalesced", c);
+    stats.put("inFlight", getInFlight());
+    stats.put("coalescedRate", e + c == 0 ? 0.0 : (double) c / (e + c));
+    return stats;
+  }
+
+  /**
+   * Resets the executed and coalesced counts
+   */
+  public void resetStats()
+  {
+    this.executed.reset();
+    this.coalesced.reset();
+  }
+
+  /**
+   * Logs the metrics
+   */
+  public void logMetrics()
+  {
+    l.info(String.format("Coalesced %d of %d requests", getCoalesced(), getCoalesced() + getExecuted()));
+  }
+
+  /**
+   * @param service the service object for the request
+   * @return the result of executing the request
+   * @throws YADAException when execution fails
+   */
+  private Result run(Service service) throws YADAException
+  {
+    this.executed.increment();
+    String result = service.execute();
+    return new Result(result, service.isReadOnly());
+  }
+
+  /**
+   * Waits for the in-flight request to complete, and rethrows its exception, if any.
+   *
+   * @param leader the in-flight request
+   * @return the result of the in-flight request
+   * @throws YADAException when the in-flight request failed
+   * @throws YADAServiceUnavailableException when interrupted
+   */
+  private static Result await(CompletableFuture<Result> leader) throws YADAException
+  {
+    try
+    {
+      return leader.get();
+    }
+    catch(InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      String msg = "Interrupted while waiting for an identical request to complete.";
+      throw new YADAServiceUnavailableException(msg, e);
+    }
+    catch(ExecutionException e)
+    {
+      Throwable cause = e.getCause();
+      if(cause instanceof YADAException)
+      {
+        throw (YADAException)cause;
+      }
+      if(cause instanceof Error)
+      {
+        throw (Error)cause;
+      }
+      throw (RuntimeException)cause;
+    }
+  }
+
+  /**
+   * The composed result of a request
+   */
+  public static class Result {
+
+    /**
+     * The composed result
+     */
+    private final String result;
+
+    /**
+     * {@code true} if every query in the request was a {@code SELECT}
+     */
+    private final boolean readOnly;
+
+    /**
+     * @param result the composed result
+     * @param readOnly {@code true} if every query in the request was a {@code SELECT}
+     */
+    Result(String result, boolean readOnly)
+    {
+      this.result   = result;
+      this.readOnly = readOnly;
+    }
+
+    /**
+     * @return the composed result
+     */
+    public String getResult()
+    {
+      return this.result;
+    }
+
+    /**
+     * @return {@code true} if every query in the request was a {@code SELECT}
+     */
+    public boolean isReadOnly()
+    {
+      return this.readOnly;
+    }
+  }
+}
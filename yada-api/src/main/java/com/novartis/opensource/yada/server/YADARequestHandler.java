@@ -3,20 +3,46 @@ package com.novartis.opensource.yada.server;
 import java.io.IOException;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.server.Dispatcher;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.handler.AbstractHandler;
 import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import com.novartis.opensource.yada.Finder;
+import com.novartis.opensource.yada.JSONParams;
+import com.novartis.opensource.yada.QueryStats;
 import com.novartis.opensource.yada.Service;
+import com.novartis.opensource.yada.YADAException;
+import com.novartis.opensource.yada.YADALibCache;
+import com.novartis.opensource.yada.YADALibSnapshot;
 import com.novartis.opensource.yada.YADARequest;
+import com.novartis.opensource.yada.YADARequestException;
+import com.novartis.opensource.yada.YADAThrottledException;
+import com.novartis.opensource.yada.format.NDJSONResponse;
+import com.novartis.opensource.yada.security.Authorization;
+import com.novartis.opensource.yada.util.YADAThreads;
 import com.novartis.opensource.yada.util.YADAUtils;
 
 /**
@@ -26,14 +52,51 @@ import com.novartis.opensource.yada.util.YADAUtils;
 public class YADARequestHandler extends AbstractHandler {
 
   /**
-   * Container for response
+   * Constant equal to {@value}
    */
-  private String  result   = "";
+  private final static String YADA_PATH = "yp";
   
   /**
-   * Constant equal to {@value}
+   * Constant equal to {@value}. Default value, in seconds, of the {@code Retry-After} header
+   * @since 10.2.0
    */
-  private final static String YADA_PATH = "yp";
+  private final static long DEFAULT_RETRY_AFTER = 5L;
+  
+  /**
+   * Constant equal to {@value}. Delimits values in request keys
+   * @since 10.2.0
+   */
+  private final static String KEY_SEPARATOR = "\u0000";
+  
+  /**
+   * Local logger handle
+   */
+  private static Logger l = LoggerFactory.getLogger(YADARequestHandler.class);
+  
+  /**
+   * Bounded executors, one per app, for async mode
+   * @since 10.2.0
+   */
+  private final YADAAppExecutors executors = new YADAAppExecutors();
+  
+  /**
+   * Executor starting a virtual thread per request, or {@code null} if virtual threads are disabled
+   * @since 10.2.0
+   */
+  private final ExecutorService virtualExecutor = YADAThreads.isVirtual() 
+      ? YADAThreads.newVirtualThreadPerTaskExecutor("yada-request-") : null;
+  
+  /**
+   * Cached {@code ETag}s for conditional requests, or {@code null} if disabled
+   * @since 10.2.0
+   */
+  private final YADAETagCache etags = YADAETagCache.isEnabled() ? new YADAETagCache() : null;
+  
+  /**
+   * Single-flight execution of identical requests, or {@code null} if disabled
+   * @since 10.2.0
+   */
+  private final YADARequestCoalescer coalescer = YADARequestCoalescer.getInstance();
   
   /**
    * Null constructor
@@ -80,99 +143,552 @@ public class YADARequestHandler extends AbstractHandler {
       }       
     }
     
-    Service service = new Service();
+    Service service = newService();
+    
+    if(YADAServer.isAsync() || this.virtualExecutor != null)
+    {
+      handleAsync(service, baseRequest, request, response);
+      return;
+    }
     
     try
     {
-      if(request.getParameter(YADA_PATH) != null)
-      {
-        service.handleRequest(request, request.getParameter(YADA_PATH));
-      }
-      else
+      prepare(service, request, response);
+      execute(service, baseRequest, request, response, () -> true);
+    }
+    catch(Exception e)
+    {
+      sendError(baseRequest, response, e);
+    }
+    finally
+    {
+      baseRequest.setHandled(true);
+    }
+  }
+  
+  /**
+   * @return a new service object for a request
+   * @since 10.2.0
+   */
+  protected Service newService()
+  {
+    return new Service();
+  }
+  
+  /**
+   * Parses the request on the container thread, then executes it on the bounded executor
+   * for the app to which the requested query belongs, releasing the container thread.  
+   * When the executor's queue is full, the request is rejected immediately with a 
+   * {@code 503} and {@code Retry-After} header.  When {@link YADAThreads#isVirtual()}, the
+   * request is instead executed on a new virtual thread, and is bounded only by the
+   * connection pool.  When the request exceeds {@link YADAServer#YADA_SERVER_ASYNC_TIMEOUT}, 
+   * its task is cancelled, i.e., removed from the queue or interrupted, and a {@code 503} is sent.
+   * As a running query need not respond to the interrupt, the task and the timeout each claim the 
+   * response before writing to it, and the task discards its result when the {@code 503} was sent first.
+   * 
+   * @param service the service object for the request 
+   * @param baseRequest the jetty request
+   * @param request the servlet request
+   * @param response the servlet response
+   * @throws IOException when the error response can't be sent
+   * @since 10.2.0
+   */
+  private void handleAsync(Service service, Request baseRequest, HttpServletRequest request, HttpServletResponse response) 
+      throws IOException
+  {
+    baseRequest.setHandled(true);
+    try
+    {
+      prepare(service, request, response);
+    }
+    catch(Exception e)
+    {
+      sendError(baseRequest, response, e);
+      return;
+    }
+    
+    String                     app       = getApp(service.getYADARequest());
+    AsyncContext               ctx       = request.startAsync();
+    AtomicReference<Future<?>> future    = new AtomicReference<>();
+    AtomicBoolean              responded = new AtomicBoolean();
+    ctx.setTimeout(getLongProperty(YADAServer.YADA_SERVER_ASYNC_TIMEOUT, 0L));
+    ctx.addListener(new AsyncListener() {
+      @Override
+      public void onTimeout(AsyncEvent event) throws IOException
       {
-        service.handleRequest(request);
-      }
-      response.addHeader("X-YADA-VERSION",YADAUtils.getVersion());
-      if(request.getParameter("method") == null
-          || !request.getParameter("method").equals("upload"))
-      {          
-        result = service.execute();       
-        String fmt    = service.getYADARequest().getFormat();
-        
-        if (service.getYADARequest().getExport())
+        Future<?> f = future.get();
+        if(f != null)
         {
-          response.setStatus(HttpServletResponse.SC_CREATED);
-          response.addHeader("Location", result);
-          response.setContentType("text/plain");
-          fmt = YADARequest.FORMAT_PLAINTEXT;
+          f.cancel(true);
         }
-        else if(service.getYADARequest().getMethod().contentEquals(YADARequest.METHOD_UPDATE))
+        String msg = String.format("The request for app [%s] timed out.", app);
+        l.warn(msg);
+        // the task may already be writing its result, and completes the request itself
+        if(responded.compareAndSet(false, true))
         {
-          response.setContentType("text/plain");
-          fmt = YADARequest.FORMAT_PLAINTEXT;
+          sendError(baseRequest, response, new YADAServiceUnavailableException(msg));
+          complete(ctx);
         }
-        
-        if (YADARequest.FORMAT_JSON.equals(fmt))
+      }
+      
+      @Override
+      public void onError(AsyncEvent event)
+      {
+        Future<?> f = future.get();
+        if(f != null)
         {
-          response.setContentType("application/json;charset=UTF-8");
-          // timestamps
-          JSONObject jo = new JSONObject(result);          
-          // add 1 to account for remaining steps (tested this--it's very consistent)
-          long elapsed = (new Date().getTime() - baseRequest.getTimeStamp()) + 1;           
-          jo.put("elapsed", elapsed);
-          result = jo.toString();
+          f.cancel(true);
         }
-        else if (YADARequest.FORMAT_XML.equals(fmt))
+        complete(ctx);
+      }
+      
+      @Override
+      public void onComplete(AsyncEvent event) { /* nothing to do */ }
+      
+      @Override
+      public void onStartAsync(AsyncEvent event) { /* nothing to do */ }
+    });
+    Runnable     task = () -> {
+      // true once this task has claimed the response
+      boolean[] claimed = new boolean[1];
+      try
+      {
+        execute(service, baseRequest, request, response, 
+            () -> claimed[0] = responded.compareAndSet(false, true));
+      }
+      catch(Exception e)
+      {
+        if(!claimed[0])
         {
-          response.setContentType("text/xml");
+          claimed[0] = responded.compareAndSet(false, true);
         }
-        else if (YADARequest.FORMAT_CSV.equals(fmt))
+        // after a timeout the error response was already sent
+        if(claimed[0])
         {
-          response.setContentType("text/csv");
+          try
+          {
+            sendError(baseRequest, response, e);
+          }
+          catch(IOException e1)
+          {
+            l.error("Unable to send error response", e1);
+          }
         }
-        else if (YADARequest.FORMAT_TSV.equals(fmt) || YADARequest.FORMAT_TAB.equals(fmt))
+      }
+      finally
+      {
+        // otherwise the request was completed after the timeout, and may since have been recycled
+        if(claimed[0])
         {
-          response.setContentType("text/tab-separated-values");
+          complete(ctx);
         }
-        else if (YADARequest.FORMAT_PIPE.equals(fmt))
+      }
+    };
+    try
+    {
+      if(this.virtualExecutor != null)
+      {
+        future.set(submitVirtual(task));
+      }
+      else
+      {
+        future.set(this.executors.submit(app, task));
+      }
+    }
+    catch(YADAServiceUnavailableException e)
+    {
+      if(!responded.compareAndSet(false, true))
+      {
+        return;
+      }
+      response.setHeader(HttpHeader.RETRY_AFTER.asString(), 
+          String.valueOf(getLongProperty(YADAServer.YADA_SERVER_ASYNC_RETRY_AFTER, DEFAULT_RETRY_AFTER)));
+      sendError(baseRequest, response, e);
+      complete(ctx);
+    }
+  }
+  
+  /**
+   * Starts a virtual thread for {@code task}
+   * 
+   * @param task the request processing to execute
+   * @return the pending task, for cancellation
+   * @throws YADAServiceUnavailableException when the executor has been shut down
+   * @since 10.2.0
+   */
+  private Future<?> submitVirtual(Runnable task) throws YADAServiceUnavailableException
+  {
+    try
+    {
+      return this.virtualExecutor.submit(task);
+    }
+    catch(RejectedExecutionException e)
+    {
+      String msg = "The server is shutting down.";
+      throw new YADAServiceUnavailableException(msg, e);
+    }
+  }
+  
+  /**
+   * Passes the request parameters to {@code service}
+   * 
+   * @param service the service object for the request
+   * @param request the servlet request
+   * @param response the servlet response
+   * @throws YADARequestException when the request parameters are invalid
+   * @since 10.2.0
+   */
+  private void prepare(Service service, HttpServletRequest request, HttpServletResponse response) 
+      throws YADARequestException
+  {
+    if(request.getParameter(YADA_PATH) != null)
+    {
+      service.handleRequest(request, request.getParameter(YADA_PATH));
+    }
+    else
+    {
+      service.handleRequest(request);
+    }
+    request.setAttribute(YADARequestLog.TIMINGS, service.getYADARequest().getTimings());
+    response.addHeader("X-YADA-VERSION",YADAUtils.getVersion());
+  }
+  
+  /**
+   * Executes the request and writes the result to the response
+   * 
+   * @param service the service object for the request, already passed the request parameters
+   * @param baseRequest the jetty request
+   * @param request the servlet request
+   * @param response the servlet response
+   * @param claim returns {@code true} if the response may be written, i.e., it was not already sent 
+   * after a timeout, in which case the result is discarded
+   * @throws YADAException when execution fails
+   * @throws IOException when the response can't be written
+   * @since 10.2.0
+   */
+  private void execute(Service service, Request baseRequest, HttpServletRequest request, HttpServletResponse response,
+      BooleanSupplier claim) throws YADAException, IOException
+  {
+    String result = "";
+    if(request.getParameter("method") == null
+        || !request.getParameter("method").equals("upload"))
+    {          
+      if(acceptsNDJSON(request) && service.isStreamable())
+      {
+        if(!claim.getAsBoolean())
         {
-          response.setContentType("text/pipe-separated-values");
+          return;
         }
-        else if (YADARequest.FORMAT_HTML.equals(fmt))
+        // each query's result is sent as a chunk when it completes. Uncompressed, as
+        // the gzip handler only compresses the mime types of the standard formats.
+        response.setContentType(NDJSONResponse.CONTENT_TYPE + ";charset=UTF-8");
+        service.executeNDJSON(response.getWriter());
+        return;
+      }
+      if(YADAServer.isStreaming() && service.isStreamable())
+      {
+        if(!claim.getAsBoolean())
         {
-          response.setContentType("text/html");
+          return;
         }
-        else if (YADARequest.FORMAT_BINARY.equals(fmt))
+        // rows are written as they are read, and 'elapsed' is appended as the trailing key
+        response.setContentType("application/json;charset=UTF-8");
+        service.execute(response.getWriter(), baseRequest.getTimeStamp());
+        return;
+      }
+      boolean idempotent = (this.etags != null || this.coalescer != null) 
+          && isIdempotent(service, request) && service.isShareable();
+      String  requestKey = idempotent ? getRequestKey(request) : null;
+      String  etagKey    = null;
+      if(this.etags != null && idempotent)
+      {
+        etagKey = this.etags.getKey(service.getRequestedQueries(), requestKey);
+        String etag = etagKey == null ? null : this.etags.get(etagKey);
+        if(YADAETagCache.matches(request, etag))
         {
-          String  ct = "application/octet-stream";
-          Pattern rx = Pattern.compile("^data:(.+/.+);base64, .+$",Pattern.DOTALL);
-          Matcher m  = rx.matcher(result);
-          if(m.matches())
+          // the client's copy was current within the ttl, so skip execution
+          if(claim.getAsBoolean())
           {
-            ct = m.group(1);
+            sendNotModified(response, etag);
           }
-          response.setContentType(ct);
+          return;
+        }
+      }
+      boolean readOnly;
+      if(this.coalescer != null && idempotent)
+      {
+        YADARequestCoalescer.Result shared = this.coalescer.execute(requestKey, service);
+        result   = shared.getResult();
+        readOnly = shared.isReadOnly();
+      }
+      else
+      {
+        result   = service.execute();
+        readOnly = service.isReadOnly();
+      }
+      if(!claim.getAsBoolean())
+      {
+        l.debug("Discarding the result of a timed out request");
+        return;
+      }
+      if(etagKey != null && readOnly)
+      {
+        // digest the result before the 'elapsed' key is added
+        String etag = this.etags.put(etagKey, result);
+        if(YADAETagCache.matches(request, etag))
+        {
+          sendNotModified(response, etag);
+          return;
         }
+        response.setHeader(HttpHeader.ETAG.asString(), etag);
       }
-      // result      
+      String fmt    = service.getYADARequest().getFormat();
       
-      response.getWriter().print(result);
-      baseRequest.setHandled(true);
-    }
-    catch(Exception e)
-    {
-      String exceptionClass = e.getClass().getName();
-      Integer errorCode = YADAErrorHandler.statusCodes.get(YADAErrorHandler.UNHANDLED_EXCEPTION);
-      if(YADAErrorHandler.statusCodes.containsKey(exceptionClass))
+      if (service.getYADARequest().getExport())
+      {
+        response.setStatus(HttpServletResponse.SC_CREATED);
+        response.addHeader("Location", result);
+        response.setContentType("text/plain");
+        fmt = YADARequest.FORMAT_PLAINTEXT;
+      }
+      else if(service.getYADARequest().getMethod().contentEquals(YADARequest.METHOD_UPDATE))
+      {
+        response.setContentType("text/plain");
+        fmt = YADARequest.FORMAT_PLAINTEXT;
+      }
+      
+      if (YADARequest.FORMAT_JSON.equals(fmt))
+      {
+        response.setContentType("application/json;charset=UTF-8");
+        // timestamps
+        JSONObject jo = new JSONObject(result);          
+        // add 1 to account for remaining steps (tested this--it's very consistent)
+        long elapsed = (new Date().getTime() - baseRequest.getTimeStamp()) + 1;           
+        jo.put("elapsed", elapsed);
+        result = jo.toString();
+      }
+      else if (YADARequest.FORMAT_XML.equals(fmt))
+      {
+        response.setContentType("text/xml");
+      }
+      else if (YADARequest.FORMAT_CSV.equals(fmt))
+      {
+        response.setContentType("text/csv");
+      }
+      else if (YADARequest.FORMAT_TSV.equals(fmt) || YADARequest.FORMAT_TAB.equals(fmt))
+      {
+        response.setContentType("text/tab-separated-values");
+      }
+      else if (YADARequest.FORMAT_PIPE.equals(fmt))
+      {
+        response.setContentType("text/pipe-separated-values");
+      }
+      else if (YADARequest.FORMAT_HTML.equals(fmt))
       {
-        errorCode = YADAErrorHandler.statusCodes.get(exceptionClass);
+        response.setContentType("text/html");
+      }
+      else if (YADARequest.FORMAT_BINARY.equals(fmt))
+      {
+        // binary content is typically compressed already
+        request.setAttribute(YADAGzipHandler.NO_COMPRESSION, Boolean.TRUE);
+        String  ct = "application/octet-stream";
+        Pattern rx = Pattern.compile("^data:(.+/.+);base64, .+$",Pattern.DOTALL);
+        Matcher m  = rx.matcher(result);
+        if(m.matches())
+        {
+          ct = m.group(1);
+        }
+        response.setContentType(ct);
       }
-      baseRequest.setAttribute(Dispatcher.ERROR_EXCEPTION, e);
-      baseRequest.getResponse().sendError(errorCode);
     }
-    finally
+    else if(!claim.getAsBoolean())
     {
-      baseRequest.setHandled(true);
+      return;
+    }
+    // result      
+    
+    response.getWriter().print(result);
+  }
+  
+  /**
+   * @param request the servlet request
+   * @return {@code true} if the {@code Accept} header includes {@link NDJSONResponse#CONTENT_TYPE}
+   * @since 10.2.0
+   */
+  private static boolean acceptsNDJSON(HttpServletRequest request)
+  {
+    String accept = request.getHeader(HttpHeader.ACCEPT.asString());
+    return accept != null && accept.contains(NDJSONResponse.CONTENT_TYPE);
+  }
+  
+  /**
+   * Returns {@code true} if the request is a {@code GET} which, if its queries are read-only, may be 
+   * answered with an {@code ETag} or the result of an identical request, i.e., it is not an export, 
+   * update, or upload.  Whether its queries are read-only is only known after execution, 
+   * i.e., {@link Service#isReadOnly()}.
+   * 
+   * @param service the service object for the request, already passed the request parameters
+   * @param request the servlet request
+   * @return {@code true} if conditional request handling and coalescing apply
+   * @since 10.2.0
+   */
+  private static boolean isIdempotent(Service service, HttpServletRequest request)
+  {
+    YADARequest yadaReq = service.getYADARequest();
+    return HttpMethod.GET.is(request.getMethod())
+        && !yadaReq.getExport()
+        && YADARequest.METHOD_GET.equals(yadaReq.getMethod());
+  }
+  
+  /**
+   * Returns the request parameters, sorted by name, and the credentials and {@code X-CSRF-Token} with which 
+   * the request was made, so that requests with the same key can be expected to yield the same result.  
+   * Requests engaging plugins or security specs, which may read any header, are excluded beforehand, 
+   * by {@link Service#isShareable()}.
+   * 
+   * @param request the servlet request
+   * @return the canonicalized request
+   * @since 10.2.0
+   */
+  private static String getRequestKey(HttpServletRequest request)
+  {
+    StringBuilder key = new StringBuilder();
+    for(Map.Entry<String, String[]> param : new TreeMap<>(request.getParameterMap()).entrySet())
+    {
+      key.append(param.getKey()).append('=').append(String.join(KEY_SEPARATOR, param.getValue())).append(KEY_SEPARATOR);
+    }
+    // the same parameters may yield different results, or an error, for another user
+    key.append(request.getRemoteUser()).append(KEY_SEPARATOR);
+    key.append(request.getHeader(HttpHeader.AUTHORIZATION.asString())).append(KEY_SEPARATOR);
+    key.append(request.getHeader(HttpHeader.COOKIE.asString())).append(KEY_SEPARATOR);
+    key.append(request.getHeader(Authorization.YADA_HDR_SYNC_TKN));
+    return key.toString();
+  }
+  
+  /**
+   * Sets the {@code 304 Not Modified} status and {@code ETag} header, without content
+   * 
+   * @param response the servlet response
+   * @param etag the current {@code ETag}
+   * @since 10.2.0
+   */
+  private static void sendNotModified(HttpServletResponse response, String etag)
+  {
+    response.setHeader(HttpHeader.ETAG.asString(), etag);
+    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+  }
+  
+  /**
+   * Sends the error page for {@code e} with the status code mapped to its class in 
+   * {@link YADAErrorHandler#statusCodes}, or aborts the response if it is already committed.
+   * 
+   * @param baseRequest the jetty request
+   * @param response the servlet response
+   * @param e the exception to report
+   * @throws IOException when the error response can't be sent
+   * @since 10.2.0
+   */
+  private void sendError(Request baseRequest, HttpServletResponse response, Exception e) throws IOException
+  {
+    if(response.isCommitted())
+    {
+      // a streamed response is already partially written, so the error page can't be sent
+      baseRequest.getHttpChannel().abort(e);
+      return;
+    }
+    if(e instanceof YADAThrottledException)
+    {
+      response.setHeader(HttpHeader.RETRY_AFTER.asString(), String.valueOf(((YADAThrottledException)e).getRetryAfter()));
+    }
+    String exceptionClass = e.getClass().getName();
+    Integer errorCode = YADAErrorHandler.statusCodes.get(YADAErrorHandler.UNHANDLED_EXCEPTION);
+    if(YADAErrorHandler.statusCodes.containsKey(exceptionClass))
+    {
+      errorCode = YADAErrorHandler.statusCodes.get(exceptionClass);
+    }
+    baseRequest.setAttribute(Dispatcher.ERROR_EXCEPTION, e);
+    baseRequest.getResponse().sendError(errorCode);
+  }
+  
+  /**
+   * Completes the async cycle, unless it has already completed, e.g., due to a timeout.
+   * 
+   * @param ctx the async context of the request
+   * @since 10.2.0
+   */
+  private static void complete(AsyncContext ctx)
+  {
+    try
+    {
+      ctx.complete();
+    }
+    catch(IllegalStateException e)
+    {
+      l.debug("Async request already completed", e);
+    }
+  }
+  
+  /**
+   * Returns the app of the requested query, or first query in a {@link JSONParams} request, 
+   * for selecting the executor in async mode.
+   * 
+   * @param yadaReq the parsed request
+   * @return the app name
+   * @since 10.2.0
+   */
+  private static String getApp(YADARequest yadaReq)
+  {
+    String     qname = yadaReq.getQname();
+    JSONParams jp    = yadaReq.getJsonParams();
+    if(jp != null && jp.size() > 0)
+    {
+      qname = jp.getKeys()[0];
+    }
+    return Finder.getApp(qname);
+  }
+  
+  /**
+   * @param name the property name
+   * @param def the default value
+   * @return the value of the property {@code name} or {@code def} if it is unset or invalid
+   * @since 10.2.0
+   */
+  private static long getLongProperty(String name, long def)
+  {
+    String value = YADAServer.getProperties().getProperty(name);
+    try
+    {
+      return value == null ? def : Long.parseLong(value.trim());
+    }
+    catch(NumberFormatException e)
+    {
+      return def;
+    }
+  }
+  
+  /**
+   * Shuts down the async and virtual thread executors, logs coalescing metrics, writes pending
+   * query access statistics, and saves the {@link YADALibSnapshot}
+   * @since 10.2.0
+   */
+  @Override
+  protected void doStop() throws Exception
+  {
+    this.executors.shutdown();
+    if(this.virtualExecutor != null)
+    {
+      this.virtualExecutor.shutdownNow();
+    }
+    if(this.coalescer != null)
+    {
+      this.coalescer.logMetrics();
+    }
+    QueryStats.shutdown();
+    if(Finder.hasYADALib())
+    {
+      YADALibSnapshot.save(YADALibCache.getInstance());
     }
+    YADALibCache.shutdown();
+    super.doStop();
   }
 }
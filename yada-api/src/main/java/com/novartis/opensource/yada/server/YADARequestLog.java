@@ -0,0 +1,456 @@
+/**
+ *
+ */
+package com.novartis.opensource.yada.server;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.RequestLog;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.novartis.opensource.yada.RequestTimings;
+
+/**
+ * A request log of YADA-specific fields, written as newline-delimited json: the queries and apps
+ * requested, the rows returned, the bytes written, and the time, in microseconds, spent in each of
+ * the {@link RequestTimings#PHASES}.  Requests that don't reach {@link YADARequestHandler}, e.g.,
+ * CORS preflights, aren't logged.
+ * <p>
+ * The request thread only copies the fields into an entry and places it in a lock-free ring buffer of
+ * {@link #YADA_SERVER_YADA_LOG_BUFFER} entries.  A single background thread drains the buffer in batches,
+ * writes them, and syncs the file to disk at most every {@value #SYNC_INTERVAL} ms.  If the buffer is full,
+ * because the disk can't keep up, entries are dropped and counted rather than slowing requests down.
+ * </p>
+ *
+ * @author dvaron
+ * @since 10.2.0
+ */
+public class YADARequestLog extends AbstractLifeCycle implements RequestLog {
+
+  /**
+   * Local logger handle
+   */
+  private static Logger l = LoggerFactory.getLogger(YADARequestLog.class);
+
+  /**
+   * Constant equal to {@value}. The path of the log file. The log is disabled when unset.
+   */
+  public final static String YADA_SERVER_YADA_LOG_FILE = "YADA.server.yada.log.file";
+
+  /**
+   * Constant equal to {@value}. The number of entries buffered, rounded up to a power of two
+   */
+  public final static String YADA_SERVER_YADA_LOG_BUFFER = "YADA.server.yada.log.buffer";
+
+  /**
+   * Constant equal to {@value}. Request attribute holding the {@link RequestTimings}
+   */
+  public final static String TIMINGS = "com.novartis.opensource.yada.server.timings";
+
+  /**
+   * Constant equal to {@value}
+   */
+  private final static int DEFAULT_BUFFER = 8192;
+
+  /**
+   * Constant equal to {@value}. Milliseconds between syncs of the log file to disk
+   */
+  private final static long SYNC_INTERVAL = 100L;
+
+  /**
+   * Constant equal to {@value}. Microseconds the writer waits when the buffer is empty
+   */
+  private final static long IDLE_WAIT = 5000L;
+
+  /**
+   * Json generator factory
+   */
+  private final static JsonFactory JSON_FACTORY = new JsonFactory();
+
+  /**
+   * The path of the log file
+   */
+  private final String file;
+
+  /**
+   * The buffered entries
+   */
+  private final RingBuffer<Entry> buffer;
+
+  /**
+   * Number of entries dropped because the buffer was full
+   */
+  private final LongAdder dropped = new LongAdder();
+
+  /**
+   * The background writer
+   */
+  private Thread writerThread;
+
+  /**
+   * Set to {@code false} to stop the writer, after it drains the buffer
+   */
+  private volatile boolean running;
+
+  /**
+   * Configures the log from {@link YADAServer#getProperties()}
+   */
+  public YADARequestLog()
+  {
+    this.file = YADAServer.getProperties().getProperty(YADA_SERVER_YADA_LOG_FILE);
+    String size = YADAServer.getProperties().getProperty(YADA_SERVER_YADA_LOG_BUFFER);
+    int capacity = DEFAULT_BUFFER;
+    try
+    {
+      capacity = size == null ? DEFAULT_BUFFER : Integer.parseInt(size.trim());
+    }
+    catch(NumberFormatException e)
+    {
+      l.warn(String.format("Invalid value [%s] for property [%s], using %d", size, YADA_SERVER_YADA_LOG_BUFFER, DEFAULT_BUFFER));
+    }
+    this.buffer = new RingBuffer<>(capacity);
+  }
+
+  /**
+   * Returns {@code true} if the {@link #YADA_SERVER_YADA_LOG_FILE} property is set
+   *
+   * @return {@code true} if the {@link #YADA_SERVER_YADA_LOG_FILE} property is set
+   */
+  public static boolean isEnabled() {
+    String file = YADAServer.getProperties().getProperty(YADA_SERVER_YADA_LOG_FILE);
+    return file != null && file.trim().length() > 0;
+  }
+
+  /**
+   * Copies the request's fields to an entry and buffers it.  Never blocks.
+   * @see org.eclipse.jetty.server.RequestLog#log(org.eclipse.jetty.server.Request, org.eclipse.jetty.server.Response)
+   */
+  @Override
+  public void log(Request request, Response response)
+  {
+    Object timings = request.getAttribute(TIMINGS);
+    if(!(timings instanceof RequestTimings) || !this.running)
+    {
+      return;
+    }
+    Entry entry = new Entry(request, response, (RequestTimings)timings);
+    if(!this.buffer.offer(entry))
+    {
+      this.dropped.increment();
+    }
+  }
+
+  /**
+   * @return the number of entries dropped because the buffer was full
+   */
+  public long getDropped()
+  {
+    return this.dropped.sum();
+  }
+
+  /**
+   * Opens the log file and starts the writer
+   * @see org.eclipse.jetty.util.component.AbstractLifeCycle#doStart()
+   */
+  @Override
+  protected void doStart() throws Exception
+  {
+    FileOutputStream out = new FileOutputStream(this.file, true);
+    this.running = true;
+    this.writerThread = new Thread(() -> write(out), "yada-request-log");
+    this.writerThread.setDaemon(true);
+    this.writerThread.start();
+    l.info(String.format("Writing YADA request log to [%s]", this.file));
+    super.doStart();
+  }
+
+  /**
+   * Stops the writer after it drains the buffer, and closes the log file
+   * @see org.eclipse.jetty.util.component.AbstractLifeCycle#doStop()
+   */
+  @Override
+  protected void doStop() throws Exception
+  {
+    this.running = false;
+    if(this.writerThread != null)
+    {
+      LockSupport.unpark(this.writerThread);
+      this.writerThread.join(TimeUnit.SECONDS.toMillis(10));
+    }
+    if(getDropped() > 0)
+    {
+      l.warn(String.format("Dropped %d YADA request log entries", getDropped()));
+    }
+    super.doStop();
+  }
+
+  /**
+   * The writer loop, which drains the buffer in batches until stopped
+   *
+   * @param out the log file
+   */
+  private void write(FileOutputStream out)
+  {
+    FileChannel channel  = out.getChannel();
+    long        lastSync = System.currentTimeMillis();
+    boolean     unsynced = false;
+    try(BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)))
+    {
+      while(true)
+      {
+        int written = 0;
+        Entry entry;
+        while((entry = this.buffer.poll()) != null)
+        {
+          entry.write(writer);
+          written++;
+        }
+        if(written > 0)
+        {
+          writer.flush();
+          unsynced = true;
+        }
+        long now = System.currentTimeMillis();
+        if(unsynced && (now - lastSync >= SYNC_INTERVAL || !this.running))
+        {
+          channel.force(false);
+          lastSync = now;
+          unsynced = false;
+        }
+        if(!this.running && this.buffer.isEmpty())
+        {
+          break;
+        }
+        if(written == 0)
+        {
+          LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(IDLE_WAIT));
+        }
+      }
+    }
+    catch(IOException e)
+    {
+      l.error(String.format("Unable to write YADA request log [%s]", this.file), e);
+    }
+  }
+
+  /**
+   * The logged fields of a single request
+   */
+  private static class Entry {
+
+    /**
+     * Time the request was received, in milliseconds
+     */
+    final long timestamp;
+
+    /**
+     * Milliseconds between receipt and completion of the request
+     */
+    final long elapsed;
+
+    /**
+     * Client address
+     */
+    final String remote;
+
+    /**
+     * Http method
+     */
+    final String method;
+
+    /**
+     * Response status
+     */
+    final int status;
+
+    /**
+     * Response bytes written
+     */
+    final long bytes;
+
+    /**
+     * Requested query names
+     */
+    final List<String> qnames;
+
+    /**
+     * Requested apps
+     */
+    final List<String> apps;
+
+    /**
+     * Rows returned or affected
+     */
+    final long rows;
+
+    /**
+     * Nanoseconds spent in each phase
+     */
+    final long[] phases = new long[RequestTimings.PHASES.length];
+
+    /**
+     * @param request the jetty request
+     * @param response the jetty response
+     * @param timings the request's timings
+     */
+    Entry(Request request, Response response, RequestTimings timings)
+    {
+      this.timestamp = request.getTimeStamp();
+      this.elapsed   = System.currentTimeMillis() - this.timestamp;
+      this.remote    = request.getRemoteAddr();
+      this.method    = request.getMethod();
+      this.status    = response.getCommittedMetaData().getStatus();
+      this.bytes     = response.getHttpChannel().getBytesWritten();
+      this.qnames    = timings.getQnames();
+      this.apps      = timings.getApps();
+      this.rows      = timings.getRows();
+      for(int i = 0; i < this.phases.length; i++)
+      {
+        this.phases[i] = timings.get(i);
+      }
+    }
+
+    /**
+     * Writes the entry as a line of json
+     *
+     * @param writer the destination
+     * @throws IOException when the entry can't be written
+     */
+    void write(BufferedWriter writer) throws IOException
+    {
+      JsonGenerator gen = JSON_FACTORY.createGenerator(writer);
+      gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      gen.writeStartObject();
+      gen.writeNumberField("timestamp", this.timestamp);
+      gen.writeNumberField("elapsed", this.elapsed);
+      gen.writeStringField("remote", this.remote);
+      gen.writeStringField("method", this.method);
+      gen.writeNumberField("status", this.status);
+      gen.writeNumberField("bytes", this.bytes);
+      gen.writeArrayFieldStart("qnames");
+      for(String qname : this.qnames)
+      {
+        gen.writeString(qname);
+      }
+      gen.writeEndArray();
+      gen.writeArrayFieldStart("apps");
+      for(String app : this.apps)
+      {
+        gen.writeString(app);
+      }
+      gen.writeEndArray();
+      gen.writeNumberField("rows", this.rows);
+      for(int i = 0; i < this.phases.length; i++)
+      {
+        gen.writeNumberField(RequestTimings.PHASES[i], TimeUnit.NANOSECONDS.toMicros(this.phases[i]));
+      }
+      gen.writeEndObject();
+      gen.close();
+      writer.write('\n');
+    }
+  }
+
+  /**
+   * A bounded, lock-free, multiple-producer single-consumer queue.  Producers claim a slot by advancing
+   * {@link #head}, then publish their element to it; the consumer takes elements in claim order, waiting
+   * for a claimed slot to be published.
+   *
+   * @param <E> the element type
+   */
+  public static class RingBuffer<E> {
+
+    /**
+     * The slots
+     */
+    private final AtomicReferenceArray<E> slots;
+
+    /**
+     * Mask for converting a sequence to a slot index
+     */
+    private final int mask;
+
+    /**
+     * Sequence of the next slot to claim
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * Sequence of the next slot to consume
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * @param capacity the minimum number of elements held, rounded up to a power of two
+     */
+    public RingBuffer(int capacity)
+    {
+      int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+      this.slots = new AtomicReferenceArray<>(size);
+      this.mask  = size - 1;
+    }
+
+    /**
+     * @param e the element to add
+     * @return {@code false} if the buffer is full
+     */
+    public boolean offer(E e)
+    {
+      while(true)
+      {
+        long h = this.head.get();
+        if(h - this.tail.get() > this.mask)
+        {
+          return false;
+        }
+        if(this.head.compareAndSet(h, h + 1))
+        {
+          this.slots.lazySet((int)(h & this.mask), e);
+          return true;
+        }
+      }
+    }
+
+    /**
+     * Called only by the consumer.
+     * @return the next element, or {@code null} if there is none, or it hasn't yet been published
+     */
+    public E poll()
+    {
+      long t   = this.tail.get();
+      int  idx = (int)(t & this.mask);
+      E    e   = this.slots.get(idx);
+      if(e == null)
+      {
+        return null;
+      }
+      this.slots.lazySet(idx, null);
+      this.tail.lazySet(t + 1);
+      return e;
+    }
+
+    /**
+     * @return {@code true} if no slots are claimed
+     */
+    public boolean isEmpty()
+    {
+      return this.head.get() == this.tail.get();
+    }
+  }
+}
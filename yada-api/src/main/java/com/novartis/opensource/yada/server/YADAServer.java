@@ -30,6 +30,7 @@ import org.eclipse.jetty.server.handler.ErrorHandler;
 import org.eclipse.jetty.server.handler.HandlerList;
 import org.eclipse.jetty.server.handler.SecuredRedirectHandler;
 import org.eclipse.jetty.server.CustomRequestLog;
+import org.eclipse.jetty.server.RequestLog;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
 
@@ -107,6 +108,35 @@ public class YADAServer {
    * @since 10.1.3
    */
   public final static String YADA_SERVER_REQUEST_LOG_FORMAT = "YADA.server.request.log.format";
+  
+  /**
+   * Constant equal to {@value}. When {@code true}, eligible json responses are written
+   * to the client as result sets are iterated, rather than buffered.
+   * @since 10.2.0
+   */
+  public final static String YADA_SERVER_STREAMING = "YADA.server.streaming";
+  
+  /**
+   * Constant equal to {@value}. When {@code true}, requests are executed asynchronously
+   * in a bounded executor per app.
+   * @since 10.2.0
+   * @see YADAAppExecutors
+   */
+  public final static String YADA_SERVER_ASYNC = "YADA.server.async";
+  
+  /**
+   * Constant equal to {@value}. Used for setting the async request timeout in milliseconds.  
+   * Defaults to {@code 0}, i.e., no timeout.
+   * @since 10.2.0
+   */
+  public final static String YADA_SERVER_ASYNC_TIMEOUT = "YADA.server.async.timeout";
+  
+  /**
+   * Constant equal to {@value}. Used for setting the {@code Retry-After} header, in seconds,
+   * when an async request is rejected
+   * @since 10.2.0
+   */
+  public final static String YADA_SERVER_ASYNC_RETRY_AFTER = "YADA.server.async.retry.after";
 
   /**
    * 
@@ -127,6 +157,8 @@ public class YADAServer {
     SecuredRedirectHandler securedHandler = new SecuredRedirectHandler();
     
     // Create and configure a ThreadPool.
+    // With YADA.server.virtual.threads, YADARequestHandler executes requests on virtual threads, 
+    // leaving this pool for connection i/o and request parsing.
     QueuedThreadPool threadPool = new QueuedThreadPool();
     threadPool.setDetailedDump(true);
     threadPool.setName("yada");
@@ -216,7 +248,17 @@ public class YADAServer {
     yadaHandlerList.addHandler(yadaCorsHandler);
     yadaHandlerList.addHandler(yadaRequestHandler);
     rewriteHandler.setHandler(yadaHandlerList);    
-    yadaPropContextHandler.setHandler(rewriteHandler);    
+    if(YADAGzipHandler.isEnabled())
+    {
+      // compresses responses as they are written, when accepted by the client
+      YADAGzipHandler gzipHandler = new YADAGzipHandler();
+      gzipHandler.setHandler(rewriteHandler);
+      yadaPropContextHandler.setHandler(gzipHandler);
+    }
+    else
+    {
+      yadaPropContextHandler.setHandler(rewriteHandler);
+    }
     contextHandlerCollection.addHandler(yadaPropContextHandler);    
 
     if(isSecured())
@@ -243,13 +285,15 @@ public class YADAServer {
      *   |       |                 |
      *   |       |                 +-- ContextHandler (/context)
      *   |       |                          |        
-     *   |       |                          +-- RewriteHandler (2 Rule)
+     *   |       |                          +-- YADAGzipHandler (if enabled)
      *   |       |                                   |
-     *   |       |                                   +-- HandlerList (yadaHandlerList)
-     *   |       |                                           |
-     *   |       |                                           +-- YADACorsHandler
-     *   |       |                                           |
-     *   |       |                                           +-- YADARequestHandler
+     *   |       |                                   +-- RewriteHandler (2 Rule)
+     *   |       |                                            |
+     *   |       |                                            +-- HandlerList (yadaHandlerList)
+     *   |       |                                                    |
+     *   |       |                                                    +-- YADACorsHandler
+     *   |       |                                                    |
+     *   |       |                                                    +-- YADARequestHandler
      *   |       +-- DefaultHandler
      *   |       
      *   |
@@ -260,9 +304,22 @@ public class YADAServer {
     server.setHandler(handlerList);
     String reqLogFile = getProperties().getProperty(YADA_SERVER_REQUEST_LOG_FILE);
     String reqLogFmt  = getProperties().getProperty(YADA_SERVER_REQUEST_LOG_FORMAT);
-    server.setRequestLog(new CustomRequestLog(reqLogFile, reqLogFmt));
+    RequestLog requestLog = new CustomRequestLog(reqLogFile, reqLogFmt);
+    if(YADARequestLog.isEnabled())
+    {
+      // queries, rows, and phase timings, written off the request thread
+      YADARequestLog yadaRequestLog = new YADARequestLog();
+      server.addBean(yadaRequestLog);
+      requestLog = new RequestLog.Collection(requestLog, yadaRequestLog);
+    }
+    server.setRequestLog(requestLog);
     ErrorHandler errorHandler = new YADAErrorHandler();
     server.setErrorHandler(errorHandler);
+    // Load queries, fill pools, etc., before accepting connections
+    if(YADAWarmup.isEnabled())
+    {
+      new YADAWarmup().run();
+    }
     // Start the YADAServer so it starts accepting connections from clients.
     server.start();
 
@@ -322,6 +379,26 @@ public class YADAServer {
         && getProperties().get(YADA_SERVER_KEYSTORE_SECRET) != null;
   }
 
+  /**
+   * Returns {@code true} if the {@link #YADA_SERVER_STREAMING} property is set to {@code true}
+   * 
+   * @return {@code true} if the {@link #YADA_SERVER_STREAMING} property is set to {@code true}
+   * @since 10.2.0
+   */
+  public static boolean isStreaming() {
+    return Boolean.parseBoolean(getProperties().getProperty(YADA_SERVER_STREAMING, "false"));
+  }
+
+  /**
+   * Returns {@code true} if the {@link #YADA_SERVER_ASYNC} property is set to {@code true}
+   * 
+   * @return {@code true} if the {@link #YADA_SERVER_ASYNC} property is set to {@code true}
+   * @since 10.2.0
+   */
+  public static boolean isAsync() {
+    return Boolean.parseBoolean(getProperties().getProperty(YADA_SERVER_ASYNC, "false"));
+  }
+
   /**
    * @return
    */
@@ -0,0 +1,54 @@
+/**
+ *
+ */
+package com.novartis.opensource.yada.server;
+
+import com.novartis.opensource.yada.YADAException;
+
+/**
+ * Thrown when a request can't be admitted for execution, for example when the queue
+ * of pending requests for its app is full.  Maps to {@code 503 Service Unavailable}.
+ *
+ * @author dvaron
+ * @since 10.2.0
+ */
+public class YADAServiceUnavailableException extends YADAException {
+
+  /**
+   * Support for serialization
+   */
+  private static final long serialVersionUID = -4211539078235108123L;
+
+  /**
+   * Constructs a new exception with a null message.
+   */
+  public YADAServiceUnavailableException() {
+    super();
+  }
+
+  /**
+   * Constructs a new exception with a specified message
+   * @param message the message to report using {@link #getMessage()}
+   */
+  public YADAServiceUnavailableException(String message) {
+    super(message);
+  }
+
+  /**
+   * Constructs a new exception with a speificed cause
+   * @param cause the {@link Throwable} that led to this exception
+   */
+  public YADAServiceUnavailableException(Throwable cause) {
+    super(cause);
+  }
+
+  /**
+   * Constructs a new exception with a specified cause and message
+   * @param message message the message to report using {@link #getMessage()}
+   * @param cause the {@link Throwable} that led to this exception
+   */
+  public YADAServiceUnavailableException(String message, Throwable cause) {
+    super(message, cause);
+    this.cause = cause;
+  }
+}
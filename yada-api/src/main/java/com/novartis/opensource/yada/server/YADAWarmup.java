@@ -0,0 +1,400 @@
+/**
+ *
+ */
+package com.novartis.opensource.yada.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.novartis.opensource.yada.CompiledQuery;
+import com.novartis.opensource.yada.ConnectionFactory;
+import com.novartis.opensource.yada.Finder;
+import com.novartis.opensource.yada.Service;
+import com.novartis.opensource.yada.YADAException;
+import com.novartis.opensource.yada.YADALibCache;
+import com.novartis.opensource.yada.YADALibSnapshot;
+import com.novartis.opensource.yada.YADAQuery;
+import com.novartis.opensource.yada.YADARequest;
+import com.novartis.opensource.yada.format.Harmonizer;
+import com.novartis.opensource.yada.util.QueryUtils;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Prepares the server for traffic before its connectors are started, so the first requests after a
+ * deployment aren't penalized by lazy initialization.  The warmup proceeds in four phases:
+ * <ol>
+ * <li>each query in {@link Finder#getYADALibDirectory()} is loaded into the {@link YADALibCache}, from which lib
+ * lookups are served, and, if its app is a jdbc source, parsed, after which the {@link YADALibSnapshot} is saved</li>
+ * <li>each connection pool is filled to its {@code minimumIdle} size</li>
+ * <li>the javascript engine used for harmonization is loaded</li>
+ * <li>the queries listed in {@link #YADA_SERVER_WARMUP_QNAMES}, if any, are executed</li>
+ * </ol>
+ * <p>
+ * The warmup is limited to {@link #YADA_SERVER_WARMUP_TIMEOUT} milliseconds, after which it is abandoned
+ * and the server starts regardless.  Progress is logged as each phase completes.
+ * </p>
+ *
+ * @author dvaron
+ * @since 10.2.0
+ */
+public class YADAWarmup {
+
+  /**
+   * Local logger handle
+   */
+  private static Logger l = LoggerFactory.getLogger(YADAWarmup.class);
+
+  /**
+   * Constant equal to {@value}. Set to {@code true} to warm up the server before starting it
+   */
+  public final static String YADA_SERVER_WARMUP = "YADA.server.warmup";
+
+  /**
+   * Constant equal to {@value}. Maximum duration of the warmup, in milliseconds
+   */
+  public final static String YADA_SERVER_WARMUP_TIMEOUT = "YADA.server.warmup.timeout";
+
+  /**
+   * Constant equal to {@value}. Comma-separated list of queries to execute during warmup
+   */
+  public final static String YADA_SERVER_WARMUP_QNAMES = "YADA.server.warmup.qnames";
+
+  /**
+   * Constant equal to {@value}
+   */
+  private final static long DEFAULT_TIMEOUT = 60000L;
+
+  /**
+   * Constant equal to {@value}. Number of queries between progress reports while loading the library
+   */
+  private final static int PROGRESS_INTERVAL = 100;
+
+  /**
+   * Constant equal to {@value}
+   */
+  private final static String QUERY_EXT = ".json";
+
+  /**
+   * Constant equal to {@value}
+   */
+  private final static String CONF_FILE = "conf.json";
+
+  /**
+   * Time after which remaining work is skipped
+   */
+  private long deadline;
+
+  /**
+   * Null constructor
+   */
+  public YADAWarmup() {
+
+  }
+
+  /**
+   * Returns {@code true} if the {@link #YADA_SERVER_WARMUP} property is set to {@code true}
+   *
+   * @return {@code true} if the {@link #YADA_SERVER_WARMUP} property is set to {@code true}
+   */
+  public static boolean isEnabled() {
+    return Boolean.parseBoolean(YADAServer.getProperties().getProperty(YADA_SERVER_WARMUP, "false"));
+  }
+
+  /**
+   * Runs the warmup, returning when it completes, fails, or times out.
+   */
+  public void run()
+  {
+    long timeout = getTimeout();
+    long start   = System.currentTimeMillis();
+    this.deadline = start + timeout;
+    l.info(String.format("Warming up (time limit %d ms)...", timeout));
+    ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+      Thread t = new Thread(r, "yada-warmup");
+      t.setDaemon(true);
+      return t;
+    });
+    Future<?> future = executor.submit(this::warmup);
+    try
+    {
+      future.get(timeout, TimeUnit.MILLISECONDS);
+      l.info(String.format("Warmup completed in %d ms", System.currentTimeMillis() - start));
+    }
+    catch(TimeoutException e)
+    {
+      future.cancel(true);
+      l.warn(String.format("Warmup exceeded the time limit of %d ms and was abandoned", timeout));
+    }
+    catch(ExecutionException e)
+    {
+      l.error("Warmup failed", e.getCause());
+    }
+    catch(InterruptedException e)
+    {
+      future.cancel(true);
+      Thread.currentThread().interrupt();
+    }
+    finally
+    {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Runs each phase in turn
+   */
+  private void warmup()
+  {
+    // initializes the connection pools, if not already done
+    ConnectionFactory factory = ConnectionFactory.getConnectionFactory();
+    loadQueries(factory);
+    fillPools(factory);
+    loadHarmonizer();
+    executeQueries();
+  }
+
+  /**
+   * Loads each query in the library into the {@link YADALibCache}, and parses those of jdbc apps.  Queries aren't
+   * added to the {@link ConnectionFactory#getCache()}, as lib lookups don't read it.  With the lib cache disabled,
+   * queries are only parsed.
+   *
+   * @param factory the connection factory
+   */
+  private void loadQueries(ConnectionFactory factory)
+  {
+    if(!Finder.hasYADALib())
+    {
+      return;
+    }
+    List<String> qnames = getQnames(Finder.getYADALibDirectory());
+
+    Finder     finder = new Finder();
+    QueryUtils qutils = new QueryUtils();
+    int loaded = 0, parsed = 0, failed = 0;
+    for(String qname : qnames)
+    {
+      if(isExpired())
+      {
+        break;
+      }
+      try
+      {
+        // cached in the lib cache by the lookup
+        YADAQuery yq = finder.getQueryFromLib(qname);
+        if(ConnectionFactory.TYPE_JDBC.equals(factory.getAppConnectionType(yq.getApp())))
+        {
+          // compiles the shared template used by requests
+          CompiledQuery cq = qutils.getCompiledQuery(yq.getYADACode(), qutils.getAdaptorClass(yq.getApp()));
+          if(cq.getStatement() != null)
+          {
+            parsed++;
+          }
+        }
+        loaded++;
+      }
+      catch(YADAException e)
+      {
+        l.debug(String.format("Unable to load or parse query [%s]", qname), e);
+        failed++;
+      }
+      if((loaded + failed) % PROGRESS_INTERVAL == 0)
+      {
+        l.info(String.format("Warmup: loaded %d of %d queries", loaded + failed, qnames.size()));
+      }
+    }
+    l.info(String.format("Warmup: loaded %d queries, parsed %d, %d failed", loaded, parsed, failed));
+    if(!isExpired())
+    {
+      YADALibSnapshot.save(YADALibCache.getInstance());
+    }
+  }
+
+  /**
+   * Returns the name of each query in the library, i.e., for a file directly in an app directory named
+   * {@code <app> <name>.json}, {@code <app> <name>}, and for any other file, its path relative to the library,
+   * e.g., {@code <app>/<dir>/<name>}, matching the paths resolved by {@link Finder#getLibPath(String)}.
+   *
+   * @param lib the library directory
+   * @return the query names
+   */
+  public static List<String> getQnames(File lib)
+  {
+    List<String> qnames = new ArrayList<>();
+    File[]       apps   = lib.listFiles(f -> f.isDirectory() && !f.getName().equals(Finder.GIT_DIR));
+    for(File app : apps == null ? new File[0] : apps)
+    {
+      Path appPath = app.toPath();
+      try(Stream<Path> files = Files.walk(appPath))
+      {
+        files.filter(f -> Files.isRegularFile(f) && f.getFileName().toString().endsWith(QUERY_EXT))
+             .filter(f -> !f.equals(appPath.resolve(CONF_FILE)))
+             .forEach(f -> {
+               String name  = f.getFileName().toString();
+               String qname = name.substring(0, name.length() - QUERY_EXT.length());
+               if(!f.getParent().equals(appPath) || !isSpaceName(app.getName(), qname))
+               {
+                 String rel = lib.toPath().relativize(f).toString().replace(File.separatorChar, '/');
+                 qname = rel.substring(0, rel.length() - QUERY_EXT.length());
+               }
+               qnames.add(qname);
+             });
+      }
+      catch(IOException e)
+      {
+        l.warn(String.format("Warmup: unable to list the queries of app [%s]", app.getName()), e);
+      }
+    }
+    return qnames;
+  }
+
+  /**
+   * @param app the app name
+   * @param qname the file name, without extension
+   * @return {@code true} if {@code qname} is the app name followed by whitespace and a name
+   */
+  private static boolean isSpaceName(String app, String qname)
+  {
+    return qname.length() > app.length() + 1 
+        && qname.startsWith(app) 
+        && Character.isWhitespace(qname.charAt(app.length()));
+  }
+
+  /**
+   * Fills each connection pool to its {@code minimumIdle} size by holding that many connections at once.
+   *
+   * @param factory the connection factory
+   */
+  private void fillPools(ConnectionFactory factory)
+  {
+    int filled = 0;
+    for(Map.Entry<String, HikariDataSource> entry : factory.getDataSourceMap().entrySet())
+    {
+      if(isExpired())
+      {
+        break;
+      }
+      HikariDataSource  ds    = entry.getValue();
+      int               size  = Math.min(ds.getMinimumIdle(), ds.getMaximumPoolSize());
+      List<Connection>  conns = new ArrayList<>();
+      try
+      {
+        for(int i = 0; i < size && !isExpired(); i++)
+        {
+          conns.add(ds.getConnection());
+        }
+        filled++;
+      }
+      catch(SQLException e)
+      {
+        l.warn(String.format("Warmup: unable to fill pool for app [%s]: %s", entry.getKey(), e.getMessage()));
+      }
+      finally
+      {
+        for(Connection conn : conns)
+        {
+          try
+          {
+            conn.close();
+          }
+          catch(SQLException e)
+          {
+            l.debug("Unable to return connection to pool", e);
+          }
+        }
+      }
+      l.info(String.format("Warmup: filled pool for app [%s] with %d connections", entry.getKey(), conns.size()));
+    }
+    l.info(String.format("Warmup: filled %d of %d pools", filled, factory.getDataSourceMap().size()));
+  }
+
+  /**
+   * Loads the javascript libraries used for harmonization
+   */
+  private void loadHarmonizer()
+  {
+    if(isExpired())
+    {
+      return;
+    }
+    try
+    {
+      new Harmonizer();
+      l.info("Warmup: loaded javascript engine");
+    }
+    catch(YADAException e)
+    {
+      l.warn("Warmup: unable to load javascript engine", e);
+    }
+  }
+
+  /**
+   * Executes each query in {@link #YADA_SERVER_WARMUP_QNAMES}
+   */
+  private void executeQueries()
+  {
+    String prop = YADAServer.getProperties().getProperty(YADA_SERVER_WARMUP_QNAMES, "");
+    for(String qname : prop.split(","))
+    {
+      qname = qname.trim();
+      if(qname.isEmpty() || isExpired())
+      {
+        continue;
+      }
+      YADARequest yadaReq = new YADARequest();
+      yadaReq.setQname(new String[] { qname });
+      yadaReq.setCount(new String[] { "false" });
+      try
+      {
+        long start = System.currentTimeMillis();
+        new Service(yadaReq).execute();
+        l.info(String.format("Warmup: executed [%s] in %d ms", qname, System.currentTimeMillis() - start));
+      }
+      catch(YADAException e)
+      {
+        l.warn(String.format("Warmup: unable to execute [%s]: %s", qname, e.getMessage()));
+      }
+    }
+  }
+
+  /**
+   * @return {@code true} if the deadline has passed, or the warmup has been cancelled
+   */
+  private boolean isExpired()
+  {
+    return System.currentTimeMillis() > this.deadline || Thread.currentThread().isInterrupted();
+  }
+
+  /**
+   * @return the value of {@link #YADA_SERVER_WARMUP_TIMEOUT}, or {@link #DEFAULT_TIMEOUT}
+   */
+  private static long getTimeout()
+  {
+    String value = YADAServer.getProperties().getProperty(YADA_SERVER_WARMUP_TIMEOUT);
+    try
+    {
+      return value == null ? DEFAULT_TIMEOUT : Long.parseLong(value.trim());
+    }
+    catch(NumberFormatException e)
+    {
+      l.warn(String.format("Invalid value [%s] for property [%s], using %d", value, YADA_SERVER_WARMUP_TIMEOUT, DEFAULT_TIMEOUT));
+      return DEFAULT_TIMEOUT;
+    }
+  }
+}
@@ -25,11 +25,13 @@ import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -54,6 +56,7 @@ import net.sf.jsqlparser.statement.select.ValuesList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.novartis.opensource.yada.CompiledQuery;
 import com.novartis.opensource.yada.ConnectionFactory;
 import com.novartis.opensource.yada.Finder;
 import com.novartis.opensource.yada.Parser;
@@ -69,6 +72,8 @@ import com.novartis.opensource.yada.adaptor.FileSystemAdaptor;
 import com.novartis.opensource.yada.adaptor.JDBCAdaptor;
 import com.novartis.opensource.yada.adaptor.RESTAdaptor;
 import com.novartis.opensource.yada.adaptor.SOAPAdaptor;
+import com.novartis.opensource.yada.adaptor.YADAAdaptorException;
+import com.novartis.opensource.yada.server.YADAServer;
 import com.zaxxer.hikari.HikariDataSource;
 
 /**
@@ -277,6 +282,58 @@ public class QueryUtils
 	 * A constant equal to: {@value}
 	 */
 	public static final String QUOTE = "\"";
+	/**
+	 * A constant equal to: {@value}. The maximum number of {@link CompiledQuery} templates cached per adaptor class
+	 * @since 10.2.0
+	 */
+	public static final int COMPILED_QUERY_CACHE_SIZE = 10000;
+	/**
+	 * The shared {@link CompiledQuery} templates, mapped to their code in access order, per adaptor class
+	 * @since 10.2.0
+	 */
+	private static final Map<Class<Adaptor>, Map<String, CompiledQuery>> COMPILED_QUERIES = new ConcurrentHashMap<>();
+	/**
+	 * A constant equal to: {@value}. The sizes to which {@code IN} lists are padded, by repeating the last value,
+	 * so queries with lists of different lengths share statements: {@link #IN_LIST_BUCKETS_POW2}, or an ascending,
+	 * comma-separated list of sizes.  Lists longer than the largest size are not padded.  Unset or empty
+	 * to disable padding.
+	 * @since 10.2.0
+	 */
+	public static final String YADA_INLIST_BUCKETS = "YADA.inlist.buckets";
+	/**
+	 * A constant equal to: {@value}. The query property which overrides {@link #YADA_INLIST_BUCKETS} for the query,
+	 * e.g., {@code false} to disable padding.
+	 * @since 10.2.0
+	 */
+	public static final String PROP_INLIST_BUCKETS = "inListBuckets";
+	/**
+	 * A constant equal to: {@value}. Pads {@code IN} lists to the next power of two.
+	 * @since 10.2.0
+	 */
+	public static final String IN_LIST_BUCKETS_POW2 = "pow2";
+	/**
+	 * A constant equal to: {@value}. The number of values in an {@code IN} list above which, if the adaptor supports it,
+	 * the list is replaced with a single parameter, see {@link JDBCAdaptor#buildInList(boolean, char, int)}, rather than
+	 * a parameter for each value.  {@code 0} to disable.  If unset, {@link JDBCAdaptor#getDefaultInListMax()}.
+	 * @since 10.2.0
+	 */
+	public static final String YADA_INLIST_MAX = "YADA.inlist.max";
+	/**
+	 * A constant equal to: {@value}. The query property which overrides {@link #YADA_INLIST_MAX} for the query.
+	 * @since 10.2.0
+	 */
+	public static final String PROP_INLIST_MAX = "inListMax";
+	/**
+	 * A constant equal to: {@value}. Marks the parameter of an {@code IN} list which is replaced with
+	 * {@link JDBCAdaptor#buildInList(boolean, char, int)} in the expanded code.
+	 * @since 10.2.0
+	 */
+	private static final String IN_LIST_REWRITE = "__YADA_IN_LIST_";
+	/**
+	 * The parsed values of {@link #YADA_INLIST_BUCKETS} and {@link #PROP_INLIST_BUCKETS}
+	 * @since 10.2.0
+	 */
+	private static final Map<String, int[]> IN_LIST_BUCKETS = new ConcurrentHashMap<>();
 
 	/**
 	 * Retrieves the adaptor class from the application context given the
@@ -579,127 +636,180 @@ public class QueryUtils
 	}
 
 	/**
-	 * Utility wrapper method to manage {@link Parser} instantiation and parsing.
+	 * Initiates the parse/deparse process for a statement, and
+	 * recovers gracefully if {@link CCJSqlParserManager#parse(java.io.Reader)} throws a
+	 * {@link JSQLParserException} in which case it will use a regular expression to infer
+	 * the query type.  The results are those of the shared {@link CompiledQuery} for the
+	 * query's code and adaptor class, so the code is parsed only once.
 	 *
-	 * @param yq
-	 *          The query object containing the SQL to parse
-	 * @throws YADAParserException when the parser fails
-	 * @see com.novartis.opensource.yada.QueryManager
+	 * @param yq the query object containing the code to parse
+	 * @throws YADAUnsupportedAdaptorException when the adaptor can't be found or instantiated
+	 * @see #getCompiledQuery(YADAQuery)
 	 */
 
-	private void processJDBCStatement(YADAQuery yq) throws YADAParserException
+	public void processStatement(YADAQuery yq) throws YADAUnsupportedAdaptorException
 	{
-	  // new method
-		Parser parser = new Parser();
-
-		parser.parseDeparse(yq.getYADACode());
-
-		yq.setStatement(parser.getStatement());
-		yq.setType(parser.getStatementType());
-    yq.setColumnList(parser.getColumnList());
-    yq.setInList(parser.getInColumnList());
-    yq.setValuesList(parser.getValuesList());
-    yq.setValuesColumns(parser.getValuesColumns());
-    yq.setParameterizedColumnList(parser.getJdbcColumnList());
-    yq.setInExpressionMap(parser.getInExpressionMap());
+		getCompiledQuery(yq).applyTo(yq);
 	}
 
 	/**
-	 * Initiates the parse/deparse process for a statement, and
-	 * recovers gracefully if {@link CCJSqlParserManager#parse(java.io.Reader)} throws a
-	 * {@link JSQLParserException} in which case it will use a regular expression to infer
-	 * the query type.
+	 * Interrogates {@code yq} for the adaptor class and sets the protocol
+	 * attribute accordingly.
 	 *
-	 * @param yq the query object containing the code to parse
-	 * @throws YADAUnsupportedAdaptorException when the adaptor can't be found or instantiated
+	 * @param yq the query object in which to set the protocol attribute
+	 * @throws YADAUnsupportedAdaptorException when the adaptor class cannot be found
 	 */
+	public void setProtocol(YADAQuery yq) throws YADAUnsupportedAdaptorException
+	{
+		yq.setProtocol(getCompiledQuery(yq).getProtocol());
+		yq.addParam(YADARequest.PS_PROTOCOL, yq.getProtocol());
+	}
 
-	public void processStatement(YADAQuery yq) throws YADAUnsupportedAdaptorException
+	/**
+	 * Returns the {@link CompiledQuery} referenced by {@code yq} if it was compiled from the query's
+	 * current code and adaptor class, or otherwise the one returned by
+	 * {@link #getCompiledQuery(String, Class)}, after storing it in {@code yq}.
+	 *
+	 * @param yq the query
+	 * @return the compiled query
+	 * @throws YADAUnsupportedAdaptorException when the adaptor class is not supported
+	 * @since 10.2.0
+	 */
+	public CompiledQuery getCompiledQuery(YADAQuery yq) throws YADAUnsupportedAdaptorException
 	{
-		String         code         = getConformedCode(yq.getYADACode());
-		Class<Adaptor> adaptorClass = yq.getAdaptorClass();
-		if (isJdbc(yq.getAdaptorClass()))
-		{
-			try
-			{
-			  // Attempts to parse the JDBC statement
-				processJDBCStatement(yq);
-			}
-			catch (YADAParserException e)
-			{
-				l.warn("Attempting to qualify previously unparsable statement");
-				if (isCallable(code))
-					yq.setType(Parser.CALL);
-				else if (isSelect(code))
-					yq.setType(Parser.SELECT);
-				else if (isUpdate(code))
-					yq.setType(Parser.UPDATE);
-				else if (isInsert(code))
-					yq.setType(Parser.INSERT);
-				else if (isDelete(code))
-					yq.setType(Parser.DELETE);
-			}
-		}
-		else if (isSoap(adaptorClass))
+		CompiledQuery cq = yq.getCompiledQuery();
+		if (cq == null
+		    || !cq.getCode().equals(yq.getYADACode())
+		    || !cq.getAdaptorClass().equals(yq.getAdaptorClass()))
 		{
-			yq.setType(Parser.SOAP);
+			cq = getCompiledQuery(yq.getYADACode(), yq.getAdaptorClass());
+			yq.setCompiledQuery(cq);
 		}
-		else if (isRest(adaptorClass))
-		{
-			yq.setType(Parser.REST);
-		}
-		else if (isFileSystem(adaptorClass))
+		return cq;
+	}
+
+	/**
+	 * Returns the shared {@link CompiledQuery} for {@code code} and {@code adaptorClass}, compiling
+	 * and caching it first if necessary.  Statements which can't be parsed are cached too, with the type
+	 * inferred from the code, so the attempt isn't repeated.  When {@link #COMPILED_QUERY_CACHE_SIZE}
+	 * templates are cached, the least recently used is discarded, so those compiled from code which is
+	 * no longer in use, e.g., after content policies, or changes to the library, don't displace the others.
+	 *
+	 * @param code the code, including YADA markup
+	 * @param adaptorClass the adaptor class
+	 * @return the compiled query
+	 * @throws YADAUnsupportedAdaptorException when the adaptor class is not supported
+	 * @since 10.2.0
+	 */
+	public CompiledQuery getCompiledQuery(String code, Class<Adaptor> adaptorClass) throws YADAUnsupportedAdaptorException
+	{
+		Map<String, CompiledQuery> templates = COMPILED_QUERIES.get(adaptorClass);
+		if (templates == null)
 		{
-			if (isRead(code))
-				yq.setType(READ);
-			else if (isWrite(code))
-				yq.setType(WRITE);
-			else if (isAppend(code))
-        yq.setType(APPEND);
-			else if (isRm(code))
-        yq.setType(RM);
-			else if (isMkdir(code))
-        yq.setType(MKDIR);
+			templates = COMPILED_QUERIES.computeIfAbsent(adaptorClass, k -> newTemplateCache());
 		}
-		else
+		CompiledQuery cq = templates.get(code);
+		if (cq == null)
 		{
-			String msg = "The query you are attempting to execute requires a protocol or class that is not supported.  This could be a configuration issue.";
-			throw new YADAUnsupportedAdaptorException(msg);
+			cq = compile(code, adaptorClass);
+			CompiledQuery prev = templates.putIfAbsent(code, cq);
+			if (prev != null)
+			{
+				cq = prev;
+			}
 		}
+		return cq;
 	}
 
 	/**
-	 * Interrogates {@code yq} for the adaptor class and sets the protocol
-	 * attribute accordingly.
+	 * @return an empty map of templates to their code, in access order, holding at most
+	 * {@link #COMPILED_QUERY_CACHE_SIZE} templates
+	 * @since 10.2.0
+	 */
+	private static Map<String, CompiledQuery> newTemplateCache()
+	{
+		return Collections.synchronizedMap(new LinkedHashMap<String, CompiledQuery>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CompiledQuery> eldest)
+			{
+				return size() > COMPILED_QUERY_CACHE_SIZE;
+			}
+		});
+	}
+
+	/**
+	 * Classifies and, for {@code JDBC} queries, parses {@code code}.
 	 *
-	 * @param yq the query object in which to set the protocol attribute
-	 * @throws YADAUnsupportedAdaptorException when the adaptor class cannot be found
+	 * @param code the code, including YADA markup
+	 * @param adaptorClass the adaptor class
+	 * @return a new compiled query
+	 * @throws YADAUnsupportedAdaptorException when the adaptor class is not supported
+	 * @since 10.2.0
 	 */
-	public void setProtocol(YADAQuery yq) throws YADAUnsupportedAdaptorException
+	private CompiledQuery compile(String code, Class<Adaptor> adaptorClass) throws YADAUnsupportedAdaptorException
 	{
-		Class<Adaptor> adaptorClass = yq.getAdaptorClass();
+		String conformedCode = getConformedCode(code);
+		char[] dataTypes     = getDataTypes(code);
+		String type          = null;
+		String protocol;
+		Parser parser        = null;
 		if (isJdbc(adaptorClass))
 		{
-			yq.setProtocol(Parser.JDBC);
+			protocol = Parser.JDBC;
+			try
+			{
+			  // Attempts to parse the JDBC statement
+				parser = new Parser();
+				parser.parseDeparse(code);
+				type = parser.getStatementType();
+			}
+			catch (YADAParserException e)
+			{
+				l.warn("Attempting to qualify previously unparsable statement");
+				parser = null;
+				if (isCallable(conformedCode))
+					type = Parser.CALL;
+				else if (isSelect(conformedCode))
+					type = Parser.SELECT;
+				else if (isUpdate(conformedCode))
+					type = Parser.UPDATE;
+				else if (isInsert(conformedCode))
+					type = Parser.INSERT;
+				else if (isDelete(conformedCode))
+					type = Parser.DELETE;
+			}
 		}
 		else if (isSoap(adaptorClass))
 		{
-			yq.setProtocol(Parser.SOAP);
+			protocol = Parser.SOAP;
+			type     = Parser.SOAP;
 		}
 		else if (isRest(adaptorClass))
 		{
-			yq.setProtocol(Parser.REST);
+			protocol = Parser.REST;
+			type     = Parser.REST;
 		}
 		else if (isFileSystem(adaptorClass))
 		{
-			yq.setProtocol(Parser.FILE);
+			protocol = Parser.FILE;
+			if (isRead(conformedCode))
+				type = READ;
+			else if (isWrite(conformedCode))
+				type = WRITE;
+			else if (isAppend(conformedCode))
+				type = APPEND;
+			else if (isRm(conformedCode))
+				type = RM;
+			else if (isMkdir(conformedCode))
+				type = MKDIR;
 		}
 		else
 		{
 			String msg = "The query you are attempting to execute requires a protocol or class that is not supported.  This could be a configuration issue.";
 			throw new YADAUnsupportedAdaptorException(msg);
 		}
-		yq.addParam(YADARequest.PS_PROTOCOL, yq.getProtocol());
+		return new CompiledQuery(code, conformedCode, adaptorClass, protocol, type, dataTypes, parser);
 	}
 
 	/**
@@ -1437,109 +1547,370 @@ public class QueryUtils
 	 *
 	 * Also stores the transformed data types, param counts, and SQL corresponding to the row
 	 * so the return value is for illustrative or logging purposes only, in all likelihood.
+	 *
+	 * The expansion depends only on the number of values for each IN column, so it is
+	 * stored in the query's {@link CompiledQuery} for those numbers, and the statement is
+	 * reparsed only for numbers not seen before, rather than for every row.
+	 *
+	 * If {@link #YADA_INLIST_BUCKETS}, or the query property {@link #PROP_INLIST_BUCKETS}, is set, each
+	 * list is first padded to the next bucketed size by repeating its last value, which doesn't change
+	 * the result, so the number of distinct statements per query, and the plans cached for them by the
+	 * database, grows with the logarithm of the list length rather than linearly.
+	 *
+	 * A list with more values than {@link #YADA_INLIST_MAX}, or the query property {@link #PROP_INLIST_MAX},
+	 * is not expanded, if the adaptor supports it, but replaced with {@link JDBCAdaptor#buildInList(boolean, char, int)},
+	 * and its values with the single value returned by {@link JDBCAdaptor#bindInList(Connection, char, int, String[])},
+	 * so very large lists don't exceed the driver's limit of parameters.
 	 * @param yq the query to process
 	 * @param row the index of the data array passed for processing
 	 * @return the modified YADA SQL
 	 * @throws YADAParserException if parsing or deparsing the query encounters a non-conforming state
+	 * @throws YADAAdaptorException if the values of a large list can't be stored
 	 * @since 7.1.0
 	 */
-	public String processInList(YADAQuery yq, int row) throws YADAParserException
+	public String processInList(YADAQuery yq, int row) throws YADAParserException, YADAAdaptorException
 	{
-	  Parser parser = new Parser();
+	  CompiledQuery cq;
+	  try
+	  {
+	    cq = getCompiledQuery(yq);
+	  }
+	  catch (YADAUnsupportedAdaptorException e)
+	  {
+	    String msg = "Unable to retrieve the compiled statement for IN clause processing.";
+	    throw new YADAParserException(msg, e);
+	  }
+	  List<Column> inColumns = cq.getInList();
 	  // Are there "in" columns
-	  if(yq.getInList().size() > 0)
+	  if(inColumns == null || inColumns.size() == 0)
 	  {
-	    //TODO there should be a better way than reparsing to get access to the parser.
-	    //     like aren't the incols and expression map already in the query at this point?
-	    //     Probably just need to store the statement object in the yq
-	    try
-	    {
-	      parser.parseDeparse(yq.getYADACode());
-	    }
-	    catch (YADAParserException e)
-	    {
-	      String msg = "Unable to reparse statement for IN clause processing.";
-	      throw new YADAParserException(msg, e);
-	    }
-	    List<Column>             inColumns  = parser.getInColumnList();
-	    Map<Column,InExpression> inExprs    = parser.getInExpressionMap();
-	    Map<String,String[]>     dataForRow = yq.getDataRow(row);
+	    return yq.getYADACode();
+	  }
 
-	    // iterate inColumns list
-	    for(int colIndex=0; colIndex<inColumns.size(); colIndex++)
+	  // a copy, stored again below only if the values are split, padded, or rewritten
+	  LinkedHashMap<String,String[]> dataForRow = yq.getDataRow(row);
+	  boolean                        changed    = false;
+	  Integer[]                      arities    = new Integer[inColumns.size()];
+	  int[]                          buckets    = getInListBuckets(yq);
+	  JDBCAdaptor                    adaptor    = yq.getAdaptor() instanceof JDBCAdaptor ? (JDBCAdaptor) yq.getAdaptor() : null;
+	  int                            max        = adaptor != null && adaptor.isInListRewritable() ? getInListMax(yq) : 0;
+	  Map<Integer,String>            rewrites   = null;
+
+	  // iterate inColumns list
+	  for(int colIndex=0; colIndex<inColumns.size(); colIndex++)
+	  {
+	    Column inColumn = inColumns.get(colIndex);
+	    arities[colIndex] = 1;
+	    if(inColumn != null)
 	    {
-	      Column inColumn = inColumns.get(colIndex);
-	      if(inColumn != null)
+	      String colName = inColumn.getColumnName(); // json params
+	      if(dataForRow.containsKey(YADA_COLUMN + (colIndex+1)))
+	      { // standard params
+	        colName = YADA_COLUMN + (colIndex + 1);
+	      }
+	      else if(dataForRow.containsKey(colName.toUpperCase()))
+	      { // json params upper case
+	        colName = colName.toUpperCase();
+	      }
+	      else if(dataForRow.containsKey(colName.replaceAll("\"", "").toUpperCase()))
 	      {
-	        String colName = inColumn.getColumnName(); // json params
-	        if(dataForRow.containsKey(YADA_COLUMN + (colIndex+1)))
-	        { // standard params
-	          colName = YADA_COLUMN + (colIndex + 1);
-	        }
-	        else if(dataForRow.containsKey(colName.toUpperCase()))
-	        { // json params upper case
-	          colName = colName.toUpperCase();
-	        }
-	        else if(dataForRow.containsKey(colName.replaceAll("\"", "").toUpperCase()))
-	        {
-	        	colName = colName.replaceAll("\"", "").toUpperCase();
-	        }
+	      	colName = colName.replaceAll("\"", "").toUpperCase();
+	      }
 
-	        // length of value array for inColumn
-	        int dataLen = dataForRow.get(colName).length;
+	      // length of value array for inColumn
+	      int dataLen = dataForRow.get(colName).length;
 
-	        // special case of comma-separated strings, e.g., ["A,B,C"] (instead of ["A","B","C"])
-	        if(dataLen == 1)
-	        {
-	          dataForRow.put(colName, dataForRow.get(colName)[0].split(","));
-	          dataLen = dataForRow.get(colName).length;
-	        }
+	      // special case of comma-separated strings, e.g., ["A,B,C"] (instead of ["A","B","C"])
+	      if(dataLen == 1)
+	      {
+	        dataForRow.put(colName, dataForRow.get(colName)[0].split(","));
+	        dataLen = dataForRow.get(colName).length;
+	        changed = dataLen > 1 || changed;
+	      }
 
-	        // special case of standard params without brackets e.g., p=1,2,3,4
-	        if(colName.startsWith(YADA_COLUMN)
-	            && colIndex == (inColumns.size() - 1) // last index
-	            && dataForRow.keySet().size() > inColumns.size()) // more values
+	      // special case of standard params without brackets e.g., p=1,2,3,4
+	      if(colName.startsWith(YADA_COLUMN)
+	          && colIndex == (inColumns.size() - 1) // last index
+	          && dataForRow.keySet().size() > inColumns.size()) // more values
+	      {
+	        changed = true;
+	        StringBuilder inVals = new StringBuilder();
+	        for(int i=colIndex+1;i<=dataForRow.keySet().size();i++)
 	        {
-	          StringBuilder inVals = new StringBuilder();
-	          for(int i=colIndex+1;i<=dataForRow.keySet().size();i++)
+	          if(i > colIndex+1)
+	            inVals.append(",");
+	          String name = YADA_COLUMN + i;
+	          int j=0;
+	          while(j<dataForRow.get(name).length)
 	          {
-	            if(i > colIndex+1)
+	            if(j > 0)
 	              inVals.append(",");
-	            String name = YADA_COLUMN + i;
-	            int j=0;
-	            while(j<dataForRow.get(name).length)
-	            {
-	              if(j > 0)
-	                inVals.append(",");
-	              inVals.append(dataForRow.get(name)[j++]);
-	            }
+	            inVals.append(dataForRow.get(name)[j++]);
 	          }
-
-	          dataForRow.put(colName, inVals.toString().split(","));
-	          dataLen  = dataForRow.get(colName).length;
 	        }
 
+	        dataForRow.put(colName, inVals.toString().split(","));
+	        dataLen  = dataForRow.get(colName).length;
+	      }
 
-	        // amend the in clause with the additional markup
-	        InExpression     inExpr         = inExprs.get(inColumn);
-	        ItemsList        rightItemsList = inExpr.getRightItemsList();
-	        List<Expression> rightItemsExpressionList = ((ExpressionList)rightItemsList).getExpressions();
-	        String           dataType = String.valueOf(((YADAMarkupParameter)rightItemsExpressionList.get(0)).getType());
-	        for(int i=0;i<dataLen-1;i++)
-	        {
-	          YADAMarkupParameter ymp = new YADAMarkupParameter();
-	          ymp.setType(dataType);
-	          rightItemsExpressionList.add(ymp);
-	        }
+	      // replace very large lists with a single parameter
+	      if(max > 0 && dataLen > max)
+	      {
+	        if(rewrites == null)
+	          rewrites = new LinkedHashMap<>();
+	        rewrites.put(colIndex, colName);
+	        arities[colIndex] = 0;
+	        continue;
+	      }
+
+	      // pad to the bucketed size with the last value, so rows of similar lengths share a statement
+	      int bucket = getInListBucket(buckets, dataLen);
+	      if(bucket > dataLen && dataLen > 0)
+	      {
+	        String[] vals = Arrays.copyOf(dataForRow.get(colName), bucket);
+	        Arrays.fill(vals, dataLen, bucket, vals[dataLen - 1]);
+	        dataForRow.put(colName, vals);
+	        dataLen = bucket;
+	        changed = true;
+	      }
+	      arities[colIndex] = dataLen;
+	    }
+	  }
+
+	  List<Integer>                 key       = Arrays.asList(arities);
+	  CompiledQuery.InListExpansion expansion = cq.getInListExpansion(key);
+	  if(expansion == null)
+	  {
+	    String code = expandInList(cq.getCode(), arities, adaptor);
+	    expansion = cq.putInListExpansion(key, code, getDataTypes(code));
+	  }
+	  if(rewrites != null)
+	  {
+	    for(Map.Entry<Integer,String> rewrite : rewrites.entrySet())
+	    {
+	      char     type   = getInListType(cq.getInExpressionMap().get(inColumns.get(rewrite.getKey())));
+	      String[] values = dataForRow.get(rewrite.getValue());
+	      dataForRow.put(rewrite.getValue(), new String[] { adaptor.bindInList((Connection) yq.getConnection(), type, rewrite.getKey(), values) });
+	    }
+	    changed = true;
+	  }
+	  if(changed)
+	  {
+	    yq.getData().set(row, dataForRow);
+	  }
+	  yq.addDataTypes(row, expansion.getDataTypes());
+	  yq.addParamCount(row, expansion.getParamCount());
+	  yq.addCoreCode(row, expansion.getCode());
+	  return expansion.getCode();
+	}
+
+	/**
+	 * Returns the sizes to which the {@code IN} lists of {@code yq} are padded, according to the query
+	 * property {@link #PROP_INLIST_BUCKETS}, if it is set, or else {@link #YADA_INLIST_BUCKETS}.
+	 * @param yq the query
+	 * @return the ascending sizes, empty if lists are not padded
+	 * @since 10.2.0
+	 */
+	public int[] getInListBuckets(YADAQuery yq)
+	{
+	  String spec = null;
+	  if(yq.getQname() != null)
+	  {
+	    spec = yq.getProperty(PROP_INLIST_BUCKETS, yq.getQname());
+	  }
+	  if(spec == null)
+	  {
+	    Properties props = YADAServer.getProperties();
+	    spec = props == null ? null : props.getProperty(YADA_INLIST_BUCKETS);
+	  }
+	  if(spec == null)
+	  {
+	    spec = "";
+	  }
+	  int[] buckets = IN_LIST_BUCKETS.get(spec);
+	  if(buckets == null)
+	  {
+	    buckets = parseInListBuckets(spec);
+	    IN_LIST_BUCKETS.put(spec, buckets);
+	  }
+	  return buckets;
+	}
+
+	/**
+	 * @param spec {@link #IN_LIST_BUCKETS_POW2}, an ascending, comma-separated list of sizes, or anything else,
+	 * e.g., {@code false}, to disable padding
+	 * @return the ascending sizes, empty if lists are not padded
+	 * @since 10.2.0
+	 */
+	private static int[] parseInListBuckets(String spec)
+	{
+	  String s = spec.trim();
+	  if(s.equalsIgnoreCase(IN_LIST_BUCKETS_POW2))
+	  {
+	    int[] buckets = new int[31];
+	    for(int i=0;i<buckets.length;i++)
+	    {
+	      buckets[i] = 1 << i;
+	    }
+	    return buckets;
+	  }
+	  if(s.isEmpty() || s.equalsIgnoreCase("false") || s.equalsIgnoreCase("none"))
+	  {
+	    return new int[0];
+	  }
+	  try
+	  {
+	    int[] buckets = Arrays.stream(s.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+	    for(int i=0;i<buckets.length;i++)
+	    {
+	      if(buckets[i] < 1 || (i > 0 && buckets[i] <= buckets[i-1]))
+	      {
+	        throw new NumberFormatException("sizes must be positive and ascending");
+	      }
+	    }
+	    return buckets;
+	  }
+	  catch (NumberFormatException e)
+	  {
+	    l.warn("Invalid IN list bucket sizes [" + spec + "], IN lists will not be padded: " + e.getMessage());
+	    return new int[0];
+	  }
+	}
+
+	/**
+	 * @param buckets the ascending sizes
+	 * @param size the length of an {@code IN} list
+	 * @return the smallest of {@code buckets} not less than {@code size}, or {@code size} if there is none
+	 * @since 10.2.0
+	 */
+	public static int getInListBucket(int[] buckets, int size)
+	{
+	  int i = Arrays.binarySearch(buckets, size);
+	  if(i >= 0)
+	    return size;
+	  i = -i - 1;
+	  return i < buckets.length ? buckets[i] : size;
+	}
+
+	/**
+	 * Returns the value of {@link #PROP_INLIST_MAX} for {@code yq}, if it is set, or else {@link #YADA_INLIST_MAX},
+	 * or else the default of the adaptor of {@code yq}, see {@link JDBCAdaptor#getDefaultInListMax()}.
+	 * @param yq the query
+	 * @return the number of values above which {@code IN} lists are rewritten, or {@code 0}
+	 * @since 10.2.0
+	 */
+	public int getInListMax(YADAQuery yq)
+	{
+	  String max = null;
+	  if(yq.getQname() != null)
+	  {
+	    max = yq.getProperty(PROP_INLIST_MAX, yq.getQname());
+	  }
+	  if(max == null)
+	  {
+	    Properties props = YADAServer.getProperties();
+	    max = props == null ? null : props.getProperty(YADA_INLIST_MAX);
+	  }
+	  if(max == null || max.trim().isEmpty())
+	  {
+	    return yq.getAdaptor() instanceof JDBCAdaptor ? ((JDBCAdaptor) yq.getAdaptor()).getDefaultInListMax() : 0;
+	  }
+	  try
+	  {
+	    return Integer.parseInt(max.trim());
+	  }
+	  catch (NumberFormatException e)
+	  {
+	    l.warn("Invalid IN list maximum [" + max + "], IN lists will not be rewritten");
+	    return 0;
+	  }
+	}
+
+	/**
+	 * @param inExpr an IN expression of the compiled query
+	 * @return the data type of its first parameter
+	 * @since 10.2.0
+	 */
+	private static char getInListType(InExpression inExpr)
+	{
+	  List<Expression> items = ((ExpressionList)inExpr.getRightItemsList()).getExpressions();
+	  return ((YADAMarkupParameter)items.get(0)).getType().charAt(0);
+	}
+
+	/**
+	 * Parses {@code code} and appends parameters to the expression list of each IN clause,
+	 * with the data type of its first parameter, so it has {@code arities[i]} parameters,
+	 * where {@code i} is the index of its column in {@link Parser#getInColumnList()}.  A clause
+	 * whose arity is {@code 0} is replaced with {@link JDBCAdaptor#buildInList(boolean, char, int)}.
+	 * @param code the YADA SQL
+	 * @param arities the number of values for each IN column
+	 * @param adaptor the adaptor, or {@code null} if no arity is {@code 0}
+	 * @return the modified YADA SQL
+	 * @throws YADAParserException if parsing or deparsing the query encounters a non-conforming state, or a
+	 *         replaced clause is not found exactly once in the deparsed statement
+	 * @since 10.2.0
+	 */
+	private String expandInList(String code, Integer[] arities, JDBCAdaptor adaptor) throws YADAParserException
+	{
+	  Map<String,String> rewrites = new LinkedHashMap<>();
+	  Parser parser = new Parser();
+	  try
+	  {
+	    parser.parseDeparse(code);
+	  }
+	  catch (YADAParserException e)
+	  {
+	    String msg = "Unable to reparse statement for IN clause processing.";
+	    throw new YADAParserException(msg, e);
+	  }
+	  List<Column>             inColumns = parser.getInColumnList();
+	  Map<Column,InExpression> inExprs   = parser.getInExpressionMap();
+	  for(int colIndex=0; colIndex<inColumns.size() && colIndex<arities.length; colIndex++)
+	  {
+	    Column inColumn = inColumns.get(colIndex);
+	    if(inColumn != null)
+	    {
+	      // amend the in clause with the additional markup
+	      InExpression     inExpr         = inExprs.get(inColumn);
+	      ItemsList        rightItemsList = inExpr.getRightItemsList();
+	      List<Expression> rightItemsExpressionList = ((ExpressionList)rightItemsList).getExpressions();
+	      String           dataType = String.valueOf(((YADAMarkupParameter)rightItemsExpressionList.get(0)).getType());
+	      if(arities[colIndex] == 0)
+	      {
+	        // mark the clause for replacement after deparsing
+	        YADAMarkupParameter ymp = new YADAMarkupParameter();
+	        ymp.setType(dataType + IN_LIST_REWRITE + colIndex);
+	        rightItemsExpressionList = new ArrayList<>();
+	        rightItemsExpressionList.add(ymp);
 	        ((ExpressionList)rightItemsList).setExpressions(rightItemsExpressionList);
-	        inExpr.setRightItemsList(rightItemsList);
+	        rewrites.put((inExpr.isNot() ? "NOT IN " : "IN ") + rightItemsList.toString(),
+	                     adaptor.buildInList(inExpr.isNot(), dataType.charAt(0), colIndex));
+	        continue;
 	      }
+	      for(int i=0;i<arities[colIndex]-1;i++)
+	      {
+	        YADAMarkupParameter ymp = new YADAMarkupParameter();
+	        ymp.setType(dataType);
+	        rightItemsExpressionList.add(ymp);
+	      }
+	      ((ExpressionList)rightItemsList).setExpressions(rightItemsExpressionList);
+	      inExpr.setRightItemsList(rightItemsList);
+	    }
+	  }
+	  String expanded = parser.getStatement().toString();
+	  for(Map.Entry<String,String> rewrite : rewrites.entrySet())
+	  {
+	    // the marked clause must occur exactly once, or the rewritten statement would bind the wrong values
+	    String clause = rewrite.getKey();
+	    int    at     = expanded.indexOf(clause);
+	    if(at < 0 || expanded.indexOf(clause, at + clause.length()) >= 0)
+	    {
+	      String msg = "Unable to rewrite the IN clause [" + clause + "] in the deparsed statement.";
+	      throw new YADAParserException(msg);
 	    }
-	    yq.addDataTypes(row, getDataTypes(parser.getStatement().toString()));
-	    yq.addParamCount(row, yq.getDataTypes(row).length);
-	    yq.addCoreCode(row, parser.getStatement().toString());
+	    expanded = expanded.substring(0, at) + rewrite.getValue() + expanded.substring(at + clause.length());
 	  }
-	  return parser.getStatement().toString();
+	  return expanded;
 	}
 
 	/**
@@ -1757,10 +2128,11 @@ public class QueryUtils
       }
       ValuesList           valuesList = parser.getValuesList();
       List<String>         valColumns = valuesList.getColumnNames();
-      Map<String,String[]> dataForRow = yq.getDataRow(row);
-      int                  colIndex   = 0;
-      String               colName    = valColumns.get(colIndex);
-      String               tabName    = valuesList.getAlias().getName();
+      // a copy, stored again below if the values are split
+      LinkedHashMap<String,String[]> dataForRow = yq.getDataRow(row);
+      int                            colIndex   = 0;
+      String                         colName    = valColumns.get(colIndex);
+      String                         tabName    = valuesList.getAlias().getName();
       if(colName != null)
       {
 
@@ -1804,6 +2176,7 @@ public class QueryUtils
         {
           dataForRow.put(colName, dataForRow.get(colName)[0].split(","));
           dataLen = dataForRow.get(colName).length;
+          yq.getData().set(row, dataForRow);
         }
 
         // special case of standard params without brackets e.g., p=1,2,3,4
@@ -1827,6 +2200,7 @@ public class QueryUtils
           }
           dataForRow.put(colName, valuesVals.toString().split(","));
           dataLen  = dataForRow.get(colName).length;
+          yq.getData().set(row, dataForRow);
         }
         //TODO this will limit use cases to YADA queries that contain VALUES clauses containing only a single expression list
         //   i.e., (VALUES (?v,?v,?v...)) vals(x,y,z...) will work
@@ -0,0 +1,61 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada.util;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Access to virtual threads, which are unavailable before Java 21.  This is the Java 11 implementation,
+ * which reports that virtual threads are unsupported.  The Java 21 implementation, in
+ * {@code META-INF/versions/21} of the multi-release jar, is used instead when running on Java 21 or later.
+ * @author David Varon
+ * @since 10.2.0
+ */
+final class VirtualThreads {
+
+	/**
+	 * Not instantiable
+	 */
+	private VirtualThreads() {
+
+	}
+
+	/**
+	 * @return {@code false}
+	 */
+	static boolean isSupported()
+	{
+		return false;
+	}
+
+	/**
+	 * @param thread the thread to inspect
+	 * @return {@code false}
+	 */
+	static boolean isVirtual(Thread thread)
+	{
+		return false;
+	}
+
+	/**
+	 * @param prefix the thread name prefix
+	 * @return nothing
+	 * @throws UnsupportedOperationException always
+	 */
+	static ExecutorService newThreadPerTaskExecutor(String prefix)
+	{
+		throw new UnsupportedOperationException("Virtual threads require Java 21 or later.");
+	}
+}
@@ -0,0 +1,195 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada.util;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.novartis.opensource.yada.server.YADAServer;
+
+/**
+ * Thread management for the virtual thread execution mode.  When {@link #YADA_SERVER_VIRTUAL_THREADS} is
+ * {@code true} and the server is running on Java 21 or later, each request is executed on its own virtual
+ * thread, as are the nested requests made while executing it, e.g., by
+ * {@link com.novartis.opensource.yada.security.Gatekeeper} via {@link YADAUtils#executeYADAGet(String[], String[])}.
+ * <p>
+ * CPU-bound work, such as Argon2 password verification and Rhino javascript evaluation, gains nothing from
+ * virtual threads and would occupy their carrier threads, so it is passed with {@link #compute(Task)} to a
+ * bounded pool of {@link #YADA_SERVER_COMPUTE_THREADS} platform threads.
+ * </p>
+ * @author David Varon
+ * @since 10.2.0
+ */
+public class YADAThreads {
+
+	/**
+	 * Local logger handle
+	 */
+	private static Logger l = LoggerFactory.getLogger(YADAThreads.class);
+
+	/**
+	 * Constant equal to {@value}. Set to {@code true} to execute requests on virtual threads
+	 */
+	public final static String YADA_SERVER_VIRTUAL_THREADS = "YADA.server.virtual.threads";
+
+	/**
+	 * Constant equal to {@value}. Used for setting the number of platform threads for CPU-bound work
+	 */
+	public final static String YADA_SERVER_COMPUTE_THREADS = "YADA.server.compute.threads";
+
+	/**
+	 * Bounded pool for CPU-bound work, created on first use
+	 */
+	private static volatile ExecutorService computePool;
+
+	/**
+	 * Not instantiable
+	 */
+	private YADAThreads() {
+
+	}
+
+	/**
+	 * A unit of work which may throw a checked exception
+	 * @param <T> the result type
+	 * @param <E> the exception type
+	 */
+	@FunctionalInterface
+	public interface Task<T, E extends Exception> {
+		/**
+		 * @return the result
+		 * @throws E when the work fails
+		 */
+		T call() throws E;
+	}
+
+	/**
+	 * Returns {@code true} if {@link #YADA_SERVER_VIRTUAL_THREADS} is {@code true} and virtual threads
+	 * are supported by the running jvm.
+	 * @return {@code true} if requests should be executed on virtual threads
+	 */
+	public static boolean isVirtual()
+	{
+		if(!Boolean.parseBoolean(YADAServer.getProperties().getProperty(YADA_SERVER_VIRTUAL_THREADS, "false")))
+		{
+			return false;
+		}
+		if(!VirtualThreads.isSupported())
+		{
+			l.warn(String.format("%s is set, but virtual threads require Java 21 or later (running %s).",
+					YADA_SERVER_VIRTUAL_THREADS, System.getProperty("java.version")));
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @param prefix the thread name prefix
+	 * @return an executor which starts a new virtual thread for each task
+	 * @throws UnsupportedOperationException when virtual threads are unsupported by the running jvm
+	 */
+	public static ExecutorService newVirtualThreadPerTaskExecutor(String prefix)
+	{
+		return VirtualThreads.newThreadPerTaskExecutor(prefix);
+	}
+
+	/**
+	 * Executes {@code task} on the bounded compute pool if the current thread is virtual, waiting for the
+	 * result, or directly on the current thread otherwise.
+	 * @param <T> the result type
+	 * @param <E> the exception type
+	 * @param task the CPU-bound work
+	 * @return the result of {@code task}
+	 * @throws E when {@code task} fails
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T, E extends Exception> T compute(Task<T, E> task) throws E
+	{
+		if(!VirtualThreads.isVirtual(Thread.currentThread()))
+		{
+			return task.call();
+		}
+		Future<T> future = getComputePool().submit(task::call);
+		try
+		{
+			return future.get();
+		}
+		catch(InterruptedException e)
+		{
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			String msg = "Interrupted while waiting for a compute thread.";
+			throw new IllegalStateException(msg, e);
+		}
+		catch(ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if(cause instanceof RuntimeException)
+				throw (RuntimeException)cause;
+			if(cause instanceof Error)
+				throw (Error)cause;
+			throw (E)cause;
+		}
+	}
+
+	/**
+	 * @return the compute pool, created on first use
+	 */
+	private static ExecutorService getComputePool()
+	{
+		if(computePool == null)
+		{
+			synchronized(YADAThreads.class)
+			{
+				if(computePool == null)
+				{
+					int threads = Runtime.getRuntime().availableProcessors();
+					String value = YADAServer.getProperties().getProperty(YADA_SERVER_COMPUTE_THREADS);
+					if(value != null && !value.trim().isEmpty())
+						threads = Math.max(1, Integer.parseInt(value.trim()));
+					l.info(String.format("Creating compute pool with %d threads", threads));
+					computePool = Executors.newFixedThreadPool(threads, new ComputeThreadFactory());
+				}
+			}
+		}
+		return computePool;
+	}
+
+	/**
+	 * Names compute threads, for thread dumps and logs
+	 */
+	private static class ComputeThreadFactory implements ThreadFactory {
+
+		/**
+		 * The thread counter
+		 */
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r)
+		{
+			Thread t = new Thread(r, "yada-compute-" + this.count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+}
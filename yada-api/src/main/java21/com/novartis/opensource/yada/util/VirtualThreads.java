@@ -0,0 +1,60 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Access to virtual threads.  This is the Java 21 implementation, packaged in {@code META-INF/versions/21}
+ * of the multi-release jar.
+ * @author David Varon
+ * @since 10.2.0
+ */
+final class VirtualThreads {
+
+	/**
+	 * Not instantiable
+	 */
+	private VirtualThreads() {
+
+	}
+
+	/**
+	 * @return {@code true}
+	 */
+	static boolean isSupported()
+	{
+		return true;
+	}
+
+	/**
+	 * @param thread the thread to inspect
+	 * @return {@code true} if {@code thread} is virtual
+	 */
+	static boolean isVirtual(Thread thread)
+	{
+		return thread.isVirtual();
+	}
+
+	/**
+	 * @param prefix the thread name prefix
+	 * @return an executor which starts a new, named virtual thread for each task
+	 */
+	static ExecutorService newThreadPerTaskExecutor(String prefix)
+	{
+		return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(prefix, 0).factory());
+	}
+}
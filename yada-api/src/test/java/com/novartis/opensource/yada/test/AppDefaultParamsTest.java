@@ -0,0 +1,219 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada.test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.novartis.opensource.yada.AppDefaultParams;
+import com.novartis.opensource.yada.ConnectionFactory;
+import com.novartis.opensource.yada.YADAParam;
+import com.novartis.opensource.yada.YADAQuery;
+import com.novartis.opensource.yada.YADAQueryConfigurationException;
+import com.novartis.opensource.yada.YADARequest;
+import com.novartis.opensource.yada.security.YADASecuritySpec;
+
+/**
+ * Tests that {@link AppDefaultParams} reads the default parameters of an app as a json string or array, adds
+ * them to a query as stored defaults, applies them to a request, replacing only overrideable query parameters,
+ * and reports invalid parameters when they are applied.
+ * @author David Varon
+ * @since 10.2.0
+ */
+public class AppDefaultParamsTest {
+
+  /**
+   * Constant equal to {@value}
+   */
+  private static final String APP = "YADATEST";
+
+  /**
+   * Constant equal to {@value}
+   */
+  private static final String QNAME = "YADATEST defaults";
+
+  /**
+   * Constant equal to {@value}. The name of a parameter without a request setter
+   */
+  private static final String CUSTOM = "custom";
+
+  /**
+   * Loads the test {@code YADA.properties}, unless set already
+   */
+  @BeforeClass (groups = {"core"})
+  public void init()
+  {
+    if(System.getProperty("YADA.properties.path") == null)
+    {
+      System.setProperty("YADA.properties.path", getClass().getResource("/conf/YADA.properties").getPath());
+    }
+  }
+
+  /**
+   * Checks that the parameters are read the same from a json string and a json array, and added to a query as
+   * defaults targeting it, with their rules and security specs
+   * @throws Exception when the parameters can't be added
+   */
+  @Test (groups = {"core"})
+  public void addsDefaults() throws Exception
+  {
+    JSONArray params = params();
+    for(AppDefaultParams defaults : new AppDefaultParams[] { defaults(params.toString()), defaults(params) })
+    {
+      Assert.assertFalse(defaults.isEmpty(), "Parameters not read");
+      YADAQuery yq = query();
+      defaults.addTo(yq);
+      YADAParam pz = yq.getParam(YADARequest.PS_PAGESIZE).get(0);
+      Assert.assertEquals(pz.getValue(), "10", "Wrong value");
+      Assert.assertEquals(pz.getRule(), YADAParam.OVERRIDEABLE, "Wrong rule");
+      Assert.assertEquals(pz.getTarget(), QNAME, "Parameter not targeting the query");
+      Assert.assertTrue(pz.isDefault(), "Parameter not a default");
+      YADAParam custom = yq.getParam(CUSTOM).get(0);
+      Assert.assertEquals(custom.getRule(), YADAParam.NONOVERRIDABLE, "Wrong rule");
+      Assert.assertNotNull(custom.getSecuritySpec(), "Security spec not added");
+      Assert.assertEquals(custom.getSecuritySpec().get(YADASecuritySpec.KEY_POLICY), YADASecuritySpec.POLICY_EXECUTION, "Wrong security spec");
+    }
+    Assert.assertTrue(defaults("[]").isEmpty(), "Empty parameters not empty");
+    Assert.assertTrue(new AppDefaultParams(APP, null).isEmpty(), "Missing config not empty");
+    Assert.assertTrue(new AppDefaultParams(APP, new HashMap<>()).isEmpty(), "Missing props not empty");
+  }
+
+  /**
+   * Checks that applying the parameters to a request invokes the request setters, replaces the values of the
+   * query's overrideable parameters, keeps those of its non-overridable parameters, and adds the others
+   * @throws Exception when the parameters can't be applied
+   */
+  @Test (groups = {"core"})
+  public void appliesToRequest() throws Exception
+  {
+    YADAQuery yq = query();
+    yq.addParam(new YADAParam(YADARequest.PS_PAGESIZE, "20", QNAME, YADAParam.OVERRIDEABLE));
+    yq.addParam(new YADAParam(YADARequest.PS_PAGESTART, "3", QNAME, YADAParam.NONOVERRIDABLE));
+    YADARequest yadaReq = new YADARequest();
+    defaults(params()).applyTo(yq, yadaReq);
+
+    Assert.assertEquals(yadaReq.getPageSize(), 10, "Request setter not invoked");
+    Assert.assertEquals(yadaReq.getPageStart(), 2, "Request setter not invoked");
+    List<YADAParam> pz = yq.getParam(YADARequest.PS_PAGESIZE);
+    Assert.assertEquals(pz.size(), 1, "Overrideable parameter added again");
+    Assert.assertEquals(pz.get(0).getValue(), "10", "Overrideable parameter not replaced");
+    List<YADAParam> pg = yq.getParam(YADARequest.PS_PAGESTART);
+    Assert.assertEquals(pg.size(), 1, "Non-overridable parameter added again");
+    Assert.assertEquals(pg.get(0).getValue(), "3", "Non-overridable parameter replaced");
+    List<YADAParam> custom = yq.getParam(CUSTOM);
+    Assert.assertEquals(custom.size(), 1, "Parameter not added");
+    Assert.assertEquals(custom.get(0).getValue(), "value", "Wrong value added");
+  }
+
+  /**
+   * Checks that parameters which can't be read, or whose request setter fails, are reported as
+   * {@link YADAQueryConfigurationException} when they are added or applied, rather than when the config is read
+   */
+  @Test (groups = {"core"})
+  public void reportsInvalidParams()
+  {
+    String[] invalid = { "[{\"name\":\"pz\",\"value\":\"10\"", "[{\"name\":\"pz\",\"value\":\"10\"}]", "{\"name\":\"pz\"}" };
+    for(String params : invalid)
+    {
+      AppDefaultParams defaults = defaults(params);
+      Assert.assertFalse(defaults.isEmpty(), "Invalid parameters ignored: " + params);
+      assertInvalid(() -> defaults.addTo(query()), params);
+      assertInvalid(() -> defaults.applyTo(query(), new YADARequest()), params);
+    }
+    JSONArray setter = new JSONArray().put(param(YADARequest.PS_PAGESIZE, "ten", YADAParam.OVERRIDEABLE));
+    assertInvalid(() -> defaults(setter).applyTo(query(), new YADARequest()), setter.toString());
+  }
+
+  /**
+   * An operation which may fail with a {@link YADAQueryConfigurationException}
+   */
+  private interface Operation {
+    /**
+     * @throws YADAQueryConfigurationException when the parameters are invalid
+     */
+    void run() throws YADAQueryConfigurationException;
+  }
+
+  /**
+   * @param op the operation applying the parameters
+   * @param params the parameters
+   */
+  private static void assertInvalid(Operation op, String params)
+  {
+    try
+    {
+      op.run();
+      Assert.fail("Invalid parameters applied: " + params);
+    }
+    catch(YADAQueryConfigurationException e)
+    {
+      // expected
+    }
+  }
+
+  /**
+   * @return a page size, a page start, and a secured parameter without a request setter
+   */
+  private static JSONArray params()
+  {
+    JSONObject spec = new JSONObject();
+    spec.put(YADASecuritySpec.KEY_POLICY, YADASecuritySpec.POLICY_EXECUTION);
+    spec.put(YADASecuritySpec.KEY_TYPE, YADASecuritySpec.TYPE_ALLOWLIST);
+    return new JSONArray()
+        .put(param(YADARequest.PS_PAGESIZE, "10", YADAParam.OVERRIDEABLE))
+        .put(param(YADARequest.PS_PAGESTART, "2", YADAParam.OVERRIDEABLE))
+        .put(param(CUSTOM, "value", YADAParam.NONOVERRIDABLE).put("spec", spec));
+  }
+
+  /**
+   * @param name the parameter name
+   * @param value the parameter value
+   * @param rule the parameter rule
+   * @return the parameter config
+   */
+  private static JSONObject param(String name, String value, int rule)
+  {
+    return new JSONObject().put("name", name).put("value", value).put("rule", rule);
+  }
+
+  /**
+   * @param params the {@code params} property, as a json string or array
+   * @return the default parameters of an app config with {@code params}
+   */
+  private static AppDefaultParams defaults(Object params)
+  {
+    Map<String, Object> conf = new HashMap<>();
+    conf.put(ConnectionFactory.YADA_CONF_PROPS, new JSONObject().put("params", params));
+    return new AppDefaultParams(APP, conf);
+  }
+
+  /**
+   * @return a query without parameters
+   */
+  private static YADAQuery query()
+  {
+    YADAQuery yq = new YADAQuery();
+    yq.setApp(APP);
+    yq.setQname(QNAME);
+    return yq;
+  }
+}
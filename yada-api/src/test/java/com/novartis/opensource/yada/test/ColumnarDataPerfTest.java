@@ -0,0 +1,245 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada.test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.novartis.opensource.yada.ColumnarData;
+import com.novartis.opensource.yada.JSONParams;
+import com.novartis.opensource.yada.YADAQuery;
+import com.novartis.opensource.yada.YADAQueryConfigurationException;
+import com.novartis.opensource.yada.adaptor.Adaptor;
+import com.novartis.opensource.yada.adaptor.HSQLdbAdaptor;
+import com.novartis.opensource.yada.util.QueryUtils;
+
+/**
+ * Compares the parse time of a large {@link JSONParams} write, with {@code DATA} passed as rows and as columns, 
+ * and the memory retained by a {@link ColumnarData} store and a list of maps after every row is prepared for
+ * execution, i.e., its {@code IN} list processed and its values bound in position, as by the {@code QueryManager}.
+ * @author David Varon
+ * @since 10.2.0
+ */
+public class ColumnarDataPerfTest {
+
+  /**
+   * Local logger handle
+   */
+  private static Logger l = LoggerFactory.getLogger(ColumnarDataPerfTest.class);
+
+  /**
+   * Constant equal to {@value}
+   */
+  private static final int ROWS = 100000;
+
+  /**
+   * Constant equal to {@value}
+   */
+  private static final String QNAME = "YADA test INSERT";
+
+  /**
+   * Constant equal to {@value}. The query whose preparation reads every row
+   */
+  private static final String PREP_CODE = "select id from t where col1 in (?v) and col2 = ?v and col3 = ?v and col4 = ?v and col5 = ?v";
+
+  /**
+   * Column names
+  private static final String[] COLUMNS = { "COL1", "COL2", "COL3", "COL4", "COL5" };
+
+  /**
+   * Json factory for parsing
+   */
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  /**
+   * Parses {@value #ROWS} rows in each form, compares the results, and logs the parse times, and the memory
+   * retained after preparation
+   * @throws Exception when the json can't be parsed
+   */
+  @Test (groups = {"perf"})
+  public void columnarData() throws Exception
+  {
+    String rowJson    = buildRowJson();
+    String columnJson = buildColumnJson();
+
+    // warm up
+    parse(rowJson);
+    parse(columnJson);
+
+    long start = System.nanoTime();
+    JSONParams rows = parse(rowJson);
+    long rowNanos = System.nanoTime() - start;
+    start = System.nanoTime();
+    JSONParams columns = parse(columnJson);
+    long columnNanos = System.nanoTime() - start;
+
+    List<LinkedHashMap<String,String[]>> rowData    = rows.get(QNAME).getData();
+    List<LinkedHashMap<String,String[]>> columnData = columns.get(QNAME).getData();
+    assert rowData.size() == ROWS && columnData.size() == ROWS : "Wrong number of rows";
+    for (int i = 0; i < ROWS; i += 997)
+    {
+      assert Arrays.equals(rowData.get(i).get("COL3"), columnData.get(i).get("COL3")) : "Row "+i+" differs";
+    }
+
+    long columnarBytes = retained(() -> prepare(parse(columnJson).get(QNAME).getData()));
+    long mapBytes      = retained(() -> {
+      List<LinkedHashMap<String,String[]>> list = new ArrayList<>();
+      for (LinkedHashMap<String,String[]> row : parse(rowJson).get(QNAME).getData())
+      {
+        list.add(row);
+      }
+      return prepare(list);
+    });
+    l.info(String.format("%d rows: parse as rows %d ms, as columns %d ms; retained after preparation as columns %d KB, as maps %d KB",
+        ROWS, rowNanos / 1000000, columnNanos / 1000000, columnarBytes / 1024, mapBytes / 1024));
+  }
+
+  /**
+   * Processes the {@code IN} list and binds the values of each row of {@code data} for {@link #PREP_CODE}
+   * @param data the rows
+   * @return the rows, once all are prepared, without the query and its bound values
+   * @throws Exception when the statement can't be compiled or processed
+   */
+  @SuppressWarnings("unchecked")
+  private static List<LinkedHashMap<String,String[]>> prepare(List<LinkedHashMap<String,String[]>> data) throws Exception
+  {
+    QueryUtils qutils = new QueryUtils();
+    YADAQuery  yq     = new YADAQuery();
+    yq.setYADACode(PREP_CODE);
+    yq.setQname(QNAME);
+    yq.setAdaptorClass((Class<Adaptor>) (Class<?>) HSQLdbAdaptor.class);
+    qutils.getCompiledQuery(yq).applyTo(yq);
+    yq.addAllData(data);
+    for (int row = 0; row < data.size(); row++)
+    {
+      qutils.processInList(yq, row);
+      qutils.setPositionalParameterValues(yq, row);
+    }
+    return yq.getData();
+  }
+
+  /**
+   * Source of an object whose retained size is measured
+   */
+  private interface Source {
+    /**
+     * @return the object to measure
+     * @throws Exception when the object can't be built
+     */
+    Object get() throws Exception;
+  }
+
+  /**
+   * @param source the source of the object to measure
+   * @return the approximate increase in heap usage while the object is reachable
+   * @throws Exception when the object can't be built
+   */
+  private static long retained(Source source) throws Exception
+  {
+    long before = used();
+    Object o = source.get();
+    long after = used();
+    assert o != null;
+    return after - before;
+  }
+
+  /**
+   * @return heap usage after collection
+   */
+  private static long used()
+  {
+    Runtime rt = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++)
+    {
+      System.gc();
+    }
+    return rt.totalMemory() - rt.freeMemory();
+  }
+
+  /**
+   * @param json JSONParams content
+   * @return the parsed content
+   * @throws IOException when the json can't be read
+   * @throws YADAQueryConfigurationException when the json is non-compliant
+   */
+  private static JSONParams parse(String json) throws IOException, YADAQueryConfigurationException
+  {
+    try (JsonParser parser = JSON_FACTORY.createParser(json))
+    {
+      parser.nextToken();
+      return new JSONParams(parser);
+    }
+  }
+
+  /**
+   * @param row the row index
+   * @param col the column index
+   * @return the value of the cell
+   */
+  private static String value(int row, int col)
+  {
+    return col == 0 ? String.valueOf(row) : "value-" + row + "-" + col;
+  }
+
+  /**
+   * @return JSONParams with {@value #ROWS} rows of {@code DATA}, passed as rows
+   */
+  private static String buildRowJson()
+  {
+    StringBuilder sb = new StringBuilder("[{\"qname\":\"" + QNAME + "\",\"DATA\":[");
+    for (int r = 0; r < ROWS; r++)
+    {
+      sb.append(r == 0 ? "{" : ",{");
+      for (int c = 0; c < COLUMNS.length; c++)
+      {
+        sb.append(c == 0 ? "" : ",").append('"').append(COLUMNS[c]).append("\":\"").append(value(r, c)).append('"');
+      }
+      sb.append('}');
+    }
+    return sb.append("]}]").toString();
+  }
+
+  /**
+   * @return JSONParams with {@value #ROWS} rows of {@code DATA}, passed as columns
+   */
+  private static String buildColumnJson()
+  {
+    StringBuilder sb = new StringBuilder("[{\"qname\":\"" + QNAME + "\",\"DATA\":{\"" + ColumnarData.COLUMNS + "\":[");
+    for (int c = 0; c < COLUMNS.length; c++)
+    {
+      sb.append(c == 0 ? "" : ",").append('"').append(COLUMNS[c]).append('"');
+    }
+    sb.append("],\"" + ColumnarData.VALUES + "\":[");
+    for (int c = 0; c < COLUMNS.length; c++)
+    {
+      sb.append(c == 0 ? "[" : ",[");
+      for (int r = 0; r < ROWS; r++)
+      {
+        sb.append(r == 0 ? "" : ",").append('"').append(value(r, c)).append('"');
+      }
+      sb.append(']');
+    }
+    return sb.append("]}}]").toString();
+  }
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada.test;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.json.JSONObject;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.novartis.opensource.yada.ColumnarData;
+import com.novartis.opensource.yada.JSONParamsEntry;
+import com.novartis.opensource.yada.YADAQueryConfigurationException;
+
+/**
+ * Tests that {@link ColumnarData} yields the same rows as the equivalent list of maps, that materialized
+ * rows are copies, and that rows set again are retained.
+ * @author David Varon
+ * @since 10.2.0
+ */
+public class ColumnarDataTest {
+
+  /**
+   * Constant equal to {@value}
+   */
+  private static final String ROWS = "{\"qname\":\"YADA test\",\"DATA\":[{\"col1\":\"A\",\"col2\":[\"1\",\"2\"]},{\"col1\":\"B\",\"col2\":\"3\"}]}";
+
+  /**
+   * Constant equal to {@value}
+   */
+  private static final String COLUMNS = "{\"qname\":\"YADA test\",\"DATA\":{\"columns\":[\"col1\",\"col2\"],\"values\":[[\"A\",\"B\"],[[\"1\",\"2\"],3]]}}";
+
+  /**
+   * Checks that columnar {@code DATA} yields the same rows as row {@code DATA}, and that rows appended
+   * with other columns are stored as maps
+   * @throws YADAQueryConfigurationException when the entry can't be created
+   */
+  @Test (groups = {"core"})
+  public void sameAsRows() throws YADAQueryConfigurationException
+  {
+    List<LinkedHashMap<String,String[]>> rows    = new JSONParamsEntry(new JSONObject(ROWS)).getData();
+    List<LinkedHashMap<String,String[]>> columns = new JSONParamsEntry(new JSONObject(COLUMNS)).getData();
+    Assert.assertEquals(columns.size(), rows.size());
+    for(int i = 0; i < rows.size(); i++)
+    {
+      // the order of JSONObject keys is undefined
+      Assert.assertEquals(columns.get(i).keySet(), rows.get(i).keySet());
+      for(String key : rows.get(i).keySet())
+      {
+        Assert.assertEquals(columns.get(i).get(key), rows.get(i).get(key), "Row " + i + ", " + key);
+      }
+    }
+
+    ColumnarData data = newData();
+    data.addColumns(new String[] { "COL3" }, new Object[][] { { "C" } });
+    Assert.assertEquals(data.size(), 3);
+    Assert.assertEquals(data.get(2).keySet(), Collections.singleton("COL3"));
+    Assert.assertEquals(data.get(0).get("COL1"), new String[] { "A" }, "Columnar row changed");
+  }
+
+  /**
+   * Checks that a materialized row, and its value arrays, are copies, which don't change the store
+   */
+  @Test (groups = {"core"})
+  public void materializesCopies()
+  {
+    ColumnarData data = newData();
+    data.get(1).get("COL1")[0] = "X";
+    data.get(0).get("COL2")[0] = "X";
+    data.get(0).put("COL3", new String[] { "Y" });
+    data.get(1).remove("COL2");
+    Assert.assertEquals(data.get(1).get("COL1"), new String[] { "B" }, "Single value changed");
+    Assert.assertEquals(data.get(0).get("COL2"), new String[] { "1", "2" }, "Array changed");
+    Assert.assertEquals(data.get(0).keySet(), data.get(1).keySet(), "Columns changed");
+    Assert.assertNotSame(data.get(1), data.get(1), "Row shared");
+    Assert.assertNotSame(data.get(0).get("COL2"), data.get(0).get("COL2"), "Array shared");
+  }
+
+  /**
+   * Checks that rows set again are retained, in columns or, if their columns differ, as maps, and
+   * that indices are kept when rows are inserted and removed
+   */
+  @Test (groups = {"core"})
+  public void retainsRowsSet()
+  {
+    ColumnarData                   data = newData();
+    LinkedHashMap<String,String[]> row  = data.get(1);
+    row.put("COL1", new String[] { "X", "Y" });
+    data.set(1, row);
+    Assert.assertEquals(data.get(1).get("COL1"), new String[] { "X", "Y" }, "Split values lost");
+
+    row = data.get(0);
+    row.put("COL3", new String[] { "Z" });
+    data.set(0, row);
+    Assert.assertEquals(data.get(0).get("COL3"), new String[] { "Z" }, "Added column lost");
+
+    data.add(0, new LinkedHashMap<>(data.get(1)));
+    Assert.assertEquals(data.get(1).get("COL3"), new String[] { "Z" }, "Row stored as a map not moved");
+    Assert.assertEquals(data.get(2).get("COL1"), new String[] { "X", "Y" }, "Row stored in columns not moved");
+    data.remove(0);
+    Assert.assertEquals(data.get(0).get("COL3"), new String[] { "Z" }, "Row stored as a map not moved back");
+    Assert.assertEquals(data.size(), 2);
+  }
+
+  /**
+   * @return a store of two rows, the second with single values
+   */
+  private static ColumnarData newData()
+  {
+    ColumnarData data = new ColumnarData();
+    data.addColumns(new String[] { "COL1", "COL2" },
+        new Object[][] { { "A", "B" }, { new String[] { "1", "2" }, "3" } });
+    return data;
+  }
+}
@@ -0,0 +1,221 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada.test;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+
+import javax.servlet.http.HttpServletRequest;
+
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.novartis.opensource.yada.CompiledQuery;
+import com.novartis.opensource.yada.Parser;
+import com.novartis.opensource.yada.YADAQuery;
+import com.novartis.opensource.yada.YADARequest;
+import com.novartis.opensource.yada.adaptor.Adaptor;
+import com.novartis.opensource.yada.adaptor.HSQLdbAdaptor;
+import com.novartis.opensource.yada.security.Gatekeeper;
+import com.novartis.opensource.yada.util.QueryUtils;
+
+/**
+ * Tests that the {@link CompiledQuery} of a query's code is shared by the queries of every request, including
+ * the type inferred for code which can't be parsed, and that a content policy is applied to a copy of the shared
+ * statement.
+ * @author David Varon
+ * @since 10.2.0
+ */
+public class CompiledQueryTest {
+
+  /**
+   * Constant equal to {@value}
+   */
+  private static final String QNAME = "YADATEST compiled";
+
+  /**
+   * The utility object
+   */
+  private final QueryUtils qutils = new QueryUtils();
+
+  /**
+   * Loads the test {@code YADA.properties}, unless set already
+   */
+  @BeforeClass (groups = {"core"})
+  public void init()
+  {
+    if(System.getProperty("YADA.properties.path") == null)
+    {
+      System.setProperty("YADA.properties.path", getClass().getResource("/conf/YADA.properties").getPath());
+    }
+  }
+
+  /**
+   * Checks that queries with the same code and adaptor class share one template, and its statement and
+   * column lists, which can't be modified, and that another adaptor class or code gets another template
+   * @throws Exception when the code can't be compiled
+   */
+  @Test (groups = {"core"})
+  public void sharesTemplates() throws Exception
+  {
+    String    code = "select id, name from compiled_test where id = ?i and name in (?v)";
+    YADAQuery yq1  = newQuery(code);
+    YADAQuery yq2  = newQuery(code);
+    CompiledQuery cq = yq1.getCompiledQuery();
+    Assert.assertSame(yq2.getCompiledQuery(), cq, "Template not shared");
+    Assert.assertSame(this.qutils.getCompiledQuery(code, hsqldb()), cq, "Template not cached");
+    Assert.assertNotNull(cq.getStatement(), "Statement not parsed");
+    Assert.assertSame(yq1.getStatement(), cq.getStatement(), "Statement not shared");
+    Assert.assertSame(yq2.getStatement(), cq.getStatement(), "Statement not shared");
+    Assert.assertEquals(yq1.getType(), Parser.SELECT, "Wrong statement type");
+    Assert.assertEquals(new String(cq.getDataTypes()), "iv", "Wrong data types");
+    Assert.assertEquals(yq1.getInList().size(), 1, "Wrong IN columns");
+    try
+    {
+      cq.getColumnList().clear();
+      Assert.fail("Shared column list modified");
+    }
+    catch(UnsupportedOperationException e)
+    {
+      // expected
+    }
+    char[] dataTypes = cq.getDataTypes();
+    dataTypes[0] = 'v';
+    Assert.assertEquals(new String(cq.getDataTypes()), "iv", "Shared data types modified");
+
+    Assert.assertNotSame(this.qutils.getCompiledQuery(code + " and id > ?i", hsqldb()), cq, "Template shared with other code");
+    yq1.setYADACode(code + " and id > ?i");
+    Assert.assertNotSame(this.qutils.getCompiledQuery(yq1), cq, "Template of the previous code used after a change");
+  }
+
+  /**
+   * Checks that code which can't be parsed is compiled once, with the type inferred from the code, and without
+   * a statement
+   * @throws Exception when the code can't be compiled
+   */
+  @Test (groups = {"core"})
+  public void cachesUnparseableCode() throws Exception
+  {
+    String        code = "select id from compiled_test where id = ?i and (((";
+    CompiledQuery cq   = this.qutils.getCompiledQuery(code, hsqldb());
+    Assert.assertNull(cq.getStatement(), "Unparseable code parsed");
+    Assert.assertEquals(cq.getType(), Parser.SELECT, "Type not inferred from unparseable code");
+    Assert.assertEquals(cq.getParamCount(), 1, "Wrong number of parameters");
+    Assert.assertSame(this.qutils.getCompiledQuery(code, hsqldb()), cq, "Unparseable code compiled again");
+    YADAQuery yq = newQuery(code);
+    Assert.assertSame(yq.getCompiledQuery(), cq, "Unparseable code compiled again");
+    Assert.assertEquals(yq.getType(), Parser.SELECT, "Inferred type not applied");
+    Assert.assertNull(yq.getStatement(), "Statement applied for unparseable code");
+  }
+
+  /**
+   * Checks that {@link Gatekeeper#applyContentPolicy()} adds its predicate to the code of the request's query
+   * only, leaving the shared statement, and the template served to other requests, unchanged
+   * @throws Exception when the code can't be compiled or the policy applied
+   */
+  @Test (groups = {"core"})
+  public void contentPolicyCopiesStatement() throws Exception
+  {
+    String        code      = "select id, name from compiled_test where id = ?i";
+    YADAQuery     yq        = newQuery(code);
+    CompiledQuery cq        = yq.getCompiledQuery();
+    String        statement = cq.getStatement().toString();
+    Expression    where     = ((PlainSelect) ((Select) cq.getStatement()).getSelectBody()).getWhere();
+
+    Gatekeeper gatekeeper = new Gatekeeper();
+    YADARequest yadaReq   = new YADARequest();
+    yadaReq.setRequest(request("user", "u1"));
+    gatekeeper.setYADARequest(yadaReq);
+    gatekeeper.setYADAQuery(yq);
+    gatekeeper.setArgs(Arrays.asList("content.policy.predicate=name=getQHeader(user)"));
+    gatekeeper.applyContentPolicy();
+
+    Assert.assertTrue(yq.getYADACode().contains("name = 'u1'"), "Content policy not applied: " + yq.getYADACode());
+    Assert.assertEquals(cq.getStatement().toString(), statement, "Shared statement changed by the content policy");
+    Assert.assertSame(((PlainSelect) ((Select) cq.getStatement()).getSelectBody()).getWhere(), where, "Shared predicate replaced");
+    this.qutils.processStatement(yq);
+    Assert.assertNotSame(yq.getCompiledQuery(), cq, "Template of the original code used with the content policy");
+    Assert.assertTrue(yq.getStatement().toString().contains("'u1'"), "Statement of the secured code not applied");
+
+    YADAQuery other = newQuery(code);
+    Assert.assertSame(other.getCompiledQuery(), cq, "Template not shared after a content policy");
+    Assert.assertFalse(other.getStatement().toString().contains("'u1'"), "Content policy applied to another request");
+  }
+
+  /**
+   * Checks that once {@link CompiledQuery#IN_LIST_EXPANSIONS_MAX} expansions are stored, storing another discards
+   * only the least recently used one
+   * @throws Exception when the code can't be compiled
+   */
+  @Test (groups = {"core"})
+  public void evictsLeastRecentlyUsedExpansion() throws Exception
+  {
+    CompiledQuery cq = this.qutils.getCompiledQuery("select id from compiled_test where id in (?i) and " + System.nanoTime() + " > 0", hsqldb());
+    CompiledQuery.InListExpansion first = cq.putInListExpansion(Arrays.asList(1), "select 1", new char[] { 'i' });
+    for(int i = 2; i <= CompiledQuery.IN_LIST_EXPANSIONS_MAX; i++)
+    {
+      cq.putInListExpansion(Arrays.asList(i), "select " + i, new char[] { 'i' });
+    }
+    Assert.assertSame(cq.getInListExpansion(Arrays.asList(1)), first, "Expansion discarded before the maximum");
+    cq.putInListExpansion(Arrays.asList(0), "select 0", new char[] { 'i' });
+    Assert.assertSame(cq.getInListExpansion(Arrays.asList(1)), first, "Recently used expansion discarded");
+    Assert.assertNull(cq.getInListExpansion(Arrays.asList(2)), "Least recently used expansion kept");
+    for(int i = 3; i <= CompiledQuery.IN_LIST_EXPANSIONS_MAX; i++)
+    {
+      Assert.assertNotNull(cq.getInListExpansion(Arrays.asList(i)), "Expansions discarded wholesale");
+    }
+  }
+
+  /**
+   * @return the adaptor class of the queries
+   */
+  @SuppressWarnings("unchecked")
+  private static Class<Adaptor> hsqldb()
+  {
+    return (Class<Adaptor>) (Class<?>) HSQLdbAdaptor.class;
+  }
+
+  /**
+   * @param code the code of the query
+   * @return a query with the template of {@code code} applied
+   * @throws Exception when the code can't be compiled
+   */
+  private YADAQuery newQuery(String code) throws Exception
+  {
+    YADAQuery yq = new YADAQuery();
+    yq.setYADACode(code);
+    yq.setQname(QNAME);
+    yq.setAdaptorClass(hsqldb());
+    this.qutils.processStatement(yq);
+    return yq;
+  }
+
+  /**
+   * @param header the name of a header
+   * @param value the value of the header
+   * @return a request with the header
+   */
+  private HttpServletRequest request(String header, String value)
+  {
+    return (HttpServletRequest)Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class<?>[] { HttpServletRequest.class },
+        (proxy, method, args) -> "getHeader".equals(method.getName()) && header.equals(args[0]) ? value : null);
+  }
+}
@@ -0,0 +1,455 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada.test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import com.novartis.opensource.yada.Parser;
+import com.novartis.opensource.yada.YADAProperty;
+import com.novartis.opensource.yada.YADAQuery;
+import com.novartis.opensource.yada.YADARequest;
+import com.novartis.opensource.yada.adaptor.Adaptor;
+import com.novartis.opensource.yada.adaptor.HSQLdbAdaptor;
+import com.novartis.opensource.yada.util.QueryUtils;
+
+/**
+ * Measures the expansion of {@code IN} lists with {@link QueryUtils#processInList(YADAQuery, int)} for a
+ * request with many data rows, and compares it with parsing the statement for every row, as
+ * {@code processInList} formerly did.  Also compares the statements prepared against HSQLDB for
+ * {@code IN} lists of random lengths, with and without padding the lists to bucketed sizes, by the
+ * hit rate of a statement cache, and the time to prepare and execute them, and executes a very large
+ * {@code IN} list with a parameter per value and stored in a temporary table.
+ * @author David Varon
+ * @since 10.2.0
+ */
+public class InListPerfTest {
+
+  /**
+   * Local logger handle
+   */
+  private static Logger l = LoggerFactory.getLogger(InListPerfTest.class);
+
+  /**
+   * Constant equal to {@value}
+   */
+  private static final int ROWS = 5000;
+
+  /**
+   * Constant equal to {@value}
+   */
+  private static final int MAX_VALUES = 20;
+
+  /**
+   * Constant equal to {@value}
+   */
+  private static final String CODE = "select a.col1, a.col2, b.col3 from table_a a join table_b b on a.id = b.id"
+      + " where a.col1 = ?v and b.col3 in (?i) and a.col2 > ?d order by a.col1";
+
+  /**
+   * Constant equal to {@value}
+   */
+  private static final String QNAME = "YADA test IN list";
+
+  /**
+   * Constant equal to {@value}
+   */
+  private static final int REQUESTS = 2000;
+
+  /**
+   * Constant equal to {@value}
+   */
+  private static final int MAX_IDS = 256;
+
+  /**
+   * Constant equal to {@value}
+   */
+  private static final int TABLE_ROWS = 10000;
+
+  /**
+   * Constant equal to {@value}. The number of statements kept open, as by a driver's statement cache.
+   */
+  private static final int STATEMENT_CACHE_SIZE = 32;
+
+  /**
+   * Constant equal to {@value}
+   */
+  private static final String BUCKET_CODE = "select id, name from in_test where id in (?i)";
+
+  /**
+   * Constant equal to {@value}
+   */
+  private static final int LARGE_IDS = 20000;
+
+  /**
+   * Constant equal to {@value}
+   */
+  private static final String LARGE_CODE = "select id, name from in_test where id in (?i) and name not in (?v)";
+
+  /**
+   * Expands the {@code IN} list of {@value #ROWS} rows both ways and logs the rates
+   * @throws Exception when the statement can't be parsed
+   */
+  @Test (groups = {"perf"})
+  public void inListExpansion() throws Exception
+  {
+    QueryUtils qutils = new QueryUtils();
+    // warm up
+    runProcessInList(qutils);
+    runReparse();
+
+    long start = System.nanoTime();
+    YADAQuery yq = runProcessInList(qutils);
+    long processNanos = System.nanoTime() - start;
+    start = System.nanoTime();
+    runReparse();
+    long reparseNanos = System.nanoTime() - start;
+
+    l.info(String.format("%d rows: processInList %.0f rows/s, reparse per row %.0f rows/s",
+        ROWS, ROWS / (processNanos / 1e9), ROWS / (reparseNanos / 1e9)));
+    for(int row=0;row<ROWS;row++)
+    {
+      int values = values(row);
+      assert yq.getParamCount(row) == values + 2 : "Wrong param count for row " + row;
+      assert yq.getDataTypes(row)[1] == 'i' && yq.getDataTypes(row)[values] == 'i' : "Wrong data types for row " + row;
+      assert yq.getCoreCode(row).split("\\?i").length - 1 == values : "Wrong IN list for row " + row;
+    }
+  }
+
+  /**
+   * @param qutils the utility object
+   * @return the processed query
+   * @throws Exception when the statement can't be parsed
+   */
+  private static YADAQuery runProcessInList(QueryUtils qutils) throws Exception
+  {
+    YADAQuery yq = newQuery(qutils, CODE, "false");
+    for(int row=0;row<ROWS;row++)
+    {
+      yq.addData(dataRow(row));
+    }
+    for(int row=0;row<ROWS;row++)
+    {
+      qutils.processInList(yq, row);
+    }
+    return yq;
+  }
+
+  /**
+   * Executes {@value #REQUESTS} requests with {@code IN} lists of random lengths against HSQLDB, without
+   * and with padding to powers of two, and compares the number of distinct statements, the hit rate of a
+   * statement cache and the elapsed time
+   * @throws Exception when the statement can't be parsed or executed
+   */
+  @Test (groups = {"perf"})
+  public void inListBuckets() throws Exception
+  {
+    QueryUtils qutils = new QueryUtils();
+    try (Connection conn = DriverManager.getConnection("jdbc:hsqldb:mem:inlistperf", "SA", ""))
+    {
+      try (Statement stmt = conn.createStatement())
+      {
+        stmt.execute("create table in_test (id int primary key, name varchar(20))");
+      }
+      try (PreparedStatement pstmt = conn.prepareStatement("insert into in_test values (?, ?)"))
+      {
+        for(int i=0;i<TABLE_ROWS;i++)
+        {
+          pstmt.setInt(1, i);
+          pstmt.setString(2, "name " + i);
+          pstmt.addBatch();
+        }
+        pstmt.executeBatch();
+      }
+      // warm up
+      runBuckets(qutils, conn, "false");
+      runBuckets(qutils, conn, QueryUtils.IN_LIST_BUCKETS_POW2);
+
+      long[] unpadded = runBuckets(qutils, conn, "false");
+      long[] padded   = runBuckets(qutils, conn, QueryUtils.IN_LIST_BUCKETS_POW2);
+      l.info(String.format("%d requests of 1-%d ids: unpadded %d statements, %.1f%% cache hits, %d ms;"
+          + " padded to powers of two %d statements, %.1f%% cache hits, %d ms",
+          REQUESTS, MAX_IDS, unpadded[0], 100.0 * unpadded[1] / REQUESTS, unpadded[2] / 1000000,
+          padded[0], 100.0 * padded[1] / REQUESTS, padded[2] / 1000000));
+      assert padded[3] == unpadded[3] : "Padding changed the results";
+      assert padded[0] <= Integer.numberOfTrailingZeros(Integer.highestOneBit(MAX_IDS)) + 1 : "Too many padded statements";
+      assert padded[1] > unpadded[1] : "Padding didn't improve the cache hit rate";
+      try (Statement stmt = conn.createStatement())
+      {
+        stmt.execute("drop table in_test");
+      }
+    }
+  }
+
+  /**
+   * Executes {@link #LARGE_CODE} with {@value #LARGE_IDS} ids, first with a parameter per id, then with the ids
+   * stored in a temporary table, as for a list longer than {@link QueryUtils#PROP_INLIST_MAX}, and compares the
+   * results and elapsed time
+   * @throws Exception when the statement can't be parsed or executed
+   */
+  @Test (groups = {"perf"})
+  public void largeInList() throws Exception
+  {
+    QueryUtils qutils = new QueryUtils();
+    try (Connection conn = DriverManager.getConnection("jdbc:hsqldb:mem:inlistlarge", "SA", ""))
+    {
+      try (Statement stmt = conn.createStatement())
+      {
+        stmt.execute("create table in_test (id int primary key, name varchar(20))");
+      }
+      try (PreparedStatement pstmt = conn.prepareStatement("insert into in_test values (?, ?)"))
+      {
+        for(int i=0;i<TABLE_ROWS;i++)
+        {
+          pstmt.setInt(1, i);
+          pstmt.setString(2, "name " + i);
+          pstmt.addBatch();
+        }
+        pstmt.executeBatch();
+      }
+      // warm up
+      runLarge(qutils, conn, "0");
+      runLarge(qutils, conn, "1000");
+
+      long start = System.nanoTime();
+      long[] expanded = runLarge(qutils, conn, "0");
+      long expandedNanos = System.nanoTime() - start;
+      start = System.nanoTime();
+      long[] rewritten = runLarge(qutils, conn, "1000");
+      long rewrittenNanos = System.nanoTime() - start;
+      l.info(String.format("%d ids: %d parameters in %d ms, %d parameters with a temporary table in %d ms",
+          LARGE_IDS, expanded[1], expandedNanos / 1000000, rewritten[1], rewrittenNanos / 1000000));
+      assert expanded[1] == LARGE_IDS + 2 : "Wrong number of expanded parameters";
+      assert rewritten[1] == 3 : "IN list was not rewritten";
+      assert rewritten[0] == expanded[0] : "Rewriting changed the results";
+      try (Statement stmt = conn.createStatement())
+      {
+        stmt.execute("drop table in_test");
+      }
+    }
+  }
+
+  /**
+   * @param qutils the utility object
+   * @param conn the connection
+   * @param max the value of {@link QueryUtils#PROP_INLIST_MAX}
+   * @return the number of result rows and parameters
+   * @throws Exception when the statement can't be parsed or executed
+   */
+  private static long[] runLarge(QueryUtils qutils, Connection conn, String max) throws Exception
+  {
+    YADAQuery yq = newQuery(qutils, LARGE_CODE, "false");
+    yq.addProperty(new YADAProperty(QNAME, QueryUtils.PROP_INLIST_MAX, max));
+    yq.setProtocol(Parser.JDBC);
+    yq.setConnection(conn);
+    yq.setAdaptor(new HSQLdbAdaptor(new YADARequest()));
+    String[] ids = new String[LARGE_IDS];
+    for(int i=0;i<ids.length;i++)
+    {
+      ids[i] = String.valueOf(i * 3 % (TABLE_ROWS * 2));
+    }
+    LinkedHashMap<String, String[]> data = new LinkedHashMap<>();
+    data.put("ID", ids);
+    data.put("NAME", new String[] { "name 3,name 6" });
+    yq.addData(data);
+    qutils.processInList(yq, 0);
+
+    long results = 0;
+    try (PreparedStatement pstmt = conn.prepareStatement(qutils.getConformedCode(yq.getCoreCode(0))))
+    {
+      char[] types = yq.getDataTypes(0);
+      int    pos   = 0;
+      for(String id : yq.getDataRow(0).get("ID"))
+      {
+        pstmt.setInt(++pos, Integer.parseInt(id));
+      }
+      for(String name : yq.getDataRow(0).get("NAME"))
+      {
+        pstmt.setString(++pos, name);
+      }
+      assert pos == types.length : "Wrong number of data types";
+      try (ResultSet rs = pstmt.executeQuery())
+      {
+        while(rs.next())
+          results++;
+      }
+    }
+    return new long[] { results, yq.getParamCount(0) };
+  }
+
+  /**
+   * @param qutils the utility object
+   * @param conn the connection
+   * @param buckets the value of {@link QueryUtils#PROP_INLIST_BUCKETS}
+   * @return the number of distinct statements, statement cache hits, elapsed nanoseconds, and result rows
+   * @throws Exception when the statement can't be parsed or executed
+   */
+  private static long[] runBuckets(QueryUtils qutils, Connection conn, String buckets) throws Exception
+  {
+    YADAQuery yq     = newQuery(qutils, BUCKET_CODE, buckets);
+    Random    random = new Random(REQUESTS);
+    for(int row=0;row<REQUESTS;row++)
+    {
+      String[] ids = new String[1 + random.nextInt(MAX_IDS)];
+      for(int i=0;i<ids.length;i++)
+      {
+        ids[i] = String.valueOf(random.nextInt(TABLE_ROWS));
+      }
+      LinkedHashMap<String, String[]> data = new LinkedHashMap<>();
+      data.put("ID", ids);
+      yq.addData(data);
+    }
+
+    Map<String, PreparedStatement> cache = new LinkedHashMap<String, PreparedStatement>(STATEMENT_CACHE_SIZE, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest)
+      {
+        if (size() > STATEMENT_CACHE_SIZE)
+        {
+          close(eldest.getValue());
+          return true;
+        }
+        return false;
+      }
+    };
+    Set<String> statements = new HashSet<>();
+    long        hits       = 0;
+    long        results    = 0;
+    long        start      = System.nanoTime();
+    for(int row=0;row<REQUESTS;row++)
+    {
+      qutils.processInList(yq, row);
+      String            sql   = qutils.getConformedCode(yq.getCoreCode(row));
+      PreparedStatement pstmt = cache.get(sql);
+      if(pstmt == null)
+      {
+        pstmt = conn.prepareStatement(sql);
+        cache.put(sql, pstmt);
+      }
+      else
+      {
+        hits++;
+      }
+      statements.add(sql);
+      String[] ids = yq.getDataRow(row).get("ID");
+      for(int i=0;i<ids.length;i++)
+      {
+        pstmt.setInt(i + 1, Integer.parseInt(ids[i]));
+      }
+      try (ResultSet rs = pstmt.executeQuery())
+      {
+        while(rs.next())
+          results++;
+      }
+    }
+    long elapsed = System.nanoTime() - start;
+    for(PreparedStatement pstmt : cache.values())
+    {
+      close(pstmt);
+    }
+    return new long[] { statements.size(), hits, elapsed, results };
+  }
+
+  /**
+   * @param qutils the utility object
+   * @param code the query code
+   * @param buckets the value of {@link QueryUtils#PROP_INLIST_BUCKETS}
+   * @return a compiled query
+   * @throws Exception when the statement can't be compiled
+   */
+  @SuppressWarnings("unchecked")
+  private static YADAQuery newQuery(QueryUtils qutils, String code, String buckets) throws Exception
+  {
+    YADAQuery yq = new YADAQuery();
+    yq.setYADACode(code);
+    yq.setQname(QNAME);
+    yq.addProperty(new YADAProperty(QNAME, QueryUtils.PROP_INLIST_BUCKETS, buckets));
+    yq.setAdaptorClass((Class<Adaptor>) (Class<?>) HSQLdbAdaptor.class);
+    qutils.getCompiledQuery(yq).applyTo(yq);
+    return yq;
+  }
+
+  /**
+   * @param pstmt the statement to close
+   */
+  private static void close(PreparedStatement pstmt)
+  {
+    try
+    {
+      pstmt.close();
+    }
+    catch (SQLException e)
+    {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Parses {@link #CODE} once per row
+   * @throws Exception when the statement can't be parsed
+   */
+  private static void runReparse() throws Exception
+  {
+    for(int row=0;row<ROWS;row++)
+    {
+      Parser parser = new Parser();
+      parser.parseDeparse(CODE);
+      assert parser.getInColumnList().size() > 0;
+    }
+  }
+
+  /**
+   * @param row the row index
+   * @return the data of the row, with {@link #values(int)} values for the {@code IN} column
+   */
+  private static LinkedHashMap<String, String[]> dataRow(int row)
+  {
+    List<String> ids = new ArrayList<>();
+    for(int i=0;i<values(row);i++)
+    {
+      ids.add(String.valueOf(row + i));
+    }
+    LinkedHashMap<String, String[]> data = new LinkedHashMap<>();
+    data.put("COL1", new String[] { "A" + row });
+    data.put("COL3", ids.toArray(new String[0]));
+    data.put("COL2", new String[] { "2020-01-01" });
+    return data;
+  }
+
+  /**
+   * @param row the row index
+   * @return the number of values in the {@code IN} list of the row
+   */
+  private static int values(int row)
+  {
+    return 2 + row % (MAX_VALUES - 1);
+  }
+}
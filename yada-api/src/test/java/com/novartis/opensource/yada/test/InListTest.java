@@ -0,0 +1,411 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada.test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Properties;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.novartis.opensource.yada.Parser;
+import com.novartis.opensource.yada.YADAProperty;
+import com.novartis.opensource.yada.YADAQuery;
+import com.novartis.opensource.yada.YADARequest;
+import com.novartis.opensource.yada.adaptor.Adaptor;
+import com.novartis.opensource.yada.adaptor.HSQLdbAdaptor;
+import com.novartis.opensource.yada.adaptor.PostgreSQLAdaptor;
+import com.novartis.opensource.yada.adaptor.SQLServerAdaptor;
+import com.novartis.opensource.yada.server.YADAServer;
+import com.novartis.opensource.yada.util.QueryUtils;
+
+/**
+ * Tests the expansion of {@code IN} lists by {@link QueryUtils#processInList(YADAQuery, int)}, for rows with
+ * various numbers of values, in any order, the padding of lists to bucketed sizes, and the results of lists
+ * stored in temporary tables.
+ * @author David Varon
+ * @since 10.2.0
+ */
+public class InListTest {
+
+  /**
+   * Constant equal to {@value}
+   */
+  private static final String CODE = "select id from t where a in (?i) and b not in (?v) and c = ?d";
+
+  /**
+   * Constant equal to {@value}
+   */
+  private static final String QNAME = "YADA test IN list";
+
+  /**
+   * Constant equal to {@value}. Has two lists of the same type, which are stored in separate tables.
+   */
+  private static final String TABLE_CODE = "select id from in_test where id in (?i) and grp in (?i) and tag not in (?v)";
+
+  /**
+   * Constant equal to {@value}
+   */
+  private static final int TABLE_ROWS = 100;
+
+  /**
+   * Loads the test {@code YADA.properties}, unless set already
+   */
+  @BeforeClass (groups = {"core"})
+  public void init()
+  {
+    if(System.getProperty("YADA.properties.path") == null)
+    {
+      System.setProperty("YADA.properties.path", getClass().getResource("/conf/YADA.properties").getPath());
+    }
+  }
+
+  /**
+   * Checks the code, data types, and parameter count of each row, when numbers of values recur after others,
+   * and that rows with the same numbers share the expanded code
+   * @throws Exception when the statement can't be parsed
+   */
+  @Test (groups = {"core"})
+  public void expandsInLists() throws Exception
+  {
+    QueryUtils qutils = new QueryUtils();
+    YADAQuery  yq     = newQuery(qutils, CODE, "false");
+    int[][]    counts = { { 3, 2 }, { 1, 1 }, { 3, 2 }, { 2, 3 }, { 1, 1 }, { 3, 2 } };
+    for(int[] count : counts)
+    {
+      yq.addData(dataRow(count[0], count[1], false));
+    }
+    for(int row = 0; row < counts.length; row++)
+    {
+      String code     = qutils.processInList(yq, row);
+      String expected = String.format("SELECT id FROM t WHERE a IN (%s) AND b NOT IN (%s) AND c = ?d",
+          markup("?i", counts[row][0]), markup("?v", counts[row][1]));
+      Assert.assertEquals(code, expected, "Wrong code for row " + row);
+      Assert.assertEquals(yq.getCoreCode(row), code, "Code not stored for row " + row);
+      String types = "i".repeat(counts[row][0]) + "v".repeat(counts[row][1]) + "d";
+      Assert.assertEquals(new String(yq.getDataTypes(row)), types, "Wrong data types for row " + row);
+      Assert.assertEquals(yq.getParamCount(row), counts[row][0] + counts[row][1] + 1, "Wrong param count for row " + row);
+    }
+    Assert.assertSame(yq.getCoreCode(5), yq.getCoreCode(0), "Expansion not shared by rows with the same numbers of values");
+  }
+
+  /**
+   * Checks that a single comma-separated value is split into a list
+   * @throws Exception when the statement can't be parsed
+   */
+  @Test (groups = {"core"})
+  public void splitsValues() throws Exception
+  {
+    QueryUtils qutils = new QueryUtils();
+    YADAQuery  yq     = newQuery(qutils, CODE, "false");
+    yq.addData(dataRow(3, 2, true));
+    qutils.processInList(yq, 0);
+    Assert.assertEquals(yq.getDataRow(0).get("B"), new String[] { "v0", "v1" }, "Values not split");
+    Assert.assertEquals(yq.getParamCount(0), 6, "Wrong param count");
+  }
+
+  /**
+   * Checks that lists are padded with their last value to the next power of two, or size in a ladder, and
+   * are not padded beyond the ladder, nor when the sizes are invalid
+   * @throws Exception when the statement can't be parsed
+   */
+  @Test (groups = {"core"})
+  public void padsInLists() throws Exception
+  {
+    QueryUtils qutils = new QueryUtils();
+    Assert.assertEquals(pad(qutils, QueryUtils.IN_LIST_BUCKETS_POW2, 3), new String[] { "0", "1", "2", "2" }, "Not padded to a power of two");
+    Assert.assertEquals(pad(qutils, QueryUtils.IN_LIST_BUCKETS_POW2, 4).length, 4, "Padded beyond a power of two");
+    Assert.assertEquals(pad(qutils, QueryUtils.IN_LIST_BUCKETS_POW2, 5).length, 8, "Not padded to a power of two");
+    Assert.assertEquals(pad(qutils, "2, 5", 3).length, 5, "Not padded to the ladder");
+    Assert.assertEquals(pad(qutils, "2, 5", 6).length, 6, "Padded beyond the ladder");
+    Assert.assertEquals(pad(qutils, "5,2", 3).length, 3, "Padded with invalid sizes");
+    Assert.assertEquals(pad(qutils, "false", 3).length, 3, "Padded when disabled");
+    Assert.assertEquals(QueryUtils.getInListBucket(new int[0], 3), 3, "Wrong size without buckets");
+  }
+
+  /**
+   * Checks that lists are padded according to {@link QueryUtils#YADA_INLIST_BUCKETS}, unless the query
+   * opts out with {@link QueryUtils#PROP_INLIST_BUCKETS}
+   * @throws Exception when the statement can't be parsed
+   */
+  @Test (groups = {"core"})
+  public void padsByDefault() throws Exception
+  {
+    QueryUtils qutils = new QueryUtils();
+    Properties props  = YADAServer.getProperties();
+    String     value  = props.getProperty(QueryUtils.YADA_INLIST_BUCKETS);
+    props.setProperty(QueryUtils.YADA_INLIST_BUCKETS, QueryUtils.IN_LIST_BUCKETS_POW2);
+    try
+    {
+      Assert.assertEquals(pad(qutils, null, 3).length, 4, "Not padded by default");
+      Assert.assertEquals(pad(qutils, "false", 3).length, 3, "Padded despite opting out");
+    }
+    finally
+    {
+      if(value == null)
+        props.remove(QueryUtils.YADA_INLIST_BUCKETS);
+      else
+        props.setProperty(QueryUtils.YADA_INLIST_BUCKETS, value);
+    }
+  }
+
+  /**
+   * Checks that lists stored in temporary tables, see {@link QueryUtils#PROP_INLIST_MAX}, yield the same results
+   * as expanded lists against HSQLDB, for several rows and requests on the same session, and after the tables
+   * were dropped, e.g., by a rollback
+   * @throws Exception when the statement can't be parsed or executed
+   */
+  @Test (groups = {"core"})
+  public void rewritesInLists() throws Exception
+  {
+    QueryUtils qutils = new QueryUtils();
+    try (Connection conn = DriverManager.getConnection("jdbc:hsqldb:mem:inlisttest", "SA", ""))
+    {
+      try (Statement stmt = conn.createStatement())
+      {
+        stmt.execute("create table in_test (id int primary key, grp int, tag varchar(20))");
+      }
+      try (PreparedStatement pstmt = conn.prepareStatement("insert into in_test values (?, ?, ?)"))
+      {
+        for(int i = 0; i < TABLE_ROWS; i++)
+        {
+          pstmt.setInt(1, i);
+          pstmt.setInt(2, i % 5);
+          pstmt.setString(3, "t" + i % 7);
+          pstmt.addBatch();
+        }
+        pstmt.executeBatch();
+      }
+      List<String> expected = execute(qutils, conn, "0");
+      Assert.assertTrue(expected.get(0).length() > 2 && expected.get(1).length() > 2, "No results " + expected);
+      Assert.assertEquals(execute(qutils, conn, "2"), expected, "Rewriting changed the results");
+      Assert.assertEquals(execute(qutils, conn, "2"), expected, "Rows of the previous request not deleted");
+      try (Statement stmt = conn.createStatement())
+      {
+        stmt.execute("drop table session.yada_in_i_0");
+        stmt.execute("drop table session.yada_in_v_2");
+      }
+      Assert.assertEquals(execute(qutils, conn, "2"), expected, "Dropped tables not created again");
+      try (Statement stmt = conn.createStatement())
+      {
+        stmt.execute("drop table in_test");
+      }
+    }
+  }
+
+  /**
+   * Checks that the values stored by a request are deleted when it is finished, but not by another request
+   * @throws Exception when the values can't be stored or counted
+   */
+  @Test (groups = {"core"})
+  public void clearsInLists() throws Exception
+  {
+    try (Connection conn = DriverManager.getConnection("jdbc:hsqldb:mem:inlistcleartest", "SA", ""))
+    {
+      HSQLdbAdaptor adaptor = new HSQLdbAdaptor(new YADARequest());
+      Assert.assertEquals(adaptor.bindInList(conn, 'i', 0, new String[] {"1", "2", "3"}), "1", "Wrong key");
+      Assert.assertEquals(adaptor.bindInList(conn, 'i', 0, new String[] {"4", "5"}), "2", "Wrong key");
+      Assert.assertEquals(count(conn), 5, "Values not stored");
+      new HSQLdbAdaptor(new YADARequest()).clearInLists(conn);
+      Assert.assertEquals(count(conn), 5, "Values of another request deleted");
+      adaptor.clearInLists(conn);
+      Assert.assertEquals(count(conn), 0, "Values not deleted when the request finished");
+      Assert.assertEquals(adaptor.bindInList(conn, 'i', 0, new String[] {"6"}), "1", "Keys not reset");
+      adaptor.clearInLists(conn);
+      try (Statement stmt = conn.createStatement())
+      {
+        stmt.execute("drop table session.yada_in_i_0");
+      }
+    }
+  }
+
+  /**
+   * @param conn the connection
+   * @return the number of rows in the temporary table of the first integer list
+   * @throws Exception when the rows can't be counted
+   */
+  private static int count(Connection conn) throws Exception
+  {
+    try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("select count(*) from session.yada_in_i_0"))
+    {
+      rs.next();
+      return rs.getInt(1);
+    }
+  }
+
+  /**
+   * Checks the default number of values above which lists are stored in temporary tables, or bound as arrays
+   * on PostgreSQL
+   * @throws Exception when the statement can't be compiled
+   */
+  @Test (groups = {"core"})
+  public void inListMaxDefaults() throws Exception
+  {
+    YADAQuery yq = newQuery(new QueryUtils(), CODE, null);
+    yq.setAdaptor(new HSQLdbAdaptor(new YADARequest()));
+    Assert.assertEquals(new QueryUtils().getInListMax(yq), 1000, "Wrong default for temporary tables");
+    yq.setAdaptor(new SQLServerAdaptor(new YADARequest()));
+    Assert.assertEquals(new QueryUtils().getInListMax(yq), 2000, "Default above the SQLServer parameter limit");
+    yq.setAdaptor(new PostgreSQLAdaptor(new YADARequest()));
+    Assert.assertEquals(new QueryUtils().getInListMax(yq), 1000, "Arrays not used by default");
+    yq.addProperty(new YADAProperty(QNAME, QueryUtils.PROP_INLIST_MAX, "0"));
+    Assert.assertEquals(new QueryUtils().getInListMax(yq), 0, "Arrays used when disabled");
+  }
+
+  /**
+   * Executes two rows of {@link #TABLE_CODE} in a new request
+   * @param qutils the utility object
+   * @param conn the connection
+   * @param max the value of {@link QueryUtils#PROP_INLIST_MAX}
+   * @return the ids selected by each row
+   * @throws Exception when the statement can't be parsed or executed
+   */
+  private static List<String> execute(QueryUtils qutils, Connection conn, String max) throws Exception
+  {
+    YADAQuery yq = newQuery(qutils, TABLE_CODE, "false");
+    yq.addProperty(new YADAProperty(QNAME, QueryUtils.PROP_INLIST_MAX, max));
+    yq.setProtocol(Parser.JDBC);
+    yq.setConnection(conn);
+    yq.setAdaptor(new HSQLdbAdaptor(new YADARequest()));
+    yq.addData(tableRow(0, 20, "1,2,3", "t1,t2,t3"));
+    yq.addData(tableRow(10, 40, "0,1,2,4", "t0,t5,t6"));
+    List<String> results = new ArrayList<>();
+    for(int row = 0; row < 2; row++)
+    {
+      qutils.processInList(yq, row);
+      if(!"0".equals(max))
+        Assert.assertEquals(yq.getParamCount(row), 3, "IN lists not rewritten in row " + row);
+      try (PreparedStatement pstmt = conn.prepareStatement(qutils.getConformedCode(yq.getCoreCode(row))))
+      {
+        int pos = 0;
+        for(String[] values : yq.getDataRow(row).values())
+        {
+          for(String value : values)
+          {
+            if(yq.getDataTypes(row)[pos] == 'i')
+              pstmt.setInt(++pos, Integer.parseInt(value));
+            else
+              pstmt.setString(++pos, value);
+          }
+        }
+        List<Integer> ids = new ArrayList<>();
+        try (ResultSet rs = pstmt.executeQuery())
+        {
+          while(rs.next())
+            ids.add(rs.getInt(1));
+        }
+        Collections.sort(ids);
+        results.add(ids.toString());
+      }
+    }
+    return results;
+  }
+
+  /**
+   * @param from the first id
+   * @param to the id after the last
+   * @param grps the comma-separated groups
+   * @param tags the comma-separated tags to exclude
+   * @return the data of a row of {@link #TABLE_CODE}
+   */
+  private static LinkedHashMap<String, String[]> tableRow(int from, int to, String grps, String tags)
+  {
+    String[] ids = new String[to - from];
+    for(int i = 0; i < ids.length; i++)
+      ids[i] = String.valueOf(from + i);
+    LinkedHashMap<String, String[]> data = new LinkedHashMap<>();
+    data.put("ID", ids);
+    data.put("GRP", grps.split(","));
+    data.put("TAG", tags.split(","));
+    return data;
+  }
+
+  /**
+   * @param qutils the utility object
+   * @param buckets the value of {@link QueryUtils#PROP_INLIST_BUCKETS}, or {@code null}
+   * @param count the number of values of {@code A}
+   * @return the values of {@code A} after processing, checked against the code
+   * @throws Exception when the statement can't be parsed
+   */
+  private static String[] pad(QueryUtils qutils, String buckets, int count) throws Exception
+  {
+    YADAQuery yq = newQuery(qutils, CODE, buckets);
+    yq.addData(dataRow(count, 1, false));
+    String   code   = qutils.processInList(yq, 0);
+    String[] values = yq.getDataRow(0).get("A");
+    Assert.assertTrue(code.contains("a IN (" + markup("?i", values.length) + ")"), "Code doesn't match the values: " + code);
+    return values;
+  }
+
+  /**
+   * @param qutils the utility object
+   * @param code the query code
+   * @param buckets the value of {@link QueryUtils#PROP_INLIST_BUCKETS}, or {@code null}
+   * @return a compiled query
+   * @throws Exception when the statement can't be compiled
+   */
+  @SuppressWarnings("unchecked")
+  private static YADAQuery newQuery(QueryUtils qutils, String code, String buckets) throws Exception
+  {
+    YADAQuery yq = new YADAQuery();
+    yq.setYADACode(code);
+    yq.setQname(QNAME);
+    if(buckets != null)
+      yq.addProperty(new YADAProperty(QNAME, QueryUtils.PROP_INLIST_BUCKETS, buckets));
+    yq.setAdaptorClass((Class<Adaptor>) (Class<?>) HSQLdbAdaptor.class);
+    qutils.getCompiledQuery(yq).applyTo(yq);
+    return yq;
+  }
+
+  /**
+   * @param a the number of values of {@code A}
+   * @param b the number of values of {@code B}
+   * @param joined {@code true} to pass the values of {@code B} as a single comma-separated value
+   * @return the data of a row
+   */
+  private static LinkedHashMap<String, String[]> dataRow(int a, int b, boolean joined)
+  {
+    String[] as = new String[a];
+    String[] bs = new String[b];
+    for(int i = 0; i < a; i++)
+      as[i] = String.valueOf(i);
+    for(int i = 0; i < b; i++)
+      bs[i] = "v" + i;
+    LinkedHashMap<String, String[]> data = new LinkedHashMap<>();
+    data.put("A", as);
+    data.put("B", joined ? new String[] { String.join(",", bs) } : bs);
+    data.put("C", new String[] { "2020-01-01" });
+    return data;
+  }
+
+  /**
+   * @param param the parameter markup
+   * @param count the number of parameters
+   * @return {@code count} copies of {@code param}, separated by commas
+   */
+  private static String markup(String param, int count)
+  {
+    return String.join(", ", Collections.nCopies(count, param));
+  }
+}
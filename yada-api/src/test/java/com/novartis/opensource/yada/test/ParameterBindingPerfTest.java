@@ -0,0 +1,148 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada.test;
+
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import com.novartis.opensource.yada.Service;
+import com.novartis.opensource.yada.YADARequest;
+import com.novartis.opensource.yada.YADARequestException;
+
+/**
+ * Measures the throughput of binding request parameters to a {@link YADARequest}, with
+ * {@link YADARequest#invokeSetter(String, String[])} and {@link Service#handleRequest(String, Map)},
+ * and compares the former with a reflective lookup of the setter, as {@code invokeSetter} formerly did.
+ * @author David Varon
+ * @since 10.2.0
+ */
+public class ParameterBindingPerfTest {
+
+  /**
+   * Local logger handle
+   */
+  private static Logger l = LoggerFactory.getLogger(ParameterBindingPerfTest.class);
+
+  /**
+   * Constant equal to {@value}
+   */
+  private static final int ITERATIONS = 200000;
+
+  /**
+   * Parameters of a typical request
+   */
+  private static final String[][] PARAMS = {
+      { YADARequest.PS_QNAME, "YADA test SELECT" },
+      { YADARequest.PS_PARAMS, "A,B,C" },
+      { YADARequest.PS_COUNT, "false" },
+      { YADARequest.PS_PAGESIZE, "100" },
+      { YADARequest.PS_FORMAT, YADARequest.FORMAT_CSV },
+      { YADARequest.PS_PRETTY, "true" }
+  };
+
+  /**
+   * Binds {@link #PARAMS} {@value #ITERATIONS} times with each method and logs the rates
+   * @throws Exception when a parameter can't be bound
+   */
+  @Test (groups = {"perf"})
+  public void bindingThroughput() throws Exception
+  {
+    // warm up
+    runInvokeSetter(ITERATIONS / 10);
+    runReflection(ITERATIONS / 10);
+    runHandleRequest(ITERATIONS / 10);
+
+    double tableRate      = runInvokeSetter(ITERATIONS);
+    double reflectionRate = runReflection(ITERATIONS);
+    double handleRate     = runHandleRequest(ITERATIONS);
+    l.info(String.format("%d requests of %d params: invokeSetter %.0f req/s, reflective lookup %.0f req/s, handleRequest %.0f req/s",
+        ITERATIONS, PARAMS.length, tableRate, reflectionRate, handleRate));
+  }
+
+  /**
+   * @param n the number of requests
+   * @return requests per second
+   * @throws YADARequestException when a parameter can't be bound
+   */
+  private static double runInvokeSetter(int n) throws YADARequestException
+  {
+    long start = System.nanoTime();
+    for(int i=0;i<n;i++)
+    {
+      YADARequest yadaReq = new YADARequest();
+      for(String[] param : PARAMS)
+      {
+        yadaReq.invokeSetter(param[0], new String[] { param[1] });
+      }
+      assert yadaReq.getFormat().equals(YADARequest.FORMAT_CSV);
+    }
+    return n / ((System.nanoTime() - start) / 1e9);
+  }
+
+  /**
+   * @param n the number of requests
+   * @return requests per second
+   * @throws Exception when a parameter can't be bound
+   */
+  private static double runReflection(int n) throws Exception
+  {
+    long start = System.nanoTime();
+    for(int i=0;i<n;i++)
+    {
+      YADARequest yadaReq = new YADARequest();
+      for(String[] param : PARAMS)
+      {
+        String field = YADARequest.fieldAliasMap.get(param[0]);
+        String mName = "set" + field.substring(0, 1).toUpperCase() + field.substring(1);
+        for(Method method : yadaReq.getClass().getMethods())
+        {
+          if(method.getName().equals(mName) && method.getParameterTypes()[0].isArray())
+          {
+            method.invoke(yadaReq, new Object[] { new String[] { param[1] } });
+          }
+        }
+      }
+      assert yadaReq.getFormat().equals(YADARequest.FORMAT_CSV);
+    }
+    return n / ((System.nanoTime() - start) / 1e9);
+  }
+
+  /**
+   * @param n the number of requests
+   * @return requests per second
+   * @throws YADARequestException when a parameter can't be bound
+   */
+  private static double runHandleRequest(int n) throws YADARequestException
+  {
+    long start = System.nanoTime();
+    for(int i=0;i<n;i++)
+    {
+      Map<String, String[]> paraMap = new LinkedHashMap<>();
+      for(String[] param : PARAMS)
+      {
+        paraMap.put(param[0], new String[] { param[1] });
+      }
+      Service service = new Service();
+      service.handleRequest(null, paraMap);
+      assert service.getYADARequest().getFormat().equals(YADARequest.FORMAT_CSV);
+    }
+    return n / ((System.nanoTime() - start) / 1e9);
+  }
+}
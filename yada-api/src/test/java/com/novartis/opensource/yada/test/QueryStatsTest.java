@@ -0,0 +1,196 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.novartis.opensource.yada.QueryStats;
+import com.novartis.opensource.yada.YADAFinderException;
+
+/**
+ * Tests that {@link QueryStats} writes the counts accumulated since the previous update, forgets idle
+ * queries so new ones can be counted, retains counts which couldn't be written, and writes the remaining
+ * counts when it is closed.
+ * @author David Varon
+ * @since 10.2.0
+ */
+public class QueryStatsTest {
+
+  /**
+   * Loads the test {@code YADA.properties}, unless set already
+   */
+  @BeforeClass (groups = {"core"})
+  public void init()
+  {
+    if(System.getProperty("YADA.properties.path") == null)
+    {
+      System.setProperty("YADA.properties.path", getClass().getResource("/conf/YADA.properties").getPath());
+    }
+  }
+
+  /**
+   * Checks that each update contains the accesses counted since the previous one, and nothing when there
+   * were none
+   */
+  @Test (groups = {"core"})
+  public void flushesDeltas()
+  {
+    RecordingStats stats = new RecordingStats(0, 10);
+    record(stats, "q1", 3);
+    record(stats, "q2", 1);
+    stats.flush();
+    Assert.assertEquals(stats.updates.size(), 1, "Counts not written in one update");
+    Assert.assertEquals(stats.updates.get(0), counts("q1", 3L, "q2", 1L), "Wrong counts written");
+    record(stats, "q1", 2);
+    stats.flush();
+    Assert.assertEquals(stats.updates.get(1), counts("q1", 2L), "Counts of the previous update written again");
+    stats.flush();
+    stats.flush();
+    Assert.assertEquals(stats.updates.size(), 2, "Update executed without accesses");
+  }
+
+  /**
+   * Checks that queries not accessed since the previous update are forgotten, so once the maximum number of
+   * queries has been counted, further queries are counted after the next updates instead of dropped forever
+   */
+  @Test (groups = {"core"})
+  public void forgetsIdleQueries()
+  {
+    RecordingStats stats = new RecordingStats(0, 2);
+    record(stats, "q1", 1);
+    record(stats, "q2", 1);
+    record(stats, "q3", 1);
+    Assert.assertEquals(stats.getDropped(), 1L, "Access of a query beyond the maximum not dropped");
+    stats.flush();
+    Assert.assertEquals(stats.getDropped(), 0L, "Dropped accesses not reset");
+    record(stats, "q1", 1);
+    stats.flush();
+    Assert.assertEquals(stats.size(), 1, "Idle query not forgotten");
+    record(stats, "q3", 4);
+    Assert.assertEquals(stats.getDropped(), 0L, "New query dropped after an idle one was forgotten");
+    stats.flush();
+    Assert.assertEquals(stats.updates.get(stats.updates.size() - 1), counts("q3", 4L), "New query not written");
+  }
+
+  /**
+   * Checks that the counts of a failed update are written, with the accesses counted since, by the next one
+   */
+  @Test (groups = {"core"})
+  public void retainsFailedCounts()
+  {
+    RecordingStats stats = new RecordingStats(0, 10);
+    record(stats, "q1", 3);
+    record(stats, "q2", 1);
+    stats.failures = 1;
+    stats.flush();
+    Assert.assertTrue(stats.updates.isEmpty(), "Failed update recorded");
+    Assert.assertEquals(stats.size(), 2, "Counts of a failed update not retained");
+    record(stats, "q1", 1);
+    stats.flush();
+    Assert.assertEquals(stats.updates.size(), 1, "Retained counts not written");
+    Assert.assertEquals(stats.updates.get(0), counts("q1", 4L, "q2", 1L), "Retained counts not added");
+  }
+
+  /**
+   * Checks that closing the accumulator writes the counts of the current interval, and that {@link QueryStats#shutdown()}
+   * releases the instance, so the next one is created again
+   */
+  @Test (groups = {"core"})
+  public void flushesOnClose()
+  {
+    RecordingStats stats = new RecordingStats(3600, 10);
+    record(stats, "q1", 2);
+    stats.close();
+    Assert.assertEquals(stats.updates.size(), 1, "Counts not written on close");
+    Assert.assertEquals(stats.updates.get(0), counts("q1", 2L), "Wrong counts written on close");
+
+    QueryStats instance = QueryStats.getInstance();
+    Assert.assertNotNull(instance, "Statistics disabled in the test properties");
+    Assert.assertSame(QueryStats.getInstance(), instance, "Instance not reused");
+    QueryStats.shutdown();
+    QueryStats next = QueryStats.getInstance();
+    Assert.assertNotSame(next, instance, "Instance not released on shutdown");
+    QueryStats.shutdown();
+  }
+
+  /**
+   * @param stats the accumulator
+   * @param qname the name of the query
+   * @param times the number of accesses
+   */
+  private static void record(QueryStats stats, String qname, int times)
+  {
+    for(int i = 0; i < times; i++)
+      stats.record(qname);
+  }
+
+  /**
+   * @param pairs query names, each followed by its count
+   * @return the counts mapped to the query names
+   */
+  private static Map<String, Long> counts(Object... pairs)
+  {
+    Map<String, Long> counts = new TreeMap<>();
+    for(int i = 0; i < pairs.length; i += 2)
+      counts.put((String) pairs[i], (Long) pairs[i + 1]);
+    return counts;
+  }
+
+  /**
+   * Records each update instead of writing it to the index, failing the next {@link #failures} updates
+   */
+  private static class RecordingStats extends QueryStats {
+
+    /**
+     * The counts of each successful update, mapped to the query names
+     */
+    final List<Map<String, Long>> updates = new ArrayList<>();
+
+    /**
+     * The number of updates which fail next
+     */
+    int failures;
+
+    /**
+     * @param interval the number of seconds between updates
+     * @param max the maximum number of queries for which counts are kept
+     */
+    RecordingStats(long interval, long max)
+    {
+      super(interval, max);
+    }
+
+    @Override
+    protected synchronized void update(List<String> qnames, List<Long> deltas) throws YADAFinderException
+    {
+      if(this.failures > 0)
+      {
+        this.failures--;
+        throw new YADAFinderException("Update failed");
+      }
+      Map<String, Long> update = new TreeMap<>();
+      for(int i = 0; i < qnames.size(); i++)
+        update.put(qnames.get(i), deltas.get(i));
+      this.updates.add(update);
+    }
+  }
+}
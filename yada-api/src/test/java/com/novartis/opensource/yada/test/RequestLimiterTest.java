@@ -0,0 +1,211 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.novartis.opensource.yada.ConnectionFactory;
+import com.novartis.opensource.yada.Finder;
+import com.novartis.opensource.yada.RequestLimiter;
+import com.novartis.opensource.yada.YADAThrottledException;
+import com.novartis.opensource.yada.server.YADAServer;
+
+/**
+ * Tests that {@link RequestLimiter} enforces the concurrency limit of an app configured in a temporary
+ * YADA lib, counts permits held by executing requests when the limit is changed, and ignores unconfigured apps.
+ * @author David Varon
+ * @since 10.2.0
+ */
+public class RequestLimiterTest {
+
+  /**
+   * Local logger handle
+   */
+  private static Logger l = LoggerFactory.getLogger(RequestLimiterTest.class);
+
+  /**
+   * Constant equal to {@value}
+   */
+  private static final String APP = "LIMITERTEST";
+
+  /**
+   * Constant equal to {@value}
+   */
+  private static final String QNAME = APP + " test query";
+
+  /**
+   * Constant equal to {@value}. Exceeds the interval at which {@code conf.json} is checked for changes
+   */
+  private static final long RELOAD_WAIT = 5500L;
+
+  /**
+   * The temporary YADA lib
+   */
+  private File lib;
+
+  /**
+   * The value of {@code YADA.lib} before the test
+   */
+  private String prevLib;
+
+  /**
+   * Creates a YADA lib containing {@link #APP}, with a concurrency limit of 2, and registers the app
+   * @throws Exception when the lib can't be written
+   */
+  @BeforeClass (groups = {"core"})
+  public void init() throws Exception
+  {
+    if(System.getProperty("YADA.properties.path") == null)
+    {
+      System.setProperty("YADA.properties.path", getClass().getResource("/conf/YADA.properties").getPath());
+    }
+    this.lib = Files.createTempDirectory("yada-lib").toFile();
+    new File(this.lib, APP).mkdir();
+    writeConf(2, 0L);
+    // the lib is expected to be a repository
+    Git.init().setDirectory(this.lib).call().close();
+    Properties props = YADAServer.getProperties();
+    this.prevLib = props.getProperty(Finder.YADA_LIB);
+    props.setProperty(Finder.YADA_LIB, this.lib.getAbsolutePath());
+    Map<String, Object> conf = new HashMap<>();
+    conf.put(ConnectionFactory.YADA_CONF_APP, APP);
+    conf.put(ConnectionFactory.YADA_CONF_PROPS, new JSONObject());
+    ConnectionFactory.getConnectionFactory().getDsConf().put(APP, conf);
+  }
+
+  /**
+   * Restores {@code YADA.lib} and removes the temporary lib
+   */
+  @AfterClass (groups = {"core"})
+  public void cleanup()
+  {
+    ConnectionFactory.getConnectionFactory().getDsConf().remove(APP);
+    if(this.prevLib == null)
+      YADAServer.getProperties().remove(Finder.YADA_LIB);
+    else
+      YADAServer.getProperties().setProperty(Finder.YADA_LIB, this.prevLib);
+    try
+    {
+      FileUtils.deleteDirectory(this.lib);
+    }
+    catch(IOException e)
+    {
+      l.warn("Unable to delete " + this.lib, e);
+    }
+  }
+
+  /**
+   * Checks that requests beyond the limit are rejected until a permit is released, and that a request for
+   * an unconfigured app is not limited
+   * @throws Exception when a permit is not granted
+   */
+  @Test (groups = {"core"})
+  public void limitsConcurrency() throws Exception
+  {
+    RequestLimiter    limiter = RequestLimiter.getRequestLimiter();
+    RequestLimiter.Permit first  = limiter.acquire(new String[] { QNAME });
+    RequestLimiter.Permit second = limiter.acquire(new String[] { QNAME });
+    assertThrottled(limiter, "Request beyond the limit accepted");
+    second.close();
+    limiter.acquire(new String[] { QNAME }).close();
+    first.close();
+    List<RequestLimiter.Permit> permits = new ArrayList<>();
+    for(int i = 0; i < 10; i++)
+    {
+      permits.add(limiter.acquire(new String[] { "UNCONFIGURED" + i + " test query" }));
+    }
+    for(RequestLimiter.Permit permit : permits)
+    {
+      permit.close();
+    }
+  }
+
+  /**
+   * Checks that a changed limit counts the permits held when it was read
+   * @throws Exception when a permit is not granted, or the configuration can't be written
+   */
+  @Test (groups = {"core"}, dependsOnMethods = {"limitsConcurrency"})
+  public void reloadKeepsPermits() throws Exception
+  {
+    RequestLimiter              limiter = RequestLimiter.getRequestLimiter();
+    List<RequestLimiter.Permit> held    = new ArrayList<>();
+    held.add(limiter.acquire(new String[] { QNAME }));
+    held.add(limiter.acquire(new String[] { QNAME }));
+
+    writeConf(3, 10000L);
+    Thread.sleep(RELOAD_WAIT);
+    held.add(limiter.acquire(new String[] { QNAME }));
+    assertThrottled(limiter, "Permits held before the reload not counted");
+
+    writeConf(1, 20000L);
+    Thread.sleep(RELOAD_WAIT);
+    held.remove(0).close();
+    held.remove(0).close();
+    assertThrottled(limiter, "Permits held before the reduction not counted");
+    held.remove(0).close();
+    limiter.acquire(new String[] { QNAME }).close();
+  }
+
+  /**
+   * Fails unless a request for {@link #QNAME} is rejected
+   * @param limiter the limiter
+   * @param message the failure message
+   */
+  private static void assertThrottled(RequestLimiter limiter, String message)
+  {
+    try
+    {
+      limiter.acquire(new String[] { QNAME }).close();
+      Assert.fail(message);
+    }
+    catch(YADAThrottledException e)
+    {
+      // expected
+    }
+  }
+
+  /**
+   * @param concurrency the concurrency limit of {@link #APP}
+   * @param offset added to the modification time, so that the change is detected within the same second
+   * @throws IOException when the file can't be written
+   */
+  private void writeConf(int concurrency, long offset) throws IOException
+  {
+    File       conf  = new File(this.lib, APP + "/" + Finder.CONF_FILE);
+    JSONObject props = new JSONObject().put(RequestLimiter.PROP_CONCURRENCY, String.valueOf(concurrency));
+    JSONObject json  = new JSONObject().put(ConnectionFactory.YADA_CONF_SOURCE, "http://localhost")
+                                       .put(ConnectionFactory.YADA_CONF_PROPS, props);
+    Files.write(conf.toPath(), json.toString().getBytes(StandardCharsets.UTF_8));
+    conf.setLastModified(System.currentTimeMillis() + offset);
+  }
+}
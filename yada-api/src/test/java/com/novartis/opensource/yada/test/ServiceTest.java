@@ -21,8 +21,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.StringReader;
+import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
@@ -35,6 +37,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -42,6 +45,7 @@ import java.util.Scanner;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
@@ -1938,6 +1942,287 @@ public class ServiceTest
     Assert.assertTrue(validate(svc.getYADARequest(), svc.execute()) ,  "Data invalid for query: "+query);
   }
 
+  /**
+   * Checks that a multi-line {@code application/json} body is read into the request, with the scalar
+   * parameters in the parameter map, and the value of {@code j} built directly into {@link JSONParams}
+   * @throws YADAException when the body is rejected
+   * @since 10.2.0
+   */
+  @Test(groups = { "core" })
+  public void testJSONBodyMultiLine() throws YADAException
+  {
+    String body = "{\n"
+        + "  \"j\": [\n"
+        + "    {\"qname\": \"YADATEST/test SELECT\",\n"
+        + "     \"DATA\": [{\"col1\": \"A\", \"col2\": [\"1\", \"2\"]}]}\n"
+        + "  ],\n"
+        + "  \"pz\": \"-1\",\n"
+        + "  \"c\": false\n"
+        + "}\n";
+    YADARequest req = handleJSONBody(body).getYADARequest();
+    Assert.assertEquals(req.getParameterMap().get(YADARequest.PS_PAGESIZE), new String[] { "-1" }, "Scalar parameter not read");
+    Assert.assertEquals(req.getParameterMap().get(YADARequest.PS_COUNT), new String[] { "false" }, "Boolean parameter not read");
+    Assert.assertFalse(req.getParameterMap().containsKey(YADARequest.PS_JSONPARAMS), "JSONParams added to the parameter map");
+    JSONParams jp = req.getJsonParams();
+    Assert.assertEquals(jp.getKeys(), new String[] { "YADATEST/test SELECT" }, "Query name not read");
+    Map<String, String[]> row = jp.get("YADATEST/test SELECT").getRow(0);
+    Assert.assertEquals(row.get("COL1"), new String[] { "A" }, "Value not read");
+    Assert.assertEquals(row.get("COL2"), new String[] { "1", "2" }, "Array value not read");
+  }
+
+  /**
+   * Checks that a body with a top-level key which isn't a YADA parameter is rejected
+   * @throws YADAException when the body is rejected, as expected
+   * @since 10.2.0
+   */
+  @Test(groups = { "core" }, expectedExceptions = YADARequestException.class)
+  public void testJSONBodyUnknownKey() throws YADAException
+  {
+    handleJSONBody("{\"pz\": \"-1\", \"bogus\": \"x\"}");
+  }
+
+  /**
+   * Checks that an array or object value of a parameter other than {@code j} is rejected
+   * @since 10.2.0
+   */
+  @Test(groups = { "core" })
+  public void testJSONBodyNonScalarValue()
+  {
+    for(String body : new String[] { "{\"pz\": [\"-1\"]}", "{\"pz\": {\"size\": -1}}" })
+    {
+      try
+      {
+        handleJSONBody(body);
+        Assert.fail("Non-scalar value accepted: " + body);
+      }
+      catch(YADAException e)
+      {
+        Assert.assertTrue(e instanceof YADARequestException, "Wrong exception for " + body + ": " + e);
+      }
+    }
+  }
+
+  /**
+   * Checks that a large {@code DATA} array read from the body yields the same rows as {@link JSONParams#JSONParams(JSONArray)},
+   * for string, integer, boolean, null and array values
+   * @throws YADAException when the body is rejected
+   * @since 10.2.0
+   */
+  @Test(groups = { "core" })
+  public void testJSONBodyLargeDataParity() throws YADAException
+  {
+    String    qname = "YADATEST/test INSERT";
+    JSONArray data  = new JSONArray();
+    for(int i = 0; i < 10000; i++)
+    {
+      JSONObject row = new JSONObject();
+      row.put("col1", "v" + i);
+      row.put("col2", i);
+      row.put("col3", i % 2 == 0);
+      row.put("col4", i % 3 == 0 ? JSONObject.NULL : "x\"y\n" + i);
+      row.put("col5", new JSONArray().put("a" + i).put("b" + i));
+      data.put(row);
+    }
+    JSONArray j = new JSONArray().put(new JSONObject().put("qname", qname).put("DATA", data));
+    JSONParams streamed = handleJSONBody(new JSONObject().put("j", j).toString()).getYADARequest().getJsonParams();
+    JSONParams parsed   = new JSONParams(j);
+    Assert.assertEquals(streamed.getKeys(), parsed.getKeys(), "Query names differ");
+    List<LinkedHashMap<String, String[]>> expected = parsed.get(qname).getData();
+    List<LinkedHashMap<String, String[]>> actual   = streamed.get(qname).getData();
+    Assert.assertEquals(actual.size(), expected.size(), "Row counts differ");
+    for(int i = 0; i < expected.size(); i++)
+    {
+      Map<String, String[]> e = expected.get(i);
+      Map<String, String[]> a = actual.get(i);
+      Assert.assertEquals(a.keySet(), e.keySet(), "Columns differ in row " + i);
+      for(String col : e.keySet())
+      {
+        Assert.assertEquals(a.get(col), e.get(col), "Values of " + col + " differ in row " + i);
+      }
+    }
+  }
+
+  /**
+   * Checks that the response streamed by {@link Service#execute(java.io.Writer, long)} is the same as the
+   * buffered response of {@link Service#execute()}, except for {@code elapsed}, for single and multiple
+   * result sets, with counts, counts only, and with a join or harmony map, which fall back to buffering
+   * @throws YADAException if query prep or execution fails
+   * @since 10.2.0
+   */
+  @Test(groups = { "api" })
+  public void testStreamingParity() throws YADAException
+  {
+    String select = "{\"qname\":\"YADATEST/test SELECT\",\"DATA\":[{}]}";
+    String ins    = "{\"qname\":\"YADATEST/test SELECT VARCHAR with INS\",\"DATA\":[{\"COL1\":[\"A\",\"B\",\"Z\"]}]}";
+    String[] queries = {
+        "j=[" + select + "]",
+        "j=[" + select + "," + ins + "]",
+        "j=[" + select + "]&c=true",
+        "j=[" + select + "," + ins + "]&c=true",
+        "q=YADATEST/test SELECT&co=true",
+        "j=[{\"qname\":\"YADATEST/test SELECT JOIN A\",\"DATA\":[{}]},{\"qname\":\"YADATEST/test SELECT JOIN B\",\"DATA\":[{}]}]&join=col1",
+        "qname=YADATEST/test harmony map 1&harmonyMap={\"col1\":\"STRING\",\"col2\":\"INT\",\"col3\":\"FLOAT\"}"
+    };
+    for(String query : queries)
+    {
+      logQuery(query);
+      JSONObject buffered = new JSONObject(prepareTest(query).execute());
+      Service    svc      = prepareTest(query);
+      Assert.assertTrue(svc.isStreamable(), "Request not streamable: " + query);
+      StringWriter writer = new StringWriter();
+      svc.execute(writer, System.currentTimeMillis());
+      JSONObject streamed = new JSONObject(writer.toString());
+      // joined and harmonized results are buffered, without elapsed
+      boolean buffers = query.contains("join=") || query.contains("harmonyMap=");
+      Assert.assertEquals(streamed.has("elapsed"), !buffers, "Wrong elapsed time in streamed response: " + query);
+      buffered.remove("elapsed");
+      streamed.remove("elapsed");
+      Assert.assertTrue(streamed.similar(buffered), "Streamed response differs for " + query
+          + "\nbuffered: " + buffered + "\nstreamed: " + streamed);
+    }
+  }
+
+  /**
+   * Checks that {@link Service#executeNDJSON(java.io.Writer)} writes one json object per line, one for each
+   * query, in request order, with its {@code qname}, {@code index} and {@code RESULTSET}, and rejects joins
+   * @throws YADAException if query prep or execution fails
+   * @since 10.2.0
+   */
+  @Test(groups = { "api" })
+  public void testNDJSONFrames() throws YADAException
+  {
+    String[] qnames = { "YADATEST/test SELECT", "YADATEST/test SELECT VARCHAR with INS", "YADATEST/test SELECT" };
+    String   query  = "j=[{\"qname\":\"" + qnames[0] + "\",\"DATA\":[{}]},"
+        + "{\"qname\":\"" + qnames[1] + "\",\"DATA\":[{\"COL1\":[\"A\",\"B\",\"Z\"]}]},"
+        + "{\"qname\":\"" + qnames[2] + "\",\"DATA\":[{}]}]";
+    logQuery(query);
+    StringWriter writer = new StringWriter();
+    prepareTest(query).executeNDJSON(writer);
+    String result = writer.toString();
+    Assert.assertTrue(result.endsWith("\n"), "Last frame not terminated");
+    String[] lines = result.split("\n");
+    Assert.assertEquals(lines.length, qnames.length, "Wrong number of frames: " + result);
+    for(int i = 0; i < lines.length; i++)
+    {
+      JSONObject frame = new JSONObject(lines[i]);
+      Assert.assertEquals(frame.getString("qname"), qnames[i], "Wrong qname in frame " + i);
+      Assert.assertEquals(frame.getInt("index"), i, "Wrong index in frame " + i);
+      Assert.assertTrue(frame.getJSONObject("RESULTSET").getInt("records") > 0, "No rows in frame " + i);
+    }
+
+    String join = "j=[{\"qname\":\"YADATEST/test SELECT JOIN A\",\"DATA\":[{}]},{\"qname\":\"YADATEST/test SELECT JOIN B\",\"DATA\":[{}]}]&join=col1";
+    try
+    {
+      prepareTest(join).executeNDJSON(new StringWriter());
+      Assert.fail("Joined results returned as newline-delimited json");
+    }
+    catch(YADARequestException e)
+    {
+      l.debug("Join rejected: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Checks that, when a request contains an update, no frame is written by {@link Service#executeNDJSON(java.io.Writer)}
+   * until the update is committed, i.e., visible to another request
+   * @throws YADAException if query prep or execution fails
+   * @since 10.2.0
+   */
+  @Test(groups = { "api" })
+  public void testNDJSONUpdateFramesAfterCommit() throws YADAException
+  {
+    String select = "j=[{\"qname\":\"YADATEST/test SELECT VARCHAR with INS\",\"DATA\":[{\"COL1\":[\"NDJ\"]}]}]";
+    String query  = "j=[{\"qname\":\"YADATEST/test INSERT\",\"DATA\":[{\"COL1\":\"NDJ\",\"COL2\":\"10\",\"COL3\":\"7.5\","
+        + "\"COL4\":\"2013-03-04\",\"COL5\":\"2015-09-05 20:44:33\",\"USERID\":\"foo@bar.com\"}]},"
+        + select.substring(3, select.length() - 1) + "]";
+    logQuery(query);
+    Assert.assertEquals(new JSONObject(prepareTest(select).execute()).getJSONObject("RESULTSET").getInt("records"), 0, "Row inserted already");
+    boolean[] committed = new boolean[1];
+    StringWriter writer = new StringWriter() {
+      private boolean written;
+
+      @Override
+      public void write(int c)
+      {
+        check();
+        super.write(c);
+      }
+
+      @Override
+      public void write(char[] cbuf, int off, int len)
+      {
+        check();
+        super.write(cbuf, off, len);
+      }
+
+      @Override
+      public void write(String str)
+      {
+        check();
+        super.write(str);
+      }
+
+      @Override
+      public void write(String str, int off, int len)
+      {
+        check();
+        super.write(str, off, len);
+      }
+
+      /**
+       * Checks, before the first frame is written, whether the insert is visible to another request
+       */
+      private void check()
+      {
+        if(!this.written)
+        {
+          this.written = true;
+          try
+          {
+            committed[0] = new JSONObject(prepareTest(select).execute()).getJSONObject("RESULTSET").getInt("records") > 0;
+          }
+          catch(YADAException e)
+          {
+            throw new IllegalStateException(e);
+          }
+        }
+      }
+    };
+    prepareTest(query).executeNDJSON(writer);
+    Assert.assertTrue(committed[0], "Frame written before the update was committed");
+    String[] lines = writer.toString().split("\n");
+    Assert.assertEquals(lines.length, 2, "Wrong number of frames: " + writer);
+    Assert.assertEquals(new JSONObject(lines[0]).getJSONObject("RESULTSET").getInt("total"), 1, "Insert count missing");
+    Assert.assertEquals(new JSONObject(lines[1]).getJSONObject("RESULTSET").getInt("records"), 1, "Inserted row not selected");
+  }
+
+  /**
+   * Passes {@code body} to {@link Service#handleRequest(HttpServletRequest)} as {@code application/json}
+   * @param body the request body
+   * @return the service
+   * @throws YADAException when the body is rejected
+   * @since 10.2.0
+   */
+  private Service handleJSONBody(String body) throws YADAException
+  {
+    HttpServletRequest request = (HttpServletRequest)Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class<?>[] { HttpServletRequest.class },
+        (proxy, method, args) -> {
+          switch(method.getName())
+          {
+          case "getHeader":
+            return "Content-Type".equals(args[0]) ? "application/json" : null;
+          case "getReader":
+            return new BufferedReader(new StringReader(body));
+          default:
+            return null;
+          }
+        });
+    Service svc = new Service();
+    svc.handleRequest(request);
+    return svc;
+  }
+
   /**
    * @param req the {@link YADARequest} containing the test query
    * @param result the {@link String} returned by {@link Service#execute()}
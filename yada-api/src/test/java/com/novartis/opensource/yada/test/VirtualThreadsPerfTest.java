@@ -0,0 +1,164 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada.test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.SkipException;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.novartis.opensource.yada.Finder;
+import com.novartis.opensource.yada.Service;
+import com.novartis.opensource.yada.YADARequest;
+import com.novartis.opensource.yada.util.YADAThreads;
+
+/**
+ * Compares request throughput of a bounded platform thread pool, sized like the default jetty
+ * {@code QueuedThreadPool}, with that of the virtual thread per request executor used by 
+ * {@link com.novartis.opensource.yada.server.YADARequestHandler} when {@link YADAThreads#isVirtual()}, 
+ * under {@value #CONCURRENCY} concurrent requests of {@value #QNAME}, which sleeps {@value #SLEEP} seconds in
+ * the test database, executed by {@link Service} as in {@link PerfTest}.  The query is written to the lib
+ * for the test.  Skipped on jvms without virtual threads.
+ * @author David Varon
+ * @since 10.2.0
+ */
+public class VirtualThreadsPerfTest {
+
+  /**
+   * Local logger handle
+   */
+  private static Logger l = LoggerFactory.getLogger(VirtualThreadsPerfTest.class);
+
+  /**
+   * Constant equal to {@value}
+   */
+  private static final int CONCURRENCY = 2000;
+
+  /**
+   * Constant equal to {@value}. The number of seconds each query sleeps.  Requests wait for connections
+   * of the {@code YADATEST} pool, so the sleep is short enough that 2000 requests don't time out.
+   */
+  private static final String SLEEP = "0.05";
+
+  /**
+   * Constant equal to {@value}
+   */
+  private static final String QNAME = "YADATEST/perf sleep";
+
+  /**
+   * The query file written for the test
+   */
+  private Path queryFile;
+
+  /**
+   * Constant equal to {@value}. The default maximum size of jetty's {@code QueuedThreadPool}
+   */
+  private static final int PLATFORM_THREADS = 200;
+
+  /**
+   * Writes {@value #QNAME} to the lib
+   * @throws Exception when the lib isn't set, or the file can't be written
+   */
+  @BeforeClass (groups = {"perf"})
+  public void writeQuery() throws Exception
+  {
+    this.queryFile = Finder.getLibPath(QNAME);
+    String json = "{\"query\":\"select pg_sleep(" + SLEEP + ")\",\"params\":[]}";
+    Files.write(this.queryFile, json.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Deletes {@value #QNAME} from the lib
+   * @throws Exception when the file can't be deleted
+   */
+  @AfterClass (groups = {"perf"}, alwaysRun = true)
+  public void deleteQuery() throws Exception
+  {
+    if(this.queryFile != null)
+      Files.deleteIfExists(this.queryFile);
+  }
+
+  /**
+   * Executes {@value #CONCURRENCY} slow requests on each executor and compares throughput
+   * @throws Exception when a request fails, or the benchmark is interrupted
+   */
+  @Test (groups = {"perf"})
+  public void compareThroughput() throws Exception
+  {
+    ExecutorService virtual;
+    try
+    {
+      virtual = YADAThreads.newVirtualThreadPerTaskExecutor("yada-perf-");
+    }
+    catch (UnsupportedOperationException e)
+    {
+      throw new SkipException("Virtual threads require Java 21 or later.");
+    }
+    ExecutorService platform = Executors.newFixedThreadPool(PLATFORM_THREADS);
+    try
+    {
+      // warm up both paths
+      run(platform);
+      run(virtual);
+      double platformRate = run(platform);
+      double virtualRate  = run(virtual);
+      l.info(String.format("%d concurrent slow queries: platform (%d threads) %.0f req/s, virtual %.0f req/s",
+          CONCURRENCY, PLATFORM_THREADS, platformRate, virtualRate));
+    }
+    finally
+    {
+      platform.shutdownNow();
+      virtual.shutdownNow();
+    }
+  }
+
+  /**
+   * @param executor the executor to measure
+   * @return requests per second
+   * @throws Exception when a request fails, or the benchmark is interrupted
+   */
+  private static double run(ExecutorService executor) throws Exception
+  {
+    List<Future<String>> results = new ArrayList<>(CONCURRENCY);
+    long                 start   = System.nanoTime();
+    for(int i=0;i<CONCURRENCY;i++)
+    {
+      results.add(executor.submit(() -> {
+        YADARequest yadaReq = new YADARequest();
+        yadaReq.setQname(new String[] {QNAME});
+        yadaReq.setCount(new String[] {"false"});
+        return new Service(yadaReq).execute();
+      }));
+    }
+    for(Future<String> result : results)
+    {
+      String r = result.get(5, TimeUnit.MINUTES);
+      assert r.indexOf("Exception") == -1 : "Result is "+r;
+    }
+    return CONCURRENCY / ((System.nanoTime() - start) / 1e9);
+  }
+}
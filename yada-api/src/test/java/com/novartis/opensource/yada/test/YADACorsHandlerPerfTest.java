@@ -0,0 +1,156 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada.test;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Request;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import com.novartis.opensource.yada.server.YADACorsHandler;
+
+/**
+ * Measures the throughput of {@link YADACorsHandler} answering preflight requests from a small set
+ * of origins, and compares it with matching each origin against a pattern compiled per request,
+ * as the handler formerly did.
+ * @author David Varon
+ * @since 10.2.0
+ */
+public class YADACorsHandlerPerfTest {
+
+  /**
+   * Local logger handle
+   */
+  private static Logger l = LoggerFactory.getLogger(YADACorsHandlerPerfTest.class);
+
+  /**
+   * Constant equal to {@value}
+   */
+  private static final int ITERATIONS = 500000;
+
+  /**
+   * Constant equal to {@value}
+   */
+  private static final String ALLOW_ORIGIN = "(www|app|api)\\.example\\.(com|org)(:\\d+)?";
+
+  /**
+   * Origins sent by the simulated clients
+   */
+  private static final String[] ORIGINS = {
+      "https://www.example.com", "https://app.example.com", "http://api.example.org:8080", "https://app.example.org"
+  };
+
+  /**
+   * Answers {@value #ITERATIONS} preflight requests and logs the rate alongside per-request pattern compilation
+   * @throws Exception when the handler fails
+   */
+  @Test (groups = {"perf"})
+  public void preflightThroughput() throws Exception
+  {
+    Properties props = new Properties();
+    props.setProperty("YADA.server.CORS.allow.origin", ALLOW_ORIGIN);
+    props.setProperty("YADA.server.CORS.allow.methods", "GET,HEAD,POST,PUT,DELETE");
+    props.setProperty("YADA.server.CORS.allow.headers", "X-Requested-With,Content-Type,Accept,Origin,Authorization");
+    YADACorsHandler handler = new YADACorsHandler(props);
+    HttpServletResponse response = (HttpServletResponse)Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class<?>[] { HttpServletResponse.class }, (proxy, method, args) -> null);
+    HttpServletRequest[] requests = new HttpServletRequest[ORIGINS.length];
+    for(int i=0;i<ORIGINS.length;i++)
+    {
+      requests[i] = preflight(ORIGINS[i]);
+    }
+
+    // warm up both paths
+    runHandler(handler, requests, response, ITERATIONS / 10);
+    runCompiled(ITERATIONS / 10);
+
+    double handlerRate  = runHandler(handler, requests, response, ITERATIONS);
+    double compiledRate = runCompiled(ITERATIONS);
+    l.info(String.format("%d preflights: handler %.0f req/s, per-request compile %.0f req/s",
+        ITERATIONS, handlerRate, compiledRate));
+  }
+
+  /**
+   * @param handler the handler
+   * @param requests the preflight requests to cycle through
+   * @param response the response
+   * @param n the number of requests
+   * @return requests per second
+   * @throws Exception when the handler fails
+   */
+  private static double runHandler(YADACorsHandler handler, HttpServletRequest[] requests, HttpServletResponse response, int n) throws Exception
+  {
+    long start = System.nanoTime();
+    for(int i=0;i<n;i++)
+    {
+      Request baseRequest = new Request(null, null);
+      handler.handle("/", baseRequest, requests[i % requests.length], response);
+      assert baseRequest.isHandled() : "Preflight was not answered by the handler";
+    }
+    return n / ((System.nanoTime() - start) / 1e9);
+  }
+
+  /**
+   * @param n the number of origins to match
+   * @return matches per second
+   */
+  private static double runCompiled(int n)
+  {
+    long start = System.nanoTime();
+    int  matched = 0;
+    for(int i=0;i<n;i++)
+    {
+      if(Pattern.compile("^https?://"+ALLOW_ORIGIN).matcher(ORIGINS[i % ORIGINS.length]).matches())
+      {
+        matched++;
+      }
+    }
+    assert matched == n : "Origin was not matched";
+    return n / ((System.nanoTime() - start) / 1e9);
+  }
+
+  /**
+   * @param origin the value of the {@code Origin} header
+   * @return a preflight request from {@code origin}
+   */
+  private static HttpServletRequest preflight(String origin)
+  {
+    Map<String, String> headers = new HashMap<>();
+    headers.put("Origin", origin);
+    headers.put("Access-Control-Request-Method", "PUT");
+    headers.put("Access-Control-Request-Headers", "Content-Type, Authorization");
+    return (HttpServletRequest)Proxy.newProxyInstance(YADACorsHandlerPerfTest.class.getClassLoader(),
+        new Class<?>[] { HttpServletRequest.class }, (proxy, method, args) -> {
+          switch(method.getName())
+          {
+            case "getMethod":
+              return "OPTIONS";
+            case "getHeader":
+              return headers.get(args[0]);
+            default:
+              return null;
+          }
+        });
+  }
+}
@@ -0,0 +1,290 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada.test;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Request;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.novartis.opensource.yada.server.YADACorsHandler;
+
+/**
+ * Tests that {@link YADACorsHandler} allows requests from any origin, or from origins matching
+ * {@code YADA.server.CORS.allow.origin}, rejects others, and answers preflight requests for the allowed
+ * methods and headers, also when its cache of origin decisions is full.
+ * @author David Varon
+ * @since 10.2.0
+ */
+public class YADACorsHandlerTest {
+
+  /**
+   * Constant equal to {@value}
+   */
+  private static final String ALLOW_ORIGIN = "(www|app)\\.example\\.com";
+
+  /**
+   * Checks that, without an origin rule, requests from any origin are allowed with a wildcard, and requests
+   * without an {@code Origin} header are left alone
+   * @throws Exception when the handler fails
+   */
+  @Test (groups = {"core"})
+  public void allowsAnyOrigin() throws Exception
+  {
+    YADACorsHandler handler = new YADACorsHandler(new Properties());
+    Exchange simple = new Exchange("GET", "https://anywhere.example.net");
+    simple.handle(handler);
+    Assert.assertEquals(simple.headers.get("Access-Control-Allow-Origin"), "*", "Any origin not allowed");
+    Assert.assertEquals(simple.headers.get("Access-Control-Allow-Credentials"), "true", "Credentials header missing");
+    Assert.assertFalse(simple.baseRequest.isHandled(), "Simple request not passed on");
+
+    Exchange local = new Exchange("GET", null);
+    local.handle(handler);
+    Assert.assertTrue(local.headers.isEmpty(), "CORS headers added to a request without an origin");
+  }
+
+  /**
+   * Checks that requests from origins matching the rule are allowed with their origin, and requests from
+   * other origins are rejected with a {@code 403}
+   * @throws Exception when the handler fails
+   */
+  @Test (groups = {"core"})
+  public void allowsMatchingOrigins() throws Exception
+  {
+    YADACorsHandler handler = new YADACorsHandler(props(1000));
+    assertAllowed(handler, "https://www.example.com");
+    assertAllowed(handler, "http://app.example.com");
+    assertDenied(handler, "https://evil.example.com");
+    assertDenied(handler, "https://www.example.com.evil.net");
+    assertAllowed(handler, "https://www.example.com");
+    assertDenied(handler, "https://evil.example.com");
+  }
+
+  /**
+   * Checks that decisions stay correct when more origins are requested than decisions are cached, so older
+   * decisions are evicted and matched again
+   * @throws Exception when the handler fails
+   */
+  @Test (groups = {"core"})
+  public void decidesBeyondCacheSize() throws Exception
+  {
+    YADACorsHandler handler = new YADACorsHandler(props(2));
+    for(int round = 0; round < 3; round++)
+    {
+      assertAllowed(handler, "https://www.example.com");
+      assertDenied(handler, "https://one.example.net");
+      assertAllowed(handler, "https://app.example.com");
+      assertDenied(handler, "https://two.example.net");
+      assertAllowed(handler, "https://www.example.com");
+    }
+  }
+
+  /**
+   * Checks that a preflight for an allowed method and headers is answered by the handler with a {@code 204}
+   * and the preflight headers, and that one for another method, or other headers, or another origin, is rejected
+   * @throws Exception when the handler fails
+   */
+  @Test (groups = {"core"})
+  public void answersPreflight() throws Exception
+  {
+    YADACorsHandler handler = new YADACorsHandler(props(1000));
+    Exchange preflight = new Exchange("OPTIONS", "https://www.example.com");
+    preflight.requestHeaders.put("Access-Control-Request-Method", "PUT");
+    preflight.requestHeaders.put("Access-Control-Request-Headers", "Content-Type, Authorization");
+    preflight.handle(handler);
+    Assert.assertEquals(preflight.status, HttpServletResponse.SC_NO_CONTENT, "Preflight not answered");
+    Assert.assertTrue(preflight.baseRequest.isHandled(), "Preflight passed on");
+    Assert.assertEquals(preflight.headers.get("Access-Control-Allow-Origin"), "https://www.example.com", "Wrong origin");
+    Assert.assertEquals(preflight.headers.get("Access-Control-Allow-Methods"), "GET,HEAD,POST,PUT", "Wrong methods");
+    Assert.assertEquals(preflight.headers.get("Access-Control-Allow-Headers"), "Content-Type,Authorization", "Wrong headers");
+    Assert.assertEquals(preflight.headers.get("Access-Control-Max-Age"), "600", "Wrong max age");
+
+    Exchange method = new Exchange("OPTIONS", "https://www.example.com");
+    method.requestHeaders.put("Access-Control-Request-Method", "DELETE");
+    assertRejected(handler, method);
+    Exchange headers = new Exchange("OPTIONS", "https://www.example.com");
+    headers.requestHeaders.put("Access-Control-Request-Method", "PUT");
+    headers.requestHeaders.put("Access-Control-Request-Headers", "X-Custom");
+    assertRejected(handler, headers);
+    Exchange origin = new Exchange("OPTIONS", "https://evil.example.com");
+    origin.requestHeaders.put("Access-Control-Request-Method", "PUT");
+    assertRejected(handler, origin);
+    assertRejected(handler, new Exchange("PUT", "https://www.example.com"));
+  }
+
+  /**
+   * Checks that with {@code YADA.server.CORS.chain.preflight} a preflight gets its headers, but is passed on
+   * @throws Exception when the handler fails
+   */
+  @Test (groups = {"core"})
+  public void chainsPreflight() throws Exception
+  {
+    Properties props = props(1000);
+    props.setProperty("YADA.server.CORS.chain.preflight", "true");
+    YADACorsHandler handler = new YADACorsHandler(props);
+    Exchange preflight = new Exchange("OPTIONS", "https://app.example.com");
+    preflight.requestHeaders.put("Access-Control-Request-Method", "POST");
+    preflight.handle(handler);
+    Assert.assertEquals(preflight.headers.get("Access-Control-Allow-Methods"), "GET,HEAD,POST,PUT", "Preflight headers missing");
+    Assert.assertFalse(preflight.baseRequest.isHandled(), "Chained preflight not passed on");
+    Assert.assertEquals(preflight.status, 0, "Chained preflight answered");
+  }
+
+  /**
+   * @param cacheSize the maximum number of cached origin decisions
+   * @return properties allowing {@link #ALLOW_ORIGIN}, {@code PUT}, and the {@code Authorization} header
+   */
+  private static Properties props(int cacheSize)
+  {
+    Properties props = new Properties();
+    props.setProperty("YADA.server.CORS.allow.origin", ALLOW_ORIGIN);
+    props.setProperty("YADA.server.CORS.allow.methods", "GET,HEAD,POST,PUT");
+    props.setProperty("YADA.server.CORS.allow.headers", "Content-Type,Authorization");
+    props.setProperty("YADA.server.CORS.max.age", "600");
+    props.setProperty("YADA.server.CORS.cache.size", String.valueOf(cacheSize));
+    return props;
+  }
+
+  /**
+   * @param handler the handler
+   * @param origin the origin of a simple request
+   * @throws Exception when the handler fails
+   */
+  private static void assertAllowed(YADACorsHandler handler, String origin) throws Exception
+  {
+    Exchange simple = new Exchange("GET", origin);
+    simple.handle(handler);
+    Assert.assertEquals(simple.headers.get("Access-Control-Allow-Origin"), origin, "Origin not allowed: " + origin);
+    Assert.assertEquals(simple.status, 0, "Allowed request answered: " + origin);
+  }
+
+  /**
+   * @param handler the handler
+   * @param origin the origin of a simple request
+   * @throws Exception when the handler fails
+   */
+  private static void assertDenied(YADACorsHandler handler, String origin) throws Exception
+  {
+    Exchange simple = new Exchange("GET", origin);
+    assertRejected(handler, simple);
+    Assert.assertNull(simple.headers.get("Access-Control-Allow-Origin"), "Origin allowed: " + origin);
+  }
+
+  /**
+   * @param handler the handler
+   * @param exchange the request to reject
+   * @throws Exception when the handler fails otherwise
+   */
+  private static void assertRejected(YADACorsHandler handler, Exchange exchange) throws Exception
+  {
+    try
+    {
+      exchange.handle(handler);
+      Assert.fail("Request not rejected");
+    }
+    catch(ServletException e)
+    {
+      Assert.assertEquals(exchange.status, HttpServletResponse.SC_FORBIDDEN, "Wrong status");
+    }
+  }
+
+  /**
+   * A request, and the headers and status the handler sets on its response
+   */
+  private static class Exchange {
+
+    /**
+     * The request headers
+     */
+    final Map<String, String> requestHeaders = new HashMap<>();
+
+    /**
+     * The response headers
+     */
+    final Map<String, String> headers = new HashMap<>();
+
+    /**
+     * The jetty request, marked handled when the handler answers it
+     */
+    final Request baseRequest = new Request(null, null);
+
+    /**
+     * The method
+     */
+    final String method;
+
+    /**
+     * The response status, or {@code 0} if unset
+     */
+    int status;
+
+    /**
+     * @param method the method
+     * @param origin the value of the {@code Origin} header, or {@code null}
+     */
+    Exchange(String method, String origin)
+    {
+      this.method = method;
+      if(origin != null)
+        this.requestHeaders.put("Origin", origin);
+    }
+
+    /**
+     * @param handler the handler
+     * @throws Exception when the handler fails
+     */
+    void handle(YADACorsHandler handler) throws Exception
+    {
+      HttpServletRequest request = (HttpServletRequest)Proxy.newProxyInstance(YADACorsHandlerTest.class.getClassLoader(),
+          new Class<?>[] { HttpServletRequest.class }, (proxy, m, args) -> {
+            switch(m.getName())
+            {
+              case "getMethod":
+                return this.method;
+              case "getHeader":
+                return this.requestHeaders.get(args[0]);
+              default:
+                return null;
+            }
+          });
+      HttpServletResponse response = (HttpServletResponse)Proxy.newProxyInstance(YADACorsHandlerTest.class.getClassLoader(),
+          new Class<?>[] { HttpServletResponse.class }, (proxy, m, args) -> {
+            switch(m.getName())
+            {
+              case "addHeader":
+              case "setHeader":
+                this.headers.put((String) args[0], (String) args[1]);
+                break;
+              case "setStatus":
+              case "sendError":
+                this.status = (Integer) args[0];
+                break;
+              default:
+                break;
+            }
+            return null;
+          });
+      handler.handle("/", this.baseRequest, request, response);
+    }
+  }
+}
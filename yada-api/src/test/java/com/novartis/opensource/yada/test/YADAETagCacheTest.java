@@ -0,0 +1,126 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada.test;
+
+import java.lang.reflect.Proxy;
+import java.util.Properties;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.eclipse.jetty.http.HttpHeader;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.novartis.opensource.yada.server.YADAETagCache;
+import com.novartis.opensource.yada.server.YADAServer;
+
+/**
+ * Tests that {@link YADAETagCache} answers a conditional request with the {@code ETag} of an identical request,
+ * but not of a request with another key or result, nor after the ttl has expired.
+ * @author David Varon
+ * @since 10.2.0
+ */
+public class YADAETagCacheTest {
+
+  /**
+   * Constant equal to {@value}
+   */
+  private static final String KEY = "qname=YADA test sample select\u0000user";
+
+  /**
+   * Constant equal to {@value}
+   */
+  private static final String RESULT = "{\"RESULTSET\":{\"total\":1,\"ROWS\":[{\"COL1\":\"A\"}]}}";
+
+  /**
+   * Loads the test {@code YADA.properties}, unless set already
+   */
+  @BeforeClass (groups = {"core"})
+  public void init()
+  {
+    if(System.getProperty("YADA.properties.path") == null)
+    {
+      System.setProperty("YADA.properties.path", getClass().getResource("/conf/YADA.properties").getPath());
+    }
+  }
+
+  /**
+   * Checks that the cached {@code ETag} matches the {@code If-None-Match} header, i.e., the request is
+   * answered with {@code 304 Not Modified}
+   */
+  @Test (groups = {"core"})
+  public void notModified()
+  {
+    YADAETagCache cache = new YADAETagCache();
+    String        etag  = cache.put(KEY, RESULT);
+    Assert.assertEquals(cache.get(KEY), etag);
+    Assert.assertTrue(YADAETagCache.matches(conditional(etag), etag), "Current ETag not matched");
+    Assert.assertTrue(YADAETagCache.matches(conditional("\"other\", " + etag), etag), "ETag in list not matched");
+    Assert.assertTrue(YADAETagCache.matches(conditional("*"), etag), "Wildcard not matched");
+    Assert.assertFalse(YADAETagCache.matches(conditional("\"other\""), etag), "Stale ETag matched");
+    Assert.assertFalse(YADAETagCache.matches(conditional(null), etag), "Unconditional request matched");
+    Assert.assertFalse(YADAETagCache.matches(conditional(etag), null), "Uncached request matched");
+  }
+
+  /**
+   * Checks that requests with other keys, e.g., other credentials, or results don't share {@code ETag}s
+   */
+  @Test (groups = {"core"})
+  public void isolatesKeys()
+  {
+    YADAETagCache cache = new YADAETagCache();
+    String        etag  = cache.put(KEY, RESULT);
+    Assert.assertEquals(cache.put(KEY, RESULT), etag, "ETag not stable");
+    Assert.assertNotEquals(cache.put(KEY + "other", RESULT), etag, "ETag shared across keys");
+    Assert.assertNotEquals(cache.put(KEY, RESULT + " "), etag, "ETag shared across results");
+    Assert.assertNull(cache.get("missing"));
+  }
+
+  /**
+   * Checks that an expired {@code ETag} is not returned
+   */
+  @Test (groups = {"core"})
+  public void expires()
+  {
+    Properties props = YADAServer.getProperties();
+    String     ttl   = props.getProperty(YADAETagCache.YADA_SERVER_ETAG_TTL);
+    props.setProperty(YADAETagCache.YADA_SERVER_ETAG_TTL, "-1");
+    try
+    {
+      YADAETagCache cache = new YADAETagCache();
+      cache.put(KEY, RESULT);
+      Assert.assertNull(cache.get(KEY), "Expired ETag returned");
+    }
+    finally
+    {
+      if(ttl == null)
+        props.remove(YADAETagCache.YADA_SERVER_ETAG_TTL);
+      else
+        props.setProperty(YADAETagCache.YADA_SERVER_ETAG_TTL, ttl);
+    }
+  }
+
+  /**
+   * @param ifNoneMatch the value of the {@code If-None-Match} header, or {@code null}
+   * @return a request with the header
+   */
+  private HttpServletRequest conditional(String ifNoneMatch)
+  {
+    return (HttpServletRequest)Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class<?>[] { HttpServletRequest.class },
+        (proxy, method, args) -> "getHeader".equals(method.getName()) && HttpHeader.IF_NONE_MATCH.asString().equals(args[0]) ? ifNoneMatch : null);
+  }
+}
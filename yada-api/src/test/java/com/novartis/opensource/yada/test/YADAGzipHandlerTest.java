@@ -0,0 +1,268 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.IOUtils;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpTester;
+import org.eclipse.jetty.server.LocalConnector;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.novartis.opensource.yada.YADARequest;
+import com.novartis.opensource.yada.server.YADAGzipHandler;
+import com.novartis.opensource.yada.server.YADAServer;
+
+/**
+ * Tests that {@link YADAGzipHandler} compresses responses of known length only from the minimum size for their
+ * format, responses of unknown length regardless of size, and neither {@link YADARequest#FORMAT_BINARY} responses
+ * nor responses to requests without {@code Accept-Encoding: gzip}.
+ * @author David Varon
+ * @since 10.2.0
+ */
+public class YADAGzipHandlerTest {
+
+  /**
+   * Constant equal to {@value}. The minimum size of responses without a specific minimum
+   */
+  private static final int MIN_SIZE = 100;
+
+  /**
+   * Constant equal to {@value}. The minimum size of {@link YADARequest#FORMAT_CSV} responses
+   */
+  private static final int CSV_MIN_SIZE = 1000;
+
+  /**
+   * The properties set by the test, and their previous values
+   */
+  private final Map<String, String> prevProps = new HashMap<>();
+
+  /**
+   * The server
+   */
+  private Server server;
+
+  /**
+   * The connector to which requests are sent
+   */
+  private LocalConnector connector;
+
+  /**
+   * Starts a server, the handler of which writes a response of the content type and size in the request
+   * through a {@link YADAGzipHandler}
+   * @throws Exception when the server can't be started
+   */
+  @BeforeClass (groups = {"core"})
+  public void init() throws Exception
+  {
+    if(System.getProperty("YADA.properties.path") == null)
+    {
+      System.setProperty("YADA.properties.path", getClass().getResource("/conf/YADA.properties").getPath());
+    }
+    setProperty(YADAGzipHandler.YADA_SERVER_COMPRESSION_MIN_SIZE, String.valueOf(MIN_SIZE));
+    setProperty(YADAGzipHandler.YADA_SERVER_COMPRESSION_MIN_SIZE + "." + YADARequest.FORMAT_CSV, String.valueOf(CSV_MIN_SIZE));
+    this.server    = new Server();
+    this.connector = new LocalConnector(this.server);
+    this.server.addConnector(this.connector);
+    YADAGzipHandler gzip = new YADAGzipHandler();
+    gzip.setHandler(new AbstractHandler() {
+      @Override
+      public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response)
+          throws IOException
+      {
+        baseRequest.setHandled(true);
+        if(request.getParameter("binary") != null)
+        {
+          request.setAttribute(YADAGzipHandler.NO_COMPRESSION, Boolean.TRUE);
+        }
+        byte[] content = content(Integer.parseInt(request.getParameter("size")));
+        response.setContentType(request.getParameter("type"));
+        if(request.getParameter("streamed") != null)
+        {
+          response.getOutputStream().write(content, 0, 1);
+          response.flushBuffer();
+          response.getOutputStream().write(content, 1, content.length - 1);
+        }
+        else
+        {
+          response.setContentLength(content.length);
+          response.getOutputStream().write(content);
+        }
+      }
+    });
+    this.server.setHandler(gzip);
+    this.server.start();
+  }
+
+  /**
+   * Stops the server and restores the properties
+   * @throws Exception when the server can't be stopped
+   */
+  @AfterClass (groups = {"core"})
+  public void cleanup() throws Exception
+  {
+    this.server.stop();
+    Properties props = YADAServer.getProperties();
+    for(Map.Entry<String, String> prop : this.prevProps.entrySet())
+    {
+      if(prop.getValue() == null)
+        props.remove(prop.getKey());
+      else
+        props.setProperty(prop.getKey(), prop.getValue());
+    }
+  }
+
+  /**
+   * Checks that responses of known length are compressed from the minimum size for their format, which
+   * defaults to the global minimum size
+   * @throws Exception when a request fails
+   */
+  @Test (groups = {"core"})
+  public void appliesMinSizePerFormat() throws Exception
+  {
+    assertCompressed(request("application/json", MIN_SIZE, ""), MIN_SIZE);
+    assertUncompressed(request("application/json", MIN_SIZE - 1, ""), MIN_SIZE - 1);
+    assertUncompressed(request("text/csv", CSV_MIN_SIZE - 1, ""), CSV_MIN_SIZE - 1);
+    assertCompressed(request("text/csv;charset=UTF-8", CSV_MIN_SIZE, ""), CSV_MIN_SIZE);
+    assertUncompressed(request("text/tab-separated-values", MIN_SIZE - 1, ""), MIN_SIZE - 1);
+    assertCompressed(request("text/tab-separated-values", MIN_SIZE, ""), MIN_SIZE);
+  }
+
+  /**
+   * Checks that responses of unknown length are compressed regardless of the minimum size
+   * @throws Exception when a request fails
+   */
+  @Test (groups = {"core"})
+  public void compressesStreamedResponses() throws Exception
+  {
+    assertCompressed(request("text/csv", MIN_SIZE, "&streamed=true"), MIN_SIZE);
+  }
+
+  /**
+   * Checks that responses marked with {@link YADAGzipHandler#NO_COMPRESSION}, as {@link YADARequest#FORMAT_BINARY}
+   * responses are, aren't compressed, whatever their size and type
+   * @throws Exception when a request fails
+   */
+  @Test (groups = {"core"})
+  public void skipsBinaryResponses() throws Exception
+  {
+    assertUncompressed(request("application/json", CSV_MIN_SIZE, "&binary=true"), CSV_MIN_SIZE);
+    assertUncompressed(request("text/csv", MIN_SIZE, "&binary=true&streamed=true"), MIN_SIZE);
+  }
+
+  /**
+   * Checks that responses to requests without {@code Accept-Encoding: gzip} aren't compressed
+   * @throws Exception when a request fails
+   */
+  @Test (groups = {"core"})
+  public void negotiatesEncoding() throws Exception
+  {
+    String query = "/?type=application/json&size=" + CSV_MIN_SIZE;
+    assertUncompressed(send("GET " + query + " HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n"), CSV_MIN_SIZE);
+    assertUncompressed(send("GET " + query + " HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\nAccept-Encoding: identity\r\n\r\n"), CSV_MIN_SIZE);
+    assertCompressed(send("GET " + query + " HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\nAccept-Encoding: deflate, gzip;q=0.5\r\n\r\n"), CSV_MIN_SIZE);
+  }
+
+  /**
+   * @param type the content type of the response
+   * @param size the size of the response, in bytes
+   * @param params further request parameters
+   * @return the response to a request accepting gzip
+   * @throws Exception when the request fails
+   */
+  private HttpTester.Response request(String type, int size, String params) throws Exception
+  {
+    return send("GET /?type=" + type.replace(";", "%3B") + "&size=" + size + params + " HTTP/1.1\r\n"
+        + "Host: localhost\r\nConnection: close\r\nAccept-Encoding: gzip\r\n\r\n");
+  }
+
+  /**
+   * @param request the raw request
+   * @return the response
+   * @throws Exception when the request fails
+   */
+  private HttpTester.Response send(String request) throws Exception
+  {
+    ByteBuffer response = this.connector.getResponse(ByteBuffer.wrap(request.getBytes(StandardCharsets.ISO_8859_1)));
+    HttpTester.Response r = HttpTester.parseResponse(response);
+    Assert.assertNotNull(r, "No response");
+    Assert.assertEquals(r.getStatus(), HttpServletResponse.SC_OK, "Request failed");
+    return r;
+  }
+
+  /**
+   * @param r the response
+   * @param size the size of the content
+   * @throws IOException when the content can't be decompressed
+   */
+  private static void assertCompressed(HttpTester.Response r, int size) throws IOException
+  {
+    Assert.assertEquals(r.get(HttpHeader.CONTENT_ENCODING), "gzip", "Response not compressed");
+    try(GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(r.getContentBytes())))
+    {
+      Assert.assertEquals(IOUtils.toByteArray(in), content(size), "Wrong decompressed content");
+    }
+  }
+
+  /**
+   * @param r the response
+   * @param size the size of the content
+   */
+  private static void assertUncompressed(HttpTester.Response r, int size)
+  {
+    Assert.assertNull(r.get(HttpHeader.CONTENT_ENCODING), "Response compressed");
+    Assert.assertEquals(r.getContentBytes(), content(size), "Wrong content");
+  }
+
+  /**
+   * @param size the size of the content
+   * @return {@code size} bytes of content
+   */
+  private static byte[] content(int size)
+  {
+    byte[] content = new byte[size];
+    Arrays.fill(content, (byte) 'a');
+    return content;
+  }
+
+  /**
+   * @param name the property name
+   * @param value the value to set for the duration of the test
+   */
+  private void setProperty(String name, String value)
+  {
+    Properties props = YADAServer.getProperties();
+    this.prevProps.put(name, props.getProperty(name));
+    props.setProperty(name, value);
+  }
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada.test;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import com.novartis.opensource.yada.YADAIndexCache;
+import com.novartis.opensource.yada.YADAQuery;
+
+/**
+ * Compares the hit rate of the {@link YADAIndexCache} with that of an LRU cache of the same size, for a
+ * skewed workload of frequently requested queries interleaved with one-off names, and checks the size limit.
+ * @author David Varon
+ * @since 10.2.0
+ */
+public class YADAIndexCachePerfTest {
+
+  /**
+   * Local logger handle
+   */
+  private static Logger l = LoggerFactory.getLogger(YADAIndexCachePerfTest.class);
+
+  /**
+   * Constant equal to {@value}
+   */
+  private static final int SIZE = 500;
+
+  /**
+   * Constant equal to {@value}
+   */
+  private static final int QUERIES = 5000;
+
+  /**
+   * Constant equal to {@value}
+   */
+  private static final int REQUESTS = 500000;
+
+  /**
+   * Replays the workload against each cache and compares hit rates
+   */
+  @Test (groups = {"perf"})
+  public void hitRate()
+  {
+    YADAIndexCache cache = new YADAIndexCache(SIZE, 0, 0);
+    Map<String, YADAQuery> lru = Collections.synchronizedMap(new LinkedHashMap<String, YADAQuery>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, YADAQuery> eldest)
+      {
+        return size() > SIZE;
+      }
+    });
+
+    double cacheRate = replay(cache);
+    double lruRate   = replay(lru);
+    JSONObject stats = cache.getStats();
+    l.info(String.format("%d requests, %d queries, cache size %d: hit rate %.3f, LRU %.3f, stats %s",
+        REQUESTS, QUERIES, SIZE, cacheRate, lruRate, stats.toString()));
+    assert cache.size() <= SIZE : "Cache exceeded its size limit";
+    assert stats.getLong("evictions") > 0 : "No evictions recorded";
+    assert cacheRate > lruRate : "Cache hit rate was lower than LRU";
+  }
+
+  /**
+   * Requests queries with a Zipf-like distribution, interleaved with one-off names, adding each missing query
+   * to {@code cache} as {@link com.novartis.opensource.yada.Finder} does
+   * @param cache the cache
+   * @return the hit rate
+   */
+  private static double replay(Map<String, YADAQuery> cache)
+  {
+    Random random = new Random(42);
+    double[] cdf = new double[QUERIES];
+    double sum = 0;
+    for (int i = 0; i < QUERIES; i++)
+    {
+      sum += 1.0 / (i + 1);
+      cdf[i] = sum;
+    }
+    YADAQuery yq = query();
+    int hits = 0;
+    for (int r = 0; r < REQUESTS; r++)
+    {
+      String q;
+      if (r % 3 == 0)
+      {
+        q = "YADA one-off " + r;
+      }
+      else
+      {
+        double x = random.nextDouble() * sum;
+        int lo = 0, hi = QUERIES - 1;
+        while (lo < hi)
+        {
+          int mid = (lo + hi) >>> 1;
+          if (cdf[mid] < x)
+            lo = mid + 1;
+          else
+            hi = mid;
+        }
+        q = "YADA query " + lo;
+      }
+      if (cache.get(q) != null)
+        hits++;
+      else
+        cache.put(q, yq);
+    }
+    return (double) hits / REQUESTS;
+  }
+
+  /**
+   * @return a query to cache
+   */
+  private static YADAQuery query()
+  {
+    YADAQuery yq = new YADAQuery();
+    yq.setYADACode("select 1 from dual");
+    return yq;
+  }
+}
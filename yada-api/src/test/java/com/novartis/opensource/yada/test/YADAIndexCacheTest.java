@@ -0,0 +1,142 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada.test;
+
+import org.json.JSONObject;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.novartis.opensource.yada.YADAIndexCache;
+import com.novartis.opensource.yada.YADAQuery;
+
+/**
+ * Tests that {@link YADAIndexCache} stays within its size and weight limits, keeps frequently requested
+ * queries in favor of one-off names, expires entries, and counts each of these, except peeks.
+ * @author David Varon
+ * @since 10.2.0
+ */
+public class YADAIndexCacheTest {
+
+  /**
+   * Constant equal to {@value}
+   */
+  private static final int SIZE = 20;
+
+  /**
+   * Checks that queries requested frequently survive the one-off names interleaved with them, and that a
+   * one-off name requested repeatedly is admitted
+   */
+  @Test (groups = {"core"})
+  public void admitsFrequentQueries()
+  {
+    YADAIndexCache cache = new YADAIndexCache(SIZE, 0, 0);
+    int            hot   = SIZE / 2;
+    for(int q = 0; q < 1000; q++)
+    {
+      request(cache, "YADA one-off " + q);
+      request(cache, "YADA query " + (2 * q % hot));
+      request(cache, "YADA query " + ((2 * q + 1) % hot));
+      Assert.assertTrue(cache.size() <= SIZE, "Cache exceeded its size limit: " + cache.size());
+    }
+    for(int q = 0; q < hot; q++)
+    {
+      Assert.assertTrue(cache.containsKey("YADA query " + q), "Frequent query evicted by one-off names");
+    }
+
+    for(int r = 0; r < 10; r++)
+    {
+      request(cache, "YADA new query");
+    }
+    Assert.assertTrue(cache.containsKey("YADA new query"), "Frequent new query not admitted");
+    JSONObject stats = cache.getStats();
+    Assert.assertTrue(stats.getLong("evictions") >= 900, "Evictions not counted: " + stats);
+    Assert.assertTrue(stats.getLong("hits") >= 2000 - hot, "Hits not counted: " + stats);
+    cache.resetStats();
+    Assert.assertEquals(cache.getStats().getLong("hits"), 0L);
+  }
+
+  /**
+   * Checks that the total length of cached code stays within the weight limit
+   */
+  @Test (groups = {"core"})
+  public void limitsWeight()
+  {
+    YADAIndexCache cache = new YADAIndexCache(SIZE, 100, 0);
+    for(int q = 0; q < SIZE; q++)
+    {
+      cache.put("YADA query " + q, query("select " + q + " from dual"));
+    }
+    long weight = cache.getStats().getLong("weight");
+    Assert.assertTrue(weight <= 100, "Cache exceeded its weight limit: " + weight);
+    Assert.assertTrue(cache.size() < SIZE, "No entries evicted for weight");
+    cache.remove("YADA query " + (SIZE - 1));
+    cache.clear();
+    Assert.assertEquals(cache.size(), 0);
+    Assert.assertEquals(cache.getStats().getLong("weight"), 0L);
+  }
+
+  /**
+   * Checks that entries expire after the ttl
+   * @throws InterruptedException if interrupted while waiting
+   */
+  @Test (groups = {"core"})
+  public void expiration() throws InterruptedException
+  {
+    YADAIndexCache cache = new YADAIndexCache(SIZE, 0, 50);
+    cache.put("q", query("select 1 from dual"));
+    Assert.assertNotNull(cache.get("q"), "Entry missing before expiration");
+    Thread.sleep(100);
+    Assert.assertNull(cache.get("q"), "Entry present after expiration");
+    Assert.assertEquals(cache.getStats().getLong("expirations"), 1L);
+  }
+
+  /**
+   * Checks that a peek returns the cached query without counting a hit or a miss
+   */
+  @Test (groups = {"core"})
+  public void peekIsNotRecorded()
+  {
+    YADAIndexCache cache = new YADAIndexCache(SIZE, 0, 0);
+    YADAQuery      yq    = query("select 1 from dual");
+    cache.put("q", yq);
+    Assert.assertSame(cache.peek("q"), yq);
+    Assert.assertNull(cache.peek("missing"));
+    JSONObject stats = cache.getStats();
+    Assert.assertEquals(stats.getLong("hits"), 0L);
+    Assert.assertEquals(stats.getLong("misses"), 0L);
+  }
+
+  /**
+   * Gets {@code q}, and adds it when missing, as {@link com.novartis.opensource.yada.Finder} does
+   * @param cache the cache
+   * @param q the query name
+   */
+  private static void request(YADAIndexCache cache, String q)
+  {
+    if(cache.get(q) == null)
+      cache.put(q, query("select 1 from dual"));
+  }
+
+  /**
+   * @param code the query code
+   * @return a query to cache
+   */
+  private static YADAQuery query(String code)
+  {
+    YADAQuery yq = new YADAQuery();
+    yq.setYADACode(code);
+    return yq;
+  }
+}
@@ -0,0 +1,363 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada.test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.novartis.opensource.yada.YADALibCache;
+import com.novartis.opensource.yada.YADAQuery;
+import com.novartis.opensource.yada.server.YADAServer;
+
+/**
+ * Tests that a {@link YADALibCache} stops serving the queries whose files, or whose app's {@code conf.json},
+ * are changed, deleted, or added under a watched library, drops queries read before an invalidation, clears
+ * itself when watch events are lost, and is not created when {@link YADALibCache#YADA_LIB_CACHE} is {@code false}.
+ * @author David Varon
+ * @since 10.2.0
+ */
+public class YADALibCacheTest {
+
+  /**
+   * The number of milliseconds to wait for a watch event
+   */
+  private static final long TIMEOUT = 30000;
+
+  /**
+   * The library directory
+   */
+  private Path lib;
+
+  /**
+   * The cache watching {@link #lib}
+   */
+  private WatchingCache cache;
+
+  /**
+   * Loads the test {@code YADA.properties}, unless set already
+   */
+  @BeforeClass (groups = {"core"})
+  public void init()
+  {
+    if(System.getProperty("YADA.properties.path") == null)
+    {
+      System.setProperty("YADA.properties.path", getClass().getResource("/conf/YADA.properties").getPath());
+    }
+  }
+
+  /**
+   * Creates a library with two apps, and a cache watching it
+   * @throws IOException when the library can't be created or watched
+   */
+  @BeforeMethod (groups = {"core"})
+  public void createLib() throws IOException
+  {
+    this.lib = Files.createTempDirectory("yada-lib");
+    write("APP1/conf.json", "{}");
+    write("APP1/q1.json", "{\"query\":\"select 1\"}");
+    write("APP1/q2.json", "{\"query\":\"select 2\"}");
+    write("APP1/sentinel.json", "{\"query\":\"select 0\"}");
+    write("APP2/conf.json", "{}");
+    write("APP2/q1.json", "{\"query\":\"select 1\"}");
+    this.cache = new WatchingCache(this.lib);
+  }
+
+  /**
+   * Stops watching, and removes the library
+   * @throws IOException when the library can't be removed
+   */
+  @AfterMethod (groups = {"core"})
+  public void removeLib() throws IOException
+  {
+    this.cache.close();
+    Files.walkFileTree(this.lib, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException
+      {
+        Files.delete(file);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException
+      {
+        Files.delete(dir);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  /**
+   * Checks that a changed or deleted query file is no longer served, that a query added after its file was
+   * created is served, and that other queries are still served as the same instances
+   * @throws Exception when the library can't be changed
+   */
+  @Test (groups = {"core"})
+  public void invalidatesQueryFiles() throws Exception
+  {
+    YADAQuery q1 = cache("APP1/q1.json");
+    YADAQuery q2 = cache("APP1/q2.json");
+    YADAQuery other = cache("APP2/q1.json");
+
+    write("APP1/q1.json", "{\"query\":\"select 10\"}");
+    awaitInvalidation("APP1/q1.json", q1);
+    Files.delete(this.lib.resolve("APP1/q2.json"));
+    awaitInvalidation("APP1/q2.json", q2);
+
+    write("APP1/q3.json", "{\"query\":\"select 3\"}");
+    touchSentinel();
+    Assert.assertNull(this.cache.get(this.lib.resolve("APP1/q3.json")), "Query served before it was cached");
+    YADAQuery q3 = cache("APP1/q3.json");
+    Assert.assertSame(this.cache.get(this.lib.resolve("APP1/q3.json")), q3, "Added query not served");
+    Assert.assertSame(this.cache.get(this.lib.resolve("APP2/q1.json")), other, "Query of another app invalidated");
+    Assert.assertEquals(this.cache.size(), 2, "Wrong number of cached queries");
+  }
+
+  /**
+   * Checks that changing, deleting, or adding an app's {@code conf.json} drops all the queries of the app, and
+   * only those
+   * @throws Exception when the library can't be changed
+   */
+  @Test (groups = {"core"})
+  public void invalidatesAppConf() throws Exception
+  {
+    YADAQuery other = cache("APP2/q1.json");
+
+    YADAQuery q1 = cache("APP1/q1.json");
+    YADAQuery q2 = cache("APP1/q2.json");
+    write("APP1/conf.json", "{\"params\":\"pz=10\"}");
+    awaitInvalidation("APP1/q1.json", q1);
+    awaitInvalidation("APP1/q2.json", q2);
+
+    q1 = cache("APP1/q1.json");
+    Files.delete(this.lib.resolve("APP1/conf.json"));
+    awaitInvalidation("APP1/q1.json", q1);
+
+    q1 = cache("APP1/q1.json");
+    write("APP1/conf.json", "{}");
+    awaitInvalidation("APP1/q1.json", q1);
+
+    Assert.assertSame(this.cache.get(this.lib.resolve("APP2/q1.json")), other, "Query of another app invalidated");
+  }
+
+  /**
+   * Checks that the queries of a directory created after the cache are invalidated when their files change
+   * @throws Exception when the library can't be changed
+   */
+  @Test (groups = {"core"})
+  public void watchesNewDirectories() throws Exception
+  {
+    write("APP3/conf.json", "{}");
+    write("APP3/q1.json", "{\"query\":\"select 1\"}");
+    touchSentinel();
+    YADAQuery q1 = cache("APP3/q1.json");
+    write("APP3/q1.json", "{\"query\":\"select 10\"}");
+    awaitInvalidation("APP3/q1.json", q1);
+  }
+
+  /**
+   * Checks that a query read before an invalidation is not cached, as its file may have changed after it was read,
+   * and that one read after the invalidation is
+   */
+  @Test (groups = {"core"})
+  public void dropsQueriesReadBeforeInvalidation()
+  {
+    Path path  = this.lib.resolve("APP1/q1.json");
+    long stamp = this.cache.getStamp();
+    this.cache.invalidate(this.lib.resolve("APP2/q1.json"));
+    this.cache.put(path, new YADAQuery(), stamp);
+    Assert.assertNull(this.cache.get(path), "Query read before an invalidation cached");
+    YADAQuery yq = new YADAQuery();
+    this.cache.put(path, yq, this.cache.getStamp());
+    Assert.assertSame(this.cache.get(path), yq, "Query read after an invalidation not cached");
+  }
+
+  /**
+   * Checks that all queries are dropped when watch events are lost, or occur in an unknown directory, and
+   * that queries read before are not cached
+   */
+  @Test (groups = {"core"})
+  public void clearsOnOverflow()
+  {
+    cache("APP1/q1.json");
+    cache("APP2/q1.json");
+    long stamp = this.cache.getStamp();
+    this.cache.process(this.lib.resolve("APP1"), new Event<>(StandardWatchEventKinds.OVERFLOW, null));
+    Assert.assertEquals(this.cache.size(), 0, "Queries served after watch events were lost");
+    this.cache.put(this.lib.resolve("APP1/q1.json"), new YADAQuery(), stamp);
+    Assert.assertEquals(this.cache.size(), 0, "Query read before watch events were lost cached");
+
+    cache("APP1/q1.json");
+    this.cache.process(null, new Event<>(StandardWatchEventKinds.ENTRY_MODIFY, this.lib.getFileSystem().getPath("q1.json")));
+    Assert.assertEquals(this.cache.size(), 0, "Queries served after an event in an unknown directory");
+  }
+
+  /**
+   * Checks that no cache is created when {@link YADALibCache#YADA_LIB_CACHE} is {@code false}, so queries are
+   * read from the library on each request
+   */
+  @Test (groups = {"core"})
+  public void disabled()
+  {
+    String enabled = YADAServer.getProperties().getProperty(YADALibCache.YADA_LIB_CACHE);
+    try
+    {
+      YADAServer.getProperties().setProperty(YADALibCache.YADA_LIB_CACHE, "false");
+      YADALibCache.shutdown();
+      Assert.assertFalse(YADALibCache.isEnabled(), "Cache enabled");
+      Assert.assertNull(YADALibCache.getInstance(), "Cache created when disabled");
+    }
+    finally
+    {
+      if(enabled == null)
+        YADAServer.getProperties().remove(YADALibCache.YADA_LIB_CACHE);
+      else
+        YADAServer.getProperties().setProperty(YADALibCache.YADA_LIB_CACHE, enabled);
+      YADALibCache.shutdown();
+    }
+  }
+
+  /**
+   * @param file the path of the file, relative to the library
+   * @param content the content of the file
+   * @throws IOException when the file can't be written
+   */
+  private void write(String file, String content) throws IOException
+  {
+    Path path = this.lib.resolve(file);
+    Files.createDirectories(path.getParent());
+    Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Caches a query for {@code file}, as if it was read from the library
+   * @param file the path of the query file, relative to the library
+   * @return the cached query
+   */
+  private YADAQuery cache(String file)
+  {
+    YADAQuery yq = new YADAQuery();
+    this.cache.put(this.lib.resolve(file), yq, this.cache.getStamp());
+    Assert.assertSame(this.cache.get(this.lib.resolve(file)), yq, "Query not cached");
+    return yq;
+  }
+
+  /**
+   * Waits until the query cached for {@code file} is no longer {@code yq}
+   * @param file the path of the query file, relative to the library
+   * @param yq the query cached before the file changed
+   * @throws InterruptedException when interrupted while waiting
+   */
+  private void awaitInvalidation(String file, YADAQuery yq) throws InterruptedException
+  {
+    long deadline = System.currentTimeMillis() + TIMEOUT;
+    while(this.cache.get(this.lib.resolve(file)) == yq)
+    {
+      Assert.assertTrue(System.currentTimeMillis() < deadline, "Query of " + file + " not invalidated");
+      Thread.sleep(20);
+    }
+  }
+
+  /**
+   * Changes the sentinel query file of {@code APP1}, and waits for its invalidation, so the events of the preceding
+   * changes have been processed
+   * @throws Exception when the file can't be changed
+   */
+  private void touchSentinel() throws Exception
+  {
+    YADAQuery sentinel = cache("APP1/sentinel.json");
+    write("APP1/sentinel.json", "{\"query\":\"select " + System.nanoTime() + "\"}");
+    awaitInvalidation("APP1/sentinel.json", sentinel);
+  }
+
+  /**
+   * Exposes {@link YADALibCache#process(Path, WatchEvent)} to the tests
+   */
+  private static class WatchingCache extends YADALibCache {
+
+    /**
+     * @param lib the library directory
+     * @throws IOException when the directory can't be watched
+     */
+    WatchingCache(Path lib) throws IOException
+    {
+      super(lib);
+    }
+
+    @Override
+    protected void process(Path dir, WatchEvent<?> event)
+    {
+      super.process(dir, event);
+    }
+  }
+
+  /**
+   * A watch event, as reported by the watch service
+   * @param <T> the type of the context
+   */
+  private static class Event<T> implements WatchEvent<T> {
+
+    /**
+     * The kind of event
+     */
+    private final Kind<T> kind;
+
+    /**
+     * The path of the file, relative to the watched directory
+     */
+    private final T context;
+
+    /**
+     * @param kind the kind of event
+     * @param context the path of the file, relative to the watched directory
+     */
+    Event(Kind<T> kind, T context)
+    {
+      this.kind    = kind;
+      this.context = context;
+    }
+
+    @Override
+    public Kind<T> kind()
+    {
+      return this.kind;
+    }
+
+    @Override
+    public int count()
+    {
+      return 1;
+    }
+
+    @Override
+    public T context()
+    {
+      return this.context;
+    }
+  }
+}
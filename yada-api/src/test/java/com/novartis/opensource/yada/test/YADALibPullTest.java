@@ -0,0 +1,235 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada.test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.novartis.opensource.yada.Finder;
+import com.novartis.opensource.yada.YADALibCache;
+import com.novartis.opensource.yada.YADAQuery;
+
+/**
+ * Tests that pulling a library recompiles only the cached queries whose files, or whose app's {@code conf.json},
+ * changed between the old and new commits, drops those whose files were deleted, and keeps the other queries.
+ * @author David Varon
+ * @since 10.2.0
+ */
+public class YADALibPullTest {
+
+  /**
+   * The author and committer of the test commits
+   */
+  private static final PersonIdent AUTHOR = new PersonIdent("YADA Test", "yada@example.com");
+
+  /**
+   * The repository from which the library is cloned
+   */
+  private Path remote;
+
+  /**
+   * The library directory
+   */
+  private Path lib;
+
+  /**
+   * Loads the test {@code YADA.properties}, unless set already
+   */
+  @BeforeClass (groups = {"core"})
+  public void init()
+  {
+    if(System.getProperty("YADA.properties.path") == null)
+    {
+      System.setProperty("YADA.properties.path", getClass().getResource("/conf/YADA.properties").getPath());
+    }
+  }
+
+  /**
+   * Commits two apps to {@link #remote}, and clones it to {@link #lib}
+   * @throws Exception when the repositories can't be created
+   */
+  @BeforeMethod (groups = {"core"})
+  public void createLib() throws Exception
+  {
+    this.remote = Files.createTempDirectory("yada-lib-remote");
+    this.lib    = Files.createTempDirectory("yada-lib");
+    try (Git git = Git.init().setDirectory(this.remote.toFile()).call())
+    {
+      write(this.remote, "APP1/conf.json", "{}");
+      write(this.remote, "APP1/q1.json", query("select 1"));
+      write(this.remote, "APP1/q2.json", query("select 2"));
+      write(this.remote, "APP1/q3.json", query("select 3"));
+      write(this.remote, "APP2/conf.json", "{}");
+      write(this.remote, "APP2/q1.json", query("select 1"));
+      write(this.remote, "APP2/q2.json", query("select 2"));
+      commit(git, "Add apps");
+    }
+    Files.delete(this.lib);
+    Git.cloneRepository().setURI(this.remote.toUri().toString()).setDirectory(this.lib.toFile()).call().close();
+  }
+
+  /**
+   * Removes the repositories
+   * @throws IOException when they can't be removed
+   */
+  @AfterMethod (groups = {"core"})
+  public void removeLib() throws IOException
+  {
+    delete(this.lib);
+    delete(this.remote);
+  }
+
+  /**
+   * Checks that after a pull of two commits, which change a query, delete a query, and change an app's
+   * {@code conf.json}, only the changed query and the queries of the changed app are recompiled, the deleted
+   * query is dropped, the other queries are the same instances, and the working tree is fast-forwarded
+   * @throws Exception when the library can't be pulled
+   */
+  @Test (groups = {"core"})
+  public void reloadsChangedQueries() throws Exception
+  {
+    YADALibCache cache = new YADALibCache(this.lib);
+    cache.close();
+    for(String file : Arrays.asList("APP1/q1.json", "APP1/q2.json", "APP1/q3.json", "APP2/q1.json", "APP2/q2.json"))
+    {
+      Path   path = this.lib.resolve(file);
+      String app  = file.substring(0, file.indexOf('/'));
+      String name = file.substring(file.indexOf('/') + 1, file.length() - ".json".length());
+      YADAQuery yq = new YADAQuery(app, app + " " + name, new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+      cache.put(path, yq, cache.getStamp());
+    }
+    Map<Path, YADAQuery> before = cache.getQueries();
+
+    try (Git git = Git.open(this.remote.toFile()))
+    {
+      write(this.remote, "APP1/q1.json", query("select 10"));
+      git.rm().addFilepattern("APP1/q2.json").call();
+      commit(git, "Change and delete queries");
+      write(this.remote, "APP2/conf.json", "{\"params\":[]}");
+      commit(git, "Change conf");
+    }
+
+    Set<Path> changed = Finder.pullYADALib(this.lib, cache);
+    Assert.assertEquals(changed, paths("APP1/q1.json", "APP1/q2.json", "APP2/conf.json"), "Wrong changed files");
+    Map<Path, YADAQuery> after = cache.getQueries();
+    Assert.assertEquals(after.keySet(), paths("APP1/q1.json", "APP1/q3.json", "APP2/q1.json", "APP2/q2.json"), "Deleted query not dropped");
+
+    Path q1 = this.lib.resolve("APP1/q1.json");
+    Assert.assertNotSame(after.get(q1), before.get(q1), "Changed query not recompiled");
+    Assert.assertEquals(after.get(q1).getYADACode(), "select 10", "Changed query not recompiled from the new commit");
+    Assert.assertEquals(after.get(q1).getQname(), "APP1 q1", "Wrong query recompiled");
+    for(String file : Arrays.asList("APP2/q1.json", "APP2/q2.json"))
+    {
+      Path path = this.lib.resolve(file);
+      Assert.assertNotSame(after.get(path), before.get(path), "Query of a changed app not recompiled: " + file);
+      Assert.assertEquals(after.get(path).getYADACode(), before.get(path).getYADACode(), "Query of a changed app changed: " + file);
+    }
+    Path q3 = this.lib.resolve("APP1/q3.json");
+    Assert.assertSame(after.get(q3), before.get(q3), "Unchanged query recompiled");
+
+    Assert.assertEquals(new String(Files.readAllBytes(q1), StandardCharsets.UTF_8), query("select 10"), "Working tree not fast-forwarded");
+    Assert.assertFalse(Files.exists(this.lib.resolve("APP1/q2.json")), "Deleted query still in the working tree");
+    Assert.assertTrue(Finder.pullYADALib(this.lib, cache).isEmpty(), "Files changed by a pull without new commits");
+    Assert.assertSame(cache.getQueries().get(q1), after.get(q1), "Query recompiled by a pull without new commits");
+  }
+
+  /**
+   * @param sql the code of the query
+   * @return the content of a query file
+   */
+  private static String query(String sql)
+  {
+    return "{\"query\":\"" + sql + "\",\"params\":[]}";
+  }
+
+  /**
+   * @param files the paths of files, relative to the library
+   * @return the absolute paths of the files
+   */
+  private Set<Path> paths(String... files)
+  {
+    Set<Path> paths = new HashSet<>();
+    for(String file : files)
+      paths.add(this.lib.resolve(file).toAbsolutePath().normalize());
+    return paths;
+  }
+
+  /**
+   * @param dir the working tree
+   * @param file the path of the file, relative to {@code dir}
+   * @param content the content of the file
+   * @throws IOException when the file can't be written
+   */
+  private static void write(Path dir, String file, String content) throws IOException
+  {
+    Path path = dir.resolve(file);
+    Files.createDirectories(path.getParent());
+    Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Commits all the files of the working tree of {@code git}
+   * @param git the repository
+   * @param message the commit message
+   * @throws Exception when the files can't be committed
+   */
+  private static void commit(Git git, String message) throws Exception
+  {
+    git.add().addFilepattern(".").call();
+    git.commit().setMessage(message).setAuthor(AUTHOR).setCommitter(AUTHOR).call();
+  }
+
+  /**
+   * @param dir the directory to remove, with its content
+   * @throws IOException when it can't be removed
+   */
+  private static void delete(Path dir) throws IOException
+  {
+    if(!Files.exists(dir))
+      return;
+    Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException
+      {
+        Files.delete(file);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(Path d, IOException e) throws IOException
+      {
+        Files.delete(d);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+}
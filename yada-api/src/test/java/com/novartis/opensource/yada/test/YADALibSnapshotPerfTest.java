@@ -0,0 +1,171 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada.test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import com.novartis.opensource.yada.YADALibSnapshot;
+import com.novartis.opensource.yada.YADAParam;
+import com.novartis.opensource.yada.YADAProperty;
+import com.novartis.opensource.yada.YADAQuery;
+
+/**
+ * Compares the time to load a library of query files, as on a cold start, with the time to load the same
+ * queries from a {@link YADALibSnapshot}, and checks that the snapshot preserves the queries.
+ * @author David Varon
+ * @since 10.2.0
+ */
+public class YADALibSnapshotPerfTest {
+
+  /**
+   * Local logger handle
+   */
+  private static Logger l = LoggerFactory.getLogger(YADALibSnapshotPerfTest.class);
+
+  /**
+   * Constant equal to {@value}
+   */
+  private static final int QUERIES = 5000;
+
+  /**
+   * Constant equal to {@value}
+   */
+  private static final String APP = "APP";
+
+  /**
+   * Constant equal to {@value}
+   */
+  private static final String COMMIT = "0123456789abcdef0123456789abcdef01234567";
+
+  /**
+   * Loads the library both ways, compares the results, and logs the load times
+   * @throws Exception when the library can't be written or read
+   */
+  @Test (groups = {"perf"})
+  public void snapshot() throws Exception
+  {
+    Path lib      = Files.createTempDirectory("yada-lib");
+    Path snapshot = Files.createTempFile("yada-lib", ".snapshot");
+    try
+    {
+      buildLib(lib);
+      // warm up
+      loadLib(lib);
+      YADALibSnapshot.write(snapshot, COMMIT, lib, loadLib(lib));
+      YADALibSnapshot.read(snapshot, COMMIT, lib);
+
+      long start = System.nanoTime();
+      Map<Path, YADAQuery> cold = loadLib(lib);
+      long coldNanos = System.nanoTime() - start;
+      start = System.nanoTime();
+      Map<Path, YADAQuery> warm = YADALibSnapshot.read(snapshot, COMMIT, lib);
+      long warmNanos = System.nanoTime() - start;
+
+      l.info(String.format("%d queries: loaded from files in %d ms, from a %d KB snapshot in %d ms",
+          QUERIES, coldNanos / 1000000, Files.size(snapshot) / 1024, warmNanos / 1000000));
+      assert warm.size() == cold.size() : "Snapshot has the wrong number of queries";
+      for (Map.Entry<Path, YADAQuery> entry : cold.entrySet())
+      {
+        YADAQuery expected = entry.getValue();
+        YADAQuery actual   = warm.get(entry.getKey());
+        assert actual != null : "Snapshot is missing " + entry.getKey();
+        assert expected.getYADACode().equals(actual.getYADACode()) : "Code differs for " + entry.getKey();
+        assert expected.getQname().equals(actual.getQname()) : "Qname differs for " + entry.getKey();
+        assert expected.getYADAQueryParams().size() == actual.getYADAQueryParams().size() : "Params differ for " + entry.getKey();
+        assert expected.getProperty("p", expected.getQname()).equals(actual.getProperty("p", actual.getQname())) : "Props differ for " + entry.getKey();
+      }
+      assert YADALibSnapshot.read(snapshot, "another commit", lib) == null : "Snapshot loaded at the wrong commit";
+    }
+    finally
+    {
+      Files.deleteIfExists(snapshot);
+      try (Stream<Path> paths = Files.walk(lib))
+      {
+        paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+      }
+    }
+  }
+
+  /**
+   * Writes {@value #QUERIES} query files to {@code lib}
+   * @param lib the library directory
+   * @throws IOException when a file can't be written
+   */
+  private static void buildLib(Path lib) throws IOException
+  {
+    Path app = Files.createDirectories(lib.resolve(APP));
+    for (int i = 0; i < QUERIES; i++)
+    {
+      JSONObject q = new JSONObject();
+      q.put("query", "select a.col1, a.col2, b.col3 from table_" + i + " a join other_" + i
+          + " b on a.id = b.id where a.col1 = ?v and b.col3 in (?i) and a.col2 > ?d order by a.col1");
+      q.put("params", new JSONArray().put(new JSONObject().put("name", "pz").put("value", "-1").put("rule", 0)));
+      q.put("props", new JSONArray().put(new JSONObject().put("name", "p").put("value", "value " + i)));
+      Files.write(app.resolve("q" + i + ".json"), q.toString().getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  /**
+   * Reads and parses each query file in {@code lib}, as {@link YADAQuery#YADAQuery(String, String, String)} does
+   * @param lib the library directory
+   * @return the queries, mapped to their paths
+   * @throws IOException when a file can't be read
+   */
+  private static Map<Path, YADAQuery> loadLib(Path lib) throws IOException
+  {
+    Map<Path, YADAQuery> queries = new HashMap<>();
+    try (Stream<Path> paths = Files.list(lib.resolve(APP)))
+    {
+      for (Path path : (Iterable<Path>) paths::iterator)
+      {
+        String     name  = path.getFileName().toString();
+        String     qname = name.substring(0, name.length() - ".json".length());
+        JSONObject json  = new JSONObject(new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+        YADAQuery  yq    = new YADAQuery();
+        yq.setYADACode(json.getString("query"));
+        yq.setQname(qname);
+        yq.setApp(APP);
+        JSONArray params = json.getJSONArray("params");
+        for (int i = 0; i < params.length(); i++)
+        {
+          JSONObject jo = params.getJSONObject(i);
+          YADAParam  yp = new YADAParam(i, jo.getString("name"), String.valueOf(jo.get("value")), qname, jo.getInt("rule"), true);
+          yq.addParam(yp);
+        }
+        JSONArray props = json.getJSONArray("props");
+        for (int i = 0; i < props.length(); i++)
+        {
+          JSONObject prop = props.getJSONObject(i);
+          yq.addProperty(new YADAProperty(qname, prop.getString("name"), prop.getString("value")));
+        }
+        queries.put(path.toAbsolutePath().normalize(), yq);
+      }
+    }
+    return queries;
+  }
+}
@@ -0,0 +1,196 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada.test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.novartis.opensource.yada.YADALibSnapshot;
+import com.novartis.opensource.yada.YADAParam;
+import com.novartis.opensource.yada.YADAProperty;
+import com.novartis.opensource.yada.YADAQuery;
+import com.novartis.opensource.yada.YADARequest;
+import com.novartis.opensource.yada.security.YADASecuritySpec;
+
+/**
+ * Tests that a {@link YADALibSnapshot} preserves each part of the queries written to it, and is only read
+ * at the commit at which it was written.
+ * @author David Varon
+ * @since 10.2.0
+ */
+public class YADALibSnapshotTest {
+
+  /**
+   * Constant equal to {@value}
+   */
+  private static final String COMMIT = "0123456789abcdef0123456789abcdef01234567";
+
+  /**
+   * The library directory
+   */
+  private Path lib;
+
+  /**
+   * The snapshot file
+   */
+  private Path snapshot;
+
+  /**
+   * Creates the library directory and snapshot file
+   * @throws IOException when they can't be created
+   */
+  @BeforeMethod (groups = {"core"})
+  public void init() throws IOException
+  {
+    this.lib      = Files.createTempDirectory("yada-lib");
+    this.snapshot = Files.createTempFile("yada-lib", ".snapshot");
+  }
+
+  /**
+   * Removes the library directory and snapshot file
+   * @throws IOException when they can't be removed
+   */
+  @AfterMethod (groups = {"core"})
+  public void cleanup() throws IOException
+  {
+    Files.deleteIfExists(this.snapshot);
+    Files.deleteIfExists(this.lib);
+  }
+
+  /**
+   * Checks that the queries read from a snapshot equal those written to it, including {@code null} values,
+   * security specs, and properties
+   * @throws Exception when the snapshot can't be written or read
+   */
+  @Test (groups = {"core"})
+  public void roundTrip() throws Exception
+  {
+    Map<Path, YADAQuery> queries = new HashMap<>();
+    YADAQuery            yq      = new YADAQuery();
+    yq.setApp("APP");
+    yq.setQname("APP select");
+    yq.setYADACode("select col1 from table1 where col2 in (?v) and col3 = ?i");
+    yq.addParam(new YADAParam(0, YADARequest.PS_PAGESIZE, "-1", yq.getQname(), YADAParam.IMMUTABLE, true));
+    YADAParam secured = new YADAParam(1, YADARequest.PS_PLUGIN, "Gatekeeper", yq.getQname(), YADAParam.MUTABLE, false);
+    YADASecuritySpec spec = new YADASecuritySpec();
+    spec.put(YADASecuritySpec.KEY_POLICY, YADASecuritySpec.POLICY_EXECUTION);
+    spec.put(YADASecuritySpec.KEY_TYPE, YADASecuritySpec.TYPE_ALLOWLIST);
+    secured.setSecuritySpec(spec);
+    yq.addParam(secured);
+    yq.addProperty(new YADAProperty(yq.getQname(), "prop", "value é"));
+    queries.put(this.lib.resolve("APP/APP select.json"), yq);
+    YADAQuery empty = new YADAQuery();
+    empty.setApp("APP");
+    empty.setQname("APP/dir/empty");
+    queries.put(this.lib.resolve("APP/dir/empty.json"), empty);
+
+    YADALibSnapshot.write(this.snapshot, COMMIT, this.lib, queries);
+    Map<Path, YADAQuery> read = YADALibSnapshot.read(this.snapshot, COMMIT, this.lib);
+    Assert.assertEquals(read.keySet(), queries.keySet());
+    for(Map.Entry<Path, YADAQuery> entry : queries.entrySet())
+    {
+      assertSameQuery(read.get(entry.getKey()), entry.getValue());
+    }
+    Assert.assertEquals(YADALibSnapshot.read(this.snapshot, null, this.lib).size(), 2, "Snapshot not read regardless of commit");
+  }
+
+  /**
+   * Checks that a snapshot written at another commit, or in another format, is not read, and that a corrupt
+   * snapshot, or one with a path outside the library, is rejected
+   * @throws Exception when the snapshot can't be written
+   */
+  @Test (groups = {"core"})
+  public void rejectsOtherSnapshots() throws Exception
+  {
+    Map<Path, YADAQuery> queries = new HashMap<>();
+    YADAQuery            yq      = new YADAQuery();
+    yq.setQname("APP select");
+    queries.put(this.lib.resolve("APP/APP select.json"), yq);
+    YADALibSnapshot.write(this.snapshot, COMMIT, this.lib, queries);
+    Assert.assertNull(YADALibSnapshot.read(this.snapshot, "another commit", this.lib), "Snapshot read at another commit");
+
+    byte[] bytes = Files.readAllBytes(this.snapshot);
+    Files.write(this.snapshot, Arrays.copyOf(bytes, bytes.length - 4));
+    assertRejected("Truncated snapshot read");
+
+    queries.clear();
+    queries.put(this.lib.resolve("../outside.json"), yq);
+    YADALibSnapshot.write(this.snapshot, COMMIT, this.lib, queries);
+    assertRejected("Path outside the library read");
+
+    Files.write(this.snapshot, new byte[] { 0, 0, 0, 1, 0, 0, 0, 1 });
+    Assert.assertNull(YADALibSnapshot.read(this.snapshot, COMMIT, this.lib), "Snapshot in another format read");
+  }
+
+  /**
+   * Fails unless reading the snapshot throws an {@link IOException}
+   * @param message the failure message
+   * @throws Exception when the snapshot can't be read otherwise
+   */
+  private void assertRejected(String message) throws Exception
+  {
+    try
+    {
+      YADALibSnapshot.read(this.snapshot, COMMIT, this.lib);
+      Assert.fail(message);
+    }
+    catch(IOException e)
+    {
+      // expected
+    }
+  }
+
+  /**
+   * Compares the app, qname, code, params, and properties of the queries
+   * @param actual the query read
+   * @param expected the query written
+   */
+  private static void assertSameQuery(YADAQuery actual, YADAQuery expected)
+  {
+    Assert.assertEquals(actual.getApp(), expected.getApp());
+    Assert.assertEquals(actual.getQname(), expected.getQname());
+    Assert.assertEquals(actual.getYADACode(), expected.getYADACode());
+    Assert.assertEquals(actual.getYADAQueryParams().size(), expected.getYADAQueryParams().size());
+    for(int i = 0; i < expected.getYADAQueryParams().size(); i++)
+    {
+      YADAParam a = actual.getYADAQueryParams().get(i);
+      YADAParam e = expected.getYADAQueryParams().get(i);
+      Assert.assertEquals(a.getId(), e.getId());
+      Assert.assertEquals(a.getName(), e.getName());
+      Assert.assertEquals(a.getValue(), e.getValue());
+      Assert.assertEquals(a.getTarget(), e.getTarget());
+      Assert.assertEquals(a.getRule(), e.getRule());
+      Assert.assertEquals(a.isDefault(), e.isDefault());
+      Assert.assertEquals(a.getSecuritySpec(), e.getSecuritySpec());
+    }
+    Assert.assertEquals(actual.getProperties().size(), expected.getProperties().size());
+    for(YADAProperty e : expected.getProperties())
+    {
+      YADAProperty a = actual.getProperties().stream().filter(p -> p.getName().equals(e.getName())).findFirst().orElse(null);
+      Assert.assertNotNull(a, "Property " + e.getName() + " missing");
+      Assert.assertEquals(a.getTarget(), e.getTarget());
+      Assert.assertEquals(a.getValue(), e.getValue());
+    }
+  }
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada.test;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import com.novartis.opensource.yada.YADAQuery;
+import com.novartis.opensource.yada.YADARequest;
+
+/**
+ * Compares reading the paging, count, sort and filter parameters of a query through the typed accessors of
+ * {@link YADAQuery}, with reading them through {@link YADAQuery#getYADAQueryParamValue(String)} as the
+ * query preparation and execution formerly did.
+ * @author David Varon
+ * @since 10.2.0
+ */
+public class YADAParamStorePerfTest {
+
+  /**
+   * Local logger handle
+   */
+  private static Logger l = LoggerFactory.getLogger(YADAParamStorePerfTest.class);
+
+  /**
+   * Constant equal to {@value}
+   */
+  private static final int READS = 1000000;
+
+  /**
+   * Constant equal to {@value}
+   */
+  private static final String QNAME = "YADA test params";
+
+  /**
+   * Reads the well-known parameters {@value #READS} times both ways and logs the rates
+   */
+  @Test (groups = {"perf"})
+  public void typedParams()
+  {
+    YADAQuery yq = newQuery();
+    // warm up
+    readValues(yq);
+    readTyped(yq);
+
+    long start = System.nanoTime();
+    long valuesSum = readValues(yq);
+    long valuesNanos = System.nanoTime() - start;
+    start = System.nanoTime();
+    long typedSum = readTyped(yq);
+    long typedNanos = System.nanoTime() - start;
+    l.info(String.format("%d reads: param values %.0f reads/s, typed params %.0f reads/s",
+        READS, READS / (valuesNanos / 1e9), READS / (typedNanos / 1e9)));
+    assert valuesSum == typedSum : "Typed params differ from param values";
+  }
+
+  /**
+   * @param yq the query
+   * @return a checksum of the values read
+   */
+  @SuppressWarnings("deprecation")
+  private static long readValues(YADAQuery yq)
+  {
+    long sum = 0;
+    for (int i = 0; i < READS; i++)
+    {
+      sum += Boolean.parseBoolean(yq.getYADAQueryParamValue(YADARequest.PS_COUNT)[0]) ? 1 : 0;
+      sum += Boolean.parseBoolean(yq.getYADAQueryParamValue(YADARequest.PS_COUNTONLY)[0]) ? 1 : 0;
+      sum += Integer.parseInt(yq.getYADAQueryParamValue(YADARequest.PS_PAGESTART)[0]);
+      sum += Integer.parseInt(yq.getYADAQueryParamValue(YADARequest.PS_PAGESIZE)[0]);
+      sum += yq.getYADAQueryParamValue(YADARequest.PS_SORTORDER)[0].length();
+      if (yq.hasParamValue(YADARequest.PS_SORTKEY))
+        sum += yq.getYADAQueryParamValue(YADARequest.PS_SORTKEY)[0].length();
+      if (yq.hasParamValue(YADARequest.PS_FILTERS))
+        sum += yq.getYADAQueryParamValue(YADARequest.PS_FILTERS)[0].length();
+    }
+    return sum;
+  }
+
+  /**
+   * @param yq the query
+   * @return a checksum of the values read
+   */
+  private static long readTyped(YADAQuery yq)
+  {
+    long sum = 0;
+    for (int i = 0; i < READS; i++)
+    {
+      sum += yq.isCount() ? 1 : 0;
+      sum += yq.isCountOnly() ? 1 : 0;
+      sum += yq.getPageStart();
+      sum += yq.getPageSize();
+      sum += yq.getSortOrder().length();
+      if (yq.getSortKey() != null)
+        sum += yq.getSortKey().length();
+      if (yq.getFilters() != null)
+        sum += yq.getFilters().length();
+    }
+    return sum;
+  }
+
+  /**
+   * @return a query with overridable parameters, as added by {@link YADAQuery#addParam(String, String)}
+   */
+  @SuppressWarnings("deprecation")
+  private static YADAQuery newQuery()
+  {
+    YADAQuery yq = new YADAQuery();
+    yq.setQname(QNAME);
+    yq.addParam(YADARequest.PS_QNAME, QNAME);
+    yq.addParam(YADARequest.PS_COUNT, "true");
+    yq.addParam(YADARequest.PS_COUNTONLY, "false");
+    yq.addParam(YADARequest.PS_PAGESTART, "2");
+    yq.addParam(YADARequest.PS_PAGESIZE, "50");
+    yq.addParam(YADARequest.PS_SORTKEY, "col1");
+    yq.addParam(YADARequest.PS_SORTORDER, "desc");
+    return yq;
+  }
+}
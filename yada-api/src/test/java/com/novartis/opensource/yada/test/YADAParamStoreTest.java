@@ -0,0 +1,180 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.novartis.opensource.yada.YADAParam;
+import com.novartis.opensource.yada.YADAQuery;
+import com.novartis.opensource.yada.YADARequest;
+
+/**
+ * Tests that the parameter values of a {@link YADAQuery} are returned in the same order, with the same
+ * winners, as by the array indexed by id which {@link YADAQuery#getYADAQueryParamValue(String)} formerly
+ * used, and that the typed paging, count, sort and filter accessors are resolved from them.
+ * @author David Varon
+ * @since 10.2.0
+ */
+public class YADAParamStoreTest {
+
+  /**
+   * Constant equal to {@value}
+   */
+  private static final String QNAME = "YADA test params";
+
+  /**
+   * Constant equal to {@value}
+   */
+  private static final String OTHER = "other";
+
+  /**
+   * Checks that the values of parameters with several ids and targets are ordered by id, the last
+   * parameter with an id winning, and that {@code null} values are omitted
+   */
+  @Test (groups = {"core"})
+  public void orderedById()
+  {
+    YADAQuery yq = newQuery();
+    List<YADAParam> plugins = new ArrayList<>();
+    plugins.add(new YADAParam(3, YADARequest.PS_PLUGIN, "C", QNAME, YADAParam.MUTABLE));
+    plugins.add(new YADAParam(1, YADARequest.PS_PLUGIN, "A", QNAME, YADAParam.MUTABLE));
+    plugins.add(new YADAParam(3, YADARequest.PS_PLUGIN, "D", OTHER, YADAParam.MUTABLE));
+    plugins.add(new YADAParam(2, YADARequest.PS_PLUGIN, "B", QNAME, YADAParam.MUTABLE));
+    plugins.add(new YADAParam(0, YADARequest.PS_PLUGIN, "E", QNAME, YADAParam.MUTABLE));
+    for (YADAParam yp : plugins)
+    {
+      yq.addParam(yp);
+    }
+    plugins.get(4).setValue(null);
+    Assert.assertEquals(yq.getYADAQueryParamValue(YADARequest.PS_PLUGIN), new String[] { "A", "B", "D" }, "Wrong values");
+    Assert.assertEquals(yq.getYADAQueryParamValuesForTarget(YADARequest.PS_PLUGIN), new String[] { "A", "B", "C" }, "Wrong target values");
+    Assert.assertEquals(yq.getYADAQueryParamValuesForTarget(YADARequest.PS_PLUGIN, OTHER), new String[] { "D" }, "Wrong other target values");
+    Assert.assertNull(yq.getYADAQueryParamValuesForTarget(YADARequest.PS_PLUGIN, "none"), "Values for missing target");
+    Assert.assertNull(yq.getYADAQueryParamValue("missing"), "Values for missing param");
+    Assert.assertTrue(yq.hasParamValue(YADARequest.PS_PLUGIN), "Missing param value");
+    Assert.assertFalse(yq.hasParamValue("missing"), "Value for missing param");
+  }
+
+  /**
+   * Checks random parameters, with repeated ids, targets and {@code null} values, against the array indexed
+   * by id, including the first value, from which the typed accessors are resolved
+   */
+  @Test (groups = {"core"})
+  public void sameAsArrayById()
+  {
+    Random random = new Random(42);
+    for (int i = 0; i < 200; i++)
+    {
+      YADAQuery yq = new YADAQuery();
+      yq.setQname(QNAME);
+      int n = 1 + random.nextInt(12);
+      for (int j = 0; j < n; j++)
+      {
+        YADAParam yp = new YADAParam(random.nextInt(8), YADARequest.PS_PLUGIN, String.valueOf(j),
+                                     random.nextBoolean() ? QNAME : OTHER, YADAParam.MUTABLE);
+        yq.addParam(yp);
+        if (random.nextInt(5) == 0)
+          yp.setValue(null);
+        yq.addParam(new YADAParam(random.nextInt(8), YADARequest.PS_PAGESIZE, String.valueOf(j), QNAME, YADAParam.MUTABLE));
+      }
+      List<YADAParam> stored = yq.getParam(YADARequest.PS_PLUGIN);
+      Assert.assertEquals(yq.getYADAQueryParamValue(YADARequest.PS_PLUGIN), byId(stored, null), "Wrong values in iteration " + i);
+      Assert.assertEquals(yq.getYADAQueryParamValuesForTarget(YADARequest.PS_PLUGIN), byId(stored, QNAME), "Wrong target values in iteration " + i);
+      Assert.assertEquals(yq.getYADAQueryParamValuesForTarget(YADARequest.PS_PLUGIN, OTHER), byId(stored, OTHER), "Wrong other target values in iteration " + i);
+      String[] pageSizes = byId(yq.getParam(YADARequest.PS_PAGESIZE), null);
+      Assert.assertEquals(yq.getPageSize(), Integer.parseInt(pageSizes[0]), "Wrong page size in iteration " + i);
+    }
+  }
+
+  /**
+   * Checks the typed accessors, their defaults, and their resolution after a parameter is added, or
+   * modified in place and resolved again
+   */
+  @Test (groups = {"core"})
+  public void typedParams()
+  {
+    YADAQuery empty = new YADAQuery();
+    Assert.assertTrue(empty.isCount(), "Wrong default count param");
+    Assert.assertFalse(empty.isCountOnly(), "Wrong default countOnly param");
+    Assert.assertEquals(empty.getPageStart(), YADARequest.DEFAULT_START_PAGE, "Wrong default page start");
+    Assert.assertEquals(empty.getPageSize(), YADARequest.DEFAULT_PAGE_SIZE, "Wrong default page size");
+    Assert.assertNull(empty.getSortKey(), "Wrong default sort key");
+    Assert.assertEquals(empty.getSortOrder(), YADARequest.SORT_ASC, "Wrong default sort order");
+
+    YADAQuery yq = newQuery();
+    Assert.assertTrue(yq.isCount(), "Wrong count param");
+    Assert.assertFalse(yq.isCountOnly(), "Wrong countOnly param");
+    Assert.assertEquals(yq.getPageStart(), 2, "Wrong page start");
+    Assert.assertEquals(yq.getPageSize(), 50, "Wrong page size");
+    Assert.assertEquals(yq.getSortKey(), "col1", "Wrong sort key");
+    Assert.assertEquals(yq.getSortOrder(), "desc", "Wrong sort order");
+    Assert.assertNull(yq.getFilters(), "Wrong filters");
+
+    yq.addParam(YADARequest.PS_PAGESIZE, "100");
+    Assert.assertEquals(yq.getPageSize(), 100, "Typed params not resolved after change");
+    for (YADAParam yp : yq.getParam(YADARequest.PS_PAGESIZE))
+    {
+      yp.setValue("10");
+    }
+    yq.resolveParams();
+    Assert.assertEquals(yq.getPageSize(), 10, "Typed params not resolved on request");
+  }
+
+  /**
+   * @param params the parameters
+   * @param target the target, or {@code null} for any target
+   * @return the values of {@code params} stored in an array by id, without {@code null} values, as
+   *         {@link YADAQuery#getYADAQueryParamValue(String)} formerly returned them
+   */
+  private static String[] byId(List<YADAParam> params, String target)
+  {
+    String[] values = new String[1000];
+    boolean  hasVal = false;
+    for (YADAParam yp : params)
+    {
+      if (target == null || target.equals(yp.getTarget()))
+      {
+        values[yp.getId()] = yp.getValue();
+        hasVal = true;
+      }
+    }
+    return hasVal ? Arrays.stream(values).filter(Objects::nonNull).toArray(String[]::new) : null;
+  }
+
+  /**
+   * @return a query with overridable parameters, as added by {@link YADAQuery#addParam(String, String)}
+   */
+  @SuppressWarnings("deprecation")
+  private static YADAQuery newQuery()
+  {
+    YADAQuery yq = new YADAQuery();
+    yq.setQname(QNAME);
+    yq.addParam(YADARequest.PS_QNAME, QNAME);
+    yq.addParam(YADARequest.PS_COUNT, "true");
+    yq.addParam(YADARequest.PS_COUNTONLY, "false");
+    yq.addParam(YADARequest.PS_PAGESTART, "2");
+    yq.addParam(YADARequest.PS_PAGESIZE, "50");
+    yq.addParam(YADARequest.PS_SORTKEY, "col1");
+    yq.addParam(YADARequest.PS_SORTORDER, "desc");
+    return yq;
+  }
+}
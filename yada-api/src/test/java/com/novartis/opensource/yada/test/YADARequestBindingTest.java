@@ -0,0 +1,135 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada.test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.novartis.opensource.yada.YADARequest;
+import com.novartis.opensource.yada.YADARequestException;
+
+/**
+ * Tests that binding each request parameter with {@link YADARequest#invokeSetter(String, String[])} yields the
+ * same request as the reflective lookup of the setter, which {@code invokeSetter} formerly did.
+ * @author David Varon
+ * @since 10.2.0
+ */
+public class YADARequestBindingTest {
+
+  /**
+   * Values bound to each parameter
+   */
+  private static final String[] VALUES = { "true", "10", YADARequest.FORMAT_CSV, "A,B,C", "" };
+
+  /**
+   * Binds each of {@link #VALUES} to each parameter both ways, and compares the resulting requests
+   * @throws Exception when a getter can't be invoked
+   */
+  @Test (groups = {"core"})
+  public void sameAsReflection() throws Exception
+  {
+    for(String alias : new TreeMap<>(YADARequest.fieldAliasMap).keySet())
+    {
+      for(String value : VALUES)
+      {
+        YADARequest bound     = new YADARequest();
+        YADARequest reflected = new YADARequest();
+        boolean     boundFailed;
+        boolean     reflectedFailed;
+        try
+        {
+          bound.invokeSetter(alias, new String[] { value });
+          boundFailed = false;
+        }
+        catch(YADARequestException e)
+        {
+          boundFailed = true;
+        }
+        reflectedFailed = !reflect(reflected, alias, value);
+        String binding = String.format("Binding [%s=%s]", alias, value);
+        Assert.assertEquals(boundFailed, reflectedFailed, binding);
+        Assert.assertEquals(getState(bound), getState(reflected), binding);
+      }
+    }
+  }
+
+  /**
+   * Invokes each setter for {@code alias} accepting an array, as {@code invokeSetter} formerly did
+   * @param yadaReq the request
+   * @param alias the parameter name
+   * @param value the parameter value
+   * @return {@code false} if a setter threw an exception
+   * @throws IllegalAccessException when a setter can't be accessed
+   */
+  private static boolean reflect(YADARequest yadaReq, String alias, String value) throws IllegalAccessException
+  {
+    String field = YADARequest.fieldAliasMap.get(alias);
+    String mName = "set" + field.substring(0, 1).toUpperCase() + field.substring(1);
+    for(Method method : YADARequest.class.getMethods())
+    {
+      if(method.getName().equals(mName) && method.getParameterCount() == 1 && method.getParameterTypes()[0].isArray())
+      {
+        try
+        {
+          method.invoke(yadaReq, new Object[] { new String[] { value } });
+        }
+        catch(InvocationTargetException e)
+        {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @param yadaReq the request
+   * @return the value of each public getter of {@code yadaReq}, by name
+   * @throws IllegalAccessException when a getter can't be accessed
+   */
+  private static Map<String, String> getState(YADARequest yadaReq) throws IllegalAccessException
+  {
+    Map<String, String> state = new TreeMap<>();
+    for(Method method : YADARequest.class.getMethods())
+    {
+      String name = method.getName();
+      if(method.getParameterCount() == 0
+          && !Modifier.isStatic(method.getModifiers())
+          && (name.startsWith("get") || name.startsWith("is"))
+          && !name.equals("getClass")
+          && !name.equals("getTimings"))
+      {
+        Object value;
+        try
+        {
+          value = method.invoke(yadaReq);
+        }
+        catch(InvocationTargetException e)
+        {
+          value = e.getCause().getClass().getName();
+        }
+        state.put(name, value instanceof Object[] ? Arrays.deepToString((Object[])value) : String.valueOf(value));
+      }
+    }
+    return state;
+  }
+}
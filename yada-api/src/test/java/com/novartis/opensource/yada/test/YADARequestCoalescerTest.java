@@ -0,0 +1,262 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada.test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONObject;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.novartis.opensource.yada.Service;
+import com.novartis.opensource.yada.YADAException;
+import com.novartis.opensource.yada.server.YADARequestCoalescer;
+
+/**
+ * Tests that {@link YADARequestCoalescer} shares the result of a read-only request only with identical
+ * requests in flight, executes updates and requests with other keys independently, and releases the waiting
+ * requests when the shared execution fails, and reports its counts.
+ * @author David Varon
+ * @since 10.2.0
+ */
+public class YADARequestCoalescerTest {
+
+  /**
+   * Constant equal to {@value}
+   */
+  private static final long TIMEOUT = 10000L;
+
+  /**
+   * Checks that a request waiting for an identical read-only request gets its result without executing
+   * @throws Exception when a request fails
+   */
+  @Test (groups = {"core"})
+  public void coalescesReadOnly() throws Exception
+  {
+    YADARequestCoalescer coalescer = new YADARequestCoalescer();
+    StubService leader   = new StubService("leader", true);
+    StubService follower = new StubService("follower", true);
+    FutureTask<String> first  = start(coalescer, "key", leader);
+    FutureTask<String> second = follow(coalescer, "key", follower);
+    leader.release.countDown();
+    Assert.assertEquals(first.get(TIMEOUT, TimeUnit.MILLISECONDS), "leader");
+    Assert.assertEquals(second.get(TIMEOUT, TimeUnit.MILLISECONDS), "leader", "Result not shared");
+    Assert.assertEquals(follower.runs.get(), 0, "Identical request executed");
+    Assert.assertEquals(coalescer.getExecuted(), 1L);
+    Assert.assertEquals(coalescer.getCoalesced(), 1L);
+    Assert.assertEquals(coalescer.getInFlight(), 0);
+    JSONObject stats = coalescer.getStats();
+    Assert.assertEquals(stats.getLong("executed"), 1L);
+    Assert.assertEquals(stats.getLong("coalesced"), 1L);
+    Assert.assertEquals(stats.getDouble("coalescedRate"), 0.5);
+    coalescer.resetStats();
+    Assert.assertEquals(coalescer.getStats().getLong("coalesced"), 0L);
+  }
+
+  /**
+   * Checks that a request with another key executes while a request is in flight
+   * @throws Exception when a request fails
+   */
+  @Test (groups = {"core"})
+  public void isolatesKeys() throws Exception
+  {
+    YADARequestCoalescer coalescer = new YADARequestCoalescer();
+    StubService leader = new StubService("leader", true);
+    StubService other  = new StubService("other", true);
+    FutureTask<String> first = start(coalescer, "key", leader);
+    other.release.countDown();
+    Assert.assertEquals(coalescer.execute("other key", other).getResult(), "other", "Result shared across keys");
+    leader.release.countDown();
+    Assert.assertEquals(first.get(TIMEOUT, TimeUnit.MILLISECONDS), "leader");
+    Assert.assertEquals(other.runs.get(), 1);
+    Assert.assertEquals(coalescer.getCoalesced(), 0L);
+  }
+
+  /**
+   * Checks that a request waiting for an identical update executes on its own
+   * @throws Exception when a request fails
+   */
+  @Test (groups = {"core"})
+  public void executesUpdates() throws Exception
+  {
+    YADARequestCoalescer coalescer = new YADARequestCoalescer();
+    StubService leader   = new StubService("leader", false);
+    StubService follower = new StubService("follower", false);
+    follower.release.countDown();
+    FutureTask<String> first  = start(coalescer, "key", leader);
+    FutureTask<String> second = follow(coalescer, "key", follower);
+    leader.release.countDown();
+    Assert.assertEquals(first.get(TIMEOUT, TimeUnit.MILLISECONDS), "leader");
+    Assert.assertEquals(second.get(TIMEOUT, TimeUnit.MILLISECONDS), "follower", "Update result shared");
+    Assert.assertEquals(follower.runs.get(), 1);
+    Assert.assertEquals(coalescer.getCoalesced(), 0L);
+  }
+
+  /**
+   * Checks that an {@link Error} in the shared execution is rethrown to the waiting request as is
+   * @throws Exception when the test is interrupted
+   */
+  @Test (groups = {"core"})
+  public void propagatesErrors() throws Exception
+  {
+    YADARequestCoalescer coalescer = new YADARequestCoalescer();
+    StubService leader   = new StubService("leader", true);
+    StubService follower = new StubService("follower", true);
+    leader.error = new AssertionError("shared execution failed");
+    FutureTask<String> first  = start(coalescer, "key", leader);
+    FutureTask<String> second = follow(coalescer, "key", follower);
+    leader.release.countDown();
+    for(FutureTask<String> task : Arrays.asList(first, second))
+    {
+      try
+      {
+        task.get(TIMEOUT, TimeUnit.MILLISECONDS);
+        Assert.fail("Error not rethrown");
+      }
+      catch(ExecutionException e)
+      {
+        Assert.assertSame(e.getCause(), leader.error);
+      }
+    }
+    Assert.assertEquals(follower.runs.get(), 0);
+    Assert.assertEquals(coalescer.getInFlight(), 0, "Failed request still in flight");
+  }
+
+  /**
+   * Starts a request and waits for it to execute
+   * @param coalescer the coalescer
+   * @param key the request key
+   * @param service the service
+   * @return the pending request
+   * @throws InterruptedException when interrupted
+   */
+  private static FutureTask<String> start(YADARequestCoalescer coalescer, String key, StubService service) throws InterruptedException
+  {
+    FutureTask<String> task = submit(coalescer, key, service);
+    Assert.assertTrue(service.started.await(TIMEOUT, TimeUnit.MILLISECONDS), "Request not started");
+    return task;
+  }
+
+  /**
+   * Starts a request and waits for it to wait for the request in flight
+   * @param coalescer the coalescer
+   * @param key the request key
+   * @param service the service
+   * @return the pending request
+   * @throws InterruptedException when interrupted
+   */
+  private static FutureTask<String> follow(YADARequestCoalescer coalescer, String key, StubService service) throws InterruptedException
+  {
+    FutureTask<String> task   = new FutureTask<>(() -> coalescer.execute(key, service).getResult());
+    Thread             thread = new Thread(task);
+    thread.start();
+    long deadline = System.currentTimeMillis() + TIMEOUT;
+    while(thread.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline)
+    {
+      Thread.sleep(1);
+    }
+    return task;
+  }
+
+  /**
+   * @param coalescer the coalescer
+   * @param key the request key
+   * @param service the service
+   * @return the pending request, running on a new thread
+   */
+  private static FutureTask<String> submit(YADARequestCoalescer coalescer, String key, StubService service)
+  {
+    FutureTask<String> task = new FutureTask<>(() -> coalescer.execute(key, service).getResult());
+    new Thread(task).start();
+    return task;
+  }
+
+  /**
+   * A {@link Service} returning a fixed result once released
+   */
+  private static class StubService extends Service {
+
+    /**
+     * Counted down when execution starts
+     */
+    final CountDownLatch started = new CountDownLatch(1);
+
+    /**
+     * Counted down to complete execution
+     */
+    final CountDownLatch release = new CountDownLatch(1);
+
+    /**
+     * Number of executions
+     */
+    final AtomicInteger runs = new AtomicInteger();
+
+    /**
+     * The result
+     */
+    private final String result;
+
+    /**
+     * The value of {@link #isReadOnly()}
+     */
+    private final boolean readOnly;
+
+    /**
+     * Thrown by {@link #execute()}, if set
+     */
+    Error error;
+
+    /**
+     * @param result the result
+     * @param readOnly the value of {@link #isReadOnly()}
+     */
+    StubService(String result, boolean readOnly)
+    {
+      this.result   = result;
+      this.readOnly = readOnly;
+    }
+
+    @Override
+    public String execute() throws YADAException
+    {
+      this.runs.incrementAndGet();
+      this.started.countDown();
+      try
+      {
+        this.release.await(TIMEOUT, TimeUnit.MILLISECONDS);
+      }
+      catch(InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+      }
+      if(this.error != null)
+      {
+        throw this.error;
+      }
+      return this.result;
+    }
+
+    @Override
+    public boolean isReadOnly()
+    {
+      return this.readOnly;
+    }
+  }
+}
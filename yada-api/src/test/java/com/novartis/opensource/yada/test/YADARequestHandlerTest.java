@@ -0,0 +1,256 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada.test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.commons.io.IOUtils;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.json.JSONObject;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.novartis.opensource.yada.Service;
+import com.novartis.opensource.yada.YADAException;
+import com.novartis.opensource.yada.server.YADARequestHandler;
+import com.novartis.opensource.yada.server.YADAServer;
+
+/**
+ * Tests that, in async mode, a request exceeding the timeout is answered with a {@code 503}, and that its
+ * result, once the query finally returns, is discarded rather than written to the completed response,
+ * which may by then belong to the next request on the connection.
+ * @author David Varon
+ * @since 10.2.0
+ */
+public class YADARequestHandlerTest {
+
+  /**
+   * Constant equal to {@value}. The async timeout, in milliseconds
+   */
+  private static final long TIMEOUT = 200L;
+
+  /**
+   * Constant equal to {@value}. The execution time, in milliseconds, of a blocked request
+   */
+  private static final long BLOCK = 1000L;
+
+  /**
+   * The properties set by the test, and their previous values
+   */
+  private final Map<String, String> prevProps = new HashMap<>();
+
+  /**
+   * Counts the executions which have returned
+   */
+  private volatile CountDownLatch finished;
+
+  /**
+   * The server
+   */
+  private Server server;
+
+  /**
+   * The url of the server
+   */
+  private String url;
+
+  /**
+   * Starts a server in async mode with {@link #TIMEOUT}, the handler of which executes {@link BlockingService}s
+   * @throws Exception when the server can't be started
+   */
+  @BeforeClass (groups = {"core"})
+  public void init() throws Exception
+  {
+    if(System.getProperty("YADA.properties.path") == null)
+    {
+      System.setProperty("YADA.properties.path", getClass().getResource("/conf/YADA.properties").getPath());
+    }
+    setProperty(YADAServer.YADA_SERVER_ASYNC, "true");
+    setProperty(YADAServer.YADA_SERVER_ASYNC_TIMEOUT, String.valueOf(TIMEOUT));
+    setProperty(YADAServer.YADA_SERVER_CONTEXT, "/yada");
+    this.server = new Server(0);
+    this.server.setHandler(new YADARequestHandler() {
+      @Override
+      protected Service newService()
+      {
+        return new BlockingService();
+      }
+    });
+    this.server.start();
+    this.url = "http://localhost:" + ((ServerConnector)this.server.getConnectors()[0]).getLocalPort() + "/yada/";
+  }
+
+  /**
+   * Stops the server and restores the properties
+   * @throws Exception when the server can't be stopped
+   */
+  @AfterClass (groups = {"core"})
+  public void cleanup() throws Exception
+  {
+    this.server.stop();
+    Properties props = YADAServer.getProperties();
+    for(Map.Entry<String, String> prop : this.prevProps.entrySet())
+    {
+      if(prop.getValue() == null)
+        props.remove(prop.getKey());
+      else
+        props.setProperty(prop.getKey(), prop.getValue());
+    }
+  }
+
+  /**
+   * Checks that a request blocked beyond the timeout is answered with a {@code 503}, and that the next
+   * request, executing while the blocked query returns, receives only its own result
+   * @throws Exception when a request fails
+   */
+  @Test (groups = {"core"})
+  public void discardsResultAfterTimeout() throws Exception
+  {
+    this.finished = new CountDownLatch(2);
+    long start = System.currentTimeMillis();
+    HttpURLConnection first = request("first", BLOCK);
+    Assert.assertEquals(first.getResponseCode(), HttpURLConnection.HTTP_UNAVAILABLE);
+    read(first.getErrorStream());
+    // executes on the same connection, if kept alive, while the first query returns
+    Thread.sleep(Math.max(0L, start + BLOCK - TIMEOUT / 4 - System.currentTimeMillis()));
+    HttpURLConnection second = request("second", TIMEOUT / 2);
+    Assert.assertEquals(second.getResponseCode(), HttpURLConnection.HTTP_OK);
+    Assert.assertEquals(new JSONObject(read(second.getInputStream())).getString("id"), "second");
+    Assert.assertTrue(this.finished.await(5, TimeUnit.SECONDS), "Blocked execution did not return");
+  }
+
+  /**
+   * Checks that a request completing within the timeout returns its result
+   * @throws Exception when the request fails
+   */
+  @Test (groups = {"core"})
+  public void returnsResultWithinTimeout() throws Exception
+  {
+    this.finished = new CountDownLatch(1);
+    HttpURLConnection conn = request("fast", TIMEOUT / 4);
+    Assert.assertEquals(conn.getResponseCode(), HttpURLConnection.HTTP_OK);
+    Assert.assertEquals(new JSONObject(read(conn.getInputStream())).getString("id"), "fast");
+  }
+
+  /**
+   * @param id the value returned by the execution
+   * @param block the execution time, in milliseconds
+   * @return the connection, the request on which is sent when its response is read
+   * @throws IOException when the request can't be sent
+   */
+  private HttpURLConnection request(String id, long block) throws IOException
+  {
+    HttpURLConnection conn = (HttpURLConnection)new URL(this.url + "?q=BLOCKINGTEST%20test&id=" + id + "&block=" + block).openConnection();
+    conn.setReadTimeout((int)(BLOCK + TIMEOUT * 4));
+    return conn;
+  }
+
+  /**
+   * @param in the response body
+   * @return the content of {@code in}
+   * @throws IOException when {@code in} can't be read
+   */
+  private static String read(InputStream in) throws IOException
+  {
+    if(in == null)
+      return "";
+    try(InputStream is = in)
+    {
+      return IOUtils.toString(is, StandardCharsets.UTF_8);
+    }
+  }
+
+  /**
+   * @param name the property name
+   * @param value the value to set for the duration of the test
+   */
+  private void setProperty(String name, String value)
+  {
+    Properties props = YADAServer.getProperties();
+    this.prevProps.put(name, props.getProperty(name));
+    props.setProperty(name, value);
+  }
+
+  /**
+   * Returns the {@code id} parameter as json after the number of milliseconds in the {@code block} parameter,
+   * ignoring interrupts, as a jdbc driver typically would
+   */
+  private class BlockingService extends Service {
+
+    /**
+     * The value returned
+     */
+    private String id;
+
+    /**
+     * The execution time, in milliseconds
+     */
+    private long block;
+
+    @Override
+    public void handleRequest(HttpServletRequest request)
+    {
+      getYADARequest().setQname(request.getParameter("q"));
+      this.id    = request.getParameter("id");
+      this.block = Long.parseLong(request.getParameter("block"));
+    }
+
+    @Override
+    public boolean isStreamable()
+    {
+      return false;
+    }
+
+    @Override
+    public String execute() throws YADAException
+    {
+      long deadline = System.currentTimeMillis() + this.block;
+      try
+      {
+        long remaining;
+        while((remaining = deadline - System.currentTimeMillis()) > 0)
+        {
+          try
+          {
+            Thread.sleep(remaining);
+          }
+          catch(InterruptedException e)
+          {
+            // not interruptible
+          }
+        }
+        return new JSONObject().put("id", this.id).toString();
+      }
+      finally
+      {
+        YADARequestHandlerTest.this.finished.countDown();
+      }
+    }
+  }
+}
@@ -0,0 +1,356 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada.test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.LocalConnector;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.novartis.opensource.yada.RequestTimings;
+import com.novartis.opensource.yada.YADAQuery;
+import com.novartis.opensource.yada.server.YADARequestLog;
+import com.novartis.opensource.yada.server.YADARequestLog.RingBuffer;
+import com.novartis.opensource.yada.server.YADAServer;
+
+/**
+ * Tests that the {@link RingBuffer} of a {@link YADARequestLog} rejects elements when full, and delivers those
+ * it accepts in order, once, and that the log writes the fields and timings of each request as a line of json,
+ * including the entries still buffered when it is stopped.
+ * @author David Varon
+ * @since 10.2.0
+ */
+public class YADARequestLogTest {
+
+  /**
+   * Constant equal to {@value}. The content of each response
+   */
+  private static final String CONTENT = "hello";
+
+  /**
+   * Constant equal to {@value}. The microseconds spent executing each request
+   */
+  private static final long EXECUTE_MICROS = 3000L;
+
+  /**
+   * The properties set by the test, and their previous values
+   */
+  private final Map<String, String> prevProps = new HashMap<>();
+
+  /**
+   * The log file
+   */
+  private Path file;
+
+  /**
+   * The server
+   */
+  private Server server;
+
+  /**
+   * The connector to which requests are sent
+   */
+  private LocalConnector connector;
+
+  /**
+   * The log under test
+   */
+  private YADARequestLog log;
+
+  /**
+   * Loads the test {@code YADA.properties}, unless set already
+   */
+  @BeforeClass (groups = {"core"})
+  public void init()
+  {
+    if(System.getProperty("YADA.properties.path") == null)
+    {
+      System.setProperty("YADA.properties.path", getClass().getResource("/conf/YADA.properties").getPath());
+    }
+  }
+
+  /**
+   * Starts a log writing to a temporary file, and a server logging to it, the handler of which records
+   * {@link RequestTimings} for two queries
+   * @throws Exception when the log or server can't be started
+   */
+  @BeforeMethod (groups = {"core"})
+  public void start() throws Exception
+  {
+    this.file = Files.createTempFile("yada-request", ".log");
+    setProperty(YADARequestLog.YADA_SERVER_YADA_LOG_FILE, this.file.toString());
+    setProperty(YADARequestLog.YADA_SERVER_YADA_LOG_BUFFER, "16384");
+    this.log       = new YADARequestLog();
+    this.server    = new Server();
+    this.connector = new LocalConnector(this.server);
+    this.server.addConnector(this.connector);
+    this.server.setRequestLog(this.log);
+    this.server.setHandler(new AbstractHandler() {
+      @Override
+      public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response)
+          throws IOException
+      {
+        baseRequest.setHandled(true);
+        RequestTimings timings = new RequestTimings();
+        timings.setQueries(new YADAQuery[] { query("APP1", "APP1 q1"), query("APP1", "APP1 q2"), query("APP2", "APP2 q1") });
+        timings.addRows(7);
+        timings.add(RequestTimings.EXECUTE, System.nanoTime() - EXECUTE_MICROS * 1000L);
+        request.setAttribute(YADARequestLog.TIMINGS, timings);
+        response.setContentType("text/plain");
+        response.getOutputStream().write(CONTENT.getBytes(StandardCharsets.UTF_8));
+      }
+    });
+    // the log is stopped after the server, so every request is logged before the log drains
+    this.log.start();
+    this.server.start();
+  }
+
+  /**
+   * Stops the server and log, removes the log file, and restores the properties
+   * @throws Exception when the server or log can't be stopped
+   */
+  @AfterMethod (groups = {"core"})
+  public void stop() throws Exception
+  {
+    this.server.stop();
+    this.log.stop();
+    Files.deleteIfExists(this.file);
+    Properties props = YADAServer.getProperties();
+    for(Map.Entry<String, String> prop : this.prevProps.entrySet())
+    {
+      if(prop.getValue() == null)
+        props.remove(prop.getKey());
+      else
+        props.setProperty(prop.getKey(), prop.getValue());
+    }
+    this.prevProps.clear();
+  }
+
+  /**
+   * Checks that the buffer holds its capacity, rounded up to a power of two, rejects elements when full,
+   * and delivers the elements it accepted in order, across wrap-arounds
+   */
+  @Test (groups = {"core"})
+  public void ringBufferRejectsWhenFull()
+  {
+    RingBuffer<Integer> buffer = new RingBuffer<>(3);
+    Assert.assertTrue(buffer.isEmpty(), "New buffer not empty");
+    Assert.assertNull(buffer.poll(), "Element polled from an empty buffer");
+    int next = 0;
+    int dropped = 0;
+    for(int round = 0; round < 3; round++)
+    {
+      for(int i = 0; i < 6; i++)
+      {
+        if(!buffer.offer(next + i))
+          dropped++;
+      }
+      Assert.assertEquals(dropped, 2 * (round + 1), "Wrong number of elements dropped by a full buffer");
+      for(int i = 0; i < 4; i++)
+      {
+        Assert.assertEquals(buffer.poll(), Integer.valueOf(next + i), "Element out of order");
+      }
+      Assert.assertNull(buffer.poll(), "Dropped element polled");
+      Assert.assertTrue(buffer.isEmpty(), "Drained buffer not empty");
+      next += 6;
+    }
+  }
+
+  /**
+   * Checks that, with producers offering concurrently while the consumer polls, each accepted element is
+   * polled once, in the order of its producer, and every other element was rejected
+   * @throws Exception when a producer is interrupted
+   */
+  @Test (groups = {"core"})
+  public void ringBufferDeliversConcurrentOffers() throws Exception
+  {
+    final int           producers = 4;
+    final int           offers    = 100000;
+    RingBuffer<long[]>  buffer    = new RingBuffer<>(64);
+    AtomicLong          dropped   = new AtomicLong();
+    CountDownLatch      done      = new CountDownLatch(producers);
+    for(int p = 0; p < producers; p++)
+    {
+      final int producer = p;
+      Thread t = new Thread(() -> {
+        for(int i = 0; i < offers; i++)
+        {
+          if(!buffer.offer(new long[] { producer, i }))
+            dropped.incrementAndGet();
+        }
+        done.countDown();
+      });
+      t.setDaemon(true);
+      t.start();
+    }
+    long[] last   = new long[producers];
+    long   polled = 0;
+    Arrays.fill(last, -1);
+    while(done.getCount() > 0 || !buffer.isEmpty())
+    {
+      long[] e = buffer.poll();
+      if(e == null)
+      {
+        Thread.yield();
+        continue;
+      }
+      Assert.assertTrue(e[1] > last[(int) e[0]], "Element of producer " + e[0] + " out of order");
+      last[(int) e[0]] = e[1];
+      polled++;
+    }
+    Assert.assertEquals(polled + dropped.get(), (long) producers * offers, "Elements lost or duplicated");
+  }
+
+  /**
+   * Checks that a request is written as one line of json with its method, status, bytes, queries, apps, rows
+   * and phase timings
+   * @throws Exception when the request fails, or the log can't be read
+   */
+  @Test (groups = {"core"})
+  public void writesEntry() throws Exception
+  {
+    long before = System.currentTimeMillis();
+    send();
+    this.server.stop();
+    this.log.stop();
+    List<JSONObject> entries = read();
+    Assert.assertEquals(entries.size(), 1, "Wrong number of entries");
+    JSONObject entry = entries.get(0);
+    Assert.assertEquals(entry.getString("method"), "GET", "Wrong method");
+    Assert.assertEquals(entry.getInt("status"), HttpServletResponse.SC_OK, "Wrong status");
+    Assert.assertEquals(entry.getLong("bytes"), CONTENT.length(), "Wrong bytes");
+    Assert.assertTrue(entry.getLong("timestamp") >= before - 1000, "Wrong timestamp");
+    Assert.assertTrue(entry.getLong("elapsed") >= 0, "Wrong elapsed time");
+    Assert.assertTrue(entry.has("remote"), "Remote address missing");
+    Assert.assertEquals(strings(entry.getJSONArray("qnames")), Arrays.asList("APP1 q1", "APP1 q2", "APP2 q1"), "Wrong queries");
+    Assert.assertEquals(strings(entry.getJSONArray("apps")), Arrays.asList("APP1", "APP2"), "Wrong apps");
+    Assert.assertEquals(entry.getLong("rows"), 7L, "Wrong rows");
+    for(String phase : RequestTimings.PHASES)
+    {
+      Assert.assertTrue(entry.has(phase), "Timing missing: " + phase);
+    }
+    Assert.assertTrue(entry.getLong(RequestTimings.PHASES[RequestTimings.EXECUTE]) >= EXECUTE_MICROS, "Execution time not in microseconds");
+    Assert.assertEquals(entry.getLong(RequestTimings.PHASES[RequestTimings.LOOKUP]), 0L, "Time of an unrecorded phase");
+    Assert.assertEquals(this.log.getDropped(), 0L, "Entry dropped");
+  }
+
+  /**
+   * Checks that stopping the log writes every buffered entry before the file is closed, and that requests
+   * completed after it stopped aren't logged
+   * @throws Exception when a request fails, or the log can't be read
+   */
+  @Test (groups = {"core"})
+  public void drainsOnStop() throws Exception
+  {
+    final int requests = 500;
+    for(int i = 0; i < requests; i++)
+    {
+      send();
+    }
+    this.server.stop();
+    this.log.stop();
+    Assert.assertEquals(read().size() + this.log.getDropped(), (long) requests, "Buffered entries not written on stop");
+
+    this.server.start();
+    send();
+    this.server.stop();
+    Assert.assertEquals(read().size() + this.log.getDropped(), (long) requests, "Entry logged after stop");
+  }
+
+  /**
+   * Sends a request, and checks its response
+   * @throws Exception when the request fails
+   */
+  private void send() throws Exception
+  {
+    ByteBuffer response = this.connector.getResponse(
+        ByteBuffer.wrap("GET /?q=test HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1)));
+    Assert.assertTrue(StandardCharsets.ISO_8859_1.decode(response).toString().startsWith("HTTP/1.1 200"), "Request failed");
+  }
+
+  /**
+   * @return the entries in the log file
+   * @throws IOException when the file can't be read
+   */
+  private List<JSONObject> read() throws IOException
+  {
+    List<JSONObject> entries = new ArrayList<>();
+    for(String line : Files.readAllLines(this.file, StandardCharsets.UTF_8))
+    {
+      entries.add(new JSONObject(line));
+    }
+    return entries;
+  }
+
+  /**
+   * @param array a json array of strings
+   * @return the strings
+   */
+  private static List<String> strings(JSONArray array)
+  {
+    List<String> strings = new ArrayList<>();
+    for(int i = 0; i < array.length(); i++)
+      strings.add(array.getString(i));
+    return strings;
+  }
+
+  /**
+   * @param app the app
+   * @param qname the query name
+   * @return a query
+   */
+  private static YADAQuery query(String app, String qname)
+  {
+    YADAQuery yq = new YADAQuery();
+    yq.setApp(app);
+    yq.setQname(qname);
+    return yq;
+  }
+
+  /**
+   * @param name the property name
+   * @param value the value to set for the duration of the test
+   */
+  private void setProperty(String name, String value)
+  {
+    Properties props = YADAServer.getProperties();
+    this.prevProps.put(name, props.getProperty(name));
+    props.setProperty(name, value);
+  }
+}
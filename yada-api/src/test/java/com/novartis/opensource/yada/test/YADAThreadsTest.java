@@ -0,0 +1,127 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada.test;
+
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.SkipException;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.novartis.opensource.yada.server.YADAServer;
+import com.novartis.opensource.yada.util.YADAThreads;
+
+/**
+ * Tests that requests only run on virtual threads when configured, and that CPU-bound work submitted with
+ * {@link YADAThreads#compute(YADAThreads.Task)} returns its result, or throws its exception, as if called directly.
+ * @author David Varon
+ * @since 10.2.0
+ */
+public class YADAThreadsTest {
+
+  /**
+   * Loads the test {@code YADA.properties}, unless set already
+   */
+  @BeforeClass (groups = {"core"})
+  public void init()
+  {
+    if(System.getProperty("YADA.properties.path") == null)
+    {
+      System.setProperty("YADA.properties.path", getClass().getResource("/conf/YADA.properties").getPath());
+    }
+  }
+
+  /**
+   * Checks that virtual threads are off unless {@link YADAThreads#YADA_SERVER_VIRTUAL_THREADS} is set
+   */
+  @Test (groups = {"core"})
+  public void disabledByDefault()
+  {
+    Properties props = YADAServer.getProperties();
+    String     value = props.getProperty(YADAThreads.YADA_SERVER_VIRTUAL_THREADS);
+    props.remove(YADAThreads.YADA_SERVER_VIRTUAL_THREADS);
+    try
+    {
+      Assert.assertFalse(YADAThreads.isVirtual(), "Virtual threads enabled by default");
+    }
+    finally
+    {
+      if(value != null)
+        props.setProperty(YADAThreads.YADA_SERVER_VIRTUAL_THREADS, value);
+    }
+  }
+
+  /**
+   * Checks that work is executed directly on a platform thread
+   * @throws IOException when the work fails
+   */
+  @Test (groups = {"core"})
+  public void computeOnPlatformThread() throws IOException
+  {
+    Thread caller = Thread.currentThread();
+    Assert.assertSame(YADAThreads.compute(() -> Thread.currentThread()), caller, "Work not executed on the calling thread");
+    try
+    {
+      YADAThreads.compute(() -> { throw new IOException("failed"); });
+      Assert.fail("Exception not thrown");
+    }
+    catch(IOException e)
+    {
+      Assert.assertEquals(e.getMessage(), "failed");
+    }
+  }
+
+  /**
+   * Checks that work submitted from a virtual thread is executed on a compute thread, with the same
+   * result and exception.  Skipped on jvms without virtual threads.
+   * @throws Exception when the work fails
+   */
+  @Test (groups = {"core"})
+  public void computeOnVirtualThread() throws Exception
+  {
+    ExecutorService virtual;
+    try
+    {
+      virtual = YADAThreads.newVirtualThreadPerTaskExecutor("yada-test-");
+    }
+    catch(UnsupportedOperationException e)
+    {
+      throw new SkipException("Virtual threads require Java 21 or later.");
+    }
+    try
+    {
+      String name = virtual.submit(() -> YADAThreads.compute(() -> Thread.currentThread().getName())).get(10, TimeUnit.SECONDS);
+      Assert.assertTrue(name.startsWith("yada-compute-"), "Work not executed on a compute thread: " + name);
+      try
+      {
+        virtual.submit(() -> YADAThreads.compute(() -> { throw new IOException("failed"); })).get(10, TimeUnit.SECONDS);
+        Assert.fail("Exception not thrown");
+      }
+      catch(ExecutionException e)
+      {
+        Assert.assertTrue(e.getCause() instanceof IOException, "Wrong exception " + e.getCause());
+      }
+    }
+    finally
+    {
+      virtual.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright 2016 Novartis Institutes for BioMedical Research Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.novartis.opensource.yada.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.novartis.opensource.yada.server.YADAWarmup;
+
+/**
+ * Tests that {@link YADAWarmup} finds every query in a library, including those in subdirectories of an app.
+ * @author David Varon
+ * @since 10.2.0
+ */
+public class YADAWarmupTest {
+
+  /**
+   * Checks the names of queries stored with space and slash separated names, at any depth
+   * @throws IOException when the library can't be written
+   */
+  @Test (groups = {"core"})
+  public void findsAllQueries() throws IOException
+  {
+    Path lib = Files.createTempDirectory("yada-lib");
+    try
+    {
+      for(String file : new String[] {
+          "APP/conf.json", "APP/APP space name.json", "APP/slash.json", "APP/dir/nested.json",
+          "APP/dir/deeper/conf.json", "APP/readme.md", "OTHER/OTHER q.json", ".git/objects/x.json" })
+      {
+        Path path = lib.resolve(file);
+        Files.createDirectories(path.getParent());
+        Files.write(path, "{}".getBytes());
+      }
+      Set<String> expected = new HashSet<>(Arrays.asList(
+          "APP space name", "APP/slash", "APP/dir/nested", "APP/dir/deeper/conf", "OTHER q"));
+      Set<String> qnames   = new HashSet<>(YADAWarmup.getQnames(lib.toFile()));
+      Assert.assertEquals(qnames, expected);
+    }
+    finally
+    {
+      FileUtils.deleteDirectory(lib.toFile());
+    }
+  }
+
+  /**
+   * Checks that a missing library yields no queries
+   */
+  @Test (groups = {"core"})
+  public void missingLib()
+  {
+    Assert.assertEquals(YADAWarmup.getQnames(new File("/nonexistent/yada/lib")).size(), 0, "Queries found in missing library");
+  }
+}